@@ -22,6 +22,7 @@ package org.xwiki.contrib.glossary;
 import java.util.List;
 
 import org.xwiki.component.annotation.Role;
+import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.EntityReference;
 import org.xwiki.model.reference.SpaceReference;
 
@@ -39,11 +40,42 @@ public interface GlossaryConfiguration
      */
     boolean updateDocumentsOnSave();
 
+    /**
+     * @return true if the documents should be updated in the background after they are saved, as a minor edit which
+     * doesn't create a new version, instead of being updated during the save
+     * @since 1.5.3
+     */
+    default boolean isUpdateDocumentsOnSaveAsynchronously()
+    {
+        return false;
+    }
+
+    /**
+     * @return the number of seconds to wait before updating a document saved when
+     * {@link #isUpdateDocumentsOnSaveAsynchronously()} is enabled, during which other saves of the same document are
+     * coalesced
+     * @since 1.5.3
+     */
+    default long getUpdateDocumentsOnSaveDelay()
+    {
+        return 2L;
+    }
+
     /**
      * @return a list of class references which should be excluded from document update on save.
      */
     List<EntityReference> excludedClassesFromTransformations();
 
+    /**
+     * @param classReference the reference of the class of an object of a document
+     * @return true if the documents having objects of the given class should be excluded from document update on save
+     * @since 1.5.3
+     */
+    default boolean isExcludedClassFromTransformations(DocumentReference classReference)
+    {
+        return excludedClassesFromTransformations().contains(classReference);
+    }
+
     /**
      * @return the default glossary ID to be used when not specified.
      */
@@ -65,4 +97,51 @@ public interface GlossaryConfiguration
      */
     List<SpaceReference> getTransformationJobIncludeSpaces();
 
+    /**
+     * @return the number of documents transformed in parallel by the transformation job
+     * @since 1.5.3
+     */
+    default int getTransformationJobThreads()
+    {
+        return 2;
+    }
+
+    /**
+     * @return the number of documents loaded at once by the transformation job, which is also the interval at which
+     * the job saves its progress
+     * @since 1.5.3
+     */
+    default int getTransformationJobBatchSize()
+    {
+        return 100;
+    }
+
+    /**
+     * @return the maximum number of entries kept in the glossary cache, all wikis included
+     * @since 1.5.3
+     */
+    default int getCacheMaxEntries()
+    {
+        return 100000;
+    }
+
+    /**
+     * @return the estimated maximum number of bytes used by the entries kept in the glossary cache, all wikis
+     * included
+     * @since 1.5.3
+     */
+    default long getCacheMaxBytes()
+    {
+        return 64L * 1024 * 1024;
+    }
+
+    /**
+     * @return the number of entry definitions rendered in parallel when exporting a glossary
+     * @since 1.5.3
+     */
+    default int getExportThreads()
+    {
+        return 2;
+    }
+
 }
@@ -34,6 +34,14 @@ public class GlossaryEntriesMacroParameters
 
     private HeaderLevel entryNameHeaderLevel = HeaderLevel.LEVEL2;
 
+    private int offset;
+
+    private int limit = -1;
+
+    private String letterRange;
+
+    private boolean lazy;
+
     /**
      * @param glossaryId see {@link #getGlossaryId()}
      */
@@ -70,5 +78,84 @@ public class GlossaryEntriesMacroParameters
         return this.entryNameHeaderLevel;
     }
 
+    /**
+     * @param offset see {@link #getOffset()}
+     * @since 1.5.3
+     */
+    @PropertyDescription("The number of entries to skip, for displaying a page of the glossary")
+    public void setOffset(int offset)
+    {
+        this.offset = offset;
+    }
+
+    /**
+     * @return the number of entries, in title order and after the letter range is applied, to skip before the first
+     *     displayed entry. Defaults to {@code 0}.
+     * @since 1.5.3
+     */
+    public int getOffset()
+    {
+        return this.offset;
+    }
+
+    /**
+     * @param limit see {@link #getLimit()}
+     * @since 1.5.3
+     */
+    @PropertyDescription("The maximum number of entries to display. Displays all the entries when negative")
+    public void setLimit(int limit)
+    {
+        this.limit = limit;
+    }
+
+    /**
+     * @return the maximum number of entries to display, or a negative value to display all the entries. Defaults to
+     *     {@code -1}.
+     * @since 1.5.3
+     */
+    public int getLimit()
+    {
+        return this.limit;
+    }
+
+    /**
+     * @param letterRange see {@link #getLetterRange()}
+     * @since 1.5.3
+     */
+    @PropertyDescription("The range of initial letters of the entries to display, e.g. 'A-F' or 'K'")
+    public void setLetterRange(String letterRange)
+    {
+        this.letterRange = letterRange;
+    }
 
+    /**
+     * @return the range of initial letters of the entries to display, as two letters separated by a dash (e.g.
+     *     {@code A-F}) or a single letter. The comparison ignores case and accents. When not specified, entries are
+     *     displayed whatever their initial letter.
+     * @since 1.5.3
+     */
+    public String getLetterRange()
+    {
+        return this.letterRange;
+    }
+
+    /**
+     * @param lazy see {@link #isLazy()}
+     * @since 1.5.3
+     */
+    @PropertyDescription("Only display the entry names and load their definitions when they are scrolled into view")
+    public void setLazy(boolean lazy)
+    {
+        this.lazy = lazy;
+    }
+
+    /**
+     * @return {@code true} if only the names of the entries should be rendered, along with placeholders whose
+     *     definitions are then loaded asynchronously by the browser. Defaults to {@code false}.
+     * @since 1.5.3
+     */
+    public boolean isLazy()
+    {
+        return this.lazy;
+    }
 }
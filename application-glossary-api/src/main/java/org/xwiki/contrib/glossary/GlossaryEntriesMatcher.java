@@ -0,0 +1,257 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.SpaceBlock;
+import org.xwiki.rendering.block.SpecialSymbolBlock;
+import org.xwiki.rendering.block.WordBlock;
+
+/**
+ * Compiled, immutable matcher able to find glossary entries in a list of sibling blocks. The matcher is a trie over
+ * the tokens composing the entry titles, where a token is either a word, a space or a special symbol, so that every
+ * entry, including multi-word ones such as "Workers Committee", can be found in a single walk of the blocks.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+public final class GlossaryEntriesMatcher
+{
+    /**
+     * A matcher that doesn't match anything.
+     */
+    public static final GlossaryEntriesMatcher EMPTY = new GlossaryEntriesMatcher(Collections.emptyMap());
+
+    /**
+     * Characters that are parsed as special symbol blocks according to
+     * https://github.com/xwiki/xwiki-rendering/blob/22eac2b1d38fbe259fa72e45df30f78eab553325/
+     * xwiki-rendering-syntaxes/xwiki-rendering-syntax-plain/src/main/java/org/xwiki/rendering/
+     * internal/parser/plain/PlainTextStreamParser.java#L52
+     *
+     * We don't do a direct reference to the static variable of the PlainTextStreamParser as it's an internal class.
+     */
+    private static final String SPECIAL_SYMBOLS = "!\"#$%&'()*+,-./:;<=>?@[]^_`{|}~“”«»";
+
+    private static final String SPACE_TOKEN = " ";
+
+    private static final String[] ASCII_TOKENS = new String[128];
+
+    static {
+        for (char c = 0; c < ASCII_TOKENS.length; c++) {
+            ASCII_TOKENS[c] = String.valueOf(c);
+        }
+    }
+
+    private final Node root = new Node();
+
+    private final int size;
+
+    /**
+     * A match of a glossary entry in a list of sibling blocks.
+     *
+     * @version $Id$
+     */
+    public static final class Match
+    {
+        private final String title;
+
+        private final DocumentReference reference;
+
+        private final int start;
+
+        private final int end;
+
+        private Match(String title, DocumentReference reference, int start, int end)
+        {
+            this.title = title;
+            this.reference = reference;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * @return the title of the matched glossary entry
+         */
+        public String getTitle()
+        {
+            return this.title;
+        }
+
+        /**
+         * @return the reference of the matched glossary entry
+         */
+        public DocumentReference getReference()
+        {
+            return this.reference;
+        }
+
+        /**
+         * @return the index of the first matched block
+         */
+        public int getStart()
+        {
+            return this.start;
+        }
+
+        /**
+         * @return the index following the last matched block
+         */
+        public int getEnd()
+        {
+            return this.end;
+        }
+
+        /**
+         * @return the number of matched blocks
+         */
+        public int getLength()
+        {
+            return this.end - this.start;
+        }
+    }
+
+    private static final class Node
+    {
+        private final Map<String, Node> children = new HashMap<>();
+
+        private String title;
+
+        private DocumentReference reference;
+    }
+
+    /**
+     * @param entries the glossary entries to match, indexed by title
+     */
+    public GlossaryEntriesMatcher(Map<String, DocumentReference> entries)
+    {
+        int count = 0;
+        for (Map.Entry<String, DocumentReference> entry : entries.entrySet()) {
+            List<String> tokens = tokenize(entry.getKey());
+            if (!tokens.isEmpty()) {
+                Node node = this.root;
+                for (String token : tokens) {
+                    node = node.children.computeIfAbsent(token, key -> new Node());
+                }
+                if (node.reference == null) {
+                    count++;
+                }
+                node.title = entry.getKey();
+                node.reference = entry.getValue();
+            }
+        }
+        this.size = count;
+    }
+
+    /**
+     * @return the number of entries that can be matched
+     */
+    public int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * @return true if the matcher cannot match anything
+     */
+    public boolean isEmpty()
+    {
+        return this.size == 0;
+    }
+
+    /**
+     * Find the longest glossary entry starting at the given position in a list of sibling blocks.
+     *
+     * @param blocks the sibling blocks
+     * @param start the index of the block where the match should start
+     * @return the longest match, or {@code null} if no entry starts at the given position
+     */
+    public Match match(List<Block> blocks, int start)
+    {
+        Node node = this.root;
+        Node longest = null;
+        int end = start;
+
+        for (int i = start; i < blocks.size(); i++) {
+            String token = getToken(blocks.get(i));
+            node = (token != null) ? node.children.get(token) : null;
+            if (node == null) {
+                break;
+            }
+            if (node.reference != null) {
+                longest = node;
+                end = i + 1;
+            }
+        }
+
+        return (longest != null) ? new Match(longest.title, longest.reference, start, end) : null;
+    }
+
+    /**
+     * Split a glossary entry title into the tokens that the blocks of a parsed content would produce.
+     *
+     * @param title the title to split
+     * @return the list of tokens
+     */
+    public static List<String> tokenize(String title)
+    {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < title.length(); i++) {
+            char c = title.charAt(i);
+            if (Character.isWhitespace(c) || SPECIAL_SYMBOLS.indexOf(c) >= 0) {
+                if (word.length() > 0) {
+                    tokens.add(word.toString());
+                    word.setLength(0);
+                }
+                tokens.add(Character.isWhitespace(c) ? SPACE_TOKEN : getSymbolToken(c));
+            } else {
+                word.append(c);
+            }
+        }
+        if (word.length() > 0) {
+            tokens.add(word.toString());
+        }
+        return tokens;
+    }
+
+    private static String getToken(Block block)
+    {
+        if (block instanceof WordBlock) {
+            return ((WordBlock) block).getWord();
+        } else if (block instanceof SpaceBlock) {
+            return SPACE_TOKEN;
+        } else if (block instanceof SpecialSymbolBlock) {
+            return getSymbolToken(((SpecialSymbolBlock) block).getSymbol());
+        }
+        return null;
+    }
+
+    private static String getSymbolToken(char symbol)
+    {
+        return (symbol < ASCII_TOKENS.length) ? ASCII_TOKENS[symbol] : String.valueOf(symbol);
+    }
+}
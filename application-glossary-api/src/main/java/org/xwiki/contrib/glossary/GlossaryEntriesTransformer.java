@@ -19,9 +19,11 @@
  */
 package org.xwiki.contrib.glossary;
 
+import java.util.List;
 import java.util.Locale;
 
 import org.xwiki.component.annotation.Role;
+import org.xwiki.rendering.block.Block;
 import org.xwiki.rendering.block.XDOM;
 import org.xwiki.rendering.syntax.Syntax;
 
@@ -41,4 +43,22 @@ public interface GlossaryEntriesTransformer
      * @return true if the XDOM was modified, false otherwise
      */
     boolean transformGlossaryEntries(XDOM xdom, Syntax syntax, Locale locale) throws GlossaryException;
+
+    /**
+     * Transforms only some blocks of an XDOM, e.g. the blocks modified since the XDOM was last transformed.
+     * Implementations which cannot transform part of an XDOM transform the whole XDOM.
+     *
+     * @param xdom an XDOM
+     * @param blocks the blocks of the XDOM to transform
+     * @param syntax wiki syntax
+     * @param locale document locale
+     * @return true if the XDOM was modified, false otherwise
+     * @throws GlossaryException when the glossary entries cannot be loaded
+     * @since 1.5.3
+     */
+    default boolean transformGlossaryEntries(XDOM xdom, List<Block> blocks, Syntax syntax, Locale locale)
+        throws GlossaryException
+    {
+        return transformGlossaryEntries(xdom, syntax, locale);
+    }
 }
@@ -0,0 +1,158 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.xwiki.job.AbstractRequest;
+import org.xwiki.model.reference.DocumentReference;
+
+/**
+ * Request of the job inserting references to glossary entries in the documents of a wiki.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+public class GlossaryEntriesTransformerJobRequest extends AbstractRequest
+{
+    /**
+     * The type of the job.
+     */
+    public static final String JOB_TYPE = "glossaryEntriesTransformer";
+
+    private static final String PROPERTY_WIKI = "wiki";
+
+    private static final String PROPERTY_USER_REFERENCE = "userReference";
+
+    private static final String PROPERTY_THREADS = "threads";
+
+    private static final String PROPERTY_BATCH_SIZE = "batchSize";
+
+    private static final String PROPERTY_FULL = "full";
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Default constructor.
+     */
+    public GlossaryEntriesTransformerJobRequest()
+    {
+    }
+
+    /**
+     * @param wikiId the wiki in which documents should be transformed
+     */
+    public GlossaryEntriesTransformerJobRequest(String wikiId)
+    {
+        setId(getJobId(wikiId));
+        setWiki(wikiId);
+    }
+
+    /**
+     * @param wikiId the wiki in which documents are transformed
+     * @return the identifier of the job transforming the documents of the given wiki
+     */
+    public static List<String> getJobId(String wikiId)
+    {
+        return Arrays.asList("glossary", JOB_TYPE, wikiId);
+    }
+
+    /**
+     * @return the wiki in which documents should be transformed
+     */
+    public String getWiki()
+    {
+        return getProperty(PROPERTY_WIKI);
+    }
+
+    /**
+     * @param wikiId the wiki in which documents should be transformed
+     */
+    public void setWiki(String wikiId)
+    {
+        setProperty(PROPERTY_WIKI, wikiId);
+    }
+
+    /**
+     * @return the user saving the transformed documents
+     */
+    public DocumentReference getUserReference()
+    {
+        return getProperty(PROPERTY_USER_REFERENCE);
+    }
+
+    /**
+     * @param userReference the user saving the transformed documents
+     */
+    public void setUserReference(DocumentReference userReference)
+    {
+        setProperty(PROPERTY_USER_REFERENCE, userReference);
+    }
+
+    /**
+     * @return the number of documents transformed in parallel, or 0 to use the configured value
+     */
+    public int getThreads()
+    {
+        return getProperty(PROPERTY_THREADS, 0);
+    }
+
+    /**
+     * @param threads the number of documents transformed in parallel, or 0 to use the configured value
+     */
+    public void setThreads(int threads)
+    {
+        setProperty(PROPERTY_THREADS, threads);
+    }
+
+    /**
+     * @return the number of documents loaded at once, or 0 to use the configured value
+     */
+    public int getBatchSize()
+    {
+        return getProperty(PROPERTY_BATCH_SIZE, 0);
+    }
+
+    /**
+     * @param batchSize the number of documents loaded at once, or 0 to use the configured value
+     */
+    public void setBatchSize(int batchSize)
+    {
+        setProperty(PROPERTY_BATCH_SIZE, batchSize);
+    }
+
+    /**
+     * @return true if all the documents should be transformed, false to only transform the documents modified since
+     * the last run and the documents which may contain the glossary entries changed since the last run
+     */
+    public boolean isFull()
+    {
+        return getProperty(PROPERTY_FULL, false);
+    }
+
+    /**
+     * @param full true if all the documents should be transformed
+     */
+    public void setFull(boolean full)
+    {
+        setProperty(PROPERTY_FULL, full);
+    }
+}
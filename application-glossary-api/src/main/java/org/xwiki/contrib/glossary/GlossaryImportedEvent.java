@@ -0,0 +1,39 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary;
+
+import org.xwiki.observation.event.EndFoldEvent;
+
+/**
+ * Event sent after a bulk import of glossary entries, following a {@link GlossaryImportingEvent}. The source of the
+ * event is the ID of the glossary in which the entries were imported. The titles of the imported entries are not part
+ * of the event, as they are recorded while the import runs.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+public class GlossaryImportedEvent implements EndFoldEvent
+{
+    @Override
+    public boolean matches(Object otherEvent)
+    {
+        return otherEvent instanceof GlossaryImportedEvent;
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary;
+
+import org.xwiki.observation.event.BeginFoldEvent;
+
+/**
+ * Event sent before a bulk import of glossary entries starts. Listeners reacting to the modifications of glossary
+ * entries can skip the documents saved during the import, which is followed by a single {@link GlossaryImportedEvent}.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+public class GlossaryImportingEvent implements BeginFoldEvent
+{
+    @Override
+    public boolean matches(Object otherEvent)
+    {
+        return otherEvent instanceof GlossaryImportingEvent;
+    }
+}
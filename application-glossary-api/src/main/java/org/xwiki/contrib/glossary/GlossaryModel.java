@@ -19,6 +19,10 @@
  */
 package org.xwiki.contrib.glossary;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
@@ -53,6 +57,29 @@ public interface GlossaryModel
      */
     Map<Locale, Map<String, DocumentReference>> getGlossaryEntries(String glossaryId) throws GlossaryException;
 
+    /**
+     * Get the compiled snapshot of all the glossary entries of the current wiki. The snapshot is loaded from the
+     * database only once and then kept up to date in memory when glossary entries are modified, so it should be
+     * preferred to {@link #getGlossaryEntries()} by anything executed when saving or rendering documents.
+     *
+     * @return the current snapshot of the glossary entries of the current wiki
+     * @throws GlossaryException when an error happens when loading the glossary entries
+     * @since 1.5.3
+     */
+    default GlossarySnapshot getGlossarySnapshot() throws GlossaryException
+    {
+        // The entries are not tracked, so each call builds a snapshot with a new version.
+        Map<String, Map<Locale, Map<String, DocumentReference>>> glossaries = new HashMap<>();
+        for (Map.Entry<Locale, Map<String, DocumentReference>> localeEntries : getGlossaryEntries().entrySet()) {
+            for (Map.Entry<String, DocumentReference> entry : localeEntries.getValue().entrySet()) {
+                glossaries.computeIfAbsent(getGlossaryId(entry.getValue()), key -> new HashMap<>())
+                    .computeIfAbsent(localeEntries.getKey(), key -> new HashMap<>())
+                    .put(entry.getKey(), entry.getValue());
+            }
+        }
+        return new GlossarySnapshot(System.nanoTime(), glossaries);
+    }
+
     /**
      * @param entryReference the reference to the glossary entry for which to get the definition/content
      * @param locale the locale to be used when loading the entry
@@ -61,6 +88,39 @@ public interface GlossaryModel
      */
     XDOM getGlossaryContent(DocumentReference entryReference, Locale locale) throws GlossaryException;
 
+    /**
+     * Load the definitions of several glossary entries at once. The entry documents and their translations are
+     * fetched with a few batched queries instead of one document load per entry, and the parsed definitions are
+     * cached per entry, locale and document version.
+     *
+     * @param entryReferences the references of the glossary entries of the current wiki
+     * @param locale the locale to be used when loading the entries, falling back on the default locale of each entry
+     *     when it has no translation for it
+     * @return the parsed content of each entry, indexed by entry reference; entries that don't exist are omitted
+     * @throws GlossaryException in case of an error
+     * @since 1.5.3
+     */
+    default Map<DocumentReference, XDOM> getGlossaryContents(Collection<DocumentReference> entryReferences,
+        Locale locale) throws GlossaryException
+    {
+        Map<DocumentReference, XDOM> contents = new HashMap<>();
+        for (DocumentReference entryReference : entryReferences) {
+            contents.put(entryReference, getGlossaryContent(entryReference, locale));
+        }
+        return contents;
+    }
+
+    /**
+     * @param entryReference the reference of the glossary entry
+     * @return the references, with their locale, of the documents containing a glossary reference to the given entry,
+     *     as recorded when the documents were last saved
+     * @since 1.5.3
+     */
+    default List<DocumentReference> getReferencingDocuments(DocumentReference entryReference)
+    {
+        return Collections.emptyList();
+    }
+
     /**
      * @param entryReference the reference of the glossary entry
      * @return the glossary ID corresponding to the given reference
@@ -0,0 +1,41 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary;
+
+import org.xwiki.component.annotation.Role;
+
+/**
+ * Records the durations of glossary related operations, including the ones of the modules extending the glossary. The
+ * durations of each operation are exposed through JMX under {@code org.xwiki:type=Glossary,category=timer}.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+@Role
+public interface GlossaryOperationTimer
+{
+    /**
+     * Record an execution of an operation which started at the given time and just ended.
+     *
+     * @param operation the name of the operation
+     * @param startNanos the start time of the execution, as returned by {@link System#nanoTime()}
+     */
+    void record(String operation, long startNanos);
+}
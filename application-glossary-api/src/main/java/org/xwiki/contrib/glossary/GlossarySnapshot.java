@@ -0,0 +1,293 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.xwiki.model.reference.DocumentReference;
+
+/**
+ * Immutable view of all the glossary entries of a wiki at a given point in time, indexed by glossary ID and locale.
+ * Derived data such as sorted entry lists and compiled {@link GlossaryEntriesMatcher}s are computed once per snapshot
+ * and shared by all the threads using it. Changes to glossary entries produce a new snapshot with a greater version,
+ * which only recomputes the derived data of the glossary and locale that were modified.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+public final class GlossarySnapshot
+{
+    /**
+     * Rough estimate of the memory used by an entry besides the characters of its title: the title string, the nodes
+     * of the glossary and merged maps and the share of their tables. Document references are not counted since they
+     * are shared with the rest of the wiki model.
+     */
+    private static final long ENTRY_OVERHEAD = 160;
+
+    private final long version;
+
+    private final long size;
+
+    private final long titlesLength;
+
+    private final Map<String, Map<Locale, Map<String, DocumentReference>>> glossaries;
+
+    private final Map<Locale, Map<String, DocumentReference>> entries;
+
+    private final Map<Locale, GlossaryEntriesMatcher> matchers;
+
+    private final Map<String, Map<Locale, GlossaryEntriesMatcher>> glossaryMatchers;
+
+    private final Map<String, Map<Locale, List<Map.Entry<String, DocumentReference>>>> sortedEntries;
+
+    /**
+     * @param version the version of the snapshot
+     * @param glossaries the glossary entries, indexed by glossary ID, then locale, then title
+     */
+    public GlossarySnapshot(long version, Map<String, Map<Locale, Map<String, DocumentReference>>> glossaries)
+    {
+        this.version = version;
+        this.glossaries = new HashMap<>();
+        long entryCount = 0;
+        long entryTitlesLength = 0;
+        for (Map.Entry<String, Map<Locale, Map<String, DocumentReference>>> glossary : glossaries.entrySet()) {
+            Map<Locale, Map<String, DocumentReference>> localeEntries = new HashMap<>();
+            for (Map.Entry<Locale, Map<String, DocumentReference>> entry : glossary.getValue().entrySet()) {
+                localeEntries.put(entry.getKey(), Collections.unmodifiableMap(new HashMap<>(entry.getValue())));
+                entryCount += entry.getValue().size();
+                entryTitlesLength += getTitlesLength(entry.getValue());
+            }
+            this.glossaries.put(glossary.getKey(), Collections.unmodifiableMap(localeEntries));
+        }
+        this.size = entryCount;
+        this.titlesLength = entryTitlesLength;
+
+        this.entries = new HashMap<>();
+        for (Map<Locale, Map<String, DocumentReference>> glossary : this.glossaries.values()) {
+            for (Locale locale : glossary.keySet()) {
+                this.entries.computeIfAbsent(locale, this::mergeEntries);
+            }
+        }
+
+        this.matchers = new ConcurrentHashMap<>();
+        this.glossaryMatchers = new ConcurrentHashMap<>();
+        this.sortedEntries = new ConcurrentHashMap<>();
+    }
+
+    private GlossarySnapshot(long version, GlossarySnapshot previous, String glossaryId, Locale locale,
+        Map<String, DocumentReference> localeEntries)
+    {
+        this.version = version;
+
+        this.glossaries = new HashMap<>(previous.glossaries);
+        Map<Locale, Map<String, DocumentReference>> glossary =
+            new HashMap<>(this.glossaries.getOrDefault(glossaryId, Collections.emptyMap()));
+        Map<String, DocumentReference> previousLocaleEntries =
+            glossary.put(locale, Collections.unmodifiableMap(localeEntries));
+        if (previousLocaleEntries == null) {
+            previousLocaleEntries = Collections.emptyMap();
+        }
+        this.size = previous.size - previousLocaleEntries.size() + localeEntries.size();
+        this.titlesLength =
+            previous.titlesLength - getTitlesLength(previousLocaleEntries) + getTitlesLength(localeEntries);
+        this.glossaries.put(glossaryId, Collections.unmodifiableMap(glossary));
+
+        this.entries = new HashMap<>(previous.entries);
+        this.entries.put(locale, mergeEntries(locale));
+
+        // Only drop the derived data of the modified glossary and locale, everything else is still valid.
+        this.matchers = new ConcurrentHashMap<>(previous.matchers);
+        this.matchers.remove(locale);
+        this.glossaryMatchers = copyWithout(previous.glossaryMatchers, glossaryId, locale);
+        this.sortedEntries = copyWithout(previous.sortedEntries, glossaryId, locale);
+    }
+
+    private static long getTitlesLength(Map<String, DocumentReference> localeEntries)
+    {
+        long length = 0;
+        for (String title : localeEntries.keySet()) {
+            length += title.length();
+        }
+        return length;
+    }
+
+    private Map<String, DocumentReference> mergeEntries(Locale locale)
+    {
+        // Iterate on sorted glossary IDs so that the entry kept when several glossaries define the same title doesn't
+        // depend on the history of the snapshot.
+        Map<String, DocumentReference> merged = new HashMap<>();
+        for (Map<Locale, Map<String, DocumentReference>> glossary : new TreeMap<>(this.glossaries).values()) {
+            merged.putAll(glossary.getOrDefault(locale, Collections.emptyMap()));
+        }
+        return Collections.unmodifiableMap(merged);
+    }
+
+    private static <T> Map<String, Map<Locale, T>> copyWithout(Map<String, Map<Locale, T>> map, String glossaryId,
+        Locale locale)
+    {
+        Map<String, Map<Locale, T>> copy = new ConcurrentHashMap<>();
+        for (Map.Entry<String, Map<Locale, T>> entry : map.entrySet()) {
+            Map<Locale, T> localeMap = new ConcurrentHashMap<>(entry.getValue());
+            if (entry.getKey().equals(glossaryId)) {
+                localeMap.remove(locale);
+            }
+            copy.put(entry.getKey(), localeMap);
+        }
+        return copy;
+    }
+
+    /**
+     * @return the version of the snapshot; a snapshot with a greater version reflects more recent changes
+     */
+    public long getVersion()
+    {
+        return this.version;
+    }
+
+    /**
+     * @return the number of entries of all glossaries, all locales included
+     */
+    public long size()
+    {
+        return this.size;
+    }
+
+    /**
+     * @return a rough estimate of the number of bytes used by the entries of the snapshot
+     */
+    public long getEstimatedMemorySize()
+    {
+        return ENTRY_OVERHEAD * this.size + 2L * this.titlesLength;
+    }
+
+    /**
+     * @return the entries of all glossaries, indexed by locale and then by title
+     */
+    public Map<Locale, Map<String, DocumentReference>> getEntries()
+    {
+        return Collections.unmodifiableMap(this.entries);
+    }
+
+    /**
+     * @return the IDs of the glossaries having at least one entry
+     */
+    public Set<String> getGlossaryIds()
+    {
+        return Collections.unmodifiableSet(this.glossaries.keySet());
+    }
+
+    /**
+     * @param glossaryId the ID of the glossary
+     * @return the entries of the given glossary, indexed by locale and then by title
+     */
+    public Map<Locale, Map<String, DocumentReference>> getEntries(String glossaryId)
+    {
+        return this.glossaries.getOrDefault(glossaryId, Collections.emptyMap());
+    }
+
+    /**
+     * @param title the title of the entry
+     * @param locale the locale of the entry
+     * @param glossaryId the ID of the glossary
+     * @return the reference of the entry, or {@code null} if the glossary has no such entry
+     */
+    public DocumentReference getEntry(String title, Locale locale, String glossaryId)
+    {
+        return getEntries(glossaryId).getOrDefault(locale, Collections.emptyMap()).get(title);
+    }
+
+    /**
+     * @param locale the locale of the entries
+     * @param glossaryId the ID of the glossary
+     * @return the entries of the glossary in the given locale, sorted by ascending title
+     */
+    public List<Map.Entry<String, DocumentReference>> getSortedEntries(Locale locale, String glossaryId)
+    {
+        return this.sortedEntries.computeIfAbsent(glossaryId, key -> new ConcurrentHashMap<>())
+            .computeIfAbsent(locale, key -> {
+                List<Map.Entry<String, DocumentReference>> list =
+                    new ArrayList<>(getEntries(glossaryId).getOrDefault(locale, Collections.emptyMap()).entrySet());
+                list.sort(Map.Entry.comparingByKey());
+                return Collections.unmodifiableList(list);
+            });
+    }
+
+    /**
+     * @param locale the locale of the entries
+     * @return the matcher of the entries of all glossaries in the given locale
+     */
+    public GlossaryEntriesMatcher getMatcher(Locale locale)
+    {
+        return this.matchers.computeIfAbsent(locale,
+            key -> new GlossaryEntriesMatcher(this.entries.getOrDefault(locale, Collections.emptyMap())));
+    }
+
+    /**
+     * @param locale the locale of the entries
+     * @param glossaryId the ID of the glossary
+     * @return the matcher of the entries of the given glossary in the given locale
+     */
+    public GlossaryEntriesMatcher getMatcher(Locale locale, String glossaryId)
+    {
+        return this.glossaryMatchers.computeIfAbsent(glossaryId, key -> new ConcurrentHashMap<>())
+            .computeIfAbsent(locale, key -> new GlossaryEntriesMatcher(
+                getEntries(glossaryId).getOrDefault(locale, Collections.emptyMap())));
+    }
+
+    /**
+     * @param newVersion the version of the new snapshot
+     * @param glossaryId the ID of the glossary of the entry
+     * @param locale the locale of the entry
+     * @param title the title of the entry
+     * @param reference the reference of the entry
+     * @return a new snapshot containing the given entry
+     */
+    public GlossarySnapshot withEntry(long newVersion, String glossaryId, Locale locale, String title,
+        DocumentReference reference)
+    {
+        Map<String, DocumentReference> localeEntries = new HashMap<>(getEntries(glossaryId).getOrDefault(locale,
+            Collections.emptyMap()));
+        localeEntries.put(title, reference);
+        return new GlossarySnapshot(newVersion, this, glossaryId, locale, localeEntries);
+    }
+
+    /**
+     * @param newVersion the version of the new snapshot
+     * @param glossaryId the ID of the glossary of the entry
+     * @param locale the locale of the entry
+     * @param title the title of the entry
+     * @return a new snapshot without the given entry
+     */
+    public GlossarySnapshot withoutEntry(long newVersion, String glossaryId, Locale locale, String title)
+    {
+        Map<String, DocumentReference> localeEntries = new HashMap<>(getEntries(glossaryId).getOrDefault(locale,
+            Collections.emptyMap()));
+        localeEntries.remove(title);
+        return new GlossarySnapshot(newVersion, this, glossaryId, locale, localeEntries);
+    }
+}
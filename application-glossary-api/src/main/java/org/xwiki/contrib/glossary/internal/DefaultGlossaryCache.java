@@ -20,53 +20,42 @@
 package org.xwiki.contrib.glossary.internal;
 
 import java.util.Locale;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
 import org.slf4j.Logger;
-import org.xwiki.cache.Cache;
-import org.xwiki.cache.CacheException;
-import org.xwiki.cache.CacheManager;
-import org.xwiki.cache.config.CacheConfiguration;
-import org.xwiki.cache.eviction.LRUEvictionConfiguration;
 import org.xwiki.component.annotation.Component;
-import org.xwiki.component.phase.Disposable;
-import org.xwiki.component.phase.Initializable;
-import org.xwiki.component.phase.InitializationException;
 import org.xwiki.contrib.glossary.GlossaryCache;
 import org.xwiki.contrib.glossary.GlossaryConfiguration;
 import org.xwiki.contrib.glossary.GlossaryException;
 import org.xwiki.contrib.glossary.GlossaryModel;
+import org.xwiki.contrib.glossary.GlossarySnapshot;
 import org.xwiki.model.reference.DocumentReference;
 
 import com.xpn.xwiki.XWikiContext;
 
 /**
- * Cache of Glossary data to speed up the transformation.
+ * Cache of Glossary data to speed up the transformation. The entries are not copied: the cache is a view over the
+ * {@link GlossarySnapshot} of the current wiki, which holds all the entries of the wiki so that a lookup miss always
+ * means that the entry doesn't exist. The snapshots are kept within the configured cache limits by the
+ * {@link GlossarySnapshotManager}.
  *
  * @version $Id$
  */
 @Component
 @Singleton
-public class DefaultGlossaryCache implements GlossaryCache, Initializable, Disposable
+public class DefaultGlossaryCache implements GlossaryCache
 {
-    /**
-     * Identifier for the glossary cache.
-     */
-    private static final String NAME = "cache.glossaryCache";
-
     @Inject
     private Logger logger;
 
     @Inject
-    private CacheManager cacheManager;
+    private GlossaryModel glossaryModel;
 
     @Inject
-    private GlossaryModel glossaryModel;
+    private GlossarySnapshotManager snapshotManager;
 
     @Inject
     private Provider<XWikiContext> xwikiContextProvider;
@@ -74,31 +63,8 @@ public class DefaultGlossaryCache implements GlossaryCache, Initializable, Dispo
     @Inject
     private GlossaryConfiguration glossaryConfiguration;
 
-    /**
-     * The actual cache object.
-     */
-    private Cache<DocumentReference> cache;
-
-    /**
-     * Keeps track of which wiki has been initialized, for lazy loading of all glossary entries per wiki.
-     */
-    private Map<String, Boolean> initializedWikis;
-
-    @Override
-    public void initialize() throws InitializationException
-    {
-        this.initializedWikis = new ConcurrentHashMap<>();
-        try {
-            CacheConfiguration cacheConfiguration = new CacheConfiguration();
-            cacheConfiguration.setConfigurationId(NAME);
-            LRUEvictionConfiguration lru = new LRUEvictionConfiguration();
-            lru.setMaxEntries(1000);
-            cacheConfiguration.put(LRUEvictionConfiguration.CONFIGURATIONID, lru);
-            this.cache = this.cacheManager.createNewCache(cacheConfiguration);
-        } catch (CacheException e) {
-            throw new InitializationException("Failed to initialize Glossary cache", e);
-        }
-    }
+    @Inject
+    private GlossaryMetrics metrics;
 
     @Override
     public DocumentReference get(String key)
@@ -115,9 +81,13 @@ public class DefaultGlossaryCache implements GlossaryCache, Initializable, Dispo
     @Override
     public DocumentReference get(String key, Locale locale, String glossaryId)
     {
-        String currentWikiId = this.xwikiContextProvider.get().getWikiId();
-        loadCache(currentWikiId);
-        return this.cache.get(computeCacheKey(key, locale, glossaryId, currentWikiId));
+        DocumentReference value = null;
+        GlossarySnapshot snapshot = getSnapshot();
+        if (snapshot != null && key != null && locale != null && glossaryId != null) {
+            value = snapshot.getEntry(key, locale, glossaryId);
+        }
+        this.metrics.recordCacheLookup(this.xwikiContextProvider.get().getWikiId(), value != null);
+        return value;
     }
 
     @Override
@@ -131,14 +101,9 @@ public class DefaultGlossaryCache implements GlossaryCache, Initializable, Dispo
     @Override
     public void set(String key, Locale locale, DocumentReference value)
     {
-        String currentWikiId = this.xwikiContextProvider.get().getWikiId();
-        set(key, locale, value, currentWikiId);
-    }
-
-    private void set(String key, Locale locale, DocumentReference value, String wikiId)
-    {
-        String glossaryId = this.glossaryModel.getGlossaryId(value);
-        this.cache.set(computeCacheKey(key, locale, glossaryId, wikiId), value);
+        // Wikis which are not loaded get the entry from the glossary model when they are loaded.
+        this.snapshotManager.addEntry(this.glossaryModel.getGlossaryId(value), key,
+            new DocumentReference(value, locale));
     }
 
     @Override
@@ -156,40 +121,22 @@ public class DefaultGlossaryCache implements GlossaryCache, Initializable, Dispo
     @Override
     public void remove(String key, Locale locale, String glossaryId)
     {
-        String currentWikiId = this.xwikiContextProvider.get().getWikiId();
-        this.cache.remove(computeCacheKey(key, locale, glossaryId, currentWikiId));
-    }
-
-    @Override
-    public void dispose()
-    {
-        if (this.cache != null) {
-            this.cache.dispose();
+        GlossarySnapshot snapshot = getSnapshot();
+        DocumentReference reference = (snapshot != null) ? snapshot.getEntry(key, locale, glossaryId) : null;
+        if (reference != null) {
+            this.snapshotManager.removeEntry(glossaryId, key, new DocumentReference(reference, locale));
         }
     }
 
-    private void loadCache(String wikiId)
+    private GlossarySnapshot getSnapshot()
     {
-        if (!this.initializedWikis.containsKey(wikiId)) {
-            // Load existing Glossary entries in the current wiki and save them in the cache
-            Map<Locale, Map<String, DocumentReference>> glossaryEntries;
-            try {
-                glossaryEntries = this.glossaryModel.getGlossaryEntries();
-                for (Map.Entry<Locale, Map<String, DocumentReference>> localeEntry : glossaryEntries.entrySet()) {
-                    for (Map.Entry<String, DocumentReference> entry : localeEntry.getValue().entrySet()) {
-                        set(entry.getKey(), localeEntry.getKey(), entry.getValue(), wikiId);
-                    }
-                }
-                this.initializedWikis.put(wikiId, true);
-            } catch (GlossaryException e) {
-                // Don't break the flow, just return an empty result but log an error since something is wrong.
-                this.logger.error("Failed to initialize Glossary cache for wiki [{}]", wikiId, e);
-            }
+        try {
+            return this.glossaryModel.getGlossarySnapshot();
+        } catch (GlossaryException e) {
+            // Don't break the flow, just return an empty result but log an error since something is wrong.
+            this.logger.error("Failed to load the glossary entries of wiki [{}]",
+                this.xwikiContextProvider.get().getWikiId(), e);
+            return null;
         }
     }
-
-    private String computeCacheKey(String key, Locale locale, String glossaryId, String wikiId)
-    {
-        return String.format("%s-%s-%s-%s", wikiId, glossaryId, locale.toString(), key);
-    }
 }
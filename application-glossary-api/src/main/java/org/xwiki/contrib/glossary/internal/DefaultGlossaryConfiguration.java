@@ -22,6 +22,9 @@ package org.xwiki.contrib.glossary.internal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
@@ -58,6 +61,10 @@ public class DefaultGlossaryConfiguration implements GlossaryConfiguration
 
     private static final String UPDATE_DOCUMENTS_ON_SAVE = "updateDocumentsOnSave";
 
+    private static final String UPDATE_DOCUMENTS_ON_SAVE_ASYNCHRONOUSLY = "updateDocumentsOnSaveAsynchronously";
+
+    private static final String UPDATE_DOCUMENTS_ON_SAVE_DELAY = "updateDocumentsOnSaveDelay";
+
     private static final String EXCLUDED_CLASSES_FROM_TRANSFORMATIONS = "excludedClassesFromTransformations";
 
     private static final String DEFAULT_GLOSSARY_ID = "defaultGlossaryId";
@@ -72,6 +79,16 @@ public class DefaultGlossaryConfiguration implements GlossaryConfiguration
 
     private static final String TRANSFORMATION_JOB_INCLUDE_SPACES = "transformationJobIncludeSpaces";
 
+    private static final String TRANSFORMATION_JOB_THREADS = "transformationJobThreads";
+
+    private static final String TRANSFORMATION_JOB_BATCH_SIZE = "transformationJobBatchSize";
+
+    private static final String CACHE_MAX_ENTRIES = "cache.maxEntries";
+
+    private static final String CACHE_MAX_BYTES = "cache.maxBytes";
+
+    private static final String EXPORT_THREADS = "export.threads";
+
     @Inject
     private ConfigurationSource configurationSource;
 
@@ -81,136 +98,205 @@ public class DefaultGlossaryConfiguration implements GlossaryConfiguration
     @Inject
     private EntityReferenceResolver<String> entityReferenceResolver;
 
+    /**
+     * The configuration of each wiki, loaded on first access and forgotten by
+     * {@link GlossaryConfigurationEventListener} when the configuration document of the wiki is modified.
+     */
+    private final Map<String, WikiGlossaryConfiguration> wikiConfigurations = new ConcurrentHashMap<>();
+
+    /**
+     * The number of times the configuration of each wiki was invalidated, used to not cache a configuration which was
+     * invalidated while being loaded.
+     */
+    private final Map<String, AtomicLong> invalidations = new ConcurrentHashMap<>();
+
     @Override
     public boolean updateDocumentsOnSave()
     {
-        boolean defaultValue = configurationSource.getProperty(CONFIGURATION_PREFIX + UPDATE_DOCUMENTS_ON_SAVE, true);
-
-        try {
-            BaseObject baseObject = getConfigurationObject();
+        return getWikiConfiguration().isUpdateDocumentsOnSave();
+    }
 
-            if (baseObject != null) {
-                int defaultIntValue = (defaultValue) ? 1 : 0;
-                return (baseObject.getIntValue(UPDATE_DOCUMENTS_ON_SAVE, defaultIntValue) == 1);
-            }
-        } catch (Exception e) {
-            // Fail silently
-        }
+    @Override
+    public boolean isUpdateDocumentsOnSaveAsynchronously()
+    {
+        return configurationSource.getProperty(CONFIGURATION_PREFIX + UPDATE_DOCUMENTS_ON_SAVE_ASYNCHRONOUSLY, false);
+    }
 
-        return defaultValue;
+    @Override
+    public long getUpdateDocumentsOnSaveDelay()
+    {
+        return Math.max(0, configurationSource.getProperty(CONFIGURATION_PREFIX + UPDATE_DOCUMENTS_ON_SAVE_DELAY, 2L));
     }
 
     @Override
     public List<EntityReference> excludedClassesFromTransformations()
     {
-        XWikiContext xcontext = xWikiContextProvider.get();
-        List<String> rawDefaultValues = Arrays.asList(configurationSource.getProperty(
-            CONFIGURATION_PREFIX + EXCLUDED_CLASSES_FROM_TRANSFORMATIONS, StringUtils.EMPTY).split(","));
-        List<EntityReference> defaultValues =
-            rawDefaultValues.stream().map(x -> entityReferenceResolver.resolve(x, EntityType.DOCUMENT, xcontext.getWikiReference()))
-                .collect(Collectors.toList());
-
-        try {
-            BaseObject baseObject = getConfigurationObject();
-            if (baseObject != null) {
-                List<String> rawPropertyValues = baseObject.getListValue(EXCLUDED_CLASSES_FROM_TRANSFORMATIONS);
-                List<EntityReference> propertyValues = rawPropertyValues.stream().map(
-                    x -> entityReferenceResolver.resolve(x, EntityType.DOCUMENT, xcontext.getWikiReference())).collect(Collectors.toList());
-                if (propertyValues.size() > 0) {
-                    return propertyValues;
-                }
-            }
-        } catch (Exception e) {
-            // Fail silently
-        }
+        return getWikiConfiguration().getExcludedClassesFromTransformations();
+    }
 
-        return defaultValues;
+    @Override
+    public boolean isExcludedClassFromTransformations(DocumentReference classReference)
+    {
+        return getWikiConfiguration().isExcludedClassFromTransformations(classReference);
     }
 
     @Override
     public String defaultGlossaryId()
     {
-        String defaultValue = configurationSource.getProperty(CONFIGURATION_PREFIX + DEFAULT_GLOSSARY_ID, GLOSSARY);
-
-        try {
-            BaseObject baseObject = getConfigurationObject();
+        return getWikiConfiguration().getDefaultGlossaryId();
+    }
 
-            if (baseObject != null) {
-                String propertyValue = baseObject.getStringValue(DEFAULT_GLOSSARY_ID);
-                if (StringUtils.isNotBlank(propertyValue)) {
-                    return propertyValue;
-                }
-            }
-        } catch (Exception e) {
-            // Fail silently
-        }
+    @Override
+    public boolean isActivateTransformationJob()
+    {
+        return getWikiConfiguration().isActivateTransformationJob();
+    }
 
-        return defaultValue;
+    @Override
+    public boolean isIncrementVersionOnTransformationJob()
+    {
+        return getWikiConfiguration().isIncrementVersionOnTransformationJob();
     }
 
     @Override
-    public boolean isActivateTransformationJob()
+    public List<SpaceReference> getTransformationJobIncludeSpaces()
     {
-        boolean defaultValue = configurationSource.getProperty(CONFIGURATION_PREFIX + ACTIVATE_TRANSFORMATION_JOB,
-            false);
+        return getWikiConfiguration().getTransformationJobIncludeSpaces();
+    }
 
-        try {
-            BaseObject baseObject = getConfigurationObject();
+    /**
+     * Forget the configuration of the given wiki, which will be loaded again on next access.
+     *
+     * @param wikiId the identifier of the wiki
+     * @since 1.5.3
+     */
+    public void invalidate(String wikiId)
+    {
+        getInvalidations(wikiId).incrementAndGet();
+        this.wikiConfigurations.remove(wikiId);
+    }
+
+    private AtomicLong getInvalidations(String wikiId)
+    {
+        return this.invalidations.computeIfAbsent(wikiId, key -> new AtomicLong());
+    }
 
-            if (baseObject != null) {
-                int defaultIntValue = (defaultValue) ? 1 : 0;
-                return (baseObject.getIntValue(ACTIVATE_TRANSFORMATION_JOB, defaultIntValue) == 1);
+    /**
+     * @param wikiId the identifier of the wiki
+     * @return the reference of the document holding the glossary configuration of the given wiki
+     * @since 1.5.3
+     */
+    public static DocumentReference getConfigurationDocumentReference(String wikiId)
+    {
+        return new DocumentReference(wikiId, GLOSSARY_CODE_SPACE, "GlossaryConfiguration");
+    }
+
+    private WikiGlossaryConfiguration getWikiConfiguration()
+    {
+        XWikiContext xcontext = xWikiContextProvider.get();
+        String wikiId = xcontext.getWikiId();
+        WikiGlossaryConfiguration wikiConfiguration = this.wikiConfigurations.get(wikiId);
+        if (wikiConfiguration == null) {
+            AtomicLong wikiInvalidations = getInvalidations(wikiId);
+            long invalidationCount = wikiInvalidations.get();
+            BaseObject baseObject;
+            try {
+                baseObject = getConfigurationObject();
+            } catch (Exception e) {
+                // Fail silently, but don't remember the default values since the configuration may be available
+                // later on, e.g. once the wiki is fully initialized.
+                return loadWikiConfiguration(xcontext, null);
+            }
+            wikiConfiguration = loadWikiConfiguration(xcontext, baseObject);
+            this.wikiConfigurations.put(wikiId, wikiConfiguration);
+            // The configuration document may have been modified while it was loaded, in which case the loaded
+            // configuration may be outdated. The invalidation count is checked after caching the configuration so
+            // that a concurrent invalidation either sees the cached configuration or is seen here.
+            if (wikiInvalidations.get() != invalidationCount) {
+                this.wikiConfigurations.remove(wikiId, wikiConfiguration);
             }
-        } catch (Exception e) {
-            // Fail silently
         }
-
-        return defaultValue;
+        return wikiConfiguration;
     }
 
-    @Override
-    public boolean isIncrementVersionOnTransformationJob()
+    private WikiGlossaryConfiguration loadWikiConfiguration(XWikiContext xcontext, BaseObject baseObject)
     {
-        boolean defaultValue =
-            configurationSource.getProperty(CONFIGURATION_PREFIX + INCREMENT_VERSION_ON_TRANSFORMATION_JOB, true);
+        boolean updateDocumentsOnSave =
+            getBooleanValue(baseObject, UPDATE_DOCUMENTS_ON_SAVE, true);
 
-        try {
-            BaseObject baseObject = getConfigurationObject();
+        List<String> rawExcludedClasses = Arrays.asList(configurationSource.getProperty(
+            CONFIGURATION_PREFIX + EXCLUDED_CLASSES_FROM_TRANSFORMATIONS, StringUtils.EMPTY).split(","));
+        if (baseObject != null && !baseObject.getListValue(EXCLUDED_CLASSES_FROM_TRANSFORMATIONS).isEmpty()) {
+            rawExcludedClasses = baseObject.getListValue(EXCLUDED_CLASSES_FROM_TRANSFORMATIONS);
+        }
+        List<EntityReference> excludedClasses = rawExcludedClasses.stream()
+            .map(x -> entityReferenceResolver.resolve(x, EntityType.DOCUMENT, xcontext.getWikiReference()))
+            .collect(Collectors.toList());
+
+        String defaultGlossaryId = configurationSource.getProperty(CONFIGURATION_PREFIX + DEFAULT_GLOSSARY_ID,
+            GLOSSARY);
+        if (baseObject != null && StringUtils.isNotBlank(baseObject.getStringValue(DEFAULT_GLOSSARY_ID))) {
+            defaultGlossaryId = baseObject.getStringValue(DEFAULT_GLOSSARY_ID);
+        }
 
-            if (baseObject != null) {
-                int defaultIntValue = (defaultValue) ? 1 : 0;
-                return (baseObject.getIntValue(INCREMENT_VERSION_ON_TRANSFORMATION_JOB, defaultIntValue) == 1);
+        List<SpaceReference> spaceReferences = new ArrayList<>();
+        if (baseObject != null) {
+            String spaces = baseObject.getStringValue(TRANSFORMATION_JOB_INCLUDE_SPACES);
+            for (String space : spaces.split(",")) {
+                if (space != null && space.length() > 0) {
+                    EntityReference entityReference = entityReferenceResolver.resolve(space.trim(),
+                        EntityType.SPACE);
+                    spaceReferences.add(new SpaceReference(entityReference));
+                }
             }
-        } catch (Exception e) {
-            // Fail silently
+        }
+
+        return new WikiGlossaryConfiguration(updateDocumentsOnSave, excludedClasses, defaultGlossaryId,
+            getBooleanValue(baseObject, ACTIVATE_TRANSFORMATION_JOB, false),
+            getBooleanValue(baseObject, INCREMENT_VERSION_ON_TRANSFORMATION_JOB, true), spaceReferences);
+    }
+
+    private boolean getBooleanValue(BaseObject baseObject, String propertyName, boolean fallbackValue)
+    {
+        boolean defaultValue = configurationSource.getProperty(CONFIGURATION_PREFIX + propertyName, fallbackValue);
+
+        if (baseObject != null) {
+            int defaultIntValue = (defaultValue) ? 1 : 0;
+            return (baseObject.getIntValue(propertyName, defaultIntValue) == 1);
         }
 
         return defaultValue;
     }
 
     @Override
-    public List<SpaceReference> getTransformationJobIncludeSpaces()
+    public int getTransformationJobThreads()
     {
+        return configurationSource.getProperty(CONFIGURATION_PREFIX + TRANSFORMATION_JOB_THREADS, 2);
+    }
 
-        List<SpaceReference> spaceReferences = new ArrayList<>();
+    @Override
+    public int getTransformationJobBatchSize()
+    {
+        return configurationSource.getProperty(CONFIGURATION_PREFIX + TRANSFORMATION_JOB_BATCH_SIZE, 100);
+    }
 
-        try {
-            BaseObject baseObject = getConfigurationObject();
-            if (baseObject != null) {
-                String spaces = baseObject.getStringValue(TRANSFORMATION_JOB_INCLUDE_SPACES);
-                for (String space : spaces.split(",")) {
-                    if (space != null && space.length() > 0) {
-                        EntityReference entityReference = entityReferenceResolver.resolve(space.trim(),
-                            EntityType.SPACE);
-                        spaceReferences.add(new SpaceReference(entityReference));
-                    }
-                }
-            }
-        } catch (Exception e) {
-            // Fail silently
-        }
+    @Override
+    public int getCacheMaxEntries()
+    {
+        // The cache is shared by all wikis, so it cannot be configured from the configuration page of a wiki.
+        return configurationSource.getProperty(CONFIGURATION_PREFIX + CACHE_MAX_ENTRIES, 100000);
+    }
+
+    @Override
+    public long getCacheMaxBytes()
+    {
+        return configurationSource.getProperty(CONFIGURATION_PREFIX + CACHE_MAX_BYTES, 64L * 1024 * 1024);
+    }
 
-        return spaceReferences;
+    @Override
+    public int getExportThreads()
+    {
+        return configurationSource.getProperty(CONFIGURATION_PREFIX + EXPORT_THREADS, 2);
     }
 
     private BaseObject getConfigurationObject() throws XWikiException
@@ -218,8 +304,8 @@ public class DefaultGlossaryConfiguration implements GlossaryConfiguration
         XWikiContext xWikiContext = xWikiContextProvider.get();
         XWiki xWiki = xWikiContext.getWiki();
 
-        XWikiDocument configurationDoc = xWiki.getDocument(new DocumentReference(
-            xWikiContext.getWikiId(), GLOSSARY_CODE_SPACE, "GlossaryConfiguration"), xWikiContext);
+        XWikiDocument configurationDoc =
+            xWiki.getDocument(getConfigurationDocumentReference(xWikiContext.getWikiId()), xWikiContext);
         return configurationDoc.getXObject(new DocumentReference(
             xWikiContext.getWikiId(), GLOSSARY_CODE_SPACE, "GlossaryConfigurationClass"));
     }
@@ -20,18 +20,16 @@
 package org.xwiki.contrib.glossary.internal;
 
 import java.io.StringReader;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.stream.Stream;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Inject;
 import javax.inject.Named;
-import javax.inject.Provider;
 import javax.inject.Singleton;
 
 import org.apache.commons.lang3.StringUtils;
@@ -39,15 +37,12 @@ import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
-import org.xwiki.contrib.glossary.GlossaryCache;
 import org.xwiki.contrib.glossary.GlossaryConfiguration;
+import org.xwiki.contrib.glossary.GlossaryEntriesMatcher;
 import org.xwiki.contrib.glossary.GlossaryEntriesTransformer;
 import org.xwiki.contrib.glossary.GlossaryException;
 import org.xwiki.contrib.glossary.GlossaryModel;
-import org.xwiki.contrib.xdom.regex.Matcher;
-import org.xwiki.contrib.xdom.regex.Pattern;
-import org.xwiki.contrib.xdom.regex.PatternBuilder;
-import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.contrib.glossary.GlossarySnapshot;
 import org.xwiki.model.reference.EntityReference;
 import org.xwiki.model.reference.EntityReferenceSerializer;
 import org.xwiki.rendering.block.Block;
@@ -74,15 +69,7 @@ public class DefaultGlossaryEntriesTransformer implements GlossaryEntriesTransfo
 
     private static final String GLOSSARY_ID = "glossaryId";
 
-    /**
-     * Capturing group of characters that are parsed as special symbol blocks according to
-     * https://github.com/xwiki/xwiki-rendering/blob/22eac2b1d38fbe259fa72e45df30f78eab553325/
-     * xwiki-rendering-syntaxes/xwiki-rendering-syntax-plain/src/main/java/org/xwiki/rendering/
-     * internal/parser/plain/PlainTextStreamParser.java#L52
-     *
-     * We don't do a direct reference to the static variable of the PlainTextStreamParser as it's an internal class.
-     */
-    private static final String SPECIAL_SYMBOLS = "!\"#$%&'()*+,-./:;<=>?@\\[\\]^_`{|}~“”«» \n";
+    private static final ParserUtils PARSER_UTILS = new ParserUtils();
 
     @Inject
     private Logger logger;
@@ -93,9 +80,6 @@ public class DefaultGlossaryEntriesTransformer implements GlossaryEntriesTransfo
     @Inject
     private GlossaryConfiguration glossaryConfiguration;
 
-    @Inject
-    private Provider<GlossaryCache> glossaryCacheProvider;
-
     @Inject
     private ComponentManager componentManager;
 
@@ -103,112 +87,165 @@ public class DefaultGlossaryEntriesTransformer implements GlossaryEntriesTransfo
     @Named("local")
     private EntityReferenceSerializer<String> referenceSerializer;
 
+    /**
+     * The parsers used to remove glossary references, indexed by syntax.
+     */
+    private final Map<String, Parser> parsers = new ConcurrentHashMap<>();
+
     @Override
     public boolean transformGlossaryEntries(XDOM xdom, Syntax syntax, Locale locale) throws GlossaryException
     {
-        boolean xdomModified = removeGlossaryReferenceMacroBlocks(xdom, syntax, locale);
-        xdomModified = addGlossaryReferenceMacroBlocks(xdom, locale) || xdomModified;
+        return transformGlossaryEntries(Collections.singletonList(xdom), syntax, locale);
+    }
+
+    @Override
+    public boolean transformGlossaryEntries(XDOM xdom, List<Block> blocks, Syntax syntax, Locale locale)
+        throws GlossaryException
+    {
+        return transformGlossaryEntries(blocks, syntax, locale);
+    }
+
+    private boolean transformGlossaryEntries(List<Block> blocks, Syntax syntax, Locale locale)
+        throws GlossaryException
+    {
+        // Use the same snapshot for both steps so that they are consistent even if an entry is modified meanwhile.
+        GlossarySnapshot snapshot = glossaryModel.getGlossarySnapshot();
+        GlossaryEntriesMatcher matcher = snapshot.getMatcher(locale);
+        boolean xdomModified = false;
+        for (Block block : blocks) {
+            xdomModified = removeGlossaryReferenceMacroBlocks(block, syntax, locale, snapshot) || xdomModified;
+            if (!matcher.isEmpty()) {
+                xdomModified = addGlossaryReferenceMacroBlocks(block, matcher) || xdomModified;
+            }
+        }
         return xdomModified;
     }
 
-    private boolean removeGlossaryReferenceMacroBlocks(XDOM xdom, Syntax syntax, Locale locale)
+    private boolean removeGlossaryReferenceMacroBlocks(Block rootBlock, Syntax syntax, Locale locale,
+        GlossarySnapshot snapshot)
     {
-        GlossaryCache glossaryCache = glossaryCacheProvider.get();
-        boolean modified = false;
+        // Check the document content for any entry that could be removed as they are not part of the glossary cache
+        // anymore
+        // We'll also check if the entry is part of a LinkBlock, in which case we explicitly want to remove the
+        // glossary entry (if it was added previously)
+        List<MacroBlock> removedMacroBlocks = new ArrayList<>();
+        String defaultGlossaryId = null;
+        for (Block block : rootBlock.getBlocks(new ClassBlockMatcher(MacroBlock.class),
+            Block.Axes.DESCENDANT_OR_SELF)) {
+            MacroBlock macroBlock = (MacroBlock) block;
+
+            if (macroBlock.getId().equals(GlossaryReferenceMacro.MACRO_NAME)) {
+                String macroGlossaryId = macroBlock.getParameter(GLOSSARY_ID);
+                if (StringUtils.isBlank(macroGlossaryId)) {
+                    if (defaultGlossaryId == null) {
+                        defaultGlossaryId = glossaryConfiguration.defaultGlossaryId();
+                    }
+                    macroGlossaryId = defaultGlossaryId;
+                }
+                String macroEntryId = macroBlock.getParameter(ENTRY_ID);
 
-        // Try to load a parser for the current document syntax. If it fails, we won't be able to remove glossary
+                if (snapshot.getEntry(macroEntryId, locale, macroGlossaryId) == null || hasParentLink(macroBlock)) {
+                    removedMacroBlocks.add(macroBlock);
+                }
+            }
+        }
+
+        // Only load the parser when there is something to remove. If it fails, we won't be able to remove glossary
         // entries form the document (we can only add new ones) as removing entries means generating a set of blocks
         // corresponding to the macro content to be used as a replacement of the glossary macro.
-        try {
-            Parser syntaxParser = componentManager.getInstance(Parser.class, syntax.toIdString());
-            ParserUtils parserUtils = new ParserUtils();
-
-            // Check the document content for any entry that could be removed as they are not part of the glossary cache
-            // anymore
-            // We'll also check if the entry is part of a LinkBlock, in which case we explicitly want to remove the
-            // glossary entry (if it was added previously)
-            for (Block block : xdom.getBlocks(new ClassBlockMatcher(MacroBlock.class), Block.Axes.DESCENDANT_OR_SELF)) {
-                MacroBlock macroBlock = (MacroBlock) block;
-
-                if (macroBlock.getId().equals(GlossaryReferenceMacro.MACRO_NAME)) {
-                    String macroGlossaryId = StringUtils.isBlank(macroBlock.getParameter(GLOSSARY_ID))
-                        ? glossaryConfiguration.defaultGlossaryId() : macroBlock.getParameter(GLOSSARY_ID);
-                    String macroEntryId = macroBlock.getParameter(ENTRY_ID);
-
-                    if (glossaryCache.get(macroEntryId, locale, macroGlossaryId) == null || hasParentLink(macroBlock)) {
-                        // Replace the block by a set of blocks ; for this, we need to parse the content of the macro
-                        try {
-                            XDOM replacementXDOM = syntaxParser.parse(new StringReader(macroBlock.getContent()));
-
-                            List<Block> children = replacementXDOM.getChildren();
-                            if (macroBlock.isInline()) {
-                                parserUtils.removeTopLevelParagraph(children);
-                            }
-
-                            Block replacementBlock = new CompositeBlock(children);
-
-                            macroBlock.getParent().replaceChild(replacementBlock, macroBlock);
-
-                            modified = true;
-                        } catch (ParseException e) {
-                            logger.error("Failed to parse macro content", e);
-                        }
-                    }
+        Parser syntaxParser = removedMacroBlocks.isEmpty() ? null : getParser(syntax);
+        if (syntaxParser == null) {
+            return false;
+        }
+
+        boolean modified = false;
+        for (MacroBlock macroBlock : removedMacroBlocks) {
+            // Replace the block by a set of blocks ; for this, we need to parse the content of the macro
+            try {
+                XDOM replacementXDOM = syntaxParser.parse(new StringReader(macroBlock.getContent()));
+
+                List<Block> children = replacementXDOM.getChildren();
+                if (macroBlock.isInline()) {
+                    PARSER_UTILS.removeTopLevelParagraph(children);
                 }
+
+                Block replacementBlock = new CompositeBlock(children);
+
+                macroBlock.getParent().replaceChild(replacementBlock, macroBlock);
+
+                modified = true;
+            } catch (ParseException e) {
+                logger.error("Failed to parse macro content", e);
             }
-        } catch (ComponentLookupException e) {
-            logger.error("Failed to load syntax parser for syntax [{}].", syntax.toIdString(), e);
         }
 
         return modified;
     }
 
-    private boolean addGlossaryReferenceMacroBlocks(XDOM xdom, Locale locale) throws GlossaryException
+    private Parser getParser(Syntax syntax)
     {
-        AtomicBoolean modified = new AtomicBoolean(false);
-        Map<Locale, Map<String, DocumentReference>> entries = glossaryModel.getGlossaryEntries();
-        Map<String, DocumentReference> localeEntries = entries.get(locale);
-        if (localeEntries != null) {
-            // Order entries by descending length to match first the longest ones eg "Workers Committee",
-            // then only "Committee"
-            Set<Map.Entry<String, DocumentReference>> set = localeEntries.entrySet();
-            Comparator<Map.Entry<String, DocumentReference>> entryLengthComparator =
-                (h1, h2) -> h2.getKey().length() - h1.getKey().length();
-            Stream<Map.Entry<String, DocumentReference>> sortedStream =
-                set.stream().sorted(entryLengthComparator);
-
-            sortedStream.forEach((Map.Entry<String, DocumentReference> entry) -> {
-                PatternBuilder builder = new PatternBuilder();
-                String title = entry.getKey();
-
-                // Surround all words with signs "^" at the start and "$" at the end
-                String regex = title.replaceAll(
-                    String.format("([^\\s%s]+)", SPECIAL_SYMBOLS), "^$1\\$");
-                regex = regex.replaceAll("\\?", "\\?");
-                Pattern pattern = builder.build(regex);
-                Class<? extends Block> primaryBlockClass = pattern.getPrimaryBlockPattern().getBlockClass();
-                ClassBlockMatcher classBlockMatcher = new ClassBlockMatcher(primaryBlockClass);
-
-                for (Block block : xdom.getBlocks(classBlockMatcher, Block.Axes.DESCENDANT)) {
-                    Matcher matcher = pattern.getMatcher(block);
-                    if (matcher.matches() && !hasParentLink(block)) {
-                        Map<String, String> parameters = new HashMap<>();
-                        // Currently a glossary entry is necessarily a terminal page, and the glossary it belongs to is
-                        // its direct parent reference.
-                        EntityReference glossaryReference = entry.getValue().getParent();
-                        // TODO: check if the EntityReferenceSerializer should be used instead
-                        parameters.put(ENTRY_ID, entry.getValue().getName());
-                        parameters.put(GLOSSARY_ID, referenceSerializer.serialize(glossaryReference));
-                        MacroBlock glossaryEntryMacroBlock =
-                            new MacroBlock("glossaryReference", parameters, entry.getKey(),
-                                true);
-                        matcher.replace(glossaryEntryMacroBlock);
-                        modified.set(true);
-                    }
+        String syntaxId = syntax.toIdString();
+        Parser parser = this.parsers.get(syntaxId);
+        if (parser == null) {
+            try {
+                parser = componentManager.getInstance(Parser.class, syntaxId);
+                this.parsers.put(syntaxId, parser);
+            } catch (ComponentLookupException e) {
+                // Don't remember the failure, the syntax may be installed later on.
+                logger.error("Failed to load syntax parser for syntax [{}].", syntaxId, e);
+            }
+        }
+        return parser;
+    }
+
+    private boolean addGlossaryReferenceMacroBlocks(Block block, GlossaryEntriesMatcher matcher)
+    {
+        boolean modified = false;
+        List<Block> children = block.getChildren();
+        List<Block> newChildren = null;
+
+        int i = 0;
+        while (i < children.size()) {
+            // The matcher only returns the longest entry starting at the current block, eg "Workers Committee"
+            // rather than only "Workers", and the next lookup starts right after it so that matches don't overlap.
+            GlossaryEntriesMatcher.Match match = matcher.match(children, i);
+            if (match != null) {
+                if (newChildren == null) {
+                    newChildren = new ArrayList<>(children.subList(0, i));
+                }
+                newChildren.add(createGlossaryReferenceMacroBlock(match));
+                i = match.getEnd();
+            } else {
+                Block child = children.get(i);
+                // Skip LinkBlock since it's already a link...
+                if (!(child instanceof LinkBlock)) {
+                    modified = addGlossaryReferenceMacroBlocks(child, matcher) || modified;
                 }
-            });
+                if (newChildren != null) {
+                    newChildren.add(child);
+                }
+                i++;
+            }
+        }
+
+        if (newChildren != null) {
+            block.setChildren(newChildren);
+            modified = true;
         }
-        return modified.get();
+
+        return modified;
+    }
+
+    private MacroBlock createGlossaryReferenceMacroBlock(GlossaryEntriesMatcher.Match match)
+    {
+        Map<String, String> parameters = new HashMap<>();
+        // Currently a glossary entry is necessarily a terminal page, and the glossary it belongs to is
+        // its direct parent reference.
+        EntityReference glossaryReference = match.getReference().getParent();
+        // TODO: check if the EntityReferenceSerializer should be used instead
+        parameters.put(ENTRY_ID, match.getReference().getName());
+        parameters.put(GLOSSARY_ID, referenceSerializer.serialize(glossaryReference));
+        return new MacroBlock(GlossaryReferenceMacro.MACRO_NAME, parameters, match.getTitle(), true);
     }
 
     private boolean hasParentLink(Block block)
@@ -19,10 +19,15 @@
  */
 package org.xwiki.contrib.glossary.internal;
 
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -31,9 +36,12 @@ import javax.inject.Singleton;
 
 import org.apache.commons.lang3.StringUtils;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.contrib.glossary.GlossaryConstants;
 import org.xwiki.contrib.glossary.GlossaryException;
 import org.xwiki.contrib.glossary.GlossaryModel;
+import org.xwiki.contrib.glossary.GlossarySnapshot;
 import org.xwiki.localization.LocaleUtils;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentReferenceResolver;
@@ -42,6 +50,8 @@ import org.xwiki.query.Query;
 import org.xwiki.query.QueryException;
 import org.xwiki.query.QueryManager;
 import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.parser.ParseException;
+import org.xwiki.rendering.parser.Parser;
 
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
@@ -56,6 +66,13 @@ import com.xpn.xwiki.doc.XWikiDocument;
 @Singleton
 public class DefaultGlossaryModel implements GlossaryModel
 {
+    /**
+     * Maximum number of documents loaded by a single query, to keep the size of the {@code in} clause reasonable.
+     */
+    private static final int CONTENT_BATCH_SIZE = 500;
+
+    private static final String NAMES = "names";
+
     @Inject
     private QueryManager queryManager;
 
@@ -70,6 +87,19 @@ public class DefaultGlossaryModel implements GlossaryModel
     @Named("local")
     private EntityReferenceSerializer<String> entityReferenceSerializer;
 
+    @Inject
+    private GlossarySnapshotManager snapshotManager;
+
+    @Inject
+    private Provider<GlossaryReferencesIndex> referencesIndexProvider;
+
+    @Inject
+    private GlossaryContentCache contentCache;
+
+    @Inject
+    @Named("context")
+    private Provider<ComponentManager> componentManagerProvider;
+
     @Override
     public Map<Locale, Map<String, DocumentReference>> getGlossaryEntries() throws GlossaryException
     {
@@ -79,50 +109,67 @@ public class DefaultGlossaryModel implements GlossaryModel
     @Override
     public Map<Locale, Map<String, DocumentReference>> getGlossaryEntries(String glossaryId) throws GlossaryException
     {
-        // Find all existing glossary entries and save them in a cache for fast transformation execution.
         Map<Locale, Map<String, DocumentReference>> glossaryMap = new HashMap<>();
 
-        glossaryId = (StringUtils.isBlank(glossaryId)) ? "%" : String.format("%s%%", glossaryId);
+        String glossaryIdPattern = (StringUtils.isBlank(glossaryId)) ? "%" : String.format("%s%%", glossaryId);
+        for (Object[] document : queryGlossaryEntries(glossaryIdPattern)) {
+            DocumentReference reference = this.defaultDocumentReferenceResolver.resolve((String) document[0]);
+            glossaryMap.computeIfAbsent(getLocale(document), key -> new HashMap<>()).put((String) document[1],
+                reference);
+        }
 
+        return glossaryMap;
+    }
+
+    @Override
+    public GlossarySnapshot getGlossarySnapshot() throws GlossaryException
+    {
+        return this.snapshotManager.getSnapshot(this.xwikiContextProvider.get().getWikiId(), this::loadSnapshot);
+    }
+
+    private GlossarySnapshot loadSnapshot(long version) throws GlossaryException
+    {
+        // Index the entries by glossary first, so that entries of different glossaries sharing the same title are
+        // all kept.
+        Map<String, Map<Locale, Map<String, DocumentReference>>> glossaries = new HashMap<>();
+        for (Object[] document : queryGlossaryEntries("%")) {
+            DocumentReference reference = this.defaultDocumentReferenceResolver.resolve((String) document[0]);
+            glossaries.computeIfAbsent(getGlossaryId(reference), key -> new HashMap<>())
+                .computeIfAbsent(getLocale(document), key -> new HashMap<>()).put((String) document[1], reference);
+        }
+
+        return new GlossarySnapshot(version, glossaries);
+    }
+
+    private List<Object[]> queryGlossaryEntries(String glossaryIdPattern) throws GlossaryException
+    {
         try {
             Query query = this.queryManager.createQuery("select doc.fullName, doc.title, doc.language, "
                 + "doc.defaultLanguage, doc.translation from XWikiDocument doc, BaseObject obj where "
                 + "obj.className = :glossaryClassRef and obj.name = doc.fullName "
                 + "and doc.fullName like :glossaryId", Query.HQL);
-            List<Object[]> documents = query.bindValue("glossaryId", glossaryId)
+            return query.bindValue("glossaryId", glossaryIdPattern)
                 .bindValue("glossaryClassRef",
                     entityReferenceSerializer.serialize(GlossaryConstants.GLOSSARY_XCLASS_REFERENCE)).execute();
-
-            for (Object[] document : documents) {
-                DocumentReference reference = this.defaultDocumentReferenceResolver.resolve((String) document[0]);
-                String title = (String) document[1];
-                String language = (String) document[2];
-                String defaultLanguage = (String) document[3];
-                Integer isTranslation = (Integer) document[4];
-
-                // Compute the locale of the document
-                Locale locale = Locale.getDefault();
-                if (StringUtils.isNotBlank(language)) {
-                    locale = LocaleUtils.toLocale(language);
-                } else if (StringUtils.isNotBlank(defaultLanguage) && isTranslation == 0) {
-                    locale = LocaleUtils.toLocale(defaultLanguage);
-                }
-
-                Map<String, DocumentReference> map;
-                if (glossaryMap.containsKey(locale)) {
-                    map = glossaryMap.get(locale);
-                } else {
-                    map = new HashMap<>();
-                    glossaryMap.put(locale, map);
-                }
-
-                map.put(title, reference);
-            }
         } catch (QueryException e) {
             throw new GlossaryException("Failed to retrieve Glossary entries", e);
         }
+    }
 
-        return glossaryMap;
+    private Locale getLocale(Object[] document)
+    {
+        String language = (String) document[2];
+        String defaultLanguage = (String) document[3];
+        Integer isTranslation = (Integer) document[4];
+
+        // Compute the locale of the document
+        Locale locale = Locale.getDefault();
+        if (StringUtils.isNotBlank(language)) {
+            locale = LocaleUtils.toLocale(language);
+        } else if (StringUtils.isNotBlank(defaultLanguage) && isTranslation == 0) {
+            locale = LocaleUtils.toLocale(defaultLanguage);
+        }
+        return locale;
     }
 
     @Override
@@ -142,6 +189,117 @@ public class DefaultGlossaryModel implements GlossaryModel
         }
     }
 
+    @Override
+    public Map<DocumentReference, XDOM> getGlossaryContents(Collection<DocumentReference> entryReferences,
+        Locale locale) throws GlossaryException
+    {
+        Map<DocumentReference, XDOM> contents = new HashMap<>();
+        List<DocumentReference> references = new ArrayList<>(entryReferences);
+        for (int i = 0; i < references.size(); i += CONTENT_BATCH_SIZE) {
+            loadGlossaryContents(references.subList(i, Math.min(i + CONTENT_BATCH_SIZE, references.size())), locale,
+                contents);
+        }
+        return contents;
+    }
+
+    private void loadGlossaryContents(List<DocumentReference> references, Locale locale,
+        Map<DocumentReference, XDOM> contents) throws GlossaryException
+    {
+        Map<String, DocumentReference> referencesByName = new HashMap<>();
+        for (DocumentReference reference : references) {
+            referencesByName.put(this.entityReferenceSerializer.serialize(reference), reference);
+        }
+
+        // First only fetch the language and version of every document and translation, which is enough to find the
+        // definitions that are already cached.
+        Map<String, Object[]> selectedDocuments = new HashMap<>();
+        for (Object[] document : this.<Object[]>executeContentQuery("select doc.fullName, doc.language, doc.version "
+            + "from XWikiDocument doc where doc.fullName in (:names)", referencesByName.keySet(), null)) {
+            Object[] selectedDocument = selectedDocuments.get(document[0]);
+            if (selectedDocument == null || getLanguagePriority((String) document[1], locale)
+                > getLanguagePriority((String) selectedDocument[1], locale)) {
+                selectedDocuments.put((String) document[0], document);
+            }
+        }
+
+        Map<String, Object[]> missingDocuments = new HashMap<>();
+        for (Object[] document : selectedDocuments.values()) {
+            DocumentReference reference = referencesByName.get(document[0]);
+            XDOM xdom = this.contentCache.get(reference, (String) document[1], (String) document[2]);
+            if (xdom != null) {
+                contents.put(reference, xdom);
+            } else {
+                missingDocuments.put((String) document[0], document);
+            }
+        }
+
+        if (!missingDocuments.isEmpty()) {
+            Set<String> languages = new HashSet<>();
+            missingDocuments.values().forEach(document -> languages.add((String) document[1]));
+            for (Object[] document : this.<Object[]>executeContentQuery("select doc.fullName, doc.language, "
+                + "doc.content, doc.syntaxId from XWikiDocument doc where doc.fullName in (:names) "
+                + "and doc.language in (:languages)", missingDocuments.keySet(), languages)) {
+                Object[] selectedDocument = missingDocuments.get(document[0]);
+                // Skip the other translations of the same documents
+                if (selectedDocument != null && selectedDocument[1].equals(document[1])) {
+                    DocumentReference reference = referencesByName.get(document[0]);
+                    XDOM xdom = parseContent(reference, (String) document[2], (String) document[3]);
+                    this.contentCache.set(reference, (String) selectedDocument[1], (String) selectedDocument[2],
+                        xdom);
+                    contents.put(reference, xdom);
+                }
+            }
+        }
+    }
+
+    private <T> List<T> executeContentQuery(String statement, Collection<String> names, Collection<String> languages)
+        throws GlossaryException
+    {
+        try {
+            Query query = this.queryManager.createQuery(statement, Query.HQL).bindValue(NAMES, new ArrayList<>(names));
+            if (languages != null) {
+                query.bindValue("languages", new ArrayList<>(languages));
+            }
+            return query.execute();
+        } catch (QueryException e) {
+            throw new GlossaryException("Failed to load the content of the glossary entries", e);
+        }
+    }
+
+    /**
+     * @return the priority of a document language when looking for the given locale: the exact translation first,
+     *     then the translation in the same language, then the default document
+     */
+    private int getLanguagePriority(String language, Locale locale)
+    {
+        if (StringUtils.isEmpty(language)) {
+            return 0;
+        } else if (language.equals(locale.toString())) {
+            return 2;
+        } else if (language.equals(locale.getLanguage())) {
+            return 1;
+        } else {
+            return -1;
+        }
+    }
+
+    private XDOM parseContent(DocumentReference reference, String content, String syntaxId) throws GlossaryException
+    {
+        try {
+            Parser parser = this.componentManagerProvider.get().getInstance(Parser.class, syntaxId);
+            return parser.parse(new StringReader(StringUtils.defaultString(content)));
+        } catch (ComponentLookupException | ParseException e) {
+            throw new GlossaryException(String.format("Failed to parse the content of glossary entry [%s]",
+                reference), e);
+        }
+    }
+
+    @Override
+    public List<DocumentReference> getReferencingDocuments(DocumentReference entryReference)
+    {
+        return this.referencesIndexProvider.get().getReferencingDocuments(entryReference);
+    }
+
     @Override
     public String getGlossaryId(DocumentReference entryReference)
     {
@@ -0,0 +1,343 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.internal;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.context.concurrent.ExecutionContextRunnable;
+import org.xwiki.contrib.glossary.GlossaryConfiguration;
+import org.xwiki.contrib.glossary.GlossaryConstants;
+import org.xwiki.contrib.glossary.GlossaryException;
+import org.xwiki.localization.ContextualLocalizationManager;
+import org.xwiki.localization.LocaleUtils;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.renderer.BlockRenderer;
+import org.xwiki.rendering.renderer.printer.DefaultWikiPrinter;
+import org.xwiki.rendering.renderer.printer.WikiPrinter;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.rendering.transformation.TransformationContext;
+import org.xwiki.rendering.transformation.TransformationManager;
+import org.xwiki.security.authorization.ContextualAuthorizationManager;
+import org.xwiki.security.authorization.Right;
+
+import com.xpn.xwiki.XWikiContext;
+
+/**
+ * Export the entries of a glossary as CSV. The export has one row per entry and, for each language in which entries
+ * exist, one column with the title of the entry and one with its definition rendered as plain text.
+ * <p>
+ * Entries are loaded by batches and their definitions are rendered in parallel by a bounded number of threads shared
+ * by all the exports, each batch being written as soon as it's rendered, so that the memory used doesn't depend on the
+ * size of the glossary. Definitions are rendered as the exporting user with restricted transformations.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+@Component(roles = GlossaryCSVExporter.class)
+@Singleton
+public class GlossaryCSVExporter implements Initializable, Disposable
+{
+    private static final int BATCH_SIZE = 100;
+
+    private static final String DEFAULT_LANGUAGE = "default";
+
+    private static final String SEPARATOR = ";";
+
+    private static final String QUOTE = "\"";
+
+    private static final String GLOSSARY_SPACE = "glossarySpace";
+
+    private static final String GLOSSARY_CLASS = "glossaryClass";
+
+    @Inject
+    private QueryManager queryManager;
+
+    @Inject
+    private Provider<XWikiContext> xwikiContextProvider;
+
+    @Inject
+    @Named("local")
+    private EntityReferenceSerializer<String> entityReferenceSerializer;
+
+    @Inject
+    @Named("currentmixed")
+    private DocumentReferenceResolver<String> documentReferenceResolver;
+
+    @Inject
+    private ContextualAuthorizationManager authorizationManager;
+
+    @Inject
+    private ContextualLocalizationManager localizationManager;
+
+    @Inject
+    private TransformationManager transformationManager;
+
+    @Inject
+    @Named("plain/1.0")
+    private BlockRenderer plainTextRenderer;
+
+    @Inject
+    @Named("context")
+    private Provider<ComponentManager> componentManagerProvider;
+
+    @Inject
+    private GlossaryConfiguration glossaryConfiguration;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * The workers rendering the definitions, shared by all the exports so that concurrent exports don't use more
+     * threads.
+     */
+    private ExecutorService executor;
+
+    /**
+     * Row of the export, holding the title and the rendered definition of each translation of an entry.
+     */
+    private static final class Row
+    {
+        private final String entry;
+
+        private final Map<String, String[]> translations = new HashMap<>();
+
+        Row(String entry)
+        {
+            this.entry = entry;
+        }
+    }
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        int threads = Math.max(1, this.glossaryConfiguration.getExportThreads());
+        this.executor = Executors.newFixedThreadPool(threads, new BasicThreadFactory.Builder()
+            .namingPattern("Glossary export worker %d").daemon(true).build());
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Export the entries, viewable by the current user, of a glossary of the current wiki.
+     *
+     * @param glossaryId the ID of the glossary to export
+     * @param writer the writer to which the CSV is streamed
+     * @throws GlossaryException when the export fails
+     */
+    public void export(String glossaryId, Writer writer) throws GlossaryException
+    {
+        XWikiContext xcontext = this.xwikiContextProvider.get();
+        String glossarySpace = glossaryId + ".%";
+
+        try {
+            List<String> entries = getEntries(glossarySpace);
+            List<String> languages = getLanguages(glossarySpace);
+
+            writeHeader(languages, xcontext.getLocale(), writer);
+
+            for (int i = 0; i < entries.size(); i += BATCH_SIZE) {
+                List<Row> rows = renderRows(entries.subList(i, Math.min(i + BATCH_SIZE, entries.size())), xcontext);
+                for (Row row : rows) {
+                    writeRow(row, languages, writer);
+                }
+                // Send the batch to the client right away
+                writer.flush();
+            }
+        } catch (QueryException | IOException | ExecutionException e) {
+            throw new GlossaryException(String.format("Failed to export the glossary [%s]", glossaryId), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GlossaryException(String.format("Interrupted while exporting the glossary [%s]", glossaryId),
+                e);
+        }
+    }
+
+    private List<String> getEntries(String glossarySpace) throws QueryException
+    {
+        List<String> entries = this.queryManager.createQuery("select obj.name from BaseObject obj "
+            + "where obj.className = :glossaryClass and obj.name like :glossarySpace "
+            + "group by obj.name order by obj.name asc", Query.HQL)
+            .bindValue(GLOSSARY_CLASS, getGlossaryClass()).bindValue(GLOSSARY_SPACE, glossarySpace).execute();
+        return entries.stream()
+            .filter(entry -> this.authorizationManager.hasAccess(Right.VIEW,
+                this.documentReferenceResolver.resolve(entry)))
+            .collect(Collectors.toList());
+    }
+
+    private List<String> getLanguages(String glossarySpace) throws QueryException
+    {
+        List<String> languages = this.queryManager.createQuery("select distinct doc.language "
+            + "from XWikiDocument doc, BaseObject obj where obj.className = :glossaryClass "
+            + "and obj.name = doc.fullName and doc.fullName like :glossarySpace", Query.HQL)
+            .bindValue(GLOSSARY_CLASS, getGlossaryClass()).bindValue(GLOSSARY_SPACE, glossarySpace).execute();
+
+        // The default language always comes first
+        Set<String> translations = new TreeSet<>();
+        boolean hasDefault = false;
+        for (String language : languages) {
+            if (StringUtils.isBlank(language)) {
+                hasDefault = true;
+            } else {
+                translations.add(language);
+            }
+        }
+        List<String> columns = new ArrayList<>();
+        if (hasDefault) {
+            columns.add(DEFAULT_LANGUAGE);
+        }
+        columns.addAll(translations);
+        return columns;
+    }
+
+    private String getGlossaryClass()
+    {
+        return this.entityReferenceSerializer.serialize(GlossaryConstants.GLOSSARY_XCLASS_REFERENCE);
+    }
+
+    private List<Row> renderRows(List<String> entries, XWikiContext xcontext)
+        throws QueryException, InterruptedException, ExecutionException
+    {
+        Map<String, Row> rows = new HashMap<>();
+        entries.forEach(entry -> rows.put(entry, new Row(entry)));
+
+        // Load all the translations of the batch at once
+        List<Object[]> translations = this.queryManager.createQuery("select doc.fullName, doc.title, doc.language, "
+            + "doc.content, doc.syntaxId from XWikiDocument doc where doc.fullName in (:entries)",
+            Query.HQL).bindValue("entries", entries).execute();
+
+        String wikiId = xcontext.getWikiId();
+        DocumentReference userReference = xcontext.getUserReference();
+        Locale locale = xcontext.getLocale();
+        ComponentManager componentManager = this.componentManagerProvider.get();
+        List<Future<?>> futures = new ArrayList<>(translations.size());
+        for (Object[] translation : translations) {
+            Row row = rows.get(translation[0]);
+            String language = StringUtils.isBlank((String) translation[2]) ? DEFAULT_LANGUAGE : (String) translation[2];
+            String[] cells = new String[] {(String) translation[1], ""};
+            row.translations.put(language, cells);
+            futures.add(this.executor.submit(new ExecutionContextRunnable(() -> {
+                XWikiContext workerContext = this.xwikiContextProvider.get();
+                workerContext.setWikiId(wikiId);
+                workerContext.setUserReference(userReference);
+                workerContext.setLocale(locale);
+                cells[1] = render(row.entry, (String) translation[3], (String) translation[4]);
+            }, componentManager)));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+
+        return entries.stream().map(rows::get).collect(Collectors.toList());
+    }
+
+    private String render(String entry, String content, String syntaxId)
+    {
+        try {
+            Parser parser = this.componentManagerProvider.get().getInstance(Parser.class, syntaxId);
+            XDOM xdom = parser.parse(new StringReader(StringUtils.defaultString(content)));
+            TransformationContext transformationContext =
+                new TransformationContext(xdom, Syntax.valueOf(syntaxId), true);
+            this.transformationManager.performTransformations(xdom, transformationContext);
+
+            WikiPrinter printer = new DefaultWikiPrinter();
+            this.plainTextRenderer.render(xdom, printer);
+            return printer.toString();
+        } catch (Exception e) {
+            this.logger.warn("Failed to render the definition of the glossary entry [{}]: {}", entry,
+                e.getMessage());
+            return "";
+        }
+    }
+
+    private void writeHeader(List<String> languages, Locale locale, Writer writer) throws IOException
+    {
+        StringBuilder header = new StringBuilder(quote(this.localizationManager.getTranslationPlain(
+            "glossary.export.id")));
+        for (String language : languages) {
+            String languageName;
+            if (DEFAULT_LANGUAGE.equals(language)) {
+                languageName = this.localizationManager.getTranslationPlain("glossary.export.locale.default");
+            } else {
+                languageName = LocaleUtils.toLocale(language).getDisplayName(locale);
+            }
+            header.append(SEPARATOR).append(quote(languageName)).append(SEPARATOR).append(
+                quote(this.localizationManager.getTranslationPlain("glossary.export.csv.content", languageName)));
+        }
+        writer.write(header.toString());
+    }
+
+    private void writeRow(Row row, List<String> languages, Writer writer) throws IOException
+    {
+        StringBuilder line = new StringBuilder("\n").append(quote(row.entry));
+        for (String language : languages) {
+            String[] cells = row.translations.get(language);
+            if (cells != null) {
+                line.append(SEPARATOR).append(quote(cells[0])).append(SEPARATOR).append(quote(cells[1]));
+            } else {
+                line.append(SEPARATOR).append(SEPARATOR);
+            }
+        }
+        writer.write(line.toString());
+    }
+
+    private String quote(String value)
+    {
+        return QUOTE + StringUtils.replace(StringUtils.defaultString(value), QUOTE, QUOTE + QUOTE) + QUOTE;
+    }
+}
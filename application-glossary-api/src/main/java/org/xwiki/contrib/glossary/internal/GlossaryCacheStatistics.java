@@ -0,0 +1,109 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.internal;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of the glossary entries cached for one wiki, looked up through the {@link DefaultGlossaryCache} and
+ * held by the {@link GlossarySnapshotManager}.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+public class GlossaryCacheStatistics implements GlossaryCacheStatisticsMBean
+{
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private volatile long size;
+
+    /**
+     * @param hit {@code true} if the lookup found a glossary entry
+     */
+    public void recordLookup(boolean hit)
+    {
+        if (hit) {
+            this.hits.increment();
+        } else {
+            this.misses.increment();
+        }
+    }
+
+    /**
+     * Record the eviction of the entries of the wiki.
+     */
+    public void recordEviction()
+    {
+        this.evictions.increment();
+        this.size = 0;
+    }
+
+    /**
+     * @param size the number of glossary entries of the wiki currently held by the cache
+     */
+    public void setSize(long size)
+    {
+        this.size = size;
+    }
+
+    @Override
+    public long getHitCount()
+    {
+        return this.hits.sum();
+    }
+
+    @Override
+    public long getMissCount()
+    {
+        return this.misses.sum();
+    }
+
+    @Override
+    public double getHitRatio()
+    {
+        long hitCount = getHitCount();
+        long lookups = hitCount + getMissCount();
+        return (lookups > 0) ? (double) hitCount / lookups : 0;
+    }
+
+    @Override
+    public long getSize()
+    {
+        return this.size;
+    }
+
+    @Override
+    public long getEvictionCount()
+    {
+        return this.evictions.sum();
+    }
+
+    @Override
+    public void reset()
+    {
+        this.hits.reset();
+        this.misses.reset();
+        this.evictions.reset();
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.internal;
+
+/**
+ * JMX view of the {@link GlossaryCacheStatistics} of a wiki.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+public interface GlossaryCacheStatisticsMBean
+{
+    /**
+     * @return the number of lookups which found a glossary entry
+     */
+    long getHitCount();
+
+    /**
+     * @return the number of lookups which didn't find any glossary entry
+     */
+    long getMissCount();
+
+    /**
+     * @return the share of the lookups which found a glossary entry, between 0 and 1
+     */
+    double getHitRatio();
+
+    /**
+     * @return the number of glossary entries of the wiki currently held by the cache
+     */
+    long getSize();
+
+    /**
+     * @return the number of times the entries of the wiki were evicted from the cache
+     */
+    long getEvictionCount();
+
+    /**
+     * Forget the recorded lookups and evictions.
+     */
+    void reset();
+}
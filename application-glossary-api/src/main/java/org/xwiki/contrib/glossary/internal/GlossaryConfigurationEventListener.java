@@ -0,0 +1,82 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.internal;
+
+import java.util.Arrays;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.bridge.event.DocumentCreatedEvent;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.glossary.GlossaryConfiguration;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+
+/**
+ * Forget the cached glossary configuration of a wiki when its {@code Glossary.Code.GlossaryConfiguration} document
+ * is modified.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+@Component
+@Named(GlossaryConfigurationEventListener.LISTENER_NAME)
+@Singleton
+public class GlossaryConfigurationEventListener extends AbstractEventListener
+{
+    /**
+     * The name of the listener.
+     */
+    public static final String LISTENER_NAME = "glossaryConfigurationEventListener";
+
+    @Inject
+    private Provider<GlossaryConfiguration> glossaryConfigurationProvider;
+
+    /**
+     * Default constructor.
+     */
+    public GlossaryConfigurationEventListener()
+    {
+        super(LISTENER_NAME, Arrays.asList(new DocumentCreatedEvent(), new DocumentUpdatedEvent(),
+            new DocumentDeletedEvent()));
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        DocumentReference documentReference = ((XWikiDocument) source).getDocumentReference();
+        String wikiId = documentReference.getWikiReference().getName();
+
+        if (documentReference.equals(DefaultGlossaryConfiguration.getConfigurationDocumentReference(wikiId))) {
+            GlossaryConfiguration glossaryConfiguration = this.glossaryConfigurationProvider.get();
+            if (glossaryConfiguration instanceof DefaultGlossaryConfiguration) {
+                ((DefaultGlossaryConfiguration) glossaryConfiguration).invalidate(wikiId);
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.internal;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.eviction.LRUEvictionConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.rendering.block.XDOM;
+
+/**
+ * Cache of the parsed definitions of the glossary entries. Definitions are cached per entry, language and version of
+ * the document or translation they were taken from, so that a modified or newly translated entry is parsed again
+ * without needing any explicit invalidation.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+@Component(roles = GlossaryContentCache.class)
+@Singleton
+public class GlossaryContentCache implements Initializable, Disposable
+{
+    /**
+     * Identifier for the glossary content cache.
+     */
+    private static final String NAME = "cache.glossaryContentCache";
+
+    @Inject
+    private CacheManager cacheManager;
+
+    private Cache<XDOM> cache;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        try {
+            CacheConfiguration cacheConfiguration = new CacheConfiguration();
+            cacheConfiguration.setConfigurationId(NAME);
+            LRUEvictionConfiguration lru = new LRUEvictionConfiguration();
+            lru.setMaxEntries(5000);
+            cacheConfiguration.put(LRUEvictionConfiguration.CONFIGURATIONID, lru);
+            this.cache = this.cacheManager.createNewCache(cacheConfiguration);
+        } catch (CacheException e) {
+            throw new InitializationException("Failed to initialize the glossary content cache", e);
+        }
+    }
+
+    @Override
+    public void dispose()
+    {
+        if (this.cache != null) {
+            this.cache.dispose();
+        }
+    }
+
+    /**
+     * @param reference the reference of the glossary entry
+     * @param language the language of the document or translation holding the definition, empty for the default
+     *     document
+     * @param version the version of the document or translation holding the definition
+     * @return a copy of the cached definition, or {@code null} if it is not cached
+     */
+    public XDOM get(DocumentReference reference, String language, String version)
+    {
+        XDOM xdom = this.cache.get(computeCacheKey(reference, language, version));
+        // Callers are free to move the returned blocks to another parent, so never give away the cached instance
+        return (xdom != null) ? xdom.clone() : null;
+    }
+
+    /**
+     * @param reference the reference of the glossary entry
+     * @param language the language of the document or translation holding the definition, empty for the default
+     *     document
+     * @param version the version of the document or translation holding the definition
+     * @param xdom the parsed definition
+     */
+    public void set(DocumentReference reference, String language, String version, XDOM xdom)
+    {
+        this.cache.set(computeCacheKey(reference, language, version), xdom.clone());
+    }
+
+    private String computeCacheKey(DocumentReference reference, String language, String version)
+    {
+        // The serialized document reference contains the wiki. The language is the one of the translation actually
+        // used, since several translations of an entry may have the same version.
+        return String.format("%s/%s/%s", reference, language, version);
+    }
+}
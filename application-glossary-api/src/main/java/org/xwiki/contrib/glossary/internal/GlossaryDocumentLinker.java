@@ -0,0 +1,383 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.context.concurrent.ExecutionContextRunnable;
+import org.xwiki.contrib.glossary.GlossaryConfiguration;
+import org.xwiki.contrib.glossary.GlossaryEntriesTransformer;
+import org.xwiki.contrib.glossary.GlossaryException;
+import org.xwiki.contrib.glossary.GlossaryModel;
+import org.xwiki.contrib.glossary.GlossarySnapshot;
+import org.xwiki.localization.ContextualLocalizationManager;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.observation.remote.RemoteObservationManagerContext;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.FormatBlock;
+import org.xwiki.rendering.block.HeaderBlock;
+import org.xwiki.rendering.block.ImageBlock;
+import org.xwiki.rendering.block.LinkBlock;
+import org.xwiki.rendering.block.MacroBlock;
+import org.xwiki.rendering.block.MacroMarkerBlock;
+import org.xwiki.rendering.block.RawBlock;
+import org.xwiki.rendering.block.VerbatimBlock;
+import org.xwiki.rendering.block.XDOM;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+
+/**
+ * Insert references to the glossary entries found in the content of saved documents, either during the save or in
+ * the background once the save is done. Background updates are coalesced per document and saved as minor edits which
+ * don't create a new version of the document.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+@Component(roles = GlossaryDocumentLinker.class)
+@Singleton
+public class GlossaryDocumentLinker implements Initializable, Disposable
+{
+    /**
+     * The context key set while a document updated in the background is saved, so that this save is not linked again.
+     */
+    public static final String LINKING_CONTEXT_KEY = "glossary-linking";
+
+    @Inject
+    private Logger logger;
+
+    @Inject
+    private GlossaryConfiguration glossaryConfiguration;
+
+    @Inject
+    private GlossaryEntriesTransformer glossaryEntriesTransformer;
+
+    @Inject
+    private Provider<GlossaryReferencesIndex> referencesIndexProvider;
+
+    @Inject
+    private Provider<XWikiContext> xwikiContextProvider;
+
+    @Inject
+    private ContextualLocalizationManager localizationManager;
+
+    @Inject
+    private GlossaryModel glossaryModel;
+
+    @Inject
+    private GlossaryLinkedContentCache linkedContentCache;
+
+    @Inject
+    private GlossaryMetrics metrics;
+
+    @Inject
+    private Provider<RemoteObservationManagerContext> remoteObservationManagerContextProvider;
+
+    @Inject
+    private ComponentManager componentManager;
+
+    private ScheduledExecutorService executor;
+
+    /**
+     * The documents waiting to be updated, with their locale.
+     */
+    private final Set<DocumentReference> pendingDocuments = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.executor = Executors.newSingleThreadScheduledExecutor(new BasicThreadFactory.Builder()
+            .namingPattern("Glossary document linker").daemon(true).build());
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Insert references to the glossary entries found in the content of the given document, and record the glossary
+     * entries referenced by the document.
+     *
+     * @param document the document to update
+     * @return {@code true} if the content of the document was modified
+     * @throws XWikiException when the content of the document cannot be parsed or updated
+     * @throws GlossaryException when the glossary entries cannot be loaded
+     */
+    public boolean link(XWikiDocument document) throws XWikiException, GlossaryException
+    {
+        // Check if the given document has at least one object from the excluded classes, looking only at the classes
+        // of the document since it usually has fewer classes than the configuration excludes
+        for (Map.Entry<DocumentReference, List<BaseObject>> objects : document.getXObjects().entrySet()) {
+            if (!objects.getValue().isEmpty()
+                && this.glossaryConfiguration.isExcludedClassFromTransformations(objects.getKey())) {
+                // The document is not transformed, but the references it still contains have to be indexed
+                this.referencesIndexProvider.get().index(document);
+                return false;
+            }
+        }
+
+        // Compute the locale of the document that should be used to resolve glossary entries
+        Locale locale = (Locale.ROOT.equals(document.getLocale())) ? document.getDefaultLocale()
+            : document.getLocale();
+
+        // The snapshot may be updated during the transformation, in which case the document is fully transformed
+        // again on next save.
+        GlossarySnapshot snapshot = this.glossaryModel.getGlossarySnapshot();
+        if (snapshot.getMatcher(locale).isEmpty()
+            && !document.getContent().contains(GlossaryReferenceMacro.MACRO_NAME)) {
+            // There is no glossary reference to add nor to remove, so don't even parse the content
+            this.referencesIndexProvider.get().setReferences(document.getDocumentReferenceWithLocale(),
+                Collections.emptySet());
+            return false;
+        }
+        long snapshotVersion = snapshot.getVersion();
+        XDOM xdom = document.getXDOM();
+        long start = System.nanoTime();
+        List<Block> modifiedBlocks = getModifiedBlocks(document, xdom, snapshotVersion);
+        boolean transformed;
+        if (modifiedBlocks == null) {
+            transformed = this.glossaryEntriesTransformer.transformGlossaryEntries(xdom, document.getSyntax(), locale);
+        } else {
+            transformed = !modifiedBlocks.isEmpty() && this.glossaryEntriesTransformer.transformGlossaryEntries(xdom,
+                modifiedBlocks, document.getSyntax(), locale);
+        }
+        this.metrics.record(GlossaryMetrics.SAVE_TRANSFORMATION, start);
+        if (transformed) {
+            this.logger.debug("Glossary transformation duration for [{}]: [{}] ", document.getDocumentReference(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            document.setContent(xdom);
+        }
+        this.linkedContentCache.setLinked(document.getDocumentReferenceWithLocale(), snapshotVersion,
+            document.getContent(), xdom.getChildren());
+        this.referencesIndexProvider.get().index(document.getDocumentReferenceWithLocale(), xdom);
+        return transformed;
+    }
+
+    /**
+     * Compare the top level blocks of the document with the ones of its original document, when the glossary
+     * references of the original document are known to be up to date.
+     *
+     * @return the top level blocks which are not part of the original document, or {@code null} if the whole document
+     *     has to be transformed
+     */
+    private List<Block> getModifiedBlocks(XWikiDocument document, XDOM xdom, long snapshotVersion)
+        throws GlossaryException
+    {
+        XWikiDocument originalDocument = document.getOriginalDocument();
+        if (originalDocument == null || originalDocument.isNew()
+            || !Objects.equals(originalDocument.getSyntax(), document.getSyntax())) {
+            return null;
+        }
+        // The blocks of the original content are remembered when the document was linked recently, which also means
+        // that its glossary references are up to date
+        DocumentReference documentReference = document.getDocumentReferenceWithLocale();
+        List<Block> linkedBlocks =
+            this.linkedContentCache.getLinkedBlocks(documentReference, snapshotVersion, originalDocument.getContent());
+        if (linkedBlocks == null
+            && !this.linkedContentCache.isLinked(documentReference, snapshotVersion, originalDocument.getContent())) {
+            return null;
+        }
+        if (originalDocument.getContent().equals(document.getContent())) {
+            // Only the metadata or the objects of the document were modified
+            return Collections.emptyList();
+        }
+        if (linkedBlocks == null) {
+            linkedBlocks = originalDocument.getXDOM().getChildren();
+        }
+
+        // Count the occurrences of each original block, since the same block may appear several times
+        Map<BlockKey, Integer> originalBlocks = new HashMap<>();
+        for (Block block : linkedBlocks) {
+            originalBlocks.merge(new BlockKey(block), 1, Integer::sum);
+        }
+        List<Block> modifiedBlocks = new ArrayList<>();
+        for (Block block : xdom.getChildren()) {
+            BlockKey key = new BlockKey(block);
+            Integer count = originalBlocks.get(key);
+            if (count == null) {
+                modifiedBlocks.add(block);
+            } else if (count > 1) {
+                originalBlocks.put(key, count - 1);
+            } else {
+                originalBlocks.remove(key);
+            }
+        }
+        return modifiedBlocks;
+    }
+
+    /**
+     * Schedule the update of the given document in the background, after the configured delay. Saving the document
+     * again before it's updated doesn't schedule another update. Documents saved on other cluster nodes are updated by
+     * these nodes, so they are not scheduled.
+     *
+     * @param document the saved document
+     */
+    public void schedule(XWikiDocument document)
+    {
+        if (this.remoteObservationManagerContextProvider.get().isRemoteState()) {
+            return;
+        }
+
+        DocumentReference documentReference = document.getDocumentReferenceWithLocale();
+        if (this.pendingDocuments.add(documentReference)) {
+            this.executor.schedule(new ExecutionContextRunnable(() -> update(documentReference),
+                this.componentManager), this.glossaryConfiguration.getUpdateDocumentsOnSaveDelay(), TimeUnit.SECONDS);
+        }
+    }
+
+    private void update(DocumentReference documentReference)
+    {
+        // Remove the document first, so that a save happening during the update schedules another update.
+        this.pendingDocuments.remove(documentReference);
+
+        XWikiContext xcontext = this.xwikiContextProvider.get();
+        xcontext.setWikiId(documentReference.getWikiReference().getName());
+
+        try {
+            XWikiDocument document = xcontext.getWiki().getDocument(documentReference, xcontext);
+            // Act on behalf of the user who saved the document last
+            xcontext.setUserReference(document.getAuthorReference());
+            XWikiDocument linkedDocument = document.clone();
+            if (!document.isNew() && link(linkedDocument)) {
+                linkedDocument.setContentDirty(false);
+                linkedDocument.setMetaDataDirty(false);
+
+                // Don't overwrite a save which happened during the update: it scheduled its own update.
+                XWikiDocument currentDocument = xcontext.getWiki().getDocument(documentReference, xcontext);
+                if (Objects.equals(document.getVersion(), currentDocument.getVersion())
+                    && Objects.equals(document.getDate(), currentDocument.getDate())) {
+                    xcontext.put(LINKING_CONTEXT_KEY, true);
+                    try {
+                        xcontext.getWiki().saveDocument(linkedDocument,
+                            this.localizationManager.getTranslationPlain("glossary.transformationJob.save.message"),
+                            true, xcontext);
+                    } finally {
+                        xcontext.remove(LINKING_CONTEXT_KEY);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            this.logger.error("Failed to transform glossary entries in document [{}]", documentReference, e);
+        }
+    }
+
+    /**
+     * Compares blocks including their type and the attributes which {@link Block#equals(Object)} ignores, such as the
+     * identifier and the content of macros, so that a modified block is never considered as unchanged.
+     */
+    private static final class BlockKey
+    {
+        private final Block block;
+
+        BlockKey(Block block)
+        {
+            this.block = block;
+        }
+
+        @Override
+        public boolean equals(Object object)
+        {
+            return object instanceof BlockKey && isSameBlock(this.block, ((BlockKey) object).block);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(this.block.getClass(), getAttributes(this.block), this.block.getChildren().size());
+        }
+
+        private static boolean isSameBlock(Block block, Block otherBlock)
+        {
+            if (block.getClass() != otherBlock.getClass() || !block.equals(otherBlock)
+                || !getAttributes(block).equals(getAttributes(otherBlock))) {
+                return false;
+            }
+            List<Block> children = block.getChildren();
+            List<Block> otherChildren = otherBlock.getChildren();
+            if (children.size() != otherChildren.size()) {
+                return false;
+            }
+            for (int i = 0; i < children.size(); i++) {
+                if (!isSameBlock(children.get(i), otherChildren.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static List<Object> getAttributes(Block block)
+        {
+            if (block instanceof MacroBlock) {
+                MacroBlock macroBlock = (MacroBlock) block;
+                return Arrays.asList(macroBlock.getId(), macroBlock.getContent(), macroBlock.isInline());
+            } else if (block instanceof MacroMarkerBlock) {
+                MacroMarkerBlock macroMarkerBlock = (MacroMarkerBlock) block;
+                return Arrays.asList(macroMarkerBlock.getId(), macroMarkerBlock.getContent(),
+                    macroMarkerBlock.isInline());
+            } else if (block instanceof LinkBlock) {
+                LinkBlock linkBlock = (LinkBlock) block;
+                return Arrays.asList(linkBlock.getReference(), linkBlock.isFreeStandingURI());
+            } else if (block instanceof ImageBlock) {
+                ImageBlock imageBlock = (ImageBlock) block;
+                return Arrays.asList(imageBlock.getReference(), imageBlock.isFreeStandingURI());
+            } else if (block instanceof RawBlock) {
+                RawBlock rawBlock = (RawBlock) block;
+                return Arrays.asList(rawBlock.getRawContent(), rawBlock.getSyntax());
+            } else if (block instanceof VerbatimBlock) {
+                VerbatimBlock verbatimBlock = (VerbatimBlock) block;
+                return Arrays.asList(verbatimBlock.getProtectedString(), verbatimBlock.isInline());
+            } else if (block instanceof HeaderBlock) {
+                return Collections.singletonList(((HeaderBlock) block).getLevel());
+            } else if (block instanceof FormatBlock) {
+                return Collections.singletonList(((FormatBlock) block).getFormat());
+            }
+            return Collections.emptyList();
+        }
+    }
+}
@@ -20,31 +20,35 @@
 package org.xwiki.contrib.glossary.internal;
 
 import java.util.Arrays;
-import java.util.Iterator;
-import java.util.Locale;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.inject.Provider;
 import javax.inject.Singleton;
 
 import org.slf4j.Logger;
+import org.xwiki.bridge.event.DocumentCreatedEvent;
 import org.xwiki.bridge.event.DocumentCreatingEvent;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
 import org.xwiki.bridge.event.DocumentUpdatingEvent;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.contrib.glossary.GlossaryConfiguration;
-import org.xwiki.contrib.glossary.GlossaryEntriesTransformer;
 import org.xwiki.contrib.glossary.GlossaryException;
-import org.xwiki.model.reference.EntityReference;
+import org.xwiki.contrib.glossary.GlossaryImportingEvent;
 import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.ObservationContext;
 import org.xwiki.observation.event.Event;
-import org.xwiki.rendering.block.XDOM;
+import org.xwiki.observation.remote.RemoteObservationManagerContext;
 
+import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.doc.XWikiDocument;
 
 /**
  * Scan any document at save time and look for glossary words in the document content. If words are found,
- * update them to insert a glossary macro.
+ * update them to insert a glossary macro. When configured to do so, the document is updated in the background once
+ * it has been saved instead.
  *
  * @version $Id$
  * @since 1.1
@@ -59,6 +63,8 @@ public class GlossaryDocumentSaveEventListener extends AbstractEventListener
      */
     public static final String LISTENER_NAME = "glossaryDocumentSaveEventListener";
 
+    private static final GlossaryImportingEvent IMPORTING_EVENT = new GlossaryImportingEvent();
+
     @Inject
     private Logger logger;
 
@@ -66,7 +72,19 @@ public class GlossaryDocumentSaveEventListener extends AbstractEventListener
     private GlossaryConfiguration glossaryConfiguration;
 
     @Inject
-    private GlossaryEntriesTransformer glossaryEntriesTransformer;
+    private Provider<GlossaryReferencesIndex> referencesIndexProvider;
+
+    @Inject
+    private Provider<ObservationContext> observationContextProvider;
+
+    @Inject
+    private Provider<RemoteObservationManagerContext> remoteObservationManagerContextProvider;
+
+    @Inject
+    private Provider<XWikiContext> xwikiContextProvider;
+
+    @Inject
+    private Provider<GlossaryDocumentLinker> documentLinkerProvider;
 
     @Override
     public String getName()
@@ -75,43 +93,54 @@ public class GlossaryDocumentSaveEventListener extends AbstractEventListener
     }
 
     public GlossaryDocumentSaveEventListener() {
-        super(LISTENER_NAME, Arrays.asList(new DocumentCreatingEvent(), new DocumentUpdatingEvent()));
+        super(LISTENER_NAME, Arrays.asList(new DocumentCreatingEvent(), new DocumentUpdatingEvent(),
+            new DocumentCreatedEvent(), new DocumentUpdatedEvent(), new DocumentDeletedEvent()));
     }
 
     @Override
     public void onEvent(Event event, Object source, Object data)
     {
-        if (glossaryConfiguration.updateDocumentsOnSave()) {
-            XWikiDocument document = (XWikiDocument) source;
-
-            // Check if the given document has at least one object from the excluded classes
-            boolean hasExcludedObject = false;
-            for (Iterator<EntityReference> it = glossaryConfiguration.excludedClassesFromTransformations().iterator();
-                it.hasNext() && !hasExcludedObject;) {
-                hasExcludedObject = (document.getXObjects(it.next()).size() > 0);
-            }
-
-            if (!hasExcludedObject) {
-                // Compute the locale of the document that should be used to resolve glossary entries
-                    Locale locale = (Locale.ROOT.equals(document.getLocale())) ? document.getDefaultLocale() :
-                    document.getLocale();
-
-                try {
-                    XDOM xdom = document.getXDOM();
-                    long start = System.currentTimeMillis();
-                    if (glossaryEntriesTransformer.transformGlossaryEntries(xdom, document.getSyntax(), locale)) {
-                        long end = System.currentTimeMillis();
-                        long duration = end - start;
-                        logger.debug("Glossary transformation duration for [{}]: [{}] ",
-                            document.getDocumentReference(),
-                            duration);
-                        document.setContent(xdom);
-                    }
-                } catch (XWikiException | GlossaryException e) {
-                    logger.error("Failed to transform content for document [{}] to look for Glossary entries.",
-                        document.getDocumentReference(), e);
+        XWikiDocument document = (XWikiDocument) source;
+        boolean saved = event instanceof DocumentCreatedEvent || event instanceof DocumentUpdatedEvent;
+        if (event instanceof DocumentDeletedEvent) {
+            referencesIndexProvider.get().removeReferences(document.getDocumentReferenceWithLocale());
+        } else if (glossaryConfiguration.updateDocumentsOnSave()
+            // Documents saved on other cluster nodes were already updated there
+            && !remoteObservationManagerContextProvider.get().isRemoteState()
+            // Imported glossary entries are saved as is
+            && !observationContextProvider.get().isIn(IMPORTING_EVENT)) {
+            if (!glossaryConfiguration.isUpdateDocumentsOnSaveAsynchronously()) {
+                if (!saved) {
+                    link(document);
                 }
+            } else if (saved
+                // The documents updated in the background are not updated again when saved
+                && !xwikiContextProvider.get().containsKey(GlossaryDocumentLinker.LINKING_CONTEXT_KEY)) {
+                documentLinkerProvider.get().schedule(document);
             }
+        } else if (saved) {
+            // The documents which are not updated still have to be indexed
+            index(document);
+        }
+    }
+
+    private void index(XWikiDocument document)
+    {
+        try {
+            referencesIndexProvider.get().index(document);
+        } catch (XWikiException e) {
+            logger.error("Failed to index the glossary references of document [{}].",
+                document.getDocumentReference(), e);
+        }
+    }
+
+    private void link(XWikiDocument document)
+    {
+        try {
+            documentLinkerProvider.get().link(document);
+        } catch (XWikiException | GlossaryException e) {
+            logger.error("Failed to transform content for document [{}] to look for Glossary entries.",
+                document.getDocumentReference(), e);
         }
     }
 }
@@ -0,0 +1,227 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.glossary.GlossaryConfiguration;
+import org.xwiki.environment.Environment;
+
+import com.xpn.xwiki.XWikiContext;
+
+/**
+ * Record the titles of the glossary entries created, renamed or deleted in each wiki, so that the transformation job
+ * only needs to process the documents which may contain them. Changes are only recorded while the transformation job
+ * is activated in the wiki, and are appended to a log persisted in the permanent directory so that they are not lost
+ * on restart. A change which is not recorded because the job is not activated marks the log as incomplete, so that the
+ * next run of the job processes all the documents.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+@Component(roles = GlossaryEntriesChangeLog.class)
+@Singleton
+public class GlossaryEntriesChangeLog
+{
+    private static final String DIRECTORY = "glossary/transformationJob";
+
+    private static final String SEPARATOR = "\t";
+
+    @Inject
+    private Environment environment;
+
+    @Inject
+    private Provider<GlossaryConfiguration> glossaryConfigurationProvider;
+
+    @Inject
+    private Provider<XWikiContext> xwikiContextProvider;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * The changes of each loaded wiki, as the time of the change indexed by title.
+     */
+    private final Map<String, Map<String, Long>> changes = new HashMap<>();
+
+    /**
+     * @param wikiId the wiki of the glossary entry
+     * @param title the title of the created, renamed or deleted glossary entry
+     */
+    public void recordChange(String wikiId, String title)
+    {
+        if (StringUtils.isNotBlank(title)) {
+            recordChanges(wikiId, Collections.singletonList(title));
+        }
+    }
+
+    /**
+     * @param wikiId the wiki of the glossary entries
+     * @param titles the titles of the created, renamed or deleted glossary entries
+     */
+    public synchronized void recordChanges(String wikiId, Collection<String> titles)
+    {
+        if (!isActivateTransformationJob(wikiId)) {
+            markIncomplete(wikiId);
+            return;
+        }
+
+        long time = System.currentTimeMillis();
+        Map<String, Long> wikiChanges = getChanges(wikiId);
+        List<String> lines = new ArrayList<>();
+        for (String title : titles) {
+            if (StringUtils.isNotBlank(title)) {
+                // Titles are stored one per line
+                String normalizedTitle = StringUtils.normalizeSpace(title);
+                wikiChanges.put(normalizedTitle, time);
+                lines.add(time + SEPARATOR + normalizedTitle);
+            }
+        }
+        write(wikiId, lines, true);
+    }
+
+    /**
+     * @param wikiId the wiki of the glossary entries
+     * @return the titles of the entries changed since the log was last cleared
+     */
+    public synchronized Set<String> getChangedTitles(String wikiId)
+    {
+        return new LinkedHashSet<>(getChanges(wikiId).keySet());
+    }
+
+    /**
+     * @param wikiId the wiki of the glossary entries
+     * @return {@code true} if some changes were not recorded since the log was last cleared, because the
+     *     transformation job was not activated
+     */
+    public synchronized boolean isIncomplete(String wikiId)
+    {
+        return getIncompleteFile(wikiId).exists();
+    }
+
+    /**
+     * Forget the changes recorded before the given time.
+     *
+     * @param wikiId the wiki of the glossary entries
+     * @param before the time (in milliseconds) before which changes should be forgotten
+     */
+    public synchronized void clear(String wikiId, long before)
+    {
+        Map<String, Long> wikiChanges = getChanges(wikiId);
+        if (wikiChanges.values().removeIf(time -> time < before)) {
+            // Compact the log
+            List<String> lines = new ArrayList<>();
+            for (Map.Entry<String, Long> change : wikiChanges.entrySet()) {
+                lines.add(change.getValue() + SEPARATOR + change.getKey());
+            }
+            write(wikiId, lines, false);
+        }
+        FileUtils.deleteQuietly(getIncompleteFile(wikiId));
+    }
+
+    private boolean isActivateTransformationJob(String wikiId)
+    {
+        // The changes may be recorded from another wiki, e.g. by an import or a listener, so the configuration of the
+        // wiki of the entries is read from its context
+        XWikiContext xcontext = this.xwikiContextProvider.get();
+        String currentWikiId = xcontext.getWikiId();
+        try {
+            xcontext.setWikiId(wikiId);
+            return this.glossaryConfigurationProvider.get().isActivateTransformationJob();
+        } finally {
+            xcontext.setWikiId(currentWikiId);
+        }
+    }
+
+    private Map<String, Long> getChanges(String wikiId)
+    {
+        return this.changes.computeIfAbsent(wikiId, this::load);
+    }
+
+    private File getFile(String wikiId)
+    {
+        return new File(new File(this.environment.getPermanentDirectory(), DIRECTORY), wikiId + ".changes");
+    }
+
+    private File getIncompleteFile(String wikiId)
+    {
+        return new File(new File(this.environment.getPermanentDirectory(), DIRECTORY), wikiId + ".incomplete");
+    }
+
+    private void markIncomplete(String wikiId)
+    {
+        File file = getIncompleteFile(wikiId);
+        if (!file.exists()) {
+            try {
+                FileUtils.touch(file);
+            } catch (IOException e) {
+                this.logger.warn("Failed to mark the glossary entries change log as incomplete [{}]", file, e);
+            }
+        }
+    }
+
+    private Map<String, Long> load(String wikiId)
+    {
+        Map<String, Long> wikiChanges = new HashMap<>();
+        File file = getFile(wikiId);
+        if (file.exists()) {
+            try {
+                // Changes are appended, so the last line of a title holds its most recent change
+                for (String line : FileUtils.readLines(file, StandardCharsets.UTF_8)) {
+                    String[] change = StringUtils.split(line, SEPARATOR, 2);
+                    if (change.length == 2) {
+                        wikiChanges.put(change[1], Long.valueOf(change[0]));
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                this.logger.warn("Failed to read the glossary entries change log [{}]", file, e);
+            }
+        }
+        return wikiChanges;
+    }
+
+    private void write(String wikiId, List<String> lines, boolean append)
+    {
+        File file = getFile(wikiId);
+        try {
+            FileUtils.writeLines(file, StandardCharsets.UTF_8.name(), lines, append);
+        } catch (IOException e) {
+            this.logger.warn("Failed to write the glossary entries change log [{}]", file, e);
+        }
+    }
+}
@@ -28,18 +28,21 @@ import javax.inject.Named;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.xwiki.bridge.event.DocumentCreatedEvent;
 import org.xwiki.bridge.event.DocumentDeletedEvent;
 import org.xwiki.bridge.event.DocumentUpdatedEvent;
 import org.xwiki.component.annotation.Component;
-import org.xwiki.contrib.glossary.GlossaryCache;
 import org.xwiki.contrib.glossary.GlossaryConstants;
+import org.xwiki.contrib.glossary.GlossaryImportedEvent;
+import org.xwiki.contrib.glossary.GlossaryImportingEvent;
 import org.xwiki.contrib.glossary.GlossaryModel;
 import org.xwiki.model.EntityType;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.EntityReference;
 import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ObservationContext;
 import org.xwiki.observation.event.Event;
 
 import com.xpn.xwiki.XWikiContext;
@@ -63,10 +66,24 @@ public class GlossaryEntriesEventListener implements EventListener
     public static final String LISTENER_NAME = "glossaryEntriesEventListener";
 
     private static final List<Event> EVENTS = Arrays.asList(new DocumentCreatedEvent(),
-        new DocumentUpdatedEvent(), new DocumentDeletedEvent());
+        new DocumentUpdatedEvent(), new DocumentDeletedEvent(), new GlossaryImportedEvent());
+
+    private static final GlossaryImportingEvent IMPORTING_EVENT = new GlossaryImportingEvent();
+
+    @Inject
+    private Provider<GlossarySnapshotManager> snapshotManagerProvider;
+
+    @Inject
+    private Provider<GlossaryEntriesChangeLog> changeLogProvider;
 
     @Inject
-    private Provider<GlossaryCache> cacheProvider;
+    private Provider<GlossaryEntriesMacroCache> macroCacheProvider;
+
+    @Inject
+    private Provider<ObservationContext> observationContextProvider;
+
+    @Inject
+    private Provider<XWikiContext> xwikiContextProvider;
 
     @Inject
     private GlossaryModel glossaryModel;
@@ -89,6 +106,14 @@ public class GlossaryEntriesEventListener implements EventListener
     @Override
     public void onEvent(Event event, Object source, Object data)
     {
+        if (event instanceof GlossaryImportedEvent) {
+            handleImport((String) source);
+            return;
+        } else if (this.observationContextProvider.get().isIn(IMPORTING_EVENT)) {
+            // The glossary is updated at once at the end of the import
+            return;
+        }
+
         XWikiDocument document = (XWikiDocument) source;
         XWikiContext xWikiContext = (XWikiContext) data;
 
@@ -127,13 +152,20 @@ public class GlossaryEntriesEventListener implements EventListener
     {
         DocumentReference glossaryDocumentReference;
         String glossaryTitle;
-        GlossaryCache cache = this.cacheProvider.get();
+        GlossarySnapshotManager snapshotManager = this.snapshotManagerProvider.get();
+        GlossaryEntriesChangeLog changeLog = this.changeLogProvider.get();
+        GlossaryEntriesMacroCache macroCache = this.macroCacheProvider.get();
+        String wikiId = document.getDocumentReference().getWikiReference().getName();
 
         if (event instanceof DocumentCreatedEvent) {
             glossaryDocumentReference = getLocalizedDocumentReference(document);
             glossaryTitle = document.getTitle();
 
-            cache.set(glossaryTitle, glossaryDocumentReference);
+            String glossaryId = glossaryModel.getGlossaryId(glossaryDocumentReference);
+
+            snapshotManager.addEntry(glossaryId, glossaryTitle, glossaryDocumentReference);
+            macroCache.invalidate(wikiId, glossaryId);
+            changeLog.recordChange(wikiId, glossaryTitle);
         } else if (event instanceof DocumentUpdatedEvent) {
             glossaryDocumentReference = getLocalizedDocumentReference(document);
             glossaryTitle = document.getTitle();
@@ -141,18 +173,42 @@ public class GlossaryEntriesEventListener implements EventListener
             String glossaryOldTitle = document.getOriginalDocument().getTitle();
             String glossaryId = glossaryModel.getGlossaryId(glossaryDocumentReference);
 
-            cache.remove(glossaryOldTitle, glossaryDocumentReference.getLocale(), glossaryId);
-            cache.set(glossaryTitle, glossaryDocumentReference);
+            // Unlike the title, the definition of the entry may have changed
+            macroCache.invalidate(wikiId, glossaryId);
+            // The snapshot and the documents only need to be updated when the title of the entry changes, so that
+            // editing a definition doesn't create a new snapshot version
+            if (!StringUtils.equals(glossaryOldTitle, glossaryTitle)) {
+                snapshotManager.removeEntry(glossaryId, glossaryOldTitle, glossaryDocumentReference);
+                snapshotManager.addEntry(glossaryId, glossaryTitle, glossaryDocumentReference);
+                changeLog.recordChange(wikiId, glossaryOldTitle);
+                changeLog.recordChange(wikiId, glossaryTitle);
+            } else {
+                // The glossary object may have been added by this update, in which case the entry is new. Adding an
+                // entry which is already in the snapshot doesn't modify it.
+                snapshotManager.addEntry(glossaryId, glossaryTitle, glossaryDocumentReference);
+            }
 
         } else if (event instanceof DocumentDeletedEvent) {
             glossaryDocumentReference = getLocalizedDocumentReference(document.getOriginalDocument());
             glossaryTitle = document.getOriginalDocument().getTitle();
 
-            cache.remove(glossaryTitle, glossaryDocumentReference.getLocale(),
-                glossaryModel.getGlossaryId(glossaryDocumentReference));
+            String glossaryId = glossaryModel.getGlossaryId(glossaryDocumentReference);
+
+            snapshotManager.removeEntry(glossaryId, glossaryTitle, glossaryDocumentReference);
+            macroCache.invalidate(wikiId, glossaryId);
+            changeLog.recordChange(wikiId, glossaryTitle);
         }
     }
 
+    private void handleImport(String glossaryId)
+    {
+        // The titles of the imported entries are recorded in the change log by the importer, batch after batch
+        String wikiId = this.xwikiContextProvider.get().getWikiId();
+
+        this.snapshotManagerProvider.get().reset(wikiId);
+        this.macroCacheProvider.get().invalidate(wikiId, glossaryId);
+    }
+
     private DocumentReference getLocalizedDocumentReference(XWikiDocument document)
     {
         DocumentReference glossaryDocumentReference = document.getDocumentReferenceWithLocale();
@@ -24,17 +24,19 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
-import org.xwiki.bridge.DocumentAccessBridge;
-import org.xwiki.bridge.DocumentModelBridge;
+import org.apache.commons.lang3.StringUtils;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.contrib.glossary.GlossaryConfiguration;
 import org.xwiki.contrib.glossary.GlossaryEntriesMacroParameters;
@@ -44,14 +46,18 @@ import org.xwiki.model.reference.EntityReferenceSerializer;
 import org.xwiki.rendering.block.Block;
 import org.xwiki.rendering.block.GroupBlock;
 import org.xwiki.rendering.block.HeaderBlock;
+import org.xwiki.rendering.block.XDOM;
 import org.xwiki.rendering.macro.AbstractMacro;
 import org.xwiki.rendering.macro.MacroExecutionException;
 import org.xwiki.rendering.parser.Parser;
 import org.xwiki.rendering.transformation.MacroTransformationContext;
 import org.xwiki.rendering.util.IdGenerator;
 import org.xwiki.rendering.util.ParserUtils;
+import org.xwiki.security.authorization.ContextualAuthorizationManager;
+import org.xwiki.security.authorization.Right;
 
 import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.plugin.skinx.SkinExtensionPluginApi;
 
 /**
  * Display every entry in a glossary.
@@ -91,11 +97,16 @@ public class GlossaryEntriesMacro extends AbstractMacro<GlossaryEntriesMacroPara
      */
     private static final String DESCRIPTION = "Lists all glossary entries from a glossary, as a list";
 
+    /**
+     * The skin extension loading the definitions of the entries when the macro is used in lazy mode.
+     */
+    private static final String SKIN_EXTENSION = "Glossary.Code.SkinExtension";
+
     @Inject
     private GlossaryModel glossaryModel;
 
     @Inject
-    private DocumentAccessBridge documentAccessBridge;
+    private GlossaryMetrics metrics;
 
     @Inject
     private Provider<XWikiContext> xWikiContextProvider;
@@ -110,6 +121,12 @@ public class GlossaryEntriesMacro extends AbstractMacro<GlossaryEntriesMacroPara
     @Named("plain/1.0")
     private Parser plainTextParser;
 
+    @Inject
+    private GlossaryEntriesMacroCache macroCache;
+
+    @Inject
+    private ContextualAuthorizationManager authorizationManager;
+
     private ParserUtils parserUtils = new ParserUtils();
 
     public GlossaryEntriesMacro()
@@ -124,10 +141,20 @@ public class GlossaryEntriesMacro extends AbstractMacro<GlossaryEntriesMacroPara
     @Override
     public List<Block> execute(GlossaryEntriesMacroParameters parameters, String content,
         MacroTransformationContext context) throws MacroExecutionException
+    {
+        long start = System.nanoTime();
+        try {
+            return executeMacro(parameters, context);
+        } finally {
+            this.metrics.record(GlossaryMetrics.ENTRIES_MACRO, start);
+        }
+    }
+
+    private List<Block> executeMacro(GlossaryEntriesMacroParameters parameters, MacroTransformationContext context)
+        throws MacroExecutionException
     {
         XWikiContext xWikiContext = this.xWikiContextProvider.get();
         Locale locale = xWikiContext.getLocale();
-        IdGenerator idGenerator = new IdGenerator();
         List<Block> blocks = new ArrayList<>();
 
         String glossaryId = parameters.getGlossaryId();
@@ -139,43 +166,47 @@ public class GlossaryEntriesMacro extends AbstractMacro<GlossaryEntriesMacroPara
         String glossaryEntriesContextKey = String.format(GLOSSARY_ENTRIES_CONTEXT_KEY, glossaryId);
 
         try {
-            Map<Locale, Map<String, DocumentReference>> entriesMap = glossaryModel.getGlossaryEntries(glossaryId);
+            // Compute the cache key first so that blocks generated while the glossary is modified are not cached
+            // under the new version of the glossary
+            String cacheKey = macroCache.getCacheKey(xWikiContext.getWikiId(), glossaryId, locale,
+                parameters.getEntryNameHeaderLevel(), parameters.isLazy(), parameters.getLetterRange(),
+                parameters.getOffset(), parameters.getLimit());
+
+            // The snapshot keeps the entries of each glossary already sorted by ascending title
+            List<Map.Entry<String, DocumentReference>> allEntries =
+                glossaryModel.getGlossarySnapshot().getSortedEntries(locale, glossaryId);
+            List<Map.Entry<String, DocumentReference>> entries = filterEntries(allEntries.stream()
+                .filter(entry -> authorizationManager.hasAccess(Right.VIEW, entry.getValue()))
+                .collect(Collectors.toList()), parameters);
 
-            if (entriesMap.containsKey(locale) && entriesMap.get(locale).size() > 0
+            if (!entries.isEmpty()
                 && !((Boolean) xWikiContext.getOrDefault(glossaryEntriesContextKey, false))) {
                 // Drop a key in the context indicating that glossary references to this glossary should be rendered
-                // as anchors instead of wiki links.
-                xWikiContext.put(glossaryAnchorContextKey, true);
+                // as anchors instead of wiki links. This is only possible when the whole glossary is displayed, as
+                // references to the entries of other pages or letter ranges would otherwise point to nothing.
+                if (entries.size() == allEntries.size()) {
+                    xWikiContext.put(glossaryAnchorContextKey, true);
+                }
                 // Also drop another key indicating that the glossary entries are already displayed, in order to avoid
                 // any nested display
                 xWikiContext.put(glossaryEntriesContextKey, true);
 
-                // Sort the glossary entries by ascending title
-                List<Map.Entry<String, DocumentReference>> entries = new ArrayList<>(entriesMap.get(locale).entrySet());
-                entries.sort(Map.Entry.comparingByKey());
-
-                for (Map.Entry<String, DocumentReference> entry : entries) {
-                    Map<String, String> nameParameters = new HashMap<String, String>() {
-                        {
-                            put("id", idGenerator.generateUniqueId(GLOSSARY_ENTRY_ID_PREFIX,
-                                entityReferenceSerializer.serialize(entry.getValue())));
-                            put("class", "glossary-entries-entry-name");
-                        }
-                    };
-                    StringReader nameReader = new StringReader(entry.getKey());
-                    List<Block> nameBlocks = plainTextParser.parse(nameReader).getChildren();
-                    parserUtils.removeTopLevelParagraph(nameBlocks);
-                    HeaderBlock nameBlock =
-                        new HeaderBlock(nameBlocks, parameters.getEntryNameHeaderLevel(), nameParameters);
-                    nameReader.close();
-
-                    DocumentModelBridge glossaryEntryDocument =
-                        documentAccessBridge.getTranslatedDocumentInstance(entry.getValue());
-                    Block definitionBlock = new GroupBlock(glossaryEntryDocument.getXDOM().getChildren(),
-                        Collections.singletonMap("class", "glossary-entries-entry-definition"));
-
-                    blocks.add(new GroupBlock(Arrays.asList(nameBlock, definitionBlock),
-                        Collections.singletonMap("class", "glossary-entries-entry")));
+                if (parameters.isLazy()) {
+                    // The definitions are fetched by the browser
+                    ((SkinExtensionPluginApi) xWikiContext.getWiki().getPluginApi("jsx", xWikiContext))
+                        .use(SKIN_EXTENSION);
+                }
+
+                // The cached result is only used when it displays exactly the entries the current user is allowed to
+                // view, so that entries protected from the current user are never leaked.
+                List<DocumentReference> entryReferences =
+                    entries.stream().map(Map.Entry::getValue).collect(Collectors.toList());
+                GlossaryEntriesMacroCache.CachedResult cachedResult = macroCache.get(cacheKey);
+                if (cachedResult != null && cachedResult.getEntryReferences().equals(entryReferences)) {
+                    blocks = cachedResult.getBlocks();
+                } else {
+                    blocks = createEntriesBlocks(entries, parameters, locale);
+                    macroCache.set(cacheKey, new GlossaryEntriesMacroCache.CachedResult(entryReferences, blocks));
                 }
             }
 
@@ -187,6 +218,96 @@ public class GlossaryEntriesMacro extends AbstractMacro<GlossaryEntriesMacroPara
         return blocks;
     }
 
+    private List<Block> createEntriesBlocks(List<Map.Entry<String, DocumentReference>> entries,
+        GlossaryEntriesMacroParameters parameters, Locale locale) throws Exception
+    {
+        IdGenerator idGenerator = new IdGenerator();
+        List<Block> blocks = new ArrayList<>();
+
+        Map<DocumentReference, XDOM> definitions;
+        if (parameters.isLazy()) {
+            definitions = Collections.emptyMap();
+        } else {
+            // Load all the definitions at once rather than one entry document after the other
+            definitions = glossaryModel.getGlossaryContents(
+                entries.stream().map(Map.Entry::getValue).collect(Collectors.toList()), locale);
+        }
+
+        for (Map.Entry<String, DocumentReference> entry : entries) {
+            String serializedReference = entityReferenceSerializer.serialize(entry.getValue());
+            Map<String, String> nameParameters = new HashMap<String, String>() {
+                {
+                    put("id", idGenerator.generateUniqueId(GLOSSARY_ENTRY_ID_PREFIX, serializedReference));
+                    put("class", "glossary-entries-entry-name");
+                }
+            };
+            StringReader nameReader = new StringReader(entry.getKey());
+            List<Block> nameBlocks = plainTextParser.parse(nameReader).getChildren();
+            parserUtils.removeTopLevelParagraph(nameBlocks);
+            HeaderBlock nameBlock = new HeaderBlock(nameBlocks, parameters.getEntryNameHeaderLevel(), nameParameters);
+            nameReader.close();
+
+            Block definitionBlock;
+            if (parameters.isLazy()) {
+                Map<String, String> placeholderParameters = new LinkedHashMap<>();
+                placeholderParameters.put("class",
+                    "glossary-entries-entry-definition glossary-entries-entry-placeholder");
+                placeholderParameters.put("data-glossary-entry", serializedReference);
+                definitionBlock = new GroupBlock(placeholderParameters);
+            } else {
+                XDOM definition = definitions.get(entry.getValue());
+                List<Block> definitionBlocks =
+                    (definition != null) ? definition.getChildren() : Collections.emptyList();
+                definitionBlock = new GroupBlock(definitionBlocks,
+                    Collections.singletonMap("class", "glossary-entries-entry-definition"));
+            }
+
+            blocks.add(new GroupBlock(Arrays.asList(nameBlock, definitionBlock),
+                Collections.singletonMap("class", "glossary-entries-entry")));
+        }
+
+        return blocks;
+    }
+
+    private List<Map.Entry<String, DocumentReference>> filterEntries(
+        List<Map.Entry<String, DocumentReference>> entries, GlossaryEntriesMacroParameters parameters)
+        throws MacroExecutionException
+    {
+        Stream<Map.Entry<String, DocumentReference>> stream = entries.stream();
+
+        String letterRange = normalizeInitial(StringUtils.deleteWhitespace(parameters.getLetterRange()));
+        if (StringUtils.isNotEmpty(letterRange)) {
+            char from;
+            char to;
+            if (letterRange.length() == 1) {
+                from = letterRange.charAt(0);
+                to = from;
+            } else if (letterRange.length() == 3 && letterRange.charAt(1) == '-') {
+                from = letterRange.charAt(0);
+                to = letterRange.charAt(2);
+            } else {
+                throw new MacroExecutionException(
+                    String.format("Invalid letter range [%s]", parameters.getLetterRange()));
+            }
+            stream = stream.filter(entry -> {
+                String initial = normalizeInitial(StringUtils.left(entry.getKey(), 1));
+                return !initial.isEmpty() && initial.charAt(0) >= from && initial.charAt(0) <= to;
+            });
+        }
+
+        stream = stream.skip(Math.max(0, parameters.getOffset()));
+        if (parameters.getLimit() >= 0) {
+            stream = stream.limit(parameters.getLimit());
+        }
+
+        return stream.collect(Collectors.toList());
+    }
+
+    private String normalizeInitial(String value)
+    {
+        return StringUtils.upperCase(StringUtils.stripAccents(value), Locale.ROOT);
+    }
+
     @Override
     public boolean supportsInlineMode()
     {
@@ -0,0 +1,190 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.internal;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.eviction.LRUEvictionConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.rendering.block.Block;
+
+/**
+ * Cache of the blocks generated by the {@link GlossaryEntriesMacro}. Each glossary has a version which is increased
+ * by {@link GlossaryEntriesEventListener} whenever one of its entries is modified, and which is part of the cache keys
+ * so that cached results are never served once the glossary changed.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+@Component(roles = GlossaryEntriesMacroCache.class)
+@Singleton
+public class GlossaryEntriesMacroCache implements Initializable, Disposable
+{
+    /**
+     * The blocks generated for a list of glossary entries.
+     */
+    public static class CachedResult
+    {
+        private final List<DocumentReference> entryReferences;
+
+        private final List<Block> blocks;
+
+        /**
+         * @param entryReferences the references of the displayed entries, in display order
+         * @param blocks the generated blocks
+         */
+        public CachedResult(List<DocumentReference> entryReferences, List<Block> blocks)
+        {
+            this.entryReferences = entryReferences;
+            this.blocks = blocks;
+        }
+
+        /**
+         * @return the references of the displayed entries, in display order
+         */
+        public List<DocumentReference> getEntryReferences()
+        {
+            return this.entryReferences;
+        }
+
+        /**
+         * @return the generated blocks
+         */
+        public List<Block> getBlocks()
+        {
+            return this.blocks;
+        }
+    }
+
+    /**
+     * Identifier for the glossary entries macro cache.
+     */
+    private static final String NAME = "cache.glossaryEntriesMacroCache";
+
+    @Inject
+    private CacheManager cacheManager;
+
+    private Cache<CachedResult> cache;
+
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        try {
+            CacheConfiguration cacheConfiguration = new CacheConfiguration();
+            cacheConfiguration.setConfigurationId(NAME);
+            LRUEvictionConfiguration lru = new LRUEvictionConfiguration();
+            lru.setMaxEntries(100);
+            cacheConfiguration.put(LRUEvictionConfiguration.CONFIGURATIONID, lru);
+            this.cache = this.cacheManager.createNewCache(cacheConfiguration);
+        } catch (CacheException e) {
+            throw new InitializationException("Failed to initialize the glossary entries macro cache", e);
+        }
+    }
+
+    @Override
+    public void dispose()
+    {
+        if (this.cache != null) {
+            this.cache.dispose();
+        }
+    }
+
+    /**
+     * @param wikiId the wiki of the glossary
+     * @param glossaryId the ID of the glossary
+     * @param parameters the other parameters the generated blocks depend on
+     * @return the cache key, including the current version of the glossary; it should be computed before generating
+     *     the blocks so that they are not stored under a newer version if the glossary is modified in the meantime
+     */
+    public String getCacheKey(String wikiId, String glossaryId, Object... parameters)
+    {
+        StringBuilder key = new StringBuilder();
+        key.append(wikiId).append(':').append(glossaryId).append('/').append(getVersion(wikiId, glossaryId));
+        for (Object parameter : parameters) {
+            key.append('/').append(parameter);
+        }
+        return key.toString();
+    }
+
+    /**
+     * @param key the cache key
+     * @return the cached result, or {@code null} if there is none
+     */
+    public CachedResult get(String key)
+    {
+        CachedResult result = this.cache.get(key);
+        // The returned blocks are inserted in the rendered document, so never give away the cached instances
+        return (result != null) ? new CachedResult(result.getEntryReferences(), cloneBlocks(result.getBlocks()))
+            : null;
+    }
+
+    /**
+     * @param key the cache key
+     * @param result the result to cache
+     */
+    public void set(String key, CachedResult result)
+    {
+        this.cache.set(key, new CachedResult(result.getEntryReferences(), cloneBlocks(result.getBlocks())));
+    }
+
+    /**
+     * Increase the version of a glossary, which makes all the results cached for it stale.
+     *
+     * @param wikiId the wiki of the glossary
+     * @param glossaryId the ID of the glossary
+     */
+    public void invalidate(String wikiId, String glossaryId)
+    {
+        this.versions.computeIfAbsent(getVersionKey(wikiId, glossaryId), key -> new AtomicLong()).incrementAndGet();
+    }
+
+    private long getVersion(String wikiId, String glossaryId)
+    {
+        AtomicLong version = this.versions.get(getVersionKey(wikiId, glossaryId));
+        return (version != null) ? version.get() : 0;
+    }
+
+    private String getVersionKey(String wikiId, String glossaryId)
+    {
+        return wikiId + ':' + glossaryId;
+    }
+
+    private List<Block> cloneBlocks(List<Block> blocks)
+    {
+        return blocks.stream().map(Block::clone).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.internal;
+
+import java.util.Locale;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.glossary.GlossaryEntriesMatcher;
+import org.xwiki.contrib.glossary.GlossaryException;
+import org.xwiki.contrib.glossary.GlossaryModel;
+import org.xwiki.contrib.glossary.GlossarySnapshot;
+
+/**
+ * Gives access to the compiled {@link GlossaryEntriesMatcher} of the current wiki. Matchers are compiled lazily and
+ * memoized by the current {@link GlossarySnapshot} of the wiki, which only compiles again the matchers of the glossary
+ * and locale affected by a change.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+@Component(roles = GlossaryEntriesMatcherManager.class)
+@Singleton
+public class GlossaryEntriesMatcherManager
+{
+    @Inject
+    private GlossaryModel glossaryModel;
+
+    /**
+     * @param locale the locale of the entries to match
+     * @return the matcher of the entries of all the glossaries of the current wiki in the given locale
+     * @throws GlossaryException when the glossary entries of the current wiki cannot be loaded
+     */
+    public GlossaryEntriesMatcher getMatcher(Locale locale) throws GlossaryException
+    {
+        return this.glossaryModel.getGlossarySnapshot().getMatcher(locale);
+    }
+
+    /**
+     * @param locale the locale of the entries to match
+     * @param glossaryId the ID of the glossary
+     * @return the matcher of the entries of the given glossary of the current wiki in the given locale
+     * @throws GlossaryException when the glossary entries of the current wiki cannot be loaded
+     */
+    public GlossaryEntriesMatcher getMatcher(Locale locale, String glossaryId) throws GlossaryException
+    {
+        return this.glossaryModel.getGlossarySnapshot().getMatcher(locale, glossaryId);
+    }
+}
@@ -0,0 +1,429 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.context.concurrent.ExecutionContextRunnable;
+import org.xwiki.contrib.glossary.GlossaryConfiguration;
+import org.xwiki.contrib.glossary.GlossaryEntriesTransformer;
+import org.xwiki.contrib.glossary.GlossaryEntriesTransformerJobRequest;
+import org.xwiki.environment.Environment;
+import org.xwiki.job.AbstractJob;
+import org.xwiki.job.DefaultJobStatus;
+import org.xwiki.localization.ContextualLocalizationManager;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.SpaceReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+import org.xwiki.rendering.block.XDOM;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
+
+/**
+ * Insert references to glossary entries in the documents of the spaces configured with
+ * {@link GlossaryConfiguration#getTransformationJobIncludeSpaces()}. Unless a full run is requested, only the
+ * documents modified since the last run and the documents containing the title of a glossary entry changed since the
+ * last run are processed. Documents are processed in batches, ordered by name, by a pool of workers. The name of the
+ * last document of each completed batch is saved in the permanent directory so that a job which didn't finish
+ * resumes after it on next run.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+@Component
+@Named(GlossaryEntriesTransformerJobRequest.JOB_TYPE)
+public class GlossaryEntriesTransformerJob
+    extends AbstractJob<GlossaryEntriesTransformerJobRequest, DefaultJobStatus<GlossaryEntriesTransformerJobRequest>>
+{
+    private static final String CHECKPOINT_DIRECTORY = "glossary/transformationJob";
+
+    /**
+     * Above this number of changed entries, looking for their titles in the content of documents costs more than
+     * transforming all the documents.
+     */
+    private static final int MAX_CHANGED_TITLES = 100;
+
+    private static final String LAST_PAGE = "lastPage";
+
+    private static final String LAST_RUN = "lastRun";
+
+    private static final String LAST_RUN_EXTENSION = ".lastRun";
+
+    private static final String START_EXTENSION = ".start";
+
+    private static final String LIKE_ANY = "%";
+
+    private static final String LIKE_ESCAPE = "!";
+
+    @Inject
+    private GlossaryConfiguration glossaryConfiguration;
+
+    @Inject
+    private GlossaryEntriesTransformer glossaryEntriesTransformer;
+
+    @Inject
+    private QueryManager queryManager;
+
+    @Inject
+    private Provider<XWikiContext> xwikiContextProvider;
+
+    @Inject
+    @Named("currentmixed")
+    private DocumentReferenceResolver<String> documentReferenceResolver;
+
+    @Inject
+    @Named("local")
+    private EntityReferenceSerializer<String> localSerializer;
+
+    @Inject
+    private ContextualLocalizationManager localizationManager;
+
+    @Inject
+    private Environment environment;
+
+    @Inject
+    private GlossaryEntriesChangeLog changeLog;
+
+    /**
+     * The filter restricting the documents to transform, when the run is incremental.
+     */
+    private String incrementalFilter;
+
+    private Map<String, Object> incrementalParameters = new HashMap<>();
+
+    @Override
+    public String getType()
+    {
+        return GlossaryEntriesTransformerJobRequest.JOB_TYPE;
+    }
+
+    @Override
+    protected void runInternal() throws Exception
+    {
+        String wikiId = this.request.getWiki();
+        initializeContext();
+
+        List<SpaceReference> spaceReferences = this.glossaryConfiguration.getTransformationJobIncludeSpaces();
+        if (!this.glossaryConfiguration.isActivateTransformationJob() || spaceReferences.isEmpty()) {
+            this.logger.info("The glossary transformation job is not activated in wiki [{}]", wikiId);
+            return;
+        }
+
+        int threads = (this.request.getThreads() > 0) ? this.request.getThreads()
+            : this.glossaryConfiguration.getTransformationJobThreads();
+        int batchSize = (this.request.getBatchSize() > 0) ? this.request.getBatchSize()
+            : this.glossaryConfiguration.getTransformationJobBatchSize();
+
+        // When resuming, keep the start time of the interrupted run so that the documents it already processed are
+        // not considered as processed after the changes made meanwhile.
+        String lastPage = readCheckpoint();
+        Long start = (lastPage != null) ? readTime(START_EXTENSION) : null;
+        if (start != null) {
+            this.logger.info("Resuming the glossary transformation of wiki [{}] after document [{}]", wikiId,
+                lastPage);
+        } else {
+            lastPage = null;
+            start = System.currentTimeMillis();
+            writeTime(START_EXTENSION, start);
+        }
+        initializeIncrementalFilter();
+
+        long pageCount = countPages(spaceReferences, lastPage);
+        this.progressManager.pushLevelProgress((int) ((pageCount + batchSize - 1) / batchSize), this);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads),
+            new BasicThreadFactory.Builder().namingPattern("Glossary transformation worker %d").daemon(true).build());
+        try {
+            List<String> pages = getPages(spaceReferences, lastPage, batchSize);
+            while (!pages.isEmpty()) {
+                this.progressManager.startStep(this);
+                transformPages(pages, executor);
+                lastPage = pages.get(pages.size() - 1);
+                writeCheckpoint(lastPage);
+                this.progressManager.endStep(this);
+
+                pages = getPages(spaceReferences, lastPage, batchSize);
+            }
+            deleteCheckpoint();
+            writeTime(LAST_RUN_EXTENSION, start);
+            this.changeLog.clear(wikiId, start);
+        } finally {
+            executor.shutdownNow();
+            this.progressManager.popLevelProgress(this);
+        }
+    }
+
+    private void initializeIncrementalFilter()
+    {
+        Long lastRun = readTime(LAST_RUN_EXTENSION);
+        if (this.request.isFull() || lastRun == null) {
+            return;
+        }
+
+        if (this.changeLog.isIncomplete(this.request.getWiki())) {
+            this.logger.info("Glossary entries changed while the job was not activated, transforming all the "
+                + "documents");
+            return;
+        }
+
+        Set<String> changedTitles = this.changeLog.getChangedTitles(this.request.getWiki());
+        if (changedTitles.size() > MAX_CHANGED_TITLES) {
+            this.logger.info("[{}] glossary entries changed since the last run, transforming all the documents",
+                changedTitles.size());
+            return;
+        }
+
+        // The documents saved by the job itself are already up to date
+        StringBuilder filter = new StringBuilder(
+            " and ((doc.date > :lastRun and (doc.comment is null or doc.comment <> :saveComment))");
+        this.incrementalParameters.put(LAST_RUN, new Date(lastRun));
+        this.incrementalParameters.put("saveComment", getSaveComment());
+        int i = 0;
+        for (String title : changedTitles) {
+            String parameter = "title" + i++;
+            filter.append(" or doc.content like :").append(parameter).append(" escape '").append(LIKE_ESCAPE)
+                .append('\'');
+            this.incrementalParameters.put(parameter, LIKE_ANY + escapeLike(title) + LIKE_ANY);
+        }
+        this.incrementalFilter = filter.append(')').toString();
+    }
+
+    private static String escapeLike(String value)
+    {
+        // The escape character has to be escaped first
+        String escapedValue = StringUtils.replace(value, LIKE_ESCAPE, LIKE_ESCAPE + LIKE_ESCAPE);
+        escapedValue = StringUtils.replace(escapedValue, LIKE_ANY, LIKE_ESCAPE + LIKE_ANY);
+        return StringUtils.replace(escapedValue, "_", LIKE_ESCAPE + "_");
+    }
+
+    private String getSaveComment()
+    {
+        return this.localizationManager.getTranslationPlain("glossary.transformationJob.save.message");
+    }
+
+    private void initializeContext()
+    {
+        XWikiContext xcontext = this.xwikiContextProvider.get();
+        xcontext.setWikiId(this.request.getWiki());
+        if (this.request.getUserReference() != null) {
+            xcontext.setUserReference(this.request.getUserReference());
+        }
+    }
+
+    private void transformPages(List<String> pages, ExecutorService executor) throws InterruptedException
+    {
+        List<Future<?>> futures = new ArrayList<>(pages.size());
+        for (String page : pages) {
+            futures.add(executor.submit(new ExecutionContextRunnable(() -> {
+                initializeContext();
+                transformPage(page);
+            }, this.componentManager)));
+        }
+
+        // Wait for the whole batch before saving the checkpoint, so that no document is skipped when resuming.
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                this.logger.error("Failed to transform a document of the batch", e.getCause());
+            }
+        }
+    }
+
+    private void transformPage(String page)
+    {
+        XWikiContext xcontext = this.xwikiContextProvider.get();
+        DocumentReference documentReference = this.documentReferenceResolver.resolve(page);
+
+        try {
+            XWikiDocument document = xcontext.getWiki().getDocument(documentReference, xcontext).clone();
+
+            // Check if the page has no objects that could exclude it from being transformed
+            for (EntityReference classReference : this.glossaryConfiguration.excludedClassesFromTransformations()) {
+                if (!document.getXObjects(classReference).isEmpty()) {
+                    return;
+                }
+            }
+
+            List<Locale> locales = new ArrayList<>(document.getTranslationLocales(xcontext));
+            if (!Locale.ROOT.equals(document.getDefaultLocale())) {
+                locales.add(document.getDefaultLocale());
+            }
+            this.logger.debug("Page: [{}] - Locales: [{}]", documentReference, locales);
+
+            for (Locale locale : locales) {
+                XWikiDocument translatedDocument = document.getTranslatedDocument(locale, xcontext);
+                if (translatedDocument != document) {
+                    translatedDocument = translatedDocument.clone();
+                }
+
+                XDOM xdom = translatedDocument.getXDOM();
+                if (this.glossaryEntriesTransformer.transformGlossaryEntries(xdom, translatedDocument.getSyntax(),
+                    locale)) {
+                    translatedDocument.setContent(xdom);
+                    if (!this.glossaryConfiguration.isIncrementVersionOnTransformationJob()) {
+                        translatedDocument.setContentDirty(false);
+                        translatedDocument.setMetaDataDirty(false);
+                    }
+                    xcontext.getWiki().saveDocument(translatedDocument, getSaveComment(), true, xcontext);
+                }
+            }
+        } catch (Exception e) {
+            this.logger.error("Failed to transform glossary entries in document [{}]", documentReference, e);
+        }
+    }
+
+    private List<String> getPages(List<SpaceReference> spaceReferences, String lastPage, int batchSize)
+        throws QueryException
+    {
+        return createPagesQuery("select distinct doc.fullName", spaceReferences, lastPage,
+            " order by doc.fullName").setLimit(batchSize).execute();
+    }
+
+    private long countPages(List<SpaceReference> spaceReferences, String lastPage) throws QueryException
+    {
+        List<Long> count =
+            createPagesQuery("select count(distinct doc.fullName)", spaceReferences, lastPage, "").execute();
+        return count.isEmpty() ? 0 : count.get(0);
+    }
+
+    private Query createPagesQuery(String select, List<SpaceReference> spaceReferences, String lastPage,
+        String orderBy) throws QueryException
+    {
+        StringBuilder statement = new StringBuilder(select).append(" from XWikiDocument as doc where (");
+        for (int i = 0; i < spaceReferences.size(); i++) {
+            if (i > 0) {
+                statement.append(" or ");
+            }
+            statement.append("doc.fullName like :like").append(i);
+        }
+        statement.append(')');
+        if (lastPage != null) {
+            statement.append(" and doc.fullName > :lastPage");
+        }
+        if (this.incrementalFilter != null) {
+            statement.append(this.incrementalFilter);
+        }
+        statement.append(orderBy);
+
+        Query query = this.queryManager.createQuery(statement.toString(), Query.HQL);
+        for (int i = 0; i < spaceReferences.size(); i++) {
+            query.bindValue("like" + i, this.localSerializer.serialize(spaceReferences.get(i)) + ".%");
+        }
+        if (lastPage != null) {
+            query.bindValue(LAST_PAGE, lastPage);
+        }
+        if (this.incrementalFilter != null) {
+            for (Map.Entry<String, Object> parameter : this.incrementalParameters.entrySet()) {
+                query.bindValue(parameter.getKey(), parameter.getValue());
+            }
+        }
+        return query.setWiki(this.request.getWiki());
+    }
+
+    private File getFile(String extension)
+    {
+        return new File(new File(this.environment.getPermanentDirectory(), CHECKPOINT_DIRECTORY),
+            this.request.getWiki() + extension);
+    }
+
+    private File getCheckpointFile()
+    {
+        return getFile(".checkpoint");
+    }
+
+    private Long readTime(String extension)
+    {
+        File file = getFile(extension);
+        if (file.exists()) {
+            try {
+                return Long.valueOf(FileUtils.readFileToString(file, StandardCharsets.UTF_8).trim());
+            } catch (IOException | NumberFormatException e) {
+                this.logger.warn("Failed to read the glossary transformation job time [{}]", file, e);
+            }
+        }
+        return null;
+    }
+
+    private void writeTime(String extension, long time)
+    {
+        File file = getFile(extension);
+        try {
+            FileUtils.writeStringToFile(file, String.valueOf(time), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            this.logger.warn("Failed to write the glossary transformation job time [{}]", file, e);
+        }
+    }
+
+    private String readCheckpoint()
+    {
+        File file = getCheckpointFile();
+        if (file.exists()) {
+            try {
+                return StringUtils.defaultIfEmpty(FileUtils.readFileToString(file, StandardCharsets.UTF_8), null);
+            } catch (IOException e) {
+                this.logger.warn("Failed to read the glossary transformation job checkpoint [{}]", file, e);
+            }
+        }
+        return null;
+    }
+
+    private void writeCheckpoint(String lastPage)
+    {
+        File file = getCheckpointFile();
+        try {
+            FileUtils.writeStringToFile(file, lastPage, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            this.logger.warn("Failed to write the glossary transformation job checkpoint [{}]", file, e);
+        }
+    }
+
+    private void deleteCheckpoint()
+    {
+        FileUtils.deleteQuietly(getCheckpointFile());
+    }
+}
@@ -0,0 +1,571 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.internal;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.glossary.GlossaryConstants;
+import org.xwiki.contrib.glossary.GlossaryException;
+import org.xwiki.contrib.glossary.GlossaryImportedEvent;
+import org.xwiki.contrib.glossary.GlossaryImportingEvent;
+import org.xwiki.localization.ContextualLocalizationManager;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.SpaceReference;
+import org.xwiki.model.reference.SpaceReferenceResolver;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.security.authorization.ContextualAuthorizationManager;
+import org.xwiki.security.authorization.Right;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiDocument;
+
+/**
+ * Import glossary entries in bulk, either from a CSV file using the same format as {@link GlossaryCSVExporter} or from
+ * a TBX (TermBase eXchange) file. Files are streamed, entries being read and saved by batches so that the memory used
+ * doesn't depend on the size of the file.
+ * <p>
+ * The import is surrounded by a {@link GlossaryImportingEvent} and a {@link GlossaryImportedEvent}, so that listeners
+ * skip the saved documents and update the glossary state only once, at the end of the import.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+@Component(roles = GlossaryImporter.class)
+@Singleton
+public class GlossaryImporter
+{
+    private static final int BATCH_SIZE = 100;
+
+    private static final String DEFAULT_LANGUAGE = "default";
+
+    private static final String TERM_ENTRY = "termEntry";
+
+    private static final String CONCEPT_ENTRY = "conceptEntry";
+
+    private static final String LANG_SET = "langSet";
+
+    private static final String LANG_SEC = "langSec";
+
+    @Inject
+    private Provider<XWikiContext> xwikiContextProvider;
+
+    @Inject
+    private SpaceReferenceResolver<String> spaceReferenceResolver;
+
+    @Inject
+    @Named("local")
+    private EntityReferenceSerializer<String> entityReferenceSerializer;
+
+    @Inject
+    private QueryManager queryManager;
+
+    @Inject
+    private ObservationManager observationManager;
+
+    @Inject
+    private GlossaryEntriesChangeLog changeLog;
+
+    @Inject
+    private ContextualAuthorizationManager authorizationManager;
+
+    @Inject
+    private ContextualLocalizationManager localizationManager;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * Read the next entry of an imported file.
+     */
+    @FunctionalInterface
+    private interface EntryReader
+    {
+        /**
+         * @return the next entry, or {@code null} when there are no more entries
+         */
+        ImportedEntry read() throws IOException, XMLStreamException, GlossaryException;
+    }
+
+    /**
+     * An imported entry, with its title and definition for each locale. {@link Locale#ROOT} is used for the default
+     * document of the entry.
+     */
+    private static final class ImportedEntry
+    {
+        private String id;
+
+        private Locale defaultLocale;
+
+        private final Map<Locale, String[]> translations = new LinkedHashMap<>();
+    }
+
+    /**
+     * Import the entries of a CSV file, using the format of the glossary export: the first column holds the ID of the
+     * entry and, for each language, a column holds the title and the next one the definition.
+     *
+     * @param glossaryId the ID of the glossary in which to import the entries
+     * @param reader the CSV content
+     * @return the number of imported entries
+     * @throws GlossaryException when the import fails
+     */
+    public int importCSV(String glossaryId, Reader reader) throws GlossaryException
+    {
+        CSVReader csv = new CSVReader(reader);
+        try {
+            List<String> header = csv.readRecord();
+            if (header == null) {
+                return 0;
+            }
+            List<Locale> locales = new ArrayList<>();
+            Map<String, Locale> localesByName = getLocalesByName();
+            for (int i = 1; i + 1 < header.size(); i += 2) {
+                String column = StringUtils.trim(header.get(i));
+                Locale locale = localesByName.get(column);
+                if (locale == null) {
+                    throw new GlossaryException(String.format("Unknown language column [%s]", column), null);
+                }
+                locales.add(locale);
+            }
+
+            return doImport(glossaryId, () -> {
+                List<String> values = csv.readRecord();
+                while (values != null && StringUtils.isBlank(String.join("", values))) {
+                    values = csv.readRecord();
+                }
+                if (values == null) {
+                    return null;
+                }
+                ImportedEntry entry = new ImportedEntry();
+                entry.id = StringUtils.trim(values.get(0));
+                for (int i = 0; i < locales.size() && 2 * i + 1 < values.size(); i++) {
+                    String title = values.get(2 * i + 1);
+                    if (StringUtils.isNotBlank(title)) {
+                        String definition = (2 * i + 2 < values.size()) ? values.get(2 * i + 2) : "";
+                        entry.translations.put(locales.get(i), new String[] {title.trim(), definition});
+                    }
+                }
+                return entry;
+            });
+        } catch (IOException e) {
+            throw new GlossaryException("Failed to read the imported CSV file", e);
+        }
+    }
+
+    /**
+     * Import the entries of a TBX file. Each term entry becomes a glossary entry: the term of its first language is
+     * used for the default document of the glossary entry, and the terms of the other languages for its translations.
+     * Definitions are taken from the {@code descrip} elements of type {@code definition}.
+     *
+     * @param glossaryId the ID of the glossary in which to import the entries
+     * @param inputStream the TBX content
+     * @return the number of imported entries
+     * @throws GlossaryException when the import fails
+     */
+    public int importTBX(String glossaryId, InputStream inputStream) throws GlossaryException
+    {
+        XMLStreamReader xml = null;
+        try {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            // Imported files are not trusted
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+            xml = factory.createXMLStreamReader(inputStream);
+            XMLStreamReader tbx = xml;
+            return doImport(glossaryId, () -> readTBXEntry(tbx));
+        } catch (XMLStreamException e) {
+            throw new GlossaryException("Failed to read the imported TBX file", e);
+        } finally {
+            if (xml != null) {
+                try {
+                    xml.close();
+                } catch (XMLStreamException e) {
+                    this.logger.debug("Failed to close the TBX reader", e);
+                }
+            }
+        }
+    }
+
+    private ImportedEntry readTBXEntry(XMLStreamReader xml) throws XMLStreamException
+    {
+        ImportedEntry entry = null;
+        Locale locale = null;
+        String entryDefinition = null;
+        while (xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = xml.getLocalName();
+                if (TERM_ENTRY.equals(name) || CONCEPT_ENTRY.equals(name)) {
+                    entry = new ImportedEntry();
+                    entry.id = xml.getAttributeValue(null, "id");
+                } else if (entry != null && (LANG_SET.equals(name) || LANG_SEC.equals(name))) {
+                    locale = Locale.forLanguageTag(StringUtils.defaultString(
+                        xml.getAttributeValue(XMLConstants.XML_NS_URI, "lang")).replace('_', '-'));
+                } else if (entry != null && locale != null && "term".equals(name)) {
+                    String title = readText(xml);
+                    // Only keep the first (preferred) term of each language, whose definition may come first
+                    String[] values = entry.translations.computeIfAbsent(locale, key -> new String[2]);
+                    if (values[0] == null) {
+                        values[0] = title;
+                    }
+                } else if (entry != null && "descrip".equals(name)
+                    && "definition".equals(xml.getAttributeValue(null, "type"))) {
+                    String definition = readText(xml);
+                    if (locale == null) {
+                        entryDefinition = definition;
+                    } else {
+                        entry.translations.computeIfAbsent(locale, key -> new String[2])[1] = definition;
+                    }
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT && entry != null) {
+                String name = xml.getLocalName();
+                if (LANG_SET.equals(name) || LANG_SEC.equals(name)) {
+                    locale = null;
+                } else if (TERM_ENTRY.equals(name) || CONCEPT_ENTRY.equals(name)) {
+                    return toDefaultLocale(entry, entryDefinition);
+                }
+            }
+        }
+        return null;
+    }
+
+    private ImportedEntry toDefaultLocale(ImportedEntry entry, String entryDefinition)
+    {
+        ImportedEntry result = new ImportedEntry();
+        for (Map.Entry<Locale, String[]> translation : entry.translations.entrySet()) {
+            String[] values = translation.getValue();
+            if (StringUtils.isNotBlank(values[0])) {
+                if (values[1] == null) {
+                    values[1] = StringUtils.defaultString(entryDefinition);
+                }
+                if (result.translations.isEmpty()) {
+                    // The first language is used for the default document
+                    result.defaultLocale = translation.getKey();
+                    result.translations.put(Locale.ROOT, values);
+                } else {
+                    result.translations.put(translation.getKey(), values);
+                }
+            }
+        }
+        result.id = StringUtils.isNotBlank(entry.id) ? entry.id : null;
+        return result;
+    }
+
+    private String readText(XMLStreamReader xml) throws XMLStreamException
+    {
+        // Unlike XMLStreamReader#getElementText(), accept inline markup such as highlighting
+        StringBuilder text = new StringBuilder();
+        int depth = 1;
+        while (depth > 0 && xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                || event == XMLStreamConstants.SPACE) {
+                text.append(xml.getText());
+            }
+        }
+        return StringUtils.normalizeSpace(text.toString());
+    }
+
+    private Map<String, Locale> getLocalesByName()
+    {
+        Locale contextLocale = this.xwikiContextProvider.get().getLocale();
+        Map<String, Locale> locales = new HashMap<>();
+        for (Locale locale : Locale.getAvailableLocales()) {
+            // Accept both the names used by the export and plain locale codes
+            locales.putIfAbsent(locale.getDisplayName(contextLocale), locale);
+            locales.putIfAbsent(locale.toString(), locale);
+        }
+        locales.put(DEFAULT_LANGUAGE, Locale.ROOT);
+        locales.put(this.localizationManager.getTranslationPlain("glossary.export.locale.default"), Locale.ROOT);
+        locales.remove("");
+        return locales;
+    }
+
+    private int doImport(String glossaryId, EntryReader reader) throws GlossaryException
+    {
+        XWikiContext xcontext = this.xwikiContextProvider.get();
+        SpaceReference glossarySpace = this.spaceReferenceResolver.resolve(glossaryId);
+        int count = 0;
+
+        this.observationManager.notify(new GlossaryImportingEvent(), glossaryId);
+        try {
+            List<ImportedEntry> batch = new ArrayList<>(BATCH_SIZE);
+            ImportedEntry entry = reader.read();
+            while (entry != null) {
+                batch.add(entry);
+                if (batch.size() == BATCH_SIZE) {
+                    count += saveBatch(batch, glossarySpace, xcontext);
+                    batch.clear();
+                }
+                entry = reader.read();
+            }
+            count += saveBatch(batch, glossarySpace, xcontext);
+        } catch (IOException | XMLStreamException e) {
+            throw new GlossaryException(String.format("Failed to read the entries imported in glossary [%s]",
+                glossaryId), e);
+        } finally {
+            // Update the glossary at once
+            this.observationManager.notify(new GlossaryImportedEvent(), glossaryId, null);
+        }
+
+        return count;
+    }
+
+    private int saveBatch(List<ImportedEntry> batch, SpaceReference glossarySpace, XWikiContext xcontext)
+        throws GlossaryException
+    {
+        Map<ImportedEntry, DocumentReference> references = new LinkedHashMap<>();
+        for (ImportedEntry entry : batch) {
+            String[] defaultValues = entry.translations.get(Locale.ROOT);
+            String name = StringUtils.isNotBlank(entry.id) ? entry.id
+                : (defaultValues != null) ? defaultValues[0] : null;
+            if (name != null && !entry.translations.isEmpty()) {
+                references.put(entry, getEntryReference(name, glossarySpace));
+            }
+        }
+        if (references.isEmpty()) {
+            return 0;
+        }
+
+        // Find the documents and translations that already exist with a single query
+        Set<String> existingDocuments = getExistingDocuments(references.values());
+
+        int count = 0;
+        Set<String> titles = new LinkedHashSet<>();
+        try {
+            for (Map.Entry<ImportedEntry, DocumentReference> entry : references.entrySet()) {
+                DocumentReference reference = entry.getValue();
+                if (!this.authorizationManager.hasAccess(Right.EDIT, reference)) {
+                    this.logger.warn("Skipping the import of glossary entry [{}] which the current user cannot edit",
+                        reference);
+                } else {
+                    try {
+                        saveEntry(entry.getKey(), reference, existingDocuments, titles, xcontext);
+                        count++;
+                    } catch (XWikiException e) {
+                        throw new GlossaryException(
+                            String.format("Failed to import glossary entry [%s]", reference), e);
+                    }
+                }
+            }
+        } finally {
+            // Record the titles of each batch, including the entries saved before a failure, so that the titles of
+            // the whole import are never kept in memory
+            this.changeLog.recordChanges(xcontext.getWikiId(), titles);
+        }
+        return count;
+    }
+
+    private DocumentReference getEntryReference(String name, SpaceReference glossarySpace)
+    {
+        // The export uses the full name of the entries
+        String prefix = this.entityReferenceSerializer.serialize(glossarySpace) + '.';
+        return new DocumentReference(StringUtils.removeStart(name, prefix), glossarySpace);
+    }
+
+    private Set<String> getExistingDocuments(Iterable<DocumentReference> references) throws GlossaryException
+    {
+        List<String> names = new ArrayList<>();
+        references.forEach(reference -> names.add(this.entityReferenceSerializer.serialize(reference)));
+        try {
+            List<Object[]> documents = this.queryManager.createQuery("select doc.fullName, doc.language "
+                + "from XWikiDocument doc where doc.fullName in (:names)", Query.HQL).bindValue("names", names)
+                .execute();
+            Set<String> existingDocuments = new HashSet<>();
+            for (Object[] document : documents) {
+                existingDocuments.add(getExistingDocumentKey((String) document[0], (String) document[1]));
+            }
+            return existingDocuments;
+        } catch (QueryException e) {
+            throw new GlossaryException("Failed to look for the existing glossary entries", e);
+        }
+    }
+
+    private String getExistingDocumentKey(String fullName, String language)
+    {
+        return fullName + '/' + StringUtils.defaultString(language);
+    }
+
+    private void saveEntry(ImportedEntry entry, DocumentReference reference, Set<String> existingDocuments,
+        Set<String> titles, XWikiContext xcontext) throws XWikiException
+    {
+        XWiki xwiki = xcontext.getWiki();
+        String fullName = this.entityReferenceSerializer.serialize(reference);
+        String comment = this.localizationManager.getTranslationPlain("glossary.import.save.message");
+
+        // New documents are created directly, without looking for them in the database
+        XWikiDocument document = existingDocuments.contains(getExistingDocumentKey(fullName, ""))
+            ? xwiki.getDocument(reference, xcontext).clone() : new XWikiDocument(reference);
+
+        String[] defaultValues = entry.translations.get(Locale.ROOT);
+        if (defaultValues == null && document.isNew()) {
+            // A new entry needs a title, so use its first translation for the default document as well
+            defaultValues = entry.translations.values().iterator().next();
+        }
+        if (defaultValues != null || document.isNew()
+            || document.getXObject(GlossaryConstants.GLOSSARY_XCLASS_REFERENCE) == null) {
+            if (document.isNew()) {
+                document.setSyntax(Syntax.XWIKI_2_1);
+                document.setCreatorReference(xcontext.getUserReference());
+                if (entry.defaultLocale != null) {
+                    document.setDefaultLocale(entry.defaultLocale);
+                }
+            }
+            if (document.getXObject(GlossaryConstants.GLOSSARY_XCLASS_REFERENCE) == null) {
+                document.newXObject(GlossaryConstants.GLOSSARY_XCLASS_REFERENCE, xcontext);
+            }
+            if (defaultValues != null) {
+                setValues(document, defaultValues, titles);
+            }
+            document.setAuthorReference(xcontext.getUserReference());
+            xwiki.saveDocument(document, comment, xcontext);
+        }
+
+        for (Map.Entry<Locale, String[]> translation : entry.translations.entrySet()) {
+            Locale locale = translation.getKey();
+            if (!Locale.ROOT.equals(locale)) {
+                XWikiDocument translatedDocument =
+                    existingDocuments.contains(getExistingDocumentKey(fullName, locale.toString()))
+                        ? document.getTranslatedDocument(locale, xcontext).clone()
+                        : new XWikiDocument(reference, locale);
+                if (translatedDocument.isNew()) {
+                    translatedDocument.setSyntax(document.getSyntax());
+                    translatedDocument.setCreatorReference(xcontext.getUserReference());
+                }
+                setValues(translatedDocument, translation.getValue(), titles);
+                translatedDocument.setAuthorReference(xcontext.getUserReference());
+                xwiki.saveDocument(translatedDocument, comment, xcontext);
+            }
+        }
+    }
+
+    private void setValues(XWikiDocument document, String[] values, Set<String> titles)
+    {
+        titles.add(values[0]);
+        document.setTitle(values[0]);
+        document.setContent(StringUtils.defaultString(values[1]));
+    }
+
+    /**
+     * Minimal streaming reader for the CSV files produced by the glossary export: values are separated by semicolons,
+     * may be enclosed in double quotes (doubled when part of the value) and may then span several lines.
+     */
+    private static final class CSVReader
+    {
+        private static final int EOF = -1;
+
+        private final Reader reader;
+
+        private int next = -2;
+
+        CSVReader(Reader reader)
+        {
+            this.reader = new BufferedReader(reader);
+        }
+
+        List<String> readRecord() throws IOException
+        {
+            int c = read();
+            if (c == EOF) {
+                return null;
+            }
+
+            List<String> values = new ArrayList<>();
+            StringBuilder value = new StringBuilder();
+            boolean quoted = false;
+            while (c != EOF) {
+                if (quoted) {
+                    if (c == '"') {
+                        if (peek() == '"') {
+                            value.append('"');
+                            read();
+                        } else {
+                            quoted = false;
+                        }
+                    } else {
+                        value.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ';') {
+                    values.add(value.toString());
+                    value.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c != '\r') {
+                    value.append((char) c);
+                }
+                c = read();
+            }
+            values.add(value.toString());
+            return values;
+        }
+
+        private int read() throws IOException
+        {
+            int c = peek();
+            this.next = -2;
+            return c;
+        }
+
+        private int peek() throws IOException
+        {
+            if (this.next == -2) {
+                this.next = this.reader.read();
+            }
+            return this.next;
+        }
+    }
+}
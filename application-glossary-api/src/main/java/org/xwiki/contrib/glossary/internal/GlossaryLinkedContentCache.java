@@ -0,0 +1,203 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.internal;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.eviction.LRUEvictionConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.contrib.glossary.GlossaryException;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.rendering.block.Block;
+
+/**
+ * Remembers the content of each document as it was when its glossary references were last updated, along with the
+ * version of the glossary snapshot used for it. This allows to only look for glossary entries in the parts of a
+ * document which were modified since then. Contents are stored as fingerprints to keep the cache small, and the top
+ * level blocks of the content are only kept for the most recently linked documents, so that the previous content of a
+ * document edited several times in a row doesn't have to be parsed again on each save.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+@Component(roles = GlossaryLinkedContentCache.class)
+@Singleton
+public class GlossaryLinkedContentCache implements Initializable, Disposable
+{
+    /**
+     * Identifier for the glossary linked content cache.
+     */
+    private static final String NAME = "cache.glossaryLinkedContentCache";
+
+    private static final int MAX_BLOCKS_ENTRIES = 100;
+
+    /**
+     * The top level blocks of a linked content, along with the fingerprint of the content.
+     */
+    private static final class LinkedBlocks
+    {
+        private final String fingerprint;
+
+        private final List<Block> blocks;
+
+        LinkedBlocks(String fingerprint, List<Block> blocks)
+        {
+            this.fingerprint = fingerprint;
+            this.blocks = blocks;
+        }
+    }
+
+    @Inject
+    private CacheManager cacheManager;
+
+    private Cache<String> cache;
+
+    private final Map<String, LinkedBlocks> blocksCache = Collections.synchronizedMap(
+        new LinkedHashMap<String, LinkedBlocks>()
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LinkedBlocks> eldest)
+            {
+                return size() > MAX_BLOCKS_ENTRIES;
+            }
+        });
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        try {
+            CacheConfiguration cacheConfiguration = new CacheConfiguration();
+            cacheConfiguration.setConfigurationId(NAME);
+            LRUEvictionConfiguration lru = new LRUEvictionConfiguration();
+            lru.setMaxEntries(10000);
+            cacheConfiguration.put(LRUEvictionConfiguration.CONFIGURATIONID, lru);
+            this.cache = this.cacheManager.createNewCache(cacheConfiguration);
+        } catch (CacheException e) {
+            throw new InitializationException("Failed to initialize the glossary linked content cache", e);
+        }
+    }
+
+    @Override
+    public void dispose()
+    {
+        if (this.cache != null) {
+            this.cache.dispose();
+        }
+        this.blocksCache.clear();
+    }
+
+    /**
+     * @param reference the reference of the document, with its locale
+     * @param snapshotVersion the version of the current glossary snapshot
+     * @param content the content of the document
+     * @return {@code true} if the glossary references of the given content were updated with the given version of
+     *     the glossary snapshot
+     * @throws GlossaryException when the fingerprint of the content cannot be computed
+     */
+    public boolean isLinked(DocumentReference reference, long snapshotVersion, String content)
+        throws GlossaryException
+    {
+        return getFingerprint(snapshotVersion, content).equals(this.cache.get(computeCacheKey(reference)));
+    }
+
+    /**
+     * @param reference the reference of the document, with its locale
+     * @param snapshotVersion the version of the glossary snapshot used to update the glossary references
+     * @param content the content of the document, with up to date glossary references
+     * @throws GlossaryException when the fingerprint of the content cannot be computed
+     */
+    public void setLinked(DocumentReference reference, long snapshotVersion, String content) throws GlossaryException
+    {
+        String cacheKey = computeCacheKey(reference);
+        this.cache.set(cacheKey, getFingerprint(snapshotVersion, content));
+        this.blocksCache.remove(cacheKey);
+    }
+
+    /**
+     * @param reference the reference of the document, with its locale
+     * @param snapshotVersion the version of the glossary snapshot used to update the glossary references
+     * @param content the content of the document, with up to date glossary references
+     * @param blocks the top level blocks of the given content, which must not be modified afterwards
+     * @throws GlossaryException when the fingerprint of the content cannot be computed
+     */
+    public void setLinked(DocumentReference reference, long snapshotVersion, String content, List<Block> blocks)
+        throws GlossaryException
+    {
+        String cacheKey = computeCacheKey(reference);
+        String fingerprint = getFingerprint(snapshotVersion, content);
+        this.cache.set(cacheKey, fingerprint);
+        // Remove the previous blocks first so that the document becomes the most recently linked one
+        this.blocksCache.remove(cacheKey);
+        this.blocksCache.put(cacheKey, new LinkedBlocks(fingerprint, blocks));
+    }
+
+    /**
+     * @param reference the reference of the document, with its locale
+     * @param snapshotVersion the version of the current glossary snapshot
+     * @param content the content of the document
+     * @return the top level blocks of the given content if its glossary references were updated with the given
+     *     version of the glossary snapshot and the blocks are still remembered, {@code null} otherwise
+     * @throws GlossaryException when the fingerprint of the content cannot be computed
+     */
+    public List<Block> getLinkedBlocks(DocumentReference reference, long snapshotVersion, String content)
+        throws GlossaryException
+    {
+        LinkedBlocks linkedBlocks = this.blocksCache.get(computeCacheKey(reference));
+        if (linkedBlocks != null && linkedBlocks.fingerprint.equals(getFingerprint(snapshotVersion, content))) {
+            return linkedBlocks.blocks;
+        }
+        return null;
+    }
+
+    private String computeCacheKey(DocumentReference reference)
+    {
+        // The serialized document reference contains the wiki
+        return String.format("%s/%s", reference, reference.getLocale());
+    }
+
+    private String getFingerprint(long snapshotVersion, String content) throws GlossaryException
+    {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(content.getBytes(StandardCharsets.UTF_8));
+            return snapshotVersion + "/" + new BigInteger(1, hash).toString(16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new GlossaryException("Failed to compute the fingerprint of the document content", e);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.internal;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.management.ObjectName;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.management.JMXBeanRegistration;
+
+/**
+ * Collects the durations of the glossary hot paths and the statistics of the glossary cache, and exposes them as JMX
+ * MBeans under {@code org.xwiki:type=Glossary}: one {@link GlossaryTimerMBean} per operation and one
+ * {@link GlossaryCacheStatisticsMBean} per wiki.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+@Component(roles = GlossaryMetrics.class)
+@Singleton
+public class GlossaryMetrics implements Disposable
+{
+    /**
+     * The transformation of the glossary entries of a document when it's saved.
+     */
+    public static final String SAVE_TRANSFORMATION = "saveTransformation";
+
+    /**
+     * The {@code glossary} rendering transformation.
+     */
+    public static final String RENDER_TRANSFORMATION = "renderTransformation";
+
+    /**
+     * The loading of the glossary entries of a wiki from the database.
+     */
+    public static final String RELOAD = "reload";
+
+    /**
+     * The execution of the {@code glossaryEntries} macro.
+     */
+    public static final String ENTRIES_MACRO = "glossaryEntriesMacro";
+
+    /**
+     * The execution of the {@code glossaryReference} macro.
+     */
+    public static final String REFERENCE_MACRO = "glossaryReferenceMacro";
+
+    private static final String TIMER_NAME = "type=Glossary,category=timer,name=%s";
+
+    private static final String CACHE_NAME = "type=Glossary,category=cache,wiki=%s";
+
+    @Inject
+    private JMXBeanRegistration jmxRegistration;
+
+    private final Map<String, GlossaryTimer> timers = new ConcurrentHashMap<>();
+
+    private final Map<String, GlossaryCacheStatistics> cacheStatistics = new ConcurrentHashMap<>();
+
+    /**
+     * Record an execution of an operation which started at the given time and just ended.
+     *
+     * @param operation the name of the operation
+     * @param startNanos the start time of the execution, as returned by {@link System#nanoTime()}
+     */
+    public void record(String operation, long startNanos)
+    {
+        getMBean(this.timers, operation, TIMER_NAME, GlossaryTimer::new).record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @param wikiId the wiki in which the glossary cache was looked up
+     * @param hit {@code true} if the lookup found a glossary entry
+     */
+    public void recordCacheLookup(String wikiId, boolean hit)
+    {
+        getCacheStatistics(wikiId).recordLookup(hit);
+    }
+
+    /**
+     * @param wikiId the wiki whose entries were evicted from the glossary cache
+     */
+    public void recordCacheEviction(String wikiId)
+    {
+        getCacheStatistics(wikiId).recordEviction();
+    }
+
+    /**
+     * @param wikiId the wiki whose entries are held by the glossary cache
+     * @param size the number of entries of the wiki currently held by the glossary cache
+     */
+    public void setCacheSize(String wikiId, long size)
+    {
+        getCacheStatistics(wikiId).setSize(size);
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        for (String operation : this.timers.keySet()) {
+            this.jmxRegistration.unregisterMBean(String.format(TIMER_NAME, ObjectName.quote(operation)));
+        }
+        for (String wikiId : this.cacheStatistics.keySet()) {
+            this.jmxRegistration.unregisterMBean(String.format(CACHE_NAME, ObjectName.quote(wikiId)));
+        }
+    }
+
+    private GlossaryCacheStatistics getCacheStatistics(String wikiId)
+    {
+        return getMBean(this.cacheStatistics, wikiId, CACHE_NAME, GlossaryCacheStatistics::new);
+    }
+
+    private <T> T getMBean(Map<String, T> mbeans, String key, String name, Supplier<T> supplier)
+    {
+        // Avoid locking in the common case where the MBean already exists.
+        T mbean = mbeans.get(key);
+        if (mbean == null) {
+            mbean = mbeans.computeIfAbsent(key, k -> {
+                T newMBean = supplier.get();
+                this.jmxRegistration.registerMBean(newMBean, String.format(name, ObjectName.quote(k)));
+                return newMBean;
+            });
+        }
+        return mbean;
+    }
+}
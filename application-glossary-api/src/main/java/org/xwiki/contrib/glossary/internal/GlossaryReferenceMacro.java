@@ -91,6 +91,9 @@ public class GlossaryReferenceMacro extends AbstractMacro<GlossaryReferenceMacro
     @Inject
     private GlossaryConfiguration glossaryConfiguration;
 
+    @Inject
+    private GlossaryMetrics metrics;
+
     @Inject
     private Provider<XWikiContext> xWikiContextProvider;
 
@@ -107,6 +110,17 @@ public class GlossaryReferenceMacro extends AbstractMacro<GlossaryReferenceMacro
     @Override
     public List<Block> execute(GlossaryReferenceMacroParameters parameters, String content,
         MacroTransformationContext macroContext) throws MacroExecutionException
+    {
+        long start = System.nanoTime();
+        try {
+            return executeMacro(parameters, content, macroContext);
+        } finally {
+            this.metrics.record(GlossaryMetrics.REFERENCE_MACRO, start);
+        }
+    }
+
+    private List<Block> executeMacro(GlossaryReferenceMacroParameters parameters, String content,
+        MacroTransformationContext macroContext) throws MacroExecutionException
     {
         if (content == null) {
             throw new MacroExecutionException("You must specify some content which will be used as the label of "
@@ -0,0 +1,454 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.context.concurrent.ExecutionContextRunnable;
+import org.xwiki.contrib.glossary.GlossaryConfiguration;
+import org.xwiki.environment.Environment;
+import org.xwiki.localization.LocaleUtils;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.SpaceReferenceResolver;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.MacroBlock;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.block.match.ClassBlockMatcher;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiDocument;
+
+/**
+ * Index of the documents referencing each glossary entry through a {@code glossaryReference} macro. The index of each
+ * wiki is persisted in the permanent directory as a journal of changes, which is compacted when it is loaded.
+ * <p>
+ * The index is updated each time a document is saved or deleted, whether or not glossary references are inserted at
+ * save time. It is not stored in the database: each cluster node keeps its own index, updated from the document
+ * events of the other nodes. When the index of a wiki doesn't exist yet, e.g. on a new node or on first use, it is
+ * rebuilt in the background from the documents containing a {@code glossaryReference} macro, during which it is
+ * incomplete. Documents modified directly in the database, without any document event, are not indexed until they are
+ * saved again or the index file is deleted.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+@Component(roles = GlossaryReferencesIndex.class)
+@Singleton
+public class GlossaryReferencesIndex implements Initializable, Disposable
+{
+    private static final String DIRECTORY = "glossary/references";
+
+    private static final String ENTRY_ID = "entryId";
+
+    private static final String GLOSSARY_ID = "glossaryId";
+
+    private static final int BACKFILL_BATCH_SIZE = 100;
+
+    private static final String SEPARATOR = "\t";
+
+    private static final String ADD = "+";
+
+    private static final String REMOVE = "-";
+
+    // The number of fields of the add and remove lines of the journal
+    private static final int ADD_FIELDS = 4;
+
+    private static final int REMOVE_FIELDS = 3;
+
+    @Inject
+    private Environment environment;
+
+    @Inject
+    @Named("local")
+    private EntityReferenceSerializer<String> localSerializer;
+
+    @Inject
+    private DocumentReferenceResolver<String> documentReferenceResolver;
+
+    @Inject
+    private SpaceReferenceResolver<String> spaceReferenceResolver;
+
+    @Inject
+    private GlossaryConfiguration glossaryConfiguration;
+
+    @Inject
+    private QueryManager queryManager;
+
+    @Inject
+    private Provider<XWikiContext> xwikiContextProvider;
+
+    @Inject
+    private ComponentManager componentManager;
+
+    @Inject
+    private Logger logger;
+
+    private final Map<String, WikiIndex> wikiIndexes = new HashMap<>();
+
+    /**
+     * The wikis whose index is being rebuilt.
+     */
+    private final Set<String> backfilledWikis = ConcurrentHashMap.newKeySet();
+
+    private ExecutorService executor;
+
+    /**
+     * The references of a wiki, as local references of documents (with their locale) indexed by local references of
+     * glossary entries, and the other way around.
+     */
+    private static final class WikiIndex
+    {
+        private final Map<String, Set<String>> documentsByEntry = new HashMap<>();
+
+        private final Map<String, Set<String>> entriesByDocument = new HashMap<>();
+
+        Set<String> setReferences(String document, Set<String> entries)
+        {
+            Set<String> previousEntries = removeReferences(document);
+            if (!entries.isEmpty()) {
+                this.entriesByDocument.put(document, new HashSet<>(entries));
+                for (String entry : entries) {
+                    this.documentsByEntry.computeIfAbsent(entry, key -> new HashSet<>()).add(document);
+                }
+            }
+            return previousEntries;
+        }
+
+        Set<String> removeReferences(String document)
+        {
+            Set<String> previousEntries = this.entriesByDocument.remove(document);
+            if (previousEntries == null) {
+                return Collections.emptySet();
+            }
+            for (String entry : previousEntries) {
+                Set<String> documents = this.documentsByEntry.get(entry);
+                documents.remove(document);
+                if (documents.isEmpty()) {
+                    this.documentsByEntry.remove(entry);
+                }
+            }
+            return previousEntries;
+        }
+    }
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.executor = Executors.newSingleThreadExecutor(new BasicThreadFactory.Builder()
+            .namingPattern("Glossary references indexer").daemon(true).build());
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * @param entryReference the reference of the glossary entry
+     * @return the references of the documents, with their locale, referencing the given entry
+     */
+    public synchronized List<DocumentReference> getReferencingDocuments(DocumentReference entryReference)
+    {
+        WikiReference wikiReference = entryReference.getWikiReference();
+        // The local serialization doesn't include the locale, so all the translations of the entry are considered
+        Set<String> documents = getWikiIndex(wikiReference.getName()).documentsByEntry
+            .getOrDefault(this.localSerializer.serialize(entryReference), Collections.emptySet());
+
+        List<DocumentReference> references = new ArrayList<>(documents.size());
+        for (String document : documents) {
+            references.add(resolveDocument(document, wikiReference));
+        }
+        return references;
+    }
+
+    /**
+     * Replace the glossary entries referenced by a document.
+     *
+     * @param documentReference the reference of the document, with its locale
+     * @param entryReferences the references of the glossary entries referenced by the document
+     */
+    public synchronized void setReferences(DocumentReference documentReference, Set<DocumentReference> entryReferences)
+    {
+        String wikiId = documentReference.getWikiReference().getName();
+        String document = serializeDocument(documentReference);
+        Set<String> entries = new HashSet<>();
+        for (DocumentReference entryReference : entryReferences) {
+            entries.add(this.localSerializer.serialize(entryReference));
+        }
+
+        Set<String> previousEntries = getWikiIndex(wikiId).setReferences(document, entries);
+        if (!previousEntries.equals(entries)) {
+            List<String> lines = new ArrayList<>();
+            lines.add(REMOVE + SEPARATOR + document);
+            for (String entry : entries) {
+                lines.add(ADD + SEPARATOR + document + SEPARATOR + entry);
+            }
+            append(wikiId, lines);
+        }
+    }
+
+    /**
+     * Replace the glossary entries referenced by a document by the ones referenced by its content.
+     *
+     * @param documentReference the reference of the document, with its locale
+     * @param xdom the content of the document
+     */
+    public void index(DocumentReference documentReference, XDOM xdom)
+    {
+        // Look for the references outside of the lock since it can take a while on big documents
+        setReferences(documentReference, getGlossaryReferences(xdom, documentReference.getWikiReference()));
+    }
+
+    /**
+     * Replace the glossary entries referenced by a document by the ones referenced by its content, without parsing
+     * its content when it cannot contain any glossary reference.
+     *
+     * @param document the document to index
+     * @throws XWikiException when the content of the document cannot be parsed
+     */
+    public void index(XWikiDocument document) throws XWikiException
+    {
+        if (document.getContent().contains(GlossaryReferenceMacro.MACRO_NAME)) {
+            index(document.getDocumentReferenceWithLocale(), document.getXDOM());
+        } else {
+            setReferences(document.getDocumentReferenceWithLocale(), Collections.emptySet());
+        }
+    }
+
+    /**
+     * Rebuild the index of a wiki from the documents containing a glossary reference. This is done automatically in
+     * the background when the index of the wiki doesn't exist.
+     *
+     * @param wikiId the wiki to index
+     * @throws QueryException when the documents to index cannot be listed
+     */
+    public void backfill(String wikiId) throws QueryException
+    {
+        XWikiContext xcontext = this.xwikiContextProvider.get();
+        xcontext.setWikiId(wikiId);
+        WikiReference wikiReference = new WikiReference(wikiId);
+        this.logger.info("Indexing the glossary references of wiki [{}]", wikiId);
+
+        Query query = this.queryManager.createQuery("select doc.fullName, doc.language from XWikiDocument doc "
+            + "where doc.content like :macro order by doc.fullName, doc.language", Query.HQL)
+            .bindValue("macro", "%" + GlossaryReferenceMacro.MACRO_NAME + "%").setWiki(wikiId)
+            .setLimit(BACKFILL_BATCH_SIZE);
+        int offset = 0;
+        List<Object[]> documents;
+        do {
+            documents = query.setOffset(offset).execute();
+            for (Object[] document : documents) {
+                DocumentReference documentReference =
+                    this.documentReferenceResolver.resolve((String) document[0], wikiReference);
+                if (StringUtils.isNotEmpty((String) document[1])) {
+                    documentReference =
+                        new DocumentReference(documentReference, LocaleUtils.toLocale((String) document[1]));
+                }
+                try {
+                    index(xcontext.getWiki().getDocument(documentReference, xcontext));
+                } catch (XWikiException e) {
+                    this.logger.warn("Failed to index the glossary references of document [{}]", documentReference,
+                        e);
+                }
+            }
+            offset += documents.size();
+        } while (documents.size() == BACKFILL_BATCH_SIZE);
+
+        try {
+            FileUtils.touch(getCompleteFile(wikiId));
+        } catch (IOException e) {
+            this.logger.warn("Failed to mark the glossary references index of wiki [{}] as complete", wikiId, e);
+        }
+        this.logger.info("Indexed the glossary references of [{}] documents of wiki [{}]", offset, wikiId);
+    }
+
+    /**
+     * Forget the glossary entries referenced by a document, e.g. when it is deleted.
+     *
+     * @param documentReference the reference of the document, with its locale
+     */
+    public synchronized void removeReferences(DocumentReference documentReference)
+    {
+        String wikiId = documentReference.getWikiReference().getName();
+        String document = serializeDocument(documentReference);
+        if (!getWikiIndex(wikiId).removeReferences(document).isEmpty()) {
+            append(wikiId, Collections.singletonList(REMOVE + SEPARATOR + document));
+        }
+    }
+
+    private Set<DocumentReference> getGlossaryReferences(XDOM xdom, WikiReference wikiReference)
+    {
+        Set<DocumentReference> references = new HashSet<>();
+        for (Block block : xdom.getBlocks(new ClassBlockMatcher(MacroBlock.class), Block.Axes.DESCENDANT_OR_SELF)) {
+            MacroBlock macroBlock = (MacroBlock) block;
+            String entryId = macroBlock.getParameter(ENTRY_ID);
+            if (macroBlock.getId().equals(GlossaryReferenceMacro.MACRO_NAME) && StringUtils.isNotBlank(entryId)) {
+                String glossaryId = macroBlock.getParameter(GLOSSARY_ID);
+                if (StringUtils.isBlank(glossaryId)) {
+                    glossaryId = this.glossaryConfiguration.defaultGlossaryId();
+                }
+                references.add(
+                    new DocumentReference(entryId, this.spaceReferenceResolver.resolve(glossaryId, wikiReference)));
+            }
+        }
+        return references;
+    }
+
+    private String serializeDocument(DocumentReference documentReference)
+    {
+        Locale locale = (documentReference.getLocale() != null) ? documentReference.getLocale() : Locale.ROOT;
+        return this.localSerializer.serialize(documentReference) + SEPARATOR + locale;
+    }
+
+    private DocumentReference resolveDocument(String document, WikiReference wikiReference)
+    {
+        String[] parts = StringUtils.split(document, SEPARATOR);
+        DocumentReference reference = this.documentReferenceResolver.resolve(parts[0], wikiReference);
+        return (parts.length > 1) ? new DocumentReference(reference, LocaleUtils.toLocale(parts[1])) : reference;
+    }
+
+    private File getFile(String wikiId)
+    {
+        return new File(new File(this.environment.getPermanentDirectory(), DIRECTORY), wikiId + ".index");
+    }
+
+    private File getCompleteFile(String wikiId)
+    {
+        return new File(new File(this.environment.getPermanentDirectory(), DIRECTORY), wikiId + ".complete");
+    }
+
+    private WikiIndex getWikiIndex(String wikiId)
+    {
+        WikiIndex wikiIndex = this.wikiIndexes.get(wikiId);
+        if (wikiIndex == null) {
+            wikiIndex = load(wikiId);
+            this.wikiIndexes.put(wikiId, wikiIndex);
+            if (!getCompleteFile(wikiId).exists() && this.backfilledWikis.add(wikiId)) {
+                this.executor.execute(new ExecutionContextRunnable(() -> {
+                    try {
+                        backfill(wikiId);
+                    } catch (QueryException e) {
+                        this.logger.error("Failed to index the glossary references of wiki [{}]", wikiId, e);
+                    } finally {
+                        this.backfilledWikis.remove(wikiId);
+                    }
+                }, this.componentManager));
+            }
+        }
+        return wikiIndex;
+    }
+
+    private WikiIndex load(String wikiId)
+    {
+        WikiIndex wikiIndex = new WikiIndex();
+        File file = getFile(wikiId);
+        if (file.exists()) {
+            try {
+                List<String> lines = FileUtils.readLines(file, StandardCharsets.UTF_8);
+                int malformedLines = 0;
+                for (String line : lines) {
+                    String[] change = StringUtils.splitPreserveAllTokens(line, SEPARATOR);
+                    if (change.length == ADD_FIELDS && ADD.equals(change[0])) {
+                        String document = change[1] + SEPARATOR + change[2];
+                        wikiIndex.entriesByDocument.computeIfAbsent(document, key -> new HashSet<>()).add(change[3]);
+                        wikiIndex.documentsByEntry.computeIfAbsent(change[3], key -> new HashSet<>()).add(document);
+                    } else if (change.length == REMOVE_FIELDS && REMOVE.equals(change[0])) {
+                        wikiIndex.removeReferences(change[1] + SEPARATOR + change[2]);
+                    } else {
+                        malformedLines++;
+                    }
+                }
+                if (malformedLines > 0) {
+                    // The changes of the malformed lines are lost, e.g. when the wiki was stopped while writing them,
+                    // so the index is rebuilt from the documents.
+                    this.logger.warn("Skipped [{}] malformed lines of the glossary references index [{}]",
+                        malformedLines, file);
+                    FileUtils.deleteQuietly(getCompleteFile(wikiId));
+                    compact(wikiId, wikiIndex, Integer.MAX_VALUE);
+                } else {
+                    compact(wikiId, wikiIndex, lines.size());
+                }
+            } catch (IOException e) {
+                this.logger.warn("Failed to read the glossary references index [{}]", file, e);
+                FileUtils.deleteQuietly(getCompleteFile(wikiId));
+            }
+        }
+        return wikiIndex;
+    }
+
+    private void compact(String wikiId, WikiIndex wikiIndex, int journalSize) throws IOException
+    {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, Set<String>> entries : wikiIndex.entriesByDocument.entrySet()) {
+            for (String entry : entries.getValue()) {
+                lines.add(ADD + SEPARATOR + entries.getKey() + SEPARATOR + entry);
+            }
+        }
+        if (lines.size() < journalSize) {
+            FileUtils.writeLines(getFile(wikiId), StandardCharsets.UTF_8.name(), lines);
+        }
+    }
+
+    private void append(String wikiId, List<String> lines)
+    {
+        File file = getFile(wikiId);
+        try {
+            FileUtils.writeLines(file, StandardCharsets.UTF_8.name(), lines, true);
+        } catch (IOException e) {
+            this.logger.warn("Failed to update the glossary references index [{}]", file, e);
+        }
+    }
+}
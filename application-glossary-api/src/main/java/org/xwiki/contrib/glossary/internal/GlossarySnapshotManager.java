@@ -0,0 +1,247 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.internal;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.glossary.GlossaryConfiguration;
+import org.xwiki.contrib.glossary.GlossaryException;
+import org.xwiki.contrib.glossary.GlossarySnapshot;
+import org.xwiki.model.reference.DocumentReference;
+
+/**
+ * Keeps the current {@link GlossarySnapshot} of each wiki. Snapshots are loaded lazily by the
+ * {@link org.xwiki.contrib.glossary.GlossaryModel} and then kept up to date by {@link GlossaryEntriesEventListener},
+ * each change atomically replacing the snapshot of the wiki by a new version. When the configured cache limits are
+ * exceeded, the snapshot of the least recently used wiki is dropped as a whole and loaded again on next access.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+@Component(roles = GlossarySnapshotManager.class)
+@Singleton
+public class GlossarySnapshotManager
+{
+    /**
+     * Load the snapshot of a wiki.
+     */
+    @FunctionalInterface
+    public interface SnapshotLoader
+    {
+        /**
+         * @param version the version to give to the loaded snapshot
+         * @return the loaded snapshot
+         * @throws GlossaryException when the glossary entries cannot be loaded
+         */
+        GlossarySnapshot load(long version) throws GlossaryException;
+    }
+
+    /**
+     * The snapshot of a wiki along with the last time it was accessed, used to decide which wiki to evict.
+     */
+    private static final class WikiSnapshot
+    {
+        private final GlossarySnapshot snapshot;
+
+        private volatile long lastAccess;
+
+        WikiSnapshot(GlossarySnapshot snapshot, long lastAccess)
+        {
+            this.snapshot = snapshot;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    @Inject
+    private Logger logger;
+
+    @Inject
+    private GlossaryConfiguration glossaryConfiguration;
+
+    @Inject
+    private GlossaryMetrics metrics;
+
+    private final Map<String, WikiSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    // Versions are shared by all wikis so that a snapshot loaded again after a reset never reuses a version.
+    private final AtomicLong versions = new AtomicLong();
+
+    /**
+     * The number of changes made to the entries of each wiki, used to not keep a snapshot which missed a change made
+     * while it was being loaded.
+     */
+    private final Map<String, AtomicLong> changes = new ConcurrentHashMap<>();
+
+    /**
+     * @param wikiId the wiki of the snapshot
+     * @param loader the loader to use if the snapshot of the wiki is not loaded yet
+     * @return the current snapshot of the given wiki
+     * @throws GlossaryException when the snapshot cannot be loaded
+     */
+    public GlossarySnapshot getSnapshot(String wikiId, SnapshotLoader loader) throws GlossaryException
+    {
+        WikiSnapshot wikiSnapshot = this.snapshots.get(wikiId);
+        if (wikiSnapshot == null) {
+            AtomicLong wikiChanges = getChanges(wikiId);
+            long changeCount = wikiChanges.get();
+            long start = System.nanoTime();
+            GlossarySnapshot snapshot;
+            try {
+                snapshot = loader.load(this.versions.incrementAndGet());
+            } finally {
+                this.metrics.record(GlossaryMetrics.RELOAD, start);
+            }
+            wikiSnapshot = new WikiSnapshot(snapshot, System.nanoTime());
+            WikiSnapshot existingSnapshot = this.snapshots.putIfAbsent(wikiId, wikiSnapshot);
+            if (existingSnapshot != null) {
+                wikiSnapshot = existingSnapshot;
+            } else if (wikiChanges.get() != changeCount) {
+                // The entries were modified while the snapshot was loaded, so the loaded snapshot may be outdated. The
+                // change count is checked after publishing the snapshot so that a concurrent change either sees the
+                // published snapshot or is seen here. The snapshot is not removed if the change already replaced it.
+                this.snapshots.remove(wikiId, wikiSnapshot);
+            } else {
+                this.metrics.setCacheSize(wikiId, snapshot.size());
+                if (snapshot.size() > this.glossaryConfiguration.getCacheMaxEntries()) {
+                    this.logger.warn("The [{}] glossary entries of wiki [{}] exceed the cache limit of [{}] entries",
+                        snapshot.size(), wikiId, this.glossaryConfiguration.getCacheMaxEntries());
+                }
+                evict();
+            }
+        } else {
+            wikiSnapshot.lastAccess = System.nanoTime();
+        }
+        return wikiSnapshot.snapshot;
+    }
+
+    /**
+     * Add or update a glossary entry. The snapshot is kept as is, with its version, when it already holds the entry.
+     *
+     * @param glossaryId the ID of the glossary of the entry
+     * @param title the title of the entry
+     * @param reference the reference of the entry, holding the locale of the entry
+     */
+    public void addEntry(String glossaryId, String title, DocumentReference reference)
+    {
+        // Wikis which are not loaded yet will get the entry from the model when loaded.
+        String wikiId = reference.getWikiReference().getName();
+        getChanges(wikiId).incrementAndGet();
+        WikiSnapshot wikiSnapshot = this.snapshots.computeIfPresent(wikiId, (key, current) -> {
+            if (isSameDocument(current.snapshot.getEntry(title, reference.getLocale(), glossaryId), reference)) {
+                return current;
+            }
+            return new WikiSnapshot(current.snapshot.withEntry(this.versions.incrementAndGet(), glossaryId,
+                reference.getLocale(), title, reference), current.lastAccess);
+        });
+        if (wikiSnapshot != null) {
+            this.metrics.setCacheSize(wikiId, wikiSnapshot.snapshot.size());
+            evict();
+        }
+    }
+
+    /**
+     * Remove a glossary entry.
+     *
+     * @param glossaryId the ID of the glossary of the entry
+     * @param title the title of the entry
+     * @param reference the reference of the entry, holding the locale of the entry
+     */
+    public void removeEntry(String glossaryId, String title, DocumentReference reference)
+    {
+        String wikiId = reference.getWikiReference().getName();
+        getChanges(wikiId).incrementAndGet();
+        WikiSnapshot wikiSnapshot = this.snapshots.computeIfPresent(wikiId, (key, current) -> {
+            // Another entry of the glossary may use the same title, in which case it must be kept.
+            DocumentReference existingReference = current.snapshot.getEntry(title, reference.getLocale(), glossaryId);
+            if (existingReference != null && existingReference.getName().equals(reference.getName())) {
+                return new WikiSnapshot(current.snapshot.withoutEntry(this.versions.incrementAndGet(), glossaryId,
+                    reference.getLocale(), title), current.lastAccess);
+            }
+            return current;
+        });
+        if (wikiSnapshot != null) {
+            this.metrics.setCacheSize(wikiId, wikiSnapshot.snapshot.size());
+        }
+    }
+
+    /**
+     * Forget the snapshot of a wiki, which will be loaded again on next access.
+     *
+     * @param wikiId the wiki of the snapshot
+     */
+    public void reset(String wikiId)
+    {
+        getChanges(wikiId).incrementAndGet();
+        this.snapshots.remove(wikiId);
+        this.metrics.setCacheSize(wikiId, 0);
+    }
+
+    private boolean isSameDocument(DocumentReference existingReference, DocumentReference reference)
+    {
+        // The references of the loaded entries don't hold their locale
+        return existingReference != null && existingReference.getName().equals(reference.getName())
+            && existingReference.getLastSpaceReference().equals(reference.getLastSpaceReference());
+    }
+
+    private AtomicLong getChanges(String wikiId)
+    {
+        return this.changes.computeIfAbsent(wikiId, key -> new AtomicLong());
+    }
+
+    /**
+     * Evict the least recently used wikis until the snapshots fit in the configured limits. The most recently used
+     * wiki is always kept, even if it exceeds the limits on its own, since evicting it would only cause it to be loaded
+     * again on next access.
+     */
+    private void evict()
+    {
+        int maxEntries = this.glossaryConfiguration.getCacheMaxEntries();
+        long maxBytes = this.glossaryConfiguration.getCacheMaxBytes();
+
+        while (this.snapshots.size() > 1) {
+            long entries = 0;
+            long bytes = 0;
+            for (WikiSnapshot wikiSnapshot : this.snapshots.values()) {
+                entries += wikiSnapshot.snapshot.size();
+                bytes += wikiSnapshot.snapshot.getEstimatedMemorySize();
+            }
+            if (entries <= maxEntries && bytes <= maxBytes) {
+                break;
+            }
+
+            Optional<Map.Entry<String, WikiSnapshot>> leastRecentlyUsed = this.snapshots.entrySet().stream()
+                .min(Comparator.comparingLong(entry -> entry.getValue().lastAccess));
+            if (leastRecentlyUsed.isPresent()
+                && this.snapshots.remove(leastRecentlyUsed.get().getKey(), leastRecentlyUsed.get().getValue())) {
+                this.metrics.recordCacheEviction(leastRecentlyUsed.get().getKey());
+                this.logger.debug("Evicted the glossary snapshot of wiki [{}]", leastRecentlyUsed.get().getKey());
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.internal;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the durations of an operation in a fixed histogram, so that recording is lock free and uses a constant
+ * amount of memory whatever the number of executions.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+public class GlossaryTimer implements GlossaryTimerMBean
+{
+    private static final long[] BOUNDS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000 };
+
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder totalNanos = new LongAdder();
+
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS.length + 1);
+
+    /**
+     * @param durationNanos the duration of an execution, in nanoseconds
+     */
+    public void record(long durationNanos)
+    {
+        this.count.increment();
+        this.totalNanos.add(durationNanos);
+        this.maxNanos.accumulateAndGet(durationNanos, Math::max);
+
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(durationNanos);
+        int bucket = 0;
+        while (bucket < BOUNDS.length && durationMillis >= BOUNDS[bucket]) {
+            bucket++;
+        }
+        this.buckets.incrementAndGet(bucket);
+    }
+
+    @Override
+    public long getCount()
+    {
+        return this.count.sum();
+    }
+
+    @Override
+    public double getTotalTime()
+    {
+        return this.totalNanos.sum() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getMeanTime()
+    {
+        long executions = getCount();
+        return (executions > 0) ? getTotalTime() / executions : 0;
+    }
+
+    @Override
+    public double getMaxTime()
+    {
+        return this.maxNanos.get() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getMedianTime()
+    {
+        return getPercentileTime(0.5);
+    }
+
+    @Override
+    public double get95thPercentileTime()
+    {
+        return getPercentileTime(0.95);
+    }
+
+    @Override
+    public double get99thPercentileTime()
+    {
+        return getPercentileTime(0.99);
+    }
+
+    @Override
+    public long[] getHistogramBounds()
+    {
+        return BOUNDS.clone();
+    }
+
+    @Override
+    public long[] getHistogramCounts()
+    {
+        long[] counts = new long[this.buckets.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = this.buckets.get(i);
+        }
+        return counts;
+    }
+
+    @Override
+    public void reset()
+    {
+        this.count.reset();
+        this.totalNanos.reset();
+        this.maxNanos.set(0);
+        for (int i = 0; i < this.buckets.length(); i++) {
+            this.buckets.set(i, 0);
+        }
+    }
+
+    private double getPercentileTime(double percentile)
+    {
+        long[] counts = getHistogramCounts();
+        long total = 0;
+        for (long bucketCount : counts) {
+            total += bucketCount;
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(total * percentile);
+        long cumulated = 0;
+        for (int i = 0; i < BOUNDS.length; i++) {
+            cumulated += counts[i];
+            if (cumulated >= rank) {
+                // The slowest execution is a better estimate than the bucket bound when it's lower.
+                return Math.min(BOUNDS[i], getMaxTime());
+            }
+        }
+        return getMaxTime();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.internal;
+
+/**
+ * JMX view of a {@link GlossaryTimer}. All durations are expressed in milliseconds.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+public interface GlossaryTimerMBean
+{
+    /**
+     * @return the number of recorded executions
+     */
+    long getCount();
+
+    /**
+     * @return the cumulated duration of the recorded executions
+     */
+    double getTotalTime();
+
+    /**
+     * @return the mean duration of the recorded executions
+     */
+    double getMeanTime();
+
+    /**
+     * @return the duration of the slowest recorded execution
+     */
+    double getMaxTime();
+
+    /**
+     * @return the estimated median duration, i.e. the upper bound of the histogram bucket holding it
+     */
+    double getMedianTime();
+
+    /**
+     * @return the estimated 95th percentile of the durations
+     */
+    double get95thPercentileTime();
+
+    /**
+     * @return the estimated 99th percentile of the durations
+     */
+    double get99thPercentileTime();
+
+    /**
+     * @return the upper bounds of the histogram buckets, the last bucket holding all the slower executions
+     */
+    long[] getHistogramBounds();
+
+    /**
+     * @return the number of executions of each histogram bucket, one more than the number of bounds
+     */
+    long[] getHistogramCounts();
+
+    /**
+     * Forget all the recorded executions.
+     */
+    void reset();
+}
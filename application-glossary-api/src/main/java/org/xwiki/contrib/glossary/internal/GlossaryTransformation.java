@@ -19,7 +19,7 @@
  */
 package org.xwiki.contrib.glossary.internal;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 
@@ -28,14 +28,15 @@ import javax.inject.Named;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
+import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
-import org.xwiki.contrib.glossary.GlossaryCache;
+import org.xwiki.contrib.glossary.GlossaryConfiguration;
 import org.xwiki.contrib.glossary.GlossaryConstants;
-import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.contrib.glossary.GlossaryEntriesMatcher;
+import org.xwiki.contrib.glossary.GlossaryException;
 import org.xwiki.model.reference.EntityReferenceSerializer;
 import org.xwiki.rendering.block.Block;
 import org.xwiki.rendering.block.LinkBlock;
-import org.xwiki.rendering.block.WordBlock;
 import org.xwiki.rendering.internal.block.ProtectedBlockFilter;
 import org.xwiki.rendering.listener.reference.DocumentResourceReference;
 import org.xwiki.rendering.listener.reference.ResourceReference;
@@ -58,7 +59,10 @@ public class GlossaryTransformation extends AbstractTransformation
     private static final ProtectedBlockFilter PROTECTED_FILTER = new ProtectedBlockFilter();
 
     @Inject
-    private GlossaryCache glossaryCache;
+    private GlossaryEntriesMatcherManager matcherManager;
+
+    @Inject
+    private GlossaryConfiguration glossaryConfiguration;
 
     @Inject
     private EntityReferenceSerializer<String> serializer;
@@ -66,48 +70,73 @@ public class GlossaryTransformation extends AbstractTransformation
     @Inject
     private Provider<XWikiContext> xWikiContextProvider;
 
+    @Inject
+    private GlossaryMetrics metrics;
+
+    @Inject
+    private Logger logger;
+
     @Override
     public void transform(Block block, TransformationContext context)
     {
         if (shouldTransform()) {
-            handleBlocks(block);
+            long start = System.nanoTime();
+            Locale locale = xWikiContextProvider.get().getLocale();
+            try {
+                GlossaryEntriesMatcher matcher =
+                    this.matcherManager.getMatcher(locale, this.glossaryConfiguration.defaultGlossaryId());
+                if (!matcher.isEmpty()) {
+                    handleBlocks(block, matcher);
+                }
+            } catch (GlossaryException e) {
+                this.logger.error("Failed to load the glossary entries", e);
+            } finally {
+                this.metrics.record(GlossaryMetrics.RENDER_TRANSFORMATION, start);
+            }
         }
     }
 
-    private void handleBlocks(Block currentBlock)
+    private void handleBlocks(Block block, GlossaryEntriesMatcher matcher)
     {
-        Block block = currentBlock;
-
-        while (block != null) {
-            // Skip LinkBlock since it's already a link...
-            if (block instanceof WordBlock) {
-                block = replaceWordByLink((WordBlock) block);
-            } else if (!(block instanceof LinkBlock)) {
-                List<Block> children = block.getChildren();
-                for (int i = 0; i < children.size(); i++) {
-                    handleBlocks(children.get(i));
+        List<Block> children = block.getChildren();
+        List<Block> newChildren = null;
+
+        int i = 0;
+        while (i < children.size()) {
+            // Same longest match rule as the save-time transformer: "Workers Committee" is linked as a whole rather
+            // than only "Workers", and the next lookup starts right after the match.
+            GlossaryEntriesMatcher.Match match = matcher.match(children, i);
+            if (match != null) {
+                if (newChildren == null) {
+                    newChildren = new ArrayList<>(children.subList(0, i));
+                }
+                newChildren.add(createLinkBlock(children.subList(match.getStart(), match.getEnd()), match));
+                i = match.getEnd();
+            } else {
+                Block child = children.get(i);
+                // Skip LinkBlock since it's already a link, and make sure to skip protected blocks
+                if (!(child instanceof LinkBlock) && !PROTECTED_FILTER.filter(child).isEmpty()) {
+                    handleBlocks(child, matcher);
+                }
+                if (newChildren != null) {
+                    newChildren.add(child);
                 }
+                i++;
             }
-            // Make sure to skip protected blocks
-            block = PROTECTED_FILTER.getNextSibling(block);
+        }
+
+        if (newChildren != null) {
+            block.setChildren(newChildren);
         }
     }
 
-    private Block replaceWordByLink(WordBlock wordBlock)
+    private Block createLinkBlock(List<Block> matchedBlocks, GlossaryEntriesMatcher.Match match)
     {
-        Block newBlock = wordBlock;
-        String word = wordBlock.getWord();
-        Locale locale = xWikiContextProvider.get().getLocale();
-        if (this.glossaryCache.get(word, locale) != null) {
-            DocumentReference reference = this.glossaryCache.get(word, locale);
-            String referenceAsString = serializer.serialize(reference);
-            ResourceReference linkReference = new DocumentResourceReference(referenceAsString);
-            newBlock = new LinkBlock(Arrays.asList(new WordBlock(word)), linkReference, false);
-            newBlock
-                .setParameter(GlossaryConstants.CSS_CLASS_ATTRIBUTE_NAME, GlossaryConstants.GLOSSARY_ENTRY_CSS_CLASS);
-            wordBlock.getParent().replaceChild(newBlock, wordBlock);
-        }
-        return newBlock;
+        String referenceAsString = serializer.serialize(match.getReference());
+        ResourceReference linkReference = new DocumentResourceReference(referenceAsString);
+        Block linkBlock = new LinkBlock(new ArrayList<>(matchedBlocks), linkReference, false);
+        linkBlock.setParameter(GlossaryConstants.CSS_CLASS_ATTRIBUTE_NAME, GlossaryConstants.GLOSSARY_ENTRY_CSS_CLASS);
+        return linkBlock;
     }
 
     private boolean shouldTransform()
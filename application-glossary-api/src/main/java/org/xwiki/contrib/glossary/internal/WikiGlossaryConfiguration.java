@@ -0,0 +1,133 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.internal;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.SpaceReference;
+
+/**
+ * Immutable values of the glossary configuration of a wiki.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+public final class WikiGlossaryConfiguration
+{
+    private final boolean updateDocumentsOnSave;
+
+    private final List<EntityReference> excludedClassesFromTransformations;
+
+    private final Set<DocumentReference> excludedClassReferences = new HashSet<>();
+
+    private final String defaultGlossaryId;
+
+    private final boolean activateTransformationJob;
+
+    private final boolean incrementVersionOnTransformationJob;
+
+    private final List<SpaceReference> transformationJobIncludeSpaces;
+
+    /**
+     * @param updateDocumentsOnSave see {@link #isUpdateDocumentsOnSave()}
+     * @param excludedClassesFromTransformations see {@link #getExcludedClassesFromTransformations()}
+     * @param defaultGlossaryId see {@link #getDefaultGlossaryId()}
+     * @param activateTransformationJob see {@link #isActivateTransformationJob()}
+     * @param incrementVersionOnTransformationJob see {@link #isIncrementVersionOnTransformationJob()}
+     * @param transformationJobIncludeSpaces see {@link #getTransformationJobIncludeSpaces()}
+     */
+    public WikiGlossaryConfiguration(boolean updateDocumentsOnSave,
+        List<EntityReference> excludedClassesFromTransformations, String defaultGlossaryId,
+        boolean activateTransformationJob, boolean incrementVersionOnTransformationJob,
+        List<SpaceReference> transformationJobIncludeSpaces)
+    {
+        this.updateDocumentsOnSave = updateDocumentsOnSave;
+        this.excludedClassesFromTransformations = Collections.unmodifiableList(excludedClassesFromTransformations);
+        for (EntityReference classReference : excludedClassesFromTransformations) {
+            this.excludedClassReferences.add(new DocumentReference(classReference));
+        }
+        this.defaultGlossaryId = defaultGlossaryId;
+        this.activateTransformationJob = activateTransformationJob;
+        this.incrementVersionOnTransformationJob = incrementVersionOnTransformationJob;
+        this.transformationJobIncludeSpaces = Collections.unmodifiableList(transformationJobIncludeSpaces);
+    }
+
+    /**
+     * @return true if documents should be updated at save time if they contain words referring to the glossary
+     */
+    public boolean isUpdateDocumentsOnSave()
+    {
+        return this.updateDocumentsOnSave;
+    }
+
+    /**
+     * @return the class references which should be excluded from document update on save
+     */
+    public List<EntityReference> getExcludedClassesFromTransformations()
+    {
+        return this.excludedClassesFromTransformations;
+    }
+
+    /**
+     * @param classReference the reference of the class of an object of a document
+     * @return true if the documents having objects of the given class should be excluded from document update on save
+     */
+    public boolean isExcludedClassFromTransformations(DocumentReference classReference)
+    {
+        return this.excludedClassReferences.contains(classReference);
+    }
+
+    /**
+     * @return the default glossary ID to be used when not specified
+     */
+    public String getDefaultGlossaryId()
+    {
+        return this.defaultGlossaryId;
+    }
+
+    /**
+     * @return true if the periodic transformation job should be active
+     */
+    public boolean isActivateTransformationJob()
+    {
+        return this.activateTransformationJob;
+    }
+
+    /**
+     * @return true if page version should be incremented by the periodic transformation job
+     */
+    public boolean isIncrementVersionOnTransformationJob()
+    {
+        return this.incrementVersionOnTransformationJob;
+    }
+
+    /**
+     * @return the spaces where the periodic transformation job should perform transformations
+     */
+    public List<SpaceReference> getTransformationJobIncludeSpaces()
+    {
+        return this.transformationJobIncludeSpaces;
+    }
+}
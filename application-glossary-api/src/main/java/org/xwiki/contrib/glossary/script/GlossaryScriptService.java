@@ -19,13 +19,27 @@
  */
 package org.xwiki.contrib.glossary.script;
 
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
 import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.glossary.GlossaryException;
+import org.xwiki.contrib.glossary.GlossaryModel;
+import org.xwiki.contrib.glossary.internal.GlossaryCSVExporter;
+import org.xwiki.contrib.glossary.internal.GlossaryImporter;
+import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.script.service.ScriptService;
 import org.xwiki.script.service.ScriptServiceManager;
+import org.xwiki.security.authorization.ContextualAuthorizationManager;
+import org.xwiki.security.authorization.Right;
 
 /**
  * Provides Component-specific Scripting APIs. Used to provide the access to the service 'services.glossary.translation
@@ -40,8 +54,77 @@ public class GlossaryScriptService implements ScriptService
     @Inject
     private ScriptServiceManager scriptServiceManager;
 
+    @Inject
+    private GlossaryModel glossaryModel;
+
+    @Inject
+    private ContextualAuthorizationManager authorizationManager;
+
+    @Inject
+    private GlossaryCSVExporter csvExporter;
+
+    @Inject
+    private GlossaryImporter importer;
+
     public <S extends ScriptService> S get(String serviceName)
     {
         return (S) this.scriptServiceManager.get(HINT + "." + serviceName);
     }
+
+    /**
+     * @param entryReference the reference of the glossary entry
+     * @return the references, with their locale, of the documents viewable by the current user which contain a
+     *     glossary reference to the given entry
+     * @since 1.5.3
+     */
+    public List<DocumentReference> getReferencingDocuments(DocumentReference entryReference)
+    {
+        return this.glossaryModel.getReferencingDocuments(entryReference).stream()
+            .filter(reference -> this.authorizationManager.hasAccess(Right.VIEW, reference))
+            .sorted(Comparator.comparing(DocumentReference::toString))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Stream the entries of a glossary of the current wiki, viewable by the current user, as CSV.
+     *
+     * @param glossaryId the ID of the glossary to export
+     * @param writer the writer to which the CSV is streamed, usually the writer of the response
+     * @throws GlossaryException when the export fails
+     * @since 1.5.3
+     */
+    public void exportCSV(String glossaryId, Writer writer) throws GlossaryException
+    {
+        this.csvExporter.export(glossaryId, writer);
+    }
+
+    /**
+     * Import entries in a glossary of the current wiki from a CSV file having the same format as the export. Entries
+     * the current user is not allowed to edit are skipped.
+     *
+     * @param glossaryId the ID of the glossary in which to import the entries
+     * @param reader the CSV content
+     * @return the number of imported entries
+     * @throws GlossaryException when the import fails
+     * @since 1.5.3
+     */
+    public int importCSV(String glossaryId, Reader reader) throws GlossaryException
+    {
+        return this.importer.importCSV(glossaryId, reader);
+    }
+
+    /**
+     * Import entries in a glossary of the current wiki from a TBX file. Entries the current user is not allowed to
+     * edit are skipped.
+     *
+     * @param glossaryId the ID of the glossary in which to import the entries
+     * @param inputStream the TBX content
+     * @return the number of imported entries
+     * @throws GlossaryException when the import fails
+     * @since 1.5.3
+     */
+    public int importTBX(String glossaryId, InputStream inputStream) throws GlossaryException
+    {
+        return this.importer.importTBX(glossaryId, inputStream);
+    }
 }
@@ -0,0 +1,110 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.SpaceBlock;
+import org.xwiki.rendering.block.SpecialSymbolBlock;
+import org.xwiki.rendering.block.WordBlock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit tests for {@link GlossaryEntriesMatcher}.
+ *
+ * @version $Id$
+ */
+public class GlossaryEntriesMatcherTest
+{
+    private final DocumentReference workers = new DocumentReference("xwiki", "Glossary", "Workers");
+
+    private final DocumentReference committee = new DocumentReference("xwiki", "Glossary", "Committee");
+
+    private final DocumentReference workersCommittee = new DocumentReference("xwiki", "Glossary", "WorkersCommittee");
+
+    private final DocumentReference xwikiOrg = new DocumentReference("xwiki", "Glossary", "XWikiOrg");
+
+    private GlossaryEntriesMatcher getMatcher()
+    {
+        Map<String, DocumentReference> entries = new HashMap<>();
+        entries.put("Workers", this.workers);
+        entries.put("Committee", this.committee);
+        entries.put("Workers Committee", this.workersCommittee);
+        entries.put("xwiki.org", this.xwikiOrg);
+        return new GlossaryEntriesMatcher(entries);
+    }
+
+    @Test
+    public void tokenize()
+    {
+        assertEquals(Arrays.asList("Workers", " ", "Committee"), GlossaryEntriesMatcher.tokenize("Workers Committee"));
+        assertEquals(Arrays.asList("xwiki", ".", "org", "?"), GlossaryEntriesMatcher.tokenize("xwiki.org?"));
+    }
+
+    @Test
+    public void matchLongestEntry()
+    {
+        List<Block> blocks = Arrays.asList(new WordBlock("Workers"), new SpaceBlock(), new WordBlock("Committee"),
+            new SpaceBlock(), new WordBlock("Committee"));
+
+        GlossaryEntriesMatcher.Match match = getMatcher().match(blocks, 0);
+        assertEquals(this.workersCommittee, match.getReference());
+        assertEquals("Workers Committee", match.getTitle());
+        assertEquals(0, match.getStart());
+        assertEquals(3, match.getEnd());
+
+        assertNull(getMatcher().match(blocks, 3));
+        assertEquals(this.committee, getMatcher().match(blocks, 4).getReference());
+    }
+
+    @Test
+    public void matchShorterEntryWhenLongestIsIncomplete()
+    {
+        List<Block> blocks = Arrays.asList(new WordBlock("Workers"), new SpaceBlock(), new WordBlock("Union"));
+
+        GlossaryEntriesMatcher.Match match = getMatcher().match(blocks, 0);
+        assertEquals(this.workers, match.getReference());
+        assertEquals(1, match.getLength());
+    }
+
+    @Test
+    public void matchSpecialSymbols()
+    {
+        List<Block> blocks = Arrays.asList(new WordBlock("xwiki"), new SpecialSymbolBlock('.'), new WordBlock("org"));
+
+        assertEquals(this.xwikiOrg, getMatcher().match(blocks, 0).getReference());
+        assertNull(getMatcher().match(Arrays.asList(new WordBlock("xwiki"), new SpecialSymbolBlock(',')), 0));
+    }
+
+    @Test
+    public void doNotMatchPartialWords()
+    {
+        assertNull(getMatcher().match(Arrays.asList(new WordBlock("Committees")), 0));
+        assertNull(GlossaryEntriesMatcher.EMPTY.match(Arrays.asList(new WordBlock("Committee")), 0));
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.junit.Test;
+import org.xwiki.model.reference.DocumentReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link GlossarySnapshot}.
+ *
+ * @version $Id$
+ */
+public class GlossarySnapshotTest
+{
+    private final DocumentReference world = new DocumentReference("xwiki", "Glossary", "world");
+
+    private final DocumentReference otherWorld = new DocumentReference("xwiki", "myglossary", "world");
+
+    private final DocumentReference test = new DocumentReference("xwiki", "myglossary", "test");
+
+    private GlossarySnapshot getSnapshot()
+    {
+        Map<String, Map<Locale, Map<String, DocumentReference>>> glossaries = new HashMap<>();
+        glossaries.put("Glossary",
+            Collections.singletonMap(Locale.ENGLISH, Collections.singletonMap("World", this.world)));
+        Map<String, DocumentReference> entries = new HashMap<>();
+        entries.put("World", this.otherWorld);
+        entries.put("Test", this.test);
+        glossaries.put("myglossary", Collections.singletonMap(Locale.ENGLISH, entries));
+        return new GlossarySnapshot(1, glossaries);
+    }
+
+    @Test
+    public void getEntries()
+    {
+        GlossarySnapshot snapshot = getSnapshot();
+
+        assertEquals(this.world, snapshot.getEntry("World", Locale.ENGLISH, "Glossary"));
+        assertEquals(this.otherWorld, snapshot.getEntry("World", Locale.ENGLISH, "myglossary"));
+        assertNull(snapshot.getEntry("World", Locale.FRENCH, "Glossary"));
+        assertEquals(2, snapshot.getEntries().get(Locale.ENGLISH).size());
+        assertEquals("Test", snapshot.getSortedEntries(Locale.ENGLISH, "myglossary").get(0).getKey());
+        assertTrue(snapshot.getSortedEntries(Locale.FRENCH, "myglossary").isEmpty());
+    }
+
+    @Test
+    public void withEntryKeepsUnmodifiedMatchers()
+    {
+        GlossarySnapshot snapshot = getSnapshot();
+        GlossaryEntriesMatcher glossaryMatcher = snapshot.getMatcher(Locale.ENGLISH, "Glossary");
+        GlossaryEntriesMatcher myGlossaryMatcher = snapshot.getMatcher(Locale.ENGLISH, "myglossary");
+
+        DocumentReference hello = new DocumentReference("xwiki", "myglossary", "hello");
+        GlossarySnapshot newSnapshot = snapshot.withEntry(2, "myglossary", Locale.ENGLISH, "Hello", hello);
+
+        assertEquals(2, newSnapshot.getVersion());
+        assertEquals(hello, newSnapshot.getEntry("Hello", Locale.ENGLISH, "myglossary"));
+        assertNull(snapshot.getEntry("Hello", Locale.ENGLISH, "myglossary"));
+        assertSame(glossaryMatcher, newSnapshot.getMatcher(Locale.ENGLISH, "Glossary"));
+        assertEquals(myGlossaryMatcher.size() + 1, newSnapshot.getMatcher(Locale.ENGLISH, "myglossary").size());
+        assertEquals(3, newSnapshot.getMatcher(Locale.ENGLISH).size());
+    }
+
+    @Test
+    public void withoutEntry()
+    {
+        GlossarySnapshot snapshot = getSnapshot().withoutEntry(2, "myglossary", Locale.ENGLISH, "World");
+
+        assertNull(snapshot.getEntry("World", Locale.ENGLISH, "myglossary"));
+        // The entry with the same title in the other glossary is still matched
+        assertEquals(this.world, snapshot.getEntries().get(Locale.ENGLISH).get("World"));
+    }
+}
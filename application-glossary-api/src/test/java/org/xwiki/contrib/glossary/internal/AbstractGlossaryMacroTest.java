@@ -20,6 +20,7 @@
 package org.xwiki.contrib.glossary.internal;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -29,11 +30,10 @@ import java.util.Map;
 import javax.inject.Provider;
 
 import org.mockito.stubbing.Answer;
-import org.xwiki.bridge.DocumentAccessBridge;
-import org.xwiki.bridge.DocumentModelBridge;
 import org.xwiki.contrib.glossary.GlossaryCache;
 import org.xwiki.contrib.glossary.GlossaryConfiguration;
 import org.xwiki.contrib.glossary.GlossaryModel;
+import org.xwiki.contrib.glossary.GlossarySnapshot;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.rendering.block.Block;
 import org.xwiki.rendering.block.SpaceBlock;
@@ -41,10 +41,13 @@ import org.xwiki.rendering.block.WordBlock;
 import org.xwiki.rendering.block.XDOM;
 import org.xwiki.rendering.configuration.RenderingConfiguration;
 import org.xwiki.rendering.test.integration.RenderingTestSuite;
+import org.xwiki.security.authorization.ContextualAuthorizationManager;
+import org.xwiki.security.authorization.Right;
 import org.xwiki.test.mockito.MockitoComponentManager;
 
 import com.xpn.xwiki.XWikiContext;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -55,14 +58,14 @@ public abstract class AbstractGlossaryMacroTest
 
     protected XWikiContext xWikiContext;
 
-    protected DocumentAccessBridge documentAccessBridge;
-
     protected GlossaryConfiguration glossaryConfiguration;
 
     protected GlossaryModel glossaryModel;
 
     protected GlossaryCache glossaryCache;
 
+    protected Map<DocumentReference, List<Block>> glossaryContents = new HashMap<>();
+
     @RenderingTestSuite.Initialized
     public void initialize(MockitoComponentManager componentManager) throws Exception
     {
@@ -74,8 +77,6 @@ public abstract class AbstractGlossaryMacroTest
         RenderingConfiguration configuration = componentManager.registerMockComponent(RenderingConfiguration.class);
         when(configuration.getTransformationNames()).thenReturn(Arrays.asList("macro"));
 
-        documentAccessBridge = componentManager.registerMockComponent(DocumentAccessBridge.class);
-
         xWikiContextProvider = componentManager.registerMockComponent(XWikiContext.TYPE_PROVIDER);
         xWikiContext = mock(XWikiContext.class);
         when(xWikiContextProvider.get()).thenReturn(xWikiContext);
@@ -86,8 +87,24 @@ public abstract class AbstractGlossaryMacroTest
         when(glossaryConfiguration.defaultGlossaryId()).thenReturn("Glossary");
 
         glossaryModel = componentManager.registerMockComponent(GlossaryModel.class);
+        when(glossaryModel.getGlossarySnapshot()).thenReturn(new GlossarySnapshot(0, Collections.emptyMap()));
+        when(glossaryModel.getGlossaryContents(any(), any())).thenAnswer(invocation -> {
+            Map<DocumentReference, XDOM> contents = new HashMap<>();
+            for (DocumentReference reference : invocation.<Collection<DocumentReference>>getArgument(0)) {
+                if (glossaryContents.containsKey(reference)) {
+                    contents.put(reference, new XDOM(glossaryContents.get(reference)));
+                }
+            }
+            return contents;
+        });
         glossaryCache = componentManager.registerMockComponent(GlossaryCache.class);
 
+        // Always generate the glossary entries, without caching them
+        componentManager.registerMockComponent(GlossaryEntriesMacroCache.class);
+        ContextualAuthorizationManager authorizationManager =
+            componentManager.registerMockComponent(ContextualAuthorizationManager.class);
+        when(authorizationManager.hasAccess(eq(Right.VIEW), any())).thenReturn(true);
+
         initializeInternal(componentManager);
     }
 
@@ -110,7 +127,8 @@ public abstract class AbstractGlossaryMacroTest
         DocumentReference test2DocumentReference = setupGlossaryEntry("test2", "Glossary", "test2",
             Arrays.asList(new WordBlock("Test"), new SpaceBlock(), new WordBlock("2")));
 
-        when(glossaryModel.getGlossaryEntries("Glossary")).thenReturn(Collections.singletonMap(Locale.CANADA_FRENCH,
+        Map<String, Map<Locale, Map<String, DocumentReference>>> glossaries = new HashMap<>();
+        glossaries.put("Glossary", Collections.singletonMap(Locale.CANADA_FRENCH,
             new HashMap<String, DocumentReference>() {
                 {
                     put("world", worldDocumentReference);
@@ -118,8 +136,7 @@ public abstract class AbstractGlossaryMacroTest
                 }
             }
         ));
-
-        when(glossaryModel.getGlossaryEntries("myglossary")).thenReturn(Collections.singletonMap(Locale.CANADA_FRENCH,
+        glossaries.put("myglossary", Collections.singletonMap(Locale.CANADA_FRENCH,
             new HashMap<String, DocumentReference>() {
                 {
                     put("world2", world2DocumentReference);
@@ -127,6 +144,7 @@ public abstract class AbstractGlossaryMacroTest
                 }
             }
         ));
+        when(glossaryModel.getGlossarySnapshot()).thenReturn(new GlossarySnapshot(1, glossaries));
 
         when(xWikiContext.getOrDefault(eq("glossary-entries-Glossary"), eq(false))).thenReturn(false);
         when(xWikiContext.getOrDefault(eq("glossary-entries-myglossary"), eq(false))).thenReturn(false);
@@ -145,10 +163,7 @@ public abstract class AbstractGlossaryMacroTest
     {
         DocumentReference documentReference = new DocumentReference("xwiki", glossaryId, entryName);
 
-        DocumentModelBridge documentModelBridge = mock(DocumentModelBridge.class);
-        when(documentAccessBridge.getTranslatedDocumentInstance(documentReference)).thenReturn(documentModelBridge);
-        when(documentModelBridge.getTitle()).thenReturn(entryTitle);
-        when(documentModelBridge.getXDOM()).thenReturn(new XDOM(entryContent));
+        glossaryContents.put(documentReference, entryContent);
 
         if (glossaryId.equals("Glossary")) {
             when(glossaryCache.get(entryTitle, Locale.CANADA_FRENCH)).thenReturn(documentReference);
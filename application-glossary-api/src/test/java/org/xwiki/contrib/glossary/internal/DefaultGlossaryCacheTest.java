@@ -0,0 +1,115 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.internal;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.inject.Provider;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.contrib.glossary.GlossaryConfiguration;
+import org.xwiki.contrib.glossary.GlossaryModel;
+import org.xwiki.contrib.glossary.GlossarySnapshot;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import com.xpn.xwiki.XWikiContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link DefaultGlossaryCache}.
+ *
+ * @version $Id$
+ */
+public class DefaultGlossaryCacheTest
+{
+    @Rule
+    public MockitoComponentMockingRule<DefaultGlossaryCache> mocker =
+        new MockitoComponentMockingRule<>(DefaultGlossaryCache.class);
+
+    private GlossaryModel glossaryModel;
+
+    private GlossarySnapshotManager snapshotManager;
+
+    private GlossaryMetrics metrics;
+
+    private final DocumentReference worldEntry = new DocumentReference("wikiA", "Glossary", "world", Locale.ENGLISH);
+
+    @Before
+    public void setUp() throws Exception
+    {
+        Provider<XWikiContext> xWikiContextProvider = mocker.getInstance(XWikiContext.TYPE_PROVIDER);
+        XWikiContext xWikiContext = mock(XWikiContext.class);
+        when(xWikiContextProvider.get()).thenReturn(xWikiContext);
+        when(xWikiContext.getLocale()).thenReturn(Locale.ENGLISH);
+        when(xWikiContext.getWikiId()).thenReturn("wikiA");
+
+        GlossaryConfiguration glossaryConfiguration = mocker.getInstance(GlossaryConfiguration.class);
+        when(glossaryConfiguration.defaultGlossaryId()).thenReturn("Glossary");
+
+        Map<String, Map<Locale, Map<String, DocumentReference>>> glossaries = Collections.singletonMap("Glossary",
+            Collections.singletonMap(Locale.ENGLISH, Collections.singletonMap("World", worldEntry)));
+        glossaryModel = mocker.getInstance(GlossaryModel.class);
+        when(glossaryModel.getGlossarySnapshot()).thenReturn(new GlossarySnapshot(1, glossaries));
+
+        snapshotManager = mocker.getInstance(GlossarySnapshotManager.class);
+        metrics = mocker.getInstance(GlossaryMetrics.class);
+    }
+
+    @Test
+    public void getReadsTheSnapshot() throws Exception
+    {
+        assertEquals(worldEntry, mocker.getComponentUnderTest().get("World"));
+        assertNull(mocker.getComponentUnderTest().get("Hello"));
+        assertNull(mocker.getComponentUnderTest().get("World", Locale.FRENCH));
+        assertNull(mocker.getComponentUnderTest().get("World", Locale.ENGLISH, "Other"));
+
+        verify(metrics).recordCacheLookup("wikiA", true);
+    }
+
+    @Test
+    public void setAndRemoveUpdateTheSnapshot() throws Exception
+    {
+        DocumentReference hello = new DocumentReference("wikiA", "Glossary", "hello");
+        when(glossaryModel.getGlossaryId(hello)).thenReturn("Glossary");
+
+        mocker.getComponentUnderTest().set("Hello", hello);
+        verify(snapshotManager).addEntry("Glossary", "Hello", new DocumentReference(hello, Locale.ENGLISH));
+
+        // Only existing entries are removed
+        mocker.getComponentUnderTest().remove("Hello");
+        verify(snapshotManager, never()).removeEntry(anyString(), anyString(), any());
+
+        mocker.getComponentUnderTest().remove("World");
+        verify(snapshotManager).removeEntry("Glossary", "World", worldEntry);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.internal;
+
+import javax.inject.Provider;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceResolver;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link DefaultGlossaryConfiguration}.
+ *
+ * @version $Id$
+ */
+public class DefaultGlossaryConfigurationTest
+{
+    private static final String DEFAULT_GLOSSARY_ID = "defaultGlossaryId";
+
+    @Rule
+    public MockitoComponentMockingRule<DefaultGlossaryConfiguration> mocker =
+        new MockitoComponentMockingRule<>(DefaultGlossaryConfiguration.class);
+
+    private XWikiContext xWikiContext;
+
+    private XWiki xwiki;
+
+    private XWikiDocument configurationDocument;
+
+    private BaseObject configurationObject;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        Provider<XWikiContext> xWikiContextProvider = mocker.registerMockComponent(XWikiContext.TYPE_PROVIDER);
+        xWikiContext = mock(XWikiContext.class);
+        when(xWikiContextProvider.get()).thenReturn(xWikiContext);
+        when(xWikiContext.getWikiId()).thenReturn("wiki");
+        when(xWikiContext.getWikiReference()).thenReturn(new WikiReference("wiki"));
+        xwiki = mock(XWiki.class);
+        when(xWikiContext.getWiki()).thenReturn(xwiki);
+
+        ConfigurationSource configurationSource = mocker.getInstance(ConfigurationSource.class);
+        when(configurationSource.getProperty(anyString(), (Object) any()))
+            .thenAnswer(invocation -> invocation.getArgument(1));
+        EntityReferenceResolver<String> entityReferenceResolver =
+            mocker.getInstance(EntityReferenceResolver.TYPE_STRING);
+        when(entityReferenceResolver.resolve(anyString(), any(), any()))
+            .thenReturn(new DocumentReference("wiki", "XWiki", "ExcludedClass"));
+
+        configurationDocument = mock(XWikiDocument.class);
+        configurationObject = mock(BaseObject.class);
+        when(configurationObject.getStringValue(anyString())).thenReturn("");
+        when(configurationObject.getStringValue(DEFAULT_GLOSSARY_ID)).thenReturn("First");
+        when(configurationDocument.getXObject(any(DocumentReference.class))).thenReturn(configurationObject);
+        when(xwiki.getDocument(DefaultGlossaryConfiguration.getConfigurationDocumentReference("wiki"),
+            xWikiContext)).thenReturn(configurationDocument);
+    }
+
+    @Test
+    public void configurationIsCached() throws Exception
+    {
+        assertEquals("First", mocker.getComponentUnderTest().defaultGlossaryId());
+        assertEquals("First", mocker.getComponentUnderTest().defaultGlossaryId());
+
+        verify(xwiki, times(1)).getDocument(any(DocumentReference.class), any(XWikiContext.class));
+    }
+
+    @Test
+    public void invalidateReloadsConfiguration() throws Exception
+    {
+        assertEquals("First", mocker.getComponentUnderTest().defaultGlossaryId());
+
+        when(configurationObject.getStringValue(DEFAULT_GLOSSARY_ID)).thenReturn("Second");
+        mocker.getComponentUnderTest().invalidate("wiki");
+
+        assertEquals("Second", mocker.getComponentUnderTest().defaultGlossaryId());
+        verify(xwiki, times(2)).getDocument(any(DocumentReference.class), any(XWikiContext.class));
+    }
+
+    @Test
+    public void invalidationDuringLoadIsNotLost() throws Exception
+    {
+        // The configuration document is modified while it is being loaded
+        when(xwiki.getDocument(DefaultGlossaryConfiguration.getConfigurationDocumentReference("wiki"),
+            xWikiContext)).thenAnswer(invocation -> {
+                mocker.getComponentUnderTest().invalidate("wiki");
+                return configurationDocument;
+            }).thenReturn(configurationDocument);
+
+        assertEquals("First", mocker.getComponentUnderTest().defaultGlossaryId());
+
+        when(configurationObject.getStringValue(DEFAULT_GLOSSARY_ID)).thenReturn("Second");
+        assertEquals("Second", mocker.getComponentUnderTest().defaultGlossaryId());
+    }
+
+    @Test
+    public void configurationIsNotCachedWhenLoadingFails() throws Exception
+    {
+        when(xwiki.getDocument(any(DocumentReference.class), any(XWikiContext.class)))
+            .thenThrow(new XWikiException()).thenReturn(configurationDocument);
+
+        assertEquals("Glossary", mocker.getComponentUnderTest().defaultGlossaryId());
+        assertEquals("First", mocker.getComponentUnderTest().defaultGlossaryId());
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.contrib.glossary.GlossaryModel;
+import org.xwiki.contrib.glossary.GlossarySnapshot;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.MacroBlock;
+import org.xwiki.rendering.block.ParagraphBlock;
+import org.xwiki.rendering.block.SpaceBlock;
+import org.xwiki.rendering.block.WordBlock;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.block.match.ClassBlockMatcher;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link DefaultGlossaryEntriesTransformer}.
+ *
+ * @version $Id$
+ */
+public class DefaultGlossaryEntriesTransformerTest
+{
+    @Rule
+    public MockitoComponentMockingRule<DefaultGlossaryEntriesTransformer> mocker =
+        new MockitoComponentMockingRule<>(DefaultGlossaryEntriesTransformer.class);
+
+    @Before
+    public void setUp() throws Exception
+    {
+        // The glossary only has a French entry
+        GlossaryModel glossaryModel = mocker.getInstance(GlossaryModel.class);
+        when(glossaryModel.getGlossarySnapshot()).thenReturn(new GlossarySnapshot(1,
+            Collections.singletonMap("Glossary", Collections.singletonMap(Locale.FRENCH,
+                Collections.singletonMap("World", new DocumentReference("wiki", "Glossary", "World"))))));
+
+        EntityReferenceSerializer<String> serializer =
+            mocker.getInstance(EntityReferenceSerializer.TYPE_STRING, "local");
+        when(serializer.serialize(any())).thenReturn("Glossary");
+    }
+
+    private XDOM getXDOM()
+    {
+        return new XDOM(Collections.singletonList(new ParagraphBlock(
+            Arrays.asList(new WordBlock("Hello"), new SpaceBlock(), new WordBlock("World")))));
+    }
+
+    @Test
+    public void contentSkippedOnSaveIsNotModified() throws Exception
+    {
+        // GlossaryDocumentLinker doesn't even parse a content without glossary reference when there is no entry in
+        // its locale: the full transformation has to leave such a content unchanged for this to be correct
+        XDOM xdom = getXDOM();
+
+        assertFalse(mocker.getComponentUnderTest().transformGlossaryEntries(xdom, Syntax.XWIKI_2_1, Locale.ENGLISH));
+        assertEquals(getXDOM(), xdom);
+        assertTrue(xdom.getBlocks(new ClassBlockMatcher(MacroBlock.class), Block.Axes.DESCENDANT).isEmpty());
+    }
+
+    @Test
+    public void entriesOfTheContentLocaleAreLinked() throws Exception
+    {
+        XDOM xdom = getXDOM();
+
+        assertTrue(mocker.getComponentUnderTest().transformGlossaryEntries(xdom, Syntax.XWIKI_2_1, Locale.FRENCH));
+        List<MacroBlock> macroBlocks =
+            xdom.getBlocks(new ClassBlockMatcher(MacroBlock.class), Block.Axes.DESCENDANT);
+        assertEquals(1, macroBlocks.size());
+        assertEquals(GlossaryReferenceMacro.MACRO_NAME, macroBlocks.get(0).getId());
+        assertEquals("World", macroBlocks.get(0).getParameter("entryId"));
+        assertEquals("Glossary", macroBlocks.get(0).getParameter("glossaryId"));
+    }
+}
@@ -20,6 +20,7 @@
 package org.xwiki.contrib.glossary.internal;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -50,6 +51,8 @@ import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -136,4 +139,27 @@ public class DefaultGlossaryModelTest
 
         assertEquals(xdom, mocker.getComponentUnderTest().getGlossaryContent(documentReference, Locale.ENGLISH));
     }
+
+    @Test
+    public void getGlossaryContentsWithCachedDefinition() throws Exception
+    {
+        Query query = mock(Query.class);
+        when(queryManager.createQuery(any(String.class), eq(Query.HQL))).thenReturn(query);
+        when(query.bindValue(any(String.class), any())).thenReturn(query);
+
+        DocumentReference documentReference = new DocumentReference("xwiki", "Glossary", "entry");
+        when(entityReferenceSerializer.serialize(documentReference)).thenReturn("Glossary.entry");
+        Object[] defaultDocument = { "Glossary.entry", "", "1.1" };
+        Object[] translation = { "Glossary.entry", "fr", "2.1" };
+        when(query.execute()).thenReturn(Arrays.asList(defaultDocument, translation));
+
+        XDOM xdom = new XDOM(Collections.emptyList());
+        GlossaryContentCache contentCache = mocker.getInstance(GlossaryContentCache.class);
+        when(contentCache.get(documentReference, "fr", "2.1")).thenReturn(xdom);
+
+        assertEquals(Collections.singletonMap(documentReference, xdom), mocker.getComponentUnderTest()
+            .getGlossaryContents(Collections.singletonList(documentReference), Locale.CANADA_FRENCH));
+        // The content itself doesn't need to be queried when the definition is cached
+        verify(queryManager, times(1)).createQuery(any(String.class), eq(Query.HQL));
+    }
 }
@@ -0,0 +1,176 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.internal;
+
+import java.io.Reader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import javax.inject.Provider;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.util.DefaultParameterizedType;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.localization.ContextualLocalizationManager;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryManager;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.WordBlock;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.renderer.BlockRenderer;
+import org.xwiki.rendering.renderer.printer.WikiPrinter;
+import org.xwiki.security.authorization.ContextualAuthorizationManager;
+import org.xwiki.security.authorization.Right;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import com.xpn.xwiki.XWikiContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link GlossaryCSVExporter}.
+ *
+ * @version $Id$
+ */
+public class GlossaryCSVExporterTest
+{
+    @Rule
+    public MockitoComponentMockingRule<GlossaryCSVExporter> mocker =
+        new MockitoComponentMockingRule<>(GlossaryCSVExporter.class);
+
+    private Query entriesQuery;
+
+    private Query languagesQuery;
+
+    private Query translationsQuery;
+
+    private final List<Object[]> translations = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception
+    {
+        Provider<XWikiContext> xcontextProvider = mocker.getInstance(XWikiContext.TYPE_PROVIDER);
+        XWikiContext xcontext = mock(XWikiContext.class);
+        when(xcontextProvider.get()).thenReturn(xcontext);
+        when(xcontext.getWikiId()).thenReturn("wiki");
+        when(xcontext.getLocale()).thenReturn(Locale.ENGLISH);
+
+        QueryManager queryManager = mocker.getInstance(QueryManager.class);
+        entriesQuery = mockQuery(queryManager, "select obj.name");
+        languagesQuery = mockQuery(queryManager, "select distinct doc.language");
+        translationsQuery = mockQuery(queryManager, "select doc.fullName");
+        when(translationsQuery.execute()).thenAnswer(invocation -> translations);
+
+        DocumentReferenceResolver<String> documentReferenceResolver =
+            mocker.getInstance(DocumentReferenceResolver.TYPE_STRING, "currentmixed");
+        when(documentReferenceResolver.resolve(anyString())).thenAnswer(invocation -> new DocumentReference("wiki",
+            "Glossary", invocation.<String>getArgument(0).substring("Glossary.".length())));
+        ContextualAuthorizationManager authorizationManager =
+            mocker.getInstance(ContextualAuthorizationManager.class);
+        when(authorizationManager.hasAccess(eq(Right.VIEW), any())).thenReturn(true);
+        when(authorizationManager.hasAccess(Right.VIEW, new DocumentReference("wiki", "Glossary", "Secret")))
+            .thenReturn(false);
+
+        ContextualLocalizationManager localizationManager = mocker.getInstance(ContextualLocalizationManager.class);
+        when(localizationManager.getTranslationPlain("glossary.export.id")).thenReturn("Entry");
+        when(localizationManager.getTranslationPlain("glossary.export.locale.default")).thenReturn("Default");
+
+        // Definitions are rendered by the workers with the actual component manager
+        Provider<ComponentManager> componentManagerProvider =
+            mocker.getInstance(new DefaultParameterizedType(null, Provider.class, ComponentManager.class), "context");
+        when(componentManagerProvider.get()).thenReturn(mocker);
+        mocker.registerMockComponent(ExecutionContextManager.class);
+        mocker.registerMockComponent(Execution.class);
+        Parser parser = mocker.registerMockComponent(Parser.class, "xwiki/2.1");
+        when(parser.parse(any(Reader.class))).thenAnswer(invocation -> new XDOM(
+            Collections.singletonList(new WordBlock(IOUtils.toString(invocation.<Reader>getArgument(0))))));
+        BlockRenderer plainTextRenderer = mocker.getInstance(BlockRenderer.class, "plain/1.0");
+        doAnswer(invocation -> {
+            Block word = invocation.<Block>getArgument(0).getChildren().get(0);
+            invocation.<WikiPrinter>getArgument(1).print(((WordBlock) word).getWord());
+            return null;
+        }).when(plainTextRenderer).render(any(Block.class), any(WikiPrinter.class));
+    }
+
+    private Query mockQuery(QueryManager queryManager, String statementStart) throws Exception
+    {
+        Query query = mock(Query.class);
+        when(queryManager.createQuery(startsWith(statementStart), eq(Query.HQL))).thenReturn(query);
+        when(query.bindValue(anyString(), any())).thenReturn(query);
+        return query;
+    }
+
+    @Test
+    public void exportViewableEntries() throws Exception
+    {
+        when(entriesQuery.<String>execute()).thenReturn(Arrays.asList("Glossary.Hello", "Glossary.Secret"));
+        when(languagesQuery.<String>execute()).thenReturn(Arrays.asList("", "fr"));
+        translations.add(new Object[] { "Glossary.Hello", "Hello", "", "Hello \"world\"", "xwiki/2.1" });
+        translations.add(new Object[] { "Glossary.Hello", "Bonjour", "fr", "Bonjour", "xwiki/2.1" });
+
+        StringWriter writer = new StringWriter();
+        mocker.getComponentUnderTest().export("Glossary", writer);
+
+        assertEquals("\"Entry\";\"Default\";\"\";\"French\";\"\"\n"
+            + "\"Glossary.Hello\";\"Hello\";\"Hello \"\"world\"\"\";\"Bonjour\";\"Bonjour\"", writer.toString());
+        verify(translationsQuery).bindValue("entries", Collections.singletonList("Glossary.Hello"));
+    }
+
+    @Test
+    public void exportByBatches() throws Exception
+    {
+        List<String> entries = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            entries.add(String.format("Glossary.Entry%03d", i));
+        }
+        when(entriesQuery.<String>execute()).thenReturn(entries);
+        when(languagesQuery.<String>execute()).thenReturn(Collections.singletonList(""));
+
+        StringWriter writer = new StringWriter();
+        mocker.getComponentUnderTest().export("Glossary", writer);
+
+        // One query per batch of entries, and a row for each entry even without translation
+        verify(translationsQuery, times(2)).execute();
+        verify(translationsQuery).bindValue("entries", entries.subList(0, 100));
+        verify(translationsQuery).bindValue("entries", entries.subList(100, 150));
+        assertEquals(151, writer.toString().split("\n").length);
+    }
+}
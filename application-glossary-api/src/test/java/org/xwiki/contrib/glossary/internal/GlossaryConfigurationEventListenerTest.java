@@ -0,0 +1,88 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.internal;
+
+import javax.inject.Provider;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.component.util.DefaultParameterizedType;
+import org.xwiki.contrib.glossary.GlossaryConfiguration;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link GlossaryConfigurationEventListener}.
+ *
+ * @version $Id$
+ */
+public class GlossaryConfigurationEventListenerTest
+{
+    @Rule
+    public MockitoComponentMockingRule<GlossaryConfigurationEventListener> mocker =
+        new MockitoComponentMockingRule<>(GlossaryConfigurationEventListener.class);
+
+    private DefaultGlossaryConfiguration glossaryConfiguration;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        Provider<GlossaryConfiguration> glossaryConfigurationProvider =
+            mocker.registerMockComponent(new DefaultParameterizedType(null, Provider.class,
+                GlossaryConfiguration.class));
+        glossaryConfiguration = mock(DefaultGlossaryConfiguration.class);
+        when(glossaryConfigurationProvider.get()).thenReturn(glossaryConfiguration);
+    }
+
+    private XWikiDocument getDocument(DocumentReference reference)
+    {
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(document.getDocumentReference()).thenReturn(reference);
+        return document;
+    }
+
+    @Test
+    public void configurationDocumentInvalidatesWikiConfiguration() throws Exception
+    {
+        mocker.getComponentUnderTest().onEvent(new DocumentUpdatedEvent(),
+            getDocument(DefaultGlossaryConfiguration.getConfigurationDocumentReference("wiki")), null);
+
+        verify(glossaryConfiguration).invalidate("wiki");
+    }
+
+    @Test
+    public void otherDocumentsAreIgnored() throws Exception
+    {
+        mocker.getComponentUnderTest().onEvent(new DocumentUpdatedEvent(),
+            getDocument(new DocumentReference("wiki", "Glossary", "Entry")), null);
+
+        verify(glossaryConfiguration, never()).invalidate(anyString());
+    }
+}
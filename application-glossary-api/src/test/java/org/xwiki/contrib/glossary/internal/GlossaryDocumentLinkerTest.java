@@ -0,0 +1,281 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import javax.inject.Provider;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.util.DefaultParameterizedType;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.contrib.glossary.GlossaryConfiguration;
+import org.xwiki.contrib.glossary.GlossaryEntriesTransformer;
+import org.xwiki.contrib.glossary.GlossaryModel;
+import org.xwiki.contrib.glossary.GlossarySnapshot;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.observation.remote.RemoteObservationManagerContext;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.MacroBlock;
+import org.xwiki.rendering.block.ParagraphBlock;
+import org.xwiki.rendering.block.WordBlock;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link GlossaryDocumentLinker}.
+ *
+ * @version $Id$
+ */
+public class GlossaryDocumentLinkerTest
+{
+    // Use the actual component manager to run the background updates
+    @Rule
+    public MockitoComponentMockingRule<GlossaryDocumentLinker> mocker = new MockitoComponentMockingRule<>(
+        GlossaryDocumentLinker.class, Collections.singletonList(ComponentManager.class));
+
+    private final DocumentReference documentReference =
+        new DocumentReference("wiki", "Space", "Page", Locale.ROOT);
+
+    private GlossaryConfiguration glossaryConfiguration;
+
+    private RemoteObservationManagerContext remoteObservationManagerContext;
+
+    private GlossaryReferencesIndex referencesIndex;
+
+    private XWikiContext xcontext;
+
+    private XWiki xwiki;
+
+    private XWikiDocument document;
+
+    private XWikiDocument linkedDocument;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        mocker.registerMockComponent(ExecutionContextManager.class);
+        mocker.registerMockComponent(Execution.class);
+
+        glossaryConfiguration = mocker.getInstance(GlossaryConfiguration.class);
+
+        Provider<RemoteObservationManagerContext> remoteObservationManagerContextProvider = mocker.getInstance(
+            new DefaultParameterizedType(null, Provider.class, RemoteObservationManagerContext.class));
+        remoteObservationManagerContext = mock(RemoteObservationManagerContext.class);
+        when(remoteObservationManagerContextProvider.get()).thenReturn(remoteObservationManagerContext);
+
+        Provider<GlossaryReferencesIndex> referencesIndexProvider =
+            mocker.getInstance(new DefaultParameterizedType(null, Provider.class, GlossaryReferencesIndex.class));
+        referencesIndex = mock(GlossaryReferencesIndex.class);
+        when(referencesIndexProvider.get()).thenReturn(referencesIndex);
+
+        Provider<XWikiContext> xcontextProvider = mocker.getInstance(XWikiContext.TYPE_PROVIDER);
+        xcontext = mock(XWikiContext.class);
+        when(xcontextProvider.get()).thenReturn(xcontext);
+        xwiki = mock(XWiki.class);
+        when(xcontext.getWiki()).thenReturn(xwiki);
+
+        // The saved document contains a glossary entry
+        GlossaryModel glossaryModel = mocker.getInstance(GlossaryModel.class);
+        when(glossaryModel.getGlossarySnapshot()).thenReturn(new GlossarySnapshot(1, Collections.singletonMap(
+            "Glossary", Collections.singletonMap(Locale.ENGLISH, Collections.singletonMap("World",
+                new DocumentReference("wiki", "Glossary", "World"))))));
+        GlossaryEntriesTransformer transformer = mocker.getInstance(GlossaryEntriesTransformer.class);
+        when(transformer.transformGlossaryEntries(any(XDOM.class), any(), any(Locale.class))).thenReturn(true);
+
+        document = getDocument("1.1");
+        linkedDocument = getDocument("1.1");
+        when(document.clone()).thenReturn(linkedDocument);
+        when(linkedDocument.getXDOM()).thenReturn(new XDOM(Collections.emptyList()));
+    }
+
+    private XWikiDocument getDocument(String version)
+    {
+        XWikiDocument xwikiDocument = mock(XWikiDocument.class);
+        when(xwikiDocument.getDocumentReferenceWithLocale()).thenReturn(documentReference);
+        when(xwikiDocument.getLocale()).thenReturn(Locale.ROOT);
+        when(xwikiDocument.getDefaultLocale()).thenReturn(Locale.ENGLISH);
+        when(xwikiDocument.getVersion()).thenReturn(version);
+        return xwikiDocument;
+    }
+
+    @Test
+    public void savesAreCoalesced() throws Exception
+    {
+        when(glossaryConfiguration.getUpdateDocumentsOnSaveDelay()).thenReturn(1L);
+        when(xwiki.getDocument(documentReference, xcontext)).thenReturn(document);
+
+        mocker.getComponentUnderTest().schedule(document);
+        mocker.getComponentUnderTest().schedule(document);
+
+        verify(xwiki, timeout(5000)).saveDocument(eq(linkedDocument), any(), eq(true), eq(xcontext));
+        verify(xwiki, after(1500).times(1)).saveDocument(eq(linkedDocument), any(), anyBoolean(), eq(xcontext));
+
+        // The document is marked as being linked while it's saved, so that the save is not linked again
+        InOrder inOrder = inOrder(xcontext, xwiki);
+        inOrder.verify(xcontext).put(GlossaryDocumentLinker.LINKING_CONTEXT_KEY, true);
+        inOrder.verify(xwiki).saveDocument(eq(linkedDocument), any(), eq(true), eq(xcontext));
+        inOrder.verify(xcontext).remove(GlossaryDocumentLinker.LINKING_CONTEXT_KEY);
+    }
+
+    @Test
+    public void concurrentSaveIsNotOverwritten() throws Exception
+    {
+        XWikiDocument currentDocument = getDocument("1.2");
+        when(xwiki.getDocument(documentReference, xcontext)).thenReturn(document, currentDocument);
+
+        mocker.getComponentUnderTest().schedule(document);
+
+        verify(linkedDocument, timeout(5000)).setContent(any(XDOM.class));
+        verify(xwiki, after(500).never()).saveDocument(any(XWikiDocument.class), any(), anyBoolean(),
+            any(XWikiContext.class));
+    }
+
+    @Test
+    public void onlyModifiedBlocksAreTransformed() throws Exception
+    {
+        GlossaryLinkedContentCache linkedContentCache = mocker.getInstance(GlossaryLinkedContentCache.class);
+        when(linkedContentCache.isLinked(eq(documentReference), anyLong(), any())).thenReturn(true);
+        XWikiDocument originalDocument = getDocument("1.1");
+        when(originalDocument.getContent()).thenReturn("original content");
+        when(originalDocument.getXDOM()).thenReturn(new XDOM(Arrays.asList(
+            new ParagraphBlock(Collections.singletonList(new WordBlock("Hello"))),
+            new MacroBlock("info", Collections.emptyMap(), "World", false),
+            new MacroBlock("info", Collections.emptyMap(), "Unchanged", false))));
+        when(document.getOriginalDocument()).thenReturn(originalDocument);
+        when(document.getContent()).thenReturn("modified content");
+
+        // Macro blocks are equal for Block#equals whatever their identifier and content
+        Block modifiedContent = new MacroBlock("info", Collections.emptyMap(), "Hello World", false);
+        Block modifiedId = new MacroBlock("warning", Collections.emptyMap(), "Unchanged", false);
+        XDOM xdom = new XDOM(Arrays.asList(new ParagraphBlock(Collections.singletonList(new WordBlock("Hello"))),
+            modifiedContent, modifiedId));
+        when(document.getXDOM()).thenReturn(xdom);
+
+        mocker.getComponentUnderTest().link(document);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Block>> modifiedBlocks = ArgumentCaptor.forClass(List.class);
+        GlossaryEntriesTransformer transformer = mocker.getInstance(GlossaryEntriesTransformer.class);
+        verify(transformer).transformGlossaryEntries(same(xdom), modifiedBlocks.capture(), any(), eq(Locale.ENGLISH));
+        assertEquals(2, modifiedBlocks.getValue().size());
+        assertSame(modifiedContent, modifiedBlocks.getValue().get(0));
+        assertSame(modifiedId, modifiedBlocks.getValue().get(1));
+    }
+
+    @Test
+    public void recentlyLinkedContentIsNotParsedAgain() throws Exception
+    {
+        GlossaryLinkedContentCache linkedContentCache = mocker.getInstance(GlossaryLinkedContentCache.class);
+        when(linkedContentCache.getLinkedBlocks(eq(documentReference), anyLong(), eq("original content")))
+            .thenReturn(Arrays.asList(new ParagraphBlock(Collections.singletonList(new WordBlock("Hello"))),
+                new MacroBlock("info", Collections.emptyMap(), "World", false)));
+        XWikiDocument originalDocument = getDocument("1.1");
+        when(originalDocument.getContent()).thenReturn("original content");
+        when(document.getOriginalDocument()).thenReturn(originalDocument);
+        when(document.getContent()).thenReturn("modified content");
+
+        Block modifiedContent = new MacroBlock("info", Collections.emptyMap(), "Hello World", false);
+        XDOM xdom = new XDOM(Arrays.asList(new ParagraphBlock(Collections.singletonList(new WordBlock("Hello"))),
+            modifiedContent));
+        when(document.getXDOM()).thenReturn(xdom);
+
+        mocker.getComponentUnderTest().link(document);
+
+        verify(originalDocument, never()).getXDOM();
+        verify(mocker.getInstance(GlossaryEntriesTransformer.class)).transformGlossaryEntries(same(xdom),
+            eq(Collections.singletonList(modifiedContent)), any(), eq(Locale.ENGLISH));
+        // The blocks of the linked content are remembered for the next save
+        verify(linkedContentCache).setLinked(eq(documentReference), anyLong(), any(), eq(xdom.getChildren()));
+    }
+
+    @Test
+    public void contentWithoutEntriesInItsLocaleIsNotParsed() throws Exception
+    {
+        // The glossary only has a French entry while the document is in English
+        GlossaryModel glossaryModel = mocker.getInstance(GlossaryModel.class);
+        when(glossaryModel.getGlossarySnapshot()).thenReturn(new GlossarySnapshot(2, Collections.singletonMap(
+            "Glossary", Collections.singletonMap(Locale.FRENCH, Collections.singletonMap("World",
+                new DocumentReference("wiki", "Glossary", "World"))))));
+        when(document.getContent()).thenReturn("Hello World");
+
+        // Same result as the full transformation, see DefaultGlossaryEntriesTransformerTest
+        assertFalse(mocker.getComponentUnderTest().link(document));
+
+        verify(document, never()).getXDOM();
+        verify(mocker.getInstance(GlossaryEntriesTransformer.class), never())
+            .transformGlossaryEntries(any(XDOM.class), any(), any(Locale.class));
+        verify(referencesIndex).setReferences(documentReference, Collections.emptySet());
+    }
+
+    @Test
+    public void excludedDocumentIsIndexed() throws Exception
+    {
+        DocumentReference classReference = new DocumentReference("wiki", "Space", "ExcludedClass");
+        when(document.getXObjects()).thenReturn(
+            Collections.singletonMap(classReference, Collections.singletonList(mock(BaseObject.class))));
+        when(glossaryConfiguration.isExcludedClassFromTransformations(classReference)).thenReturn(true);
+
+        assertFalse(mocker.getComponentUnderTest().link(document));
+
+        verify(document, never()).setContent(any(XDOM.class));
+        verify(referencesIndex).index(document);
+    }
+
+    @Test
+    public void remoteSavesAreNotScheduled() throws Exception
+    {
+        when(remoteObservationManagerContext.isRemoteState()).thenReturn(true);
+
+        mocker.getComponentUnderTest().schedule(document);
+
+        verify(xwiki, after(500).never()).getDocument(documentReference, xcontext);
+    }
+}
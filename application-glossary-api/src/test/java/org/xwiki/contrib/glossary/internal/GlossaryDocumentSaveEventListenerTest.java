@@ -0,0 +1,119 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.internal;
+
+import javax.inject.Provider;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.component.util.DefaultParameterizedType;
+import org.xwiki.contrib.glossary.GlossaryConfiguration;
+import org.xwiki.observation.ObservationContext;
+import org.xwiki.observation.remote.RemoteObservationManagerContext;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link GlossaryDocumentSaveEventListener} when the documents are updated in the background.
+ *
+ * @version $Id$
+ */
+public class GlossaryDocumentSaveEventListenerTest
+{
+    @Rule
+    public MockitoComponentMockingRule<GlossaryDocumentSaveEventListener> mocker =
+        new MockitoComponentMockingRule<>(GlossaryDocumentSaveEventListener.class);
+
+    private XWikiContext xcontext;
+
+    private RemoteObservationManagerContext remoteObservationManagerContext;
+
+    private GlossaryDocumentLinker documentLinker;
+
+    private final XWikiDocument document = mock(XWikiDocument.class);
+
+    @Before
+    public void setUp() throws Exception
+    {
+        GlossaryConfiguration glossaryConfiguration = mocker.getInstance(GlossaryConfiguration.class);
+        when(glossaryConfiguration.updateDocumentsOnSave()).thenReturn(true);
+        when(glossaryConfiguration.isUpdateDocumentsOnSaveAsynchronously()).thenReturn(true);
+
+        Provider<XWikiContext> xcontextProvider = mocker.getInstance(XWikiContext.TYPE_PROVIDER);
+        xcontext = mock(XWikiContext.class);
+        when(xcontextProvider.get()).thenReturn(xcontext);
+
+        Provider<RemoteObservationManagerContext> remoteObservationManagerContextProvider = mocker.getInstance(
+            new DefaultParameterizedType(null, Provider.class, RemoteObservationManagerContext.class));
+        remoteObservationManagerContext = mock(RemoteObservationManagerContext.class);
+        when(remoteObservationManagerContextProvider.get()).thenReturn(remoteObservationManagerContext);
+
+        Provider<ObservationContext> observationContextProvider =
+            mocker.getInstance(new DefaultParameterizedType(null, Provider.class, ObservationContext.class));
+        when(observationContextProvider.get()).thenReturn(mock(ObservationContext.class));
+
+        Provider<GlossaryDocumentLinker> documentLinkerProvider =
+            mocker.getInstance(new DefaultParameterizedType(null, Provider.class, GlossaryDocumentLinker.class));
+        documentLinker = mock(GlossaryDocumentLinker.class);
+        when(documentLinkerProvider.get()).thenReturn(documentLinker);
+
+        Provider<GlossaryReferencesIndex> referencesIndexProvider =
+            mocker.getInstance(new DefaultParameterizedType(null, Provider.class, GlossaryReferencesIndex.class));
+        when(referencesIndexProvider.get()).thenReturn(mock(GlossaryReferencesIndex.class));
+    }
+
+    @Test
+    public void savedDocumentIsScheduled() throws Exception
+    {
+        mocker.getComponentUnderTest().onEvent(new DocumentUpdatedEvent(), document, xcontext);
+
+        verify(documentLinker).schedule(document);
+    }
+
+    @Test
+    public void backgroundSaveIsNotScheduledAgain() throws Exception
+    {
+        when(xcontext.containsKey(GlossaryDocumentLinker.LINKING_CONTEXT_KEY)).thenReturn(true);
+
+        mocker.getComponentUnderTest().onEvent(new DocumentUpdatedEvent(), document, xcontext);
+
+        verify(documentLinker, never()).schedule(any());
+    }
+
+    @Test
+    public void remoteSaveIsNotScheduled() throws Exception
+    {
+        when(remoteObservationManagerContext.isRemoteState()).thenReturn(true);
+
+        mocker.getComponentUnderTest().onEvent(new DocumentUpdatedEvent(), document, xcontext);
+
+        verify(documentLinker, never()).schedule(any());
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.internal;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+import javax.inject.Provider;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xwiki.component.util.DefaultParameterizedType;
+import org.xwiki.contrib.glossary.GlossaryConfiguration;
+import org.xwiki.environment.Environment;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import com.xpn.xwiki.XWikiContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link GlossaryEntriesChangeLog}.
+ *
+ * @version $Id$
+ */
+public class GlossaryEntriesChangeLogTest
+{
+    @Rule
+    public MockitoComponentMockingRule<GlossaryEntriesChangeLog> mocker =
+        new MockitoComponentMockingRule<>(GlossaryEntriesChangeLog.class);
+
+    @Rule
+    public TemporaryFolder permanentDirectory = new TemporaryFolder();
+
+    private File changesFile;
+
+    private String currentWikiId = "main";
+
+    private boolean activated = true;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        Environment environment = mocker.getInstance(Environment.class);
+        when(environment.getPermanentDirectory()).thenReturn(permanentDirectory.getRoot());
+        changesFile = new File(permanentDirectory.getRoot(), "glossary/transformationJob/wiki.changes");
+
+        Provider<XWikiContext> xcontextProvider = mocker.getInstance(XWikiContext.TYPE_PROVIDER);
+        XWikiContext xcontext = mock(XWikiContext.class);
+        when(xcontextProvider.get()).thenReturn(xcontext);
+        when(xcontext.getWikiId()).thenAnswer(invocation -> currentWikiId);
+        doAnswer(invocation -> currentWikiId = invocation.getArgument(0)).when(xcontext).setWikiId(anyString());
+
+        // The transformation job is only activated in the wiki of the entries, not in the current wiki
+        Provider<GlossaryConfiguration> configurationProvider =
+            mocker.getInstance(new DefaultParameterizedType(null, Provider.class, GlossaryConfiguration.class));
+        GlossaryConfiguration configuration = mock(GlossaryConfiguration.class);
+        when(configurationProvider.get()).thenReturn(configuration);
+        when(configuration.isActivateTransformationJob())
+            .thenAnswer(invocation -> activated && "wiki".equals(currentWikiId));
+    }
+
+    @Test
+    public void changesAreAppended() throws Exception
+    {
+        mocker.getComponentUnderTest().recordChanges("wiki", Arrays.asList("Hello", " ", "Hello  World"));
+        mocker.getComponentUnderTest().recordChange("wiki", "Hello");
+
+        assertEquals(new LinkedHashSet<>(Arrays.asList("Hello", "Hello World")),
+            mocker.getComponentUnderTest().getChangedTitles("wiki"));
+        assertEquals(3, FileUtils.readLines(changesFile, StandardCharsets.UTF_8).size());
+        assertFalse(mocker.getComponentUnderTest().isIncomplete("wiki"));
+        // The context wiki is restored
+        assertEquals("main", currentWikiId);
+    }
+
+    @Test
+    public void changesAreLoadedAndCompacted() throws Exception
+    {
+        FileUtils.writeLines(changesFile, StandardCharsets.UTF_8.name(),
+            Arrays.asList("100\tHello", "200\tWorld", "300\tHello", "malformed"));
+
+        assertEquals(new LinkedHashSet<>(Arrays.asList("Hello", "World")),
+            mocker.getComponentUnderTest().getChangedTitles("wiki"));
+
+        // Only the most recent change of each title is kept
+        mocker.getComponentUnderTest().clear("wiki", 250);
+        assertEquals(Collections.singleton("Hello"), mocker.getComponentUnderTest().getChangedTitles("wiki"));
+        assertEquals(Collections.singletonList("300\tHello"), FileUtils.readLines(changesFile, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void changesAreNotRecordedWhenTheJobIsNotActivated() throws Exception
+    {
+        activated = false;
+
+        mocker.getComponentUnderTest().recordChange("wiki", "Hello");
+
+        assertTrue(mocker.getComponentUnderTest().getChangedTitles("wiki").isEmpty());
+        assertFalse(changesFile.exists());
+        assertTrue(mocker.getComponentUnderTest().isIncomplete("wiki"));
+
+        // The next run of the job processes all the documents
+        mocker.getComponentUnderTest().clear("wiki", System.currentTimeMillis());
+        assertFalse(mocker.getComponentUnderTest().isIncomplete("wiki"));
+    }
+}
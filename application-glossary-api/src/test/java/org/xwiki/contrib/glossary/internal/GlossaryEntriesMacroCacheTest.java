@@ -0,0 +1,128 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.WordBlock;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link GlossaryEntriesMacroCache}.
+ *
+ * @version $Id$
+ */
+public class GlossaryEntriesMacroCacheTest
+{
+    @Rule
+    public MockitoComponentMockingRule<GlossaryEntriesMacroCache> mocker =
+        new MockitoComponentMockingRule<>(GlossaryEntriesMacroCache.class);
+
+    private final Map<String, GlossaryEntriesMacroCache.CachedResult> cachedResults = new HashMap<>();
+
+    private final List<DocumentReference> entryReferences =
+        Collections.singletonList(new DocumentReference("wiki", "Glossary", "world"));
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception
+    {
+        Cache<GlossaryEntriesMacroCache.CachedResult> cache = mock(Cache.class);
+        when(cache.get(anyString())).thenAnswer(invocation -> cachedResults.get(invocation.getArgument(0)));
+        doAnswer(invocation -> cachedResults.put(invocation.getArgument(0), invocation.getArgument(1))).when(cache)
+            .set(anyString(), any());
+
+        CacheManager cacheManager = mocker.getInstance(CacheManager.class);
+        when(cacheManager.<GlossaryEntriesMacroCache.CachedResult>createNewCache(any())).thenReturn(cache);
+    }
+
+    @Test
+    public void blocksAreClonedOnSetAndGet() throws Exception
+    {
+        GlossaryEntriesMacroCache macroCache = mocker.getComponentUnderTest();
+        String key = macroCache.getCacheKey("wiki", "Glossary");
+        List<Block> blocks = Arrays.asList(new WordBlock("Hello"), new WordBlock("World"));
+
+        macroCache.set(key, new GlossaryEntriesMacroCache.CachedResult(entryReferences, blocks));
+        // Modifying the blocks after they were cached doesn't modify the cached ones
+        Block stored = this.cachedResults.get(key).getBlocks().get(0);
+        assertNotSame(blocks.get(0), stored);
+        blocks.get(0).setParameter("class", "modified");
+        assertNull(stored.getParameter("class"));
+
+        GlossaryEntriesMacroCache.CachedResult first = macroCache.get(key);
+        GlossaryEntriesMacroCache.CachedResult second = macroCache.get(key);
+        assertEquals(entryReferences, first.getEntryReferences());
+        assertEquals(Arrays.asList(new WordBlock("Hello"), new WordBlock("World")), first.getBlocks());
+        assertNotSame(stored, first.getBlocks().get(0));
+        assertNotSame(first.getBlocks().get(0), second.getBlocks().get(0));
+    }
+
+    @Test
+    public void keyIncludesParametersAndGlossaryVersion() throws Exception
+    {
+        GlossaryEntriesMacroCache macroCache = mocker.getComponentUnderTest();
+
+        assertEquals("wiki:Glossary/0/3/true", macroCache.getCacheKey("wiki", "Glossary", 3, true));
+        assertNotEquals(macroCache.getCacheKey("wiki", "Glossary", 3, true),
+            macroCache.getCacheKey("wiki", "Glossary", 3, false));
+        assertNotEquals(macroCache.getCacheKey("wiki", "Glossary"), macroCache.getCacheKey("other", "Glossary"));
+    }
+
+    @Test
+    public void invalidateOnlyAffectsTheGivenGlossary() throws Exception
+    {
+        GlossaryEntriesMacroCache macroCache = mocker.getComponentUnderTest();
+        String key = macroCache.getCacheKey("wiki", "Glossary");
+        String otherKey = macroCache.getCacheKey("wiki", "Other");
+        String otherWikiKey = macroCache.getCacheKey("other", "Glossary");
+        macroCache.set(key, new GlossaryEntriesMacroCache.CachedResult(entryReferences,
+            Collections.singletonList(new WordBlock("World"))));
+
+        macroCache.invalidate("wiki", "Glossary");
+
+        String newKey = macroCache.getCacheKey("wiki", "Glossary");
+        assertEquals("wiki:Glossary/1", newKey);
+        assertNull(macroCache.get(newKey));
+        assertEquals(otherKey, macroCache.getCacheKey("wiki", "Other"));
+        assertEquals(otherWikiKey, macroCache.getCacheKey("other", "Glossary"));
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.inject.Provider;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.contrib.glossary.GlossaryEntriesMacroParameters;
+import org.xwiki.contrib.glossary.GlossaryModel;
+import org.xwiki.contrib.glossary.GlossarySnapshot;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.WordBlock;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.security.authorization.ContextualAuthorizationManager;
+import org.xwiki.security.authorization.Right;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import com.xpn.xwiki.XWikiContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the way {@link GlossaryEntriesMacro} uses the {@link GlossaryEntriesMacroCache}.
+ *
+ * @version $Id$
+ */
+public class GlossaryEntriesMacroCachingTest
+{
+    private static final String CACHE_KEY = "wiki:Glossary/0";
+
+    @Rule
+    public MockitoComponentMockingRule<GlossaryEntriesMacro> mocker =
+        new MockitoComponentMockingRule<>(GlossaryEntriesMacro.class);
+
+    private final DocumentReference helloEntry = new DocumentReference("wiki", "Glossary", "hello");
+
+    private final DocumentReference worldEntry = new DocumentReference("wiki", "Glossary", "world");
+
+    private final List<Block> cachedBlocks = Collections.singletonList(new WordBlock("cached"));
+
+    private GlossaryModel glossaryModel;
+
+    private GlossaryEntriesMacroCache macroCache;
+
+    private ContextualAuthorizationManager authorizationManager;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        Provider<XWikiContext> xWikiContextProvider = mocker.getInstance(XWikiContext.TYPE_PROVIDER);
+        XWikiContext xWikiContext = mock(XWikiContext.class);
+        when(xWikiContextProvider.get()).thenReturn(xWikiContext);
+        when(xWikiContext.getLocale()).thenReturn(Locale.ENGLISH);
+        when(xWikiContext.getWikiId()).thenReturn("wiki");
+        when(xWikiContext.getOrDefault(anyString(), eq(false))).thenReturn(false);
+
+        Map<String, DocumentReference> entries = new HashMap<>();
+        entries.put("Hello", helloEntry);
+        entries.put("World", worldEntry);
+        glossaryModel = mocker.getInstance(GlossaryModel.class);
+        when(glossaryModel.getGlossarySnapshot()).thenReturn(new GlossarySnapshot(1,
+            Collections.singletonMap("Glossary", Collections.singletonMap(Locale.ENGLISH, entries))));
+        when(glossaryModel.getGlossaryContents(any(), any())).thenReturn(Collections.emptyMap());
+
+        Parser plainTextParser = mocker.getInstance(Parser.class, "plain/1.0");
+        when(plainTextParser.parse(any())).thenAnswer(invocation -> new XDOM(Collections.emptyList()));
+        EntityReferenceSerializer<String> serializer = mocker.getInstance(EntityReferenceSerializer.TYPE_STRING);
+        when(serializer.serialize(any())).thenReturn("entry");
+
+        authorizationManager = mocker.getInstance(ContextualAuthorizationManager.class);
+        when(authorizationManager.hasAccess(eq(Right.VIEW), any())).thenReturn(true);
+
+        macroCache = mocker.getInstance(GlossaryEntriesMacroCache.class);
+        when(macroCache.getCacheKey(eq("wiki"), eq("Glossary"), any())).thenReturn(CACHE_KEY);
+        when(macroCache.get(CACHE_KEY)).thenReturn(
+            new GlossaryEntriesMacroCache.CachedResult(Arrays.asList(helloEntry, worldEntry), cachedBlocks));
+    }
+
+    @Test
+    public void cachedResultIsUsedWhenItCoversTheViewableEntries() throws Exception
+    {
+        assertEquals(cachedBlocks, execute());
+
+        verify(glossaryModel, never()).getGlossaryContents(any(), any());
+        verify(macroCache, never()).set(anyString(), any());
+    }
+
+    @Test
+    public void cachedResultIsNotUsedWhenAnEntryIsNotViewable() throws Exception
+    {
+        when(authorizationManager.hasAccess(Right.VIEW, worldEntry)).thenReturn(false);
+
+        List<Block> blocks = execute();
+
+        assertNotEquals(cachedBlocks, blocks);
+        assertEquals(1, blocks.size());
+        verify(glossaryModel).getGlossaryContents(Collections.singletonList(helloEntry), Locale.ENGLISH);
+        verify(macroCache).set(eq(CACHE_KEY), any());
+    }
+
+    private List<Block> execute() throws Exception
+    {
+        GlossaryEntriesMacroParameters parameters = new GlossaryEntriesMacroParameters();
+        parameters.setGlossaryId("Glossary");
+        return mocker.getComponentUnderTest().execute(parameters, null, null);
+    }
+}
@@ -28,7 +28,6 @@ import java.util.Map;
 import javax.inject.Provider;
 
 import org.junit.runner.RunWith;
-import org.xwiki.bridge.DocumentAccessBridge;
 import org.xwiki.contrib.glossary.GlossaryCache;
 import org.xwiki.contrib.glossary.GlossaryConfiguration;
 import org.xwiki.contrib.glossary.GlossaryModel;
@@ -40,7 +39,9 @@ import org.xwiki.rendering.test.integration.RenderingTestSuite;
 import org.xwiki.test.annotation.AllComponents;
 import org.xwiki.test.mockito.MockitoComponentManager;
 
+import com.xpn.xwiki.XWiki;
 import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.plugin.skinx.SkinExtensionPluginApi;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
@@ -65,6 +66,12 @@ public class GlossaryEntriesMacroTest extends AbstractGlossaryMacroTest
 
         // Useful for the test 5, where we include the glossaryEntry for myglossary
         when(xWikiContext.getOrDefault(eq("glossary-anchors-Glossary"), eq(false))).thenReturn(false);
-        when(xWikiContext.getOrDefault(eq("glossary-anchors-myglossary"), eq(false))).thenReturn(true);    }
+        when(xWikiContext.getOrDefault(eq("glossary-anchors-myglossary"), eq(false))).thenReturn(true);
+
+        // Used by the lazy mode, for loading the definitions in the browser
+        XWiki xwiki = mock(XWiki.class);
+        when(xWikiContext.getWiki()).thenReturn(xwiki);
+        when(xwiki.getPluginApi("jsx", xWikiContext)).thenReturn(mock(SkinExtensionPluginApi.class));
+    }
 }
 
@@ -0,0 +1,319 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.internal;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.inject.Provider;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.contrib.glossary.GlossaryConfiguration;
+import org.xwiki.contrib.glossary.GlossaryEntriesTransformer;
+import org.xwiki.contrib.glossary.GlossaryEntriesTransformerJobRequest;
+import org.xwiki.environment.Environment;
+import org.xwiki.job.event.status.JobProgressManager;
+import org.xwiki.localization.ContextualLocalizationManager;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.SpaceReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryManager;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link GlossaryEntriesTransformerJob}.
+ *
+ * @version $Id$
+ */
+public class GlossaryEntriesTransformerJobTest
+{
+    private static final String SAVE_COMMENT = "Added glossary references";
+
+    private static final String LIMIT = "limit";
+
+    // Use the actual component manager to run the workers
+    @Rule
+    public MockitoComponentMockingRule<GlossaryEntriesTransformerJob> mocker = new MockitoComponentMockingRule<>(
+        GlossaryEntriesTransformerJob.class, Collections.singletonList(ComponentManager.class));
+
+    @Rule
+    public TemporaryFolder permanentDirectory = new TemporaryFolder();
+
+    private final List<String> pages = Arrays.asList("Space.A", "Space.B", "Space.C");
+
+    private final List<String> statements = new ArrayList<>();
+
+    private final List<Map<String, Object>> boundValues = new ArrayList<>();
+
+    private GlossaryEntriesTransformerJobRequest request;
+
+    private GlossaryConfiguration glossaryConfiguration;
+
+    private GlossaryEntriesTransformer transformer;
+
+    private GlossaryEntriesChangeLog changeLog;
+
+    private DocumentReferenceResolver<String> documentReferenceResolver;
+
+    private XWikiContext xcontext;
+
+    private XWiki xwiki;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        mocker.registerMockComponent(ExecutionContextManager.class);
+
+        Environment environment = mocker.getInstance(Environment.class);
+        when(environment.getPermanentDirectory()).thenReturn(permanentDirectory.getRoot());
+
+        glossaryConfiguration = mocker.getInstance(GlossaryConfiguration.class);
+        when(glossaryConfiguration.isActivateTransformationJob()).thenReturn(true);
+        SpaceReference spaceReference = new SpaceReference("wiki", "Space");
+        when(glossaryConfiguration.getTransformationJobIncludeSpaces())
+            .thenReturn(Collections.singletonList(spaceReference));
+        EntityReferenceSerializer<String> localSerializer =
+            mocker.getInstance(EntityReferenceSerializer.TYPE_STRING, "local");
+        when(localSerializer.serialize(spaceReference)).thenReturn("Space");
+
+        ContextualLocalizationManager localizationManager = mocker.getInstance(ContextualLocalizationManager.class);
+        when(localizationManager.getTranslationPlain("glossary.transformationJob.save.message"))
+            .thenReturn(SAVE_COMMENT);
+
+        transformer = mocker.getInstance(GlossaryEntriesTransformer.class);
+        changeLog = mocker.getInstance(GlossaryEntriesChangeLog.class);
+        documentReferenceResolver = mocker.getInstance(DocumentReferenceResolver.TYPE_STRING, "currentmixed");
+
+        Provider<XWikiContext> xcontextProvider = mocker.getInstance(XWikiContext.TYPE_PROVIDER);
+        xcontext = mock(XWikiContext.class);
+        when(xcontextProvider.get()).thenReturn(xcontext);
+        xwiki = mock(XWiki.class);
+        when(xcontext.getWiki()).thenReturn(xwiki);
+
+        // Each query returns the pages following the bound last page
+        QueryManager queryManager = mocker.getInstance(QueryManager.class);
+        when(queryManager.createQuery(anyString(), eq(Query.HQL))).thenAnswer(invocation -> {
+            String statement = invocation.getArgument(0);
+            Map<String, Object> values = new HashMap<>();
+            statements.add(statement);
+            boundValues.add(values);
+
+            Query query = mock(Query.class);
+            when(query.bindValue(anyString(), any())).thenAnswer(bind -> {
+                values.put(bind.getArgument(0), bind.getArgument(1));
+                return query;
+            });
+            when(query.setLimit(anyInt())).thenAnswer(limit -> {
+                values.put(LIMIT, limit.getArgument(0));
+                return query;
+            });
+            when(query.setWiki("wiki")).thenReturn(query);
+            when(query.execute()).thenAnswer(execute -> {
+                String lastPage = (String) values.get("lastPage");
+                List<String> nextPages = pages.stream()
+                    .filter(page -> lastPage == null || page.compareTo(lastPage) > 0)
+                    .limit(values.containsKey(LIMIT) ? (Integer) values.get(LIMIT) : Long.MAX_VALUE)
+                    .collect(Collectors.toList());
+                return statement.startsWith("select count") ? Collections.singletonList((long) nextPages.size())
+                    : nextPages;
+            });
+            return query;
+        });
+
+        request = new GlossaryEntriesTransformerJobRequest("wiki");
+        request.setThreads(2);
+        request.setBatchSize(2);
+    }
+
+    private XWikiDocument mockDocument(String name, boolean transformed) throws Exception
+    {
+        DocumentReference reference = new DocumentReference("wiki", "Space", name);
+        when(documentReferenceResolver.resolve("Space." + name)).thenReturn(reference);
+
+        XWikiDocument document = mock(XWikiDocument.class, name);
+        when(xwiki.getDocument(reference, xcontext)).thenReturn(document);
+        when(document.clone()).thenReturn(document);
+        when(document.getDefaultLocale()).thenReturn(Locale.ENGLISH);
+        when(document.getTranslatedDocument(Locale.ENGLISH, xcontext)).thenReturn(document);
+        XDOM xdom = new XDOM(Collections.emptyList());
+        when(document.getXDOM()).thenReturn(xdom);
+        when(transformer.transformGlossaryEntries(same(xdom), any(), eq(Locale.ENGLISH))).thenReturn(transformed);
+        return document;
+    }
+
+    private void run() throws Exception
+    {
+        GlossaryEntriesTransformerJob job = mocker.getComponentUnderTest();
+        job.initialize(request);
+        job.runInternal();
+    }
+
+    private File getFile(String extension)
+    {
+        return new File(permanentDirectory.getRoot(), "glossary/transformationJob/wiki" + extension);
+    }
+
+    private void writeFile(String extension, String content) throws Exception
+    {
+        FileUtils.writeStringToFile(getFile(extension), content, StandardCharsets.UTF_8);
+    }
+
+    private Set<String> getTitleParameters()
+    {
+        return boundValues.get(0).keySet().stream().filter(name -> name.startsWith("title"))
+            .collect(Collectors.toSet());
+    }
+
+    @Test
+    public void documentsAreTransformedByBatches() throws Exception
+    {
+        XWikiDocument documentA = mockDocument("A", true);
+        XWikiDocument documentB = mockDocument("B", false);
+        XWikiDocument documentC = mockDocument("C", true);
+
+        run();
+
+        verify(xwiki).saveDocument(documentA, SAVE_COMMENT, true, xcontext);
+        verify(xwiki, never()).saveDocument(same(documentB), anyString(), eq(true), same(xcontext));
+        verify(xwiki).saveDocument(documentC, SAVE_COMMENT, true, xcontext);
+
+        // The count query, then one query per batch and a last query returning no page
+        assertEquals(4, statements.size());
+        assertNull(boundValues.get(1).get("lastPage"));
+        assertEquals("Space.B", boundValues.get(2).get("lastPage"));
+        assertEquals("Space.C", boundValues.get(3).get("lastPage"));
+        JobProgressManager progressManager = mocker.getInstance(JobProgressManager.class);
+        verify(progressManager, times(2)).startStep(any());
+
+        // Without a previous run, all the documents are processed
+        assertFalse(statements.get(0).contains("doc.date"));
+
+        // The checkpoint of the finished run is removed and the changes it processed are forgotten
+        assertFalse(getFile(".checkpoint").exists());
+        String start = FileUtils.readFileToString(getFile(".start"), StandardCharsets.UTF_8);
+        assertEquals(start, FileUtils.readFileToString(getFile(".lastRun"), StandardCharsets.UTF_8));
+        verify(changeLog).clear("wiki", Long.parseLong(start));
+    }
+
+    @Test
+    public void interruptedRunIsResumedAfterCheckpoint() throws Exception
+    {
+        writeFile(".checkpoint", "Space.A");
+        writeFile(".start", "1000");
+        mockDocument("A", true);
+        XWikiDocument documentB = mockDocument("B", true);
+        XWikiDocument documentC = mockDocument("C", true);
+
+        run();
+
+        verify(xwiki, never()).getDocument(new DocumentReference("wiki", "Space", "A"), xcontext);
+        verify(xwiki).saveDocument(documentB, SAVE_COMMENT, true, xcontext);
+        verify(xwiki).saveDocument(documentC, SAVE_COMMENT, true, xcontext);
+        assertEquals("Space.A", boundValues.get(0).get("lastPage"));
+
+        // The start time of the interrupted run is kept
+        assertEquals("1000", FileUtils.readFileToString(getFile(".lastRun"), StandardCharsets.UTF_8));
+        verify(changeLog).clear("wiki", 1000L);
+    }
+
+    @Test
+    public void incrementalRunLooksForChangedTitles() throws Exception
+    {
+        writeFile(".lastRun", "500");
+        when(changeLog.getChangedTitles("wiki")).thenReturn(Collections.singleton("50%_off!"));
+
+        run();
+
+        assertTrue(statements.get(0).contains("doc.date > :lastRun"));
+        assertTrue(statements.get(0).contains("doc.content like :title0 escape '!'"));
+        assertEquals(new Date(500), boundValues.get(0).get("lastRun"));
+        assertEquals(SAVE_COMMENT, boundValues.get(0).get("saveComment"));
+        assertEquals("%50!%!_off!!%", boundValues.get(0).get("title0"));
+    }
+
+    @Test
+    public void fullRunAboveMaxChangedTitles() throws Exception
+    {
+        writeFile(".lastRun", "500");
+        Set<String> changedTitles = new HashSet<>();
+        for (int i = 0; i < 101; i++) {
+            changedTitles.add("Title " + i);
+        }
+        when(changeLog.getChangedTitles("wiki")).thenReturn(changedTitles);
+
+        run();
+
+        assertFalse(statements.get(0).contains("doc.date"));
+        assertFalse(statements.get(0).contains("doc.content like"));
+        assertTrue(getTitleParameters().isEmpty());
+    }
+
+    @Test
+    public void fullRunWhenChangeLogIsIncomplete() throws Exception
+    {
+        writeFile(".lastRun", "500");
+        when(changeLog.isIncomplete("wiki")).thenReturn(true);
+        when(changeLog.getChangedTitles("wiki")).thenReturn(Collections.singleton("Hello"));
+
+        run();
+
+        assertFalse(statements.get(0).contains("doc.date"));
+        assertTrue(getTitleParameters().isEmpty());
+    }
+}
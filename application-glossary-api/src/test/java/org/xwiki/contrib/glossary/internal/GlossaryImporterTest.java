@@ -0,0 +1,256 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+
+import javax.inject.Provider;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.xwiki.contrib.glossary.GlossaryConstants;
+import org.xwiki.contrib.glossary.GlossaryException;
+import org.xwiki.contrib.glossary.GlossaryImportedEvent;
+import org.xwiki.model.EntityType;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.SpaceReference;
+import org.xwiki.model.reference.SpaceReferenceResolver;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryManager;
+import org.xwiki.security.authorization.ContextualAuthorizationManager;
+import org.xwiki.security.authorization.Right;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link GlossaryImporter}. The imported entries already exist so that the saved documents can be
+ * mocked.
+ *
+ * @version $Id$
+ */
+public class GlossaryImporterTest
+{
+    @Rule
+    public MockitoComponentMockingRule<GlossaryImporter> mocker =
+        new MockitoComponentMockingRule<>(GlossaryImporter.class);
+
+    private XWikiContext xcontext;
+
+    private XWiki xwiki;
+
+    private GlossaryEntriesChangeLog changeLog;
+
+    private List<String> queriedNames = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception
+    {
+        Provider<XWikiContext> xcontextProvider = mocker.getInstance(XWikiContext.TYPE_PROVIDER);
+        xcontext = mock(XWikiContext.class);
+        when(xcontextProvider.get()).thenReturn(xcontext);
+        when(xcontext.getLocale()).thenReturn(Locale.ENGLISH);
+        when(xcontext.getWikiId()).thenReturn("wiki");
+        xwiki = mock(XWiki.class);
+        when(xcontext.getWiki()).thenReturn(xwiki);
+
+        SpaceReferenceResolver<String> spaceReferenceResolver = mocker.getInstance(SpaceReferenceResolver.TYPE_STRING);
+        when(spaceReferenceResolver.resolve("Glossary")).thenReturn(new SpaceReference("wiki", "Glossary"));
+        EntityReferenceSerializer<String> serializer =
+            mocker.getInstance(EntityReferenceSerializer.TYPE_STRING, "local");
+        when(serializer.serialize(any())).thenAnswer(invocation -> {
+            EntityReference reference = invocation.getArgument(0);
+            return (reference.getType() == EntityType.DOCUMENT)
+                ? reference.getParent().getName() + '.' + reference.getName() : reference.getName();
+        });
+
+        // Every imported entry exists, with a French and a German translation
+        QueryManager queryManager = mocker.getInstance(QueryManager.class);
+        Query query = mock(Query.class);
+        when(queryManager.createQuery(anyString(), eq(Query.HQL))).thenReturn(query);
+        when(query.bindValue(eq("names"), any())).thenAnswer(invocation -> {
+            queriedNames = invocation.getArgument(1);
+            return query;
+        });
+        when(query.execute()).thenAnswer(invocation -> {
+            List<Object[]> rows = new ArrayList<>();
+            for (String name : queriedNames) {
+                for (String language : Arrays.asList("", "fr", "de")) {
+                    rows.add(new Object[] { name, language });
+                }
+            }
+            return rows;
+        });
+
+        ContextualAuthorizationManager authorizationManager =
+            mocker.getInstance(ContextualAuthorizationManager.class);
+        when(authorizationManager.hasAccess(eq(Right.EDIT), any())).thenReturn(true);
+
+        changeLog = mocker.getInstance(GlossaryEntriesChangeLog.class);
+    }
+
+    @Test
+    public void importCSV() throws Exception
+    {
+        XWikiDocument hello = mockEntry("hello");
+        XWikiDocument world = mockEntry("world");
+        String csv = "Entry;default;default;fr;fr\r\n"
+            + "Glossary.hello;Hello;\"A \"\"friendly\"\"; greeting\non two lines\";Bonjour;Salut\r\n"
+            + "\r\n"
+            + ";;;;\r\n"
+            + "world;World;The planet;;\r\n";
+
+        assertEquals(2, mocker.getComponentUnderTest().importCSV("Glossary", new StringReader(csv)));
+
+        verify(hello).setTitle("Hello");
+        verify(hello).setContent("A \"friendly\"; greeting\non two lines");
+        XWikiDocument helloFr = hello.getTranslatedDocument(Locale.FRENCH, xcontext);
+        verify(helloFr).setTitle("Bonjour");
+        verify(helloFr).setContent("Salut");
+        verify(world).setTitle("World");
+        verify(world).setContent("The planet");
+        verify(world, never()).getTranslatedDocument(Locale.FRENCH, xcontext);
+        verify(xwiki, times(3)).saveDocument(any(XWikiDocument.class), (String) any(), eq(xcontext));
+
+        verify(changeLog).recordChanges("wiki", new LinkedHashSet<>(Arrays.asList("Hello", "Bonjour", "World")));
+        ObservationManager observationManager = mocker.getInstance(ObservationManager.class);
+        verify(observationManager).notify(any(GlossaryImportedEvent.class), eq("Glossary"), isNull());
+    }
+
+    @Test
+    public void importCSVWithUnknownLanguageColumn() throws Exception
+    {
+        try {
+            mocker.getComponentUnderTest().importCSV("Glossary",
+                new StringReader("Entry;Klingonish;Klingonish\nhello;Hello;A greeting\n"));
+            fail("The import should have failed");
+        } catch (GlossaryException e) {
+            assertEquals("Unknown language column [Klingonish]", e.getMessage());
+        }
+
+        verify(xwiki, never()).saveDocument(any(XWikiDocument.class), (String) any(), any(XWikiContext.class));
+    }
+
+    @Test
+    public void importCSVRecordsChangesPerBatch() throws Exception
+    {
+        StringBuilder csv = new StringBuilder("Entry;default;default\n");
+        for (int i = 0; i < 150; i++) {
+            mockEntry("entry" + i);
+            csv.append("entry").append(i).append(";Title ").append(i).append(";Definition\n");
+        }
+
+        assertEquals(150, mocker.getComponentUnderTest().importCSV("Glossary", new StringReader(csv.toString())));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<String>> titles = ArgumentCaptor.forClass(Collection.class);
+        verify(changeLog, times(2)).recordChanges(eq("wiki"), titles.capture());
+        assertEquals(100, titles.getAllValues().get(0).size());
+        assertEquals(50, titles.getAllValues().get(1).size());
+        assertTrue(titles.getAllValues().get(1).contains("Title 149"));
+    }
+
+    @Test
+    public void importTBX() throws Exception
+    {
+        XWikiDocument hello = mockEntry("hello");
+        XWikiDocument world = mockEntry("world");
+        String tbx = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<martif type=\"TBX\" xml:lang=\"en\"><text><body>"
+            + "<termEntry id=\"hello\">"
+            + "<descrip type=\"definition\">A greeting</descrip>"
+            + "<langSet xml:lang=\"en\"><tig><term>Hello</term></tig></langSet>"
+            + "<langSet xml:lang=\"fr\"><descrip type=\"definition\">Une salutation</descrip>"
+            + "<tig><term>Bonjour</term></tig><tig><term>Salut</term></tig></langSet>"
+            + "</termEntry>"
+            + "<conceptEntry id=\"world\">"
+            + "<langSec xml:lang=\"en\"><termSec><term>World</term></termSec></langSec>"
+            + "<langSec xml:lang=\"de\"><termSec><term>Welt</term></termSec>"
+            + "<descrip type=\"definition\">Die <hi>Erde</hi></descrip></langSec>"
+            + "</conceptEntry>"
+            + "</body></text></martif>";
+
+        assertEquals(2, mocker.getComponentUnderTest().importTBX("Glossary",
+            new ByteArrayInputStream(tbx.getBytes(StandardCharsets.UTF_8))));
+
+        // The entry definition is used for the languages without their own definition
+        verify(hello).setTitle("Hello");
+        verify(hello).setContent("A greeting");
+        XWikiDocument helloFr = hello.getTranslatedDocument(Locale.FRENCH, xcontext);
+        verify(helloFr).setTitle("Bonjour");
+        verify(helloFr, never()).setTitle("Salut");
+        verify(helloFr).setContent("Une salutation");
+
+        verify(world).setTitle("World");
+        verify(world).setContent("");
+        XWikiDocument worldDe = world.getTranslatedDocument(Locale.GERMAN, xcontext);
+        verify(worldDe).setTitle("Welt");
+        verify(worldDe).setContent("Die Erde");
+    }
+
+    private XWikiDocument mockEntry(String name) throws Exception
+    {
+        DocumentReference reference = new DocumentReference("wiki", "Glossary", name);
+        XWikiDocument document = mockDocument();
+        when(document.getXObject(GlossaryConstants.GLOSSARY_XCLASS_REFERENCE)).thenReturn(mock(BaseObject.class));
+        for (Locale locale : Arrays.asList(Locale.FRENCH, Locale.GERMAN)) {
+            XWikiDocument translatedDocument = mockDocument();
+            when(document.getTranslatedDocument(locale, xcontext)).thenReturn(translatedDocument);
+        }
+        when(xwiki.getDocument(reference, xcontext)).thenReturn(document);
+        return document;
+    }
+
+    private XWikiDocument mockDocument()
+    {
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(document.clone()).thenReturn(document);
+        return document;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.internal;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.WordBlock;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link GlossaryLinkedContentCache}.
+ *
+ * @version $Id$
+ */
+public class GlossaryLinkedContentCacheTest
+{
+    @Rule
+    public MockitoComponentMockingRule<GlossaryLinkedContentCache> mocker =
+        new MockitoComponentMockingRule<>(GlossaryLinkedContentCache.class);
+
+    private final Map<String, String> fingerprints = new HashMap<>();
+
+    private final DocumentReference reference = new DocumentReference("wiki", "Space", "Page", Locale.ROOT);
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception
+    {
+        Cache<String> cache = mock(Cache.class);
+        when(cache.get(anyString())).thenAnswer(invocation -> fingerprints.get(invocation.getArgument(0)));
+        doAnswer(invocation -> fingerprints.put(invocation.getArgument(0), invocation.getArgument(1))).when(cache)
+            .set(anyString(), any());
+
+        CacheManager cacheManager = mocker.getInstance(CacheManager.class);
+        when(cacheManager.<String>createNewCache(any())).thenReturn(cache);
+    }
+
+    @Test
+    public void linkedContentIsRemembered() throws Exception
+    {
+        GlossaryLinkedContentCache linkedContentCache = mocker.getComponentUnderTest();
+        assertFalse(linkedContentCache.isLinked(reference, 1, "Hello World"));
+
+        linkedContentCache.setLinked(reference, 1, "Hello World");
+
+        assertTrue(linkedContentCache.isLinked(reference, 1, "Hello World"));
+        // The content or the glossary changed since the glossary references were updated
+        assertFalse(linkedContentCache.isLinked(reference, 1, "Hello Worlds"));
+        assertFalse(linkedContentCache.isLinked(reference, 2, "Hello World"));
+        // The content of each translation is remembered separately
+        assertFalse(linkedContentCache.isLinked(new DocumentReference(reference, Locale.FRENCH), 1, "Hello World"));
+        // Only the fingerprint of the content is stored
+        assertFalse(fingerprints.values().iterator().next().contains("Hello World"));
+    }
+
+    @Test
+    public void linkedBlocksAreRemembered() throws Exception
+    {
+        GlossaryLinkedContentCache linkedContentCache = mocker.getComponentUnderTest();
+        List<Block> blocks = Collections.singletonList(new WordBlock("Hello"));
+
+        linkedContentCache.setLinked(reference, 1, "Hello", blocks);
+
+        assertSame(blocks, linkedContentCache.getLinkedBlocks(reference, 1, "Hello"));
+        assertTrue(linkedContentCache.isLinked(reference, 1, "Hello"));
+        assertNull(linkedContentCache.getLinkedBlocks(reference, 1, "Hello World"));
+        assertNull(linkedContentCache.getLinkedBlocks(reference, 2, "Hello"));
+
+        // Linking the document again without its blocks forgets the previous ones
+        linkedContentCache.setLinked(reference, 2, "Hello");
+        assertNull(linkedContentCache.getLinkedBlocks(reference, 2, "Hello"));
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.internal;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.inject.Provider;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xwiki.contrib.glossary.GlossaryConfiguration;
+import org.xwiki.environment.Environment;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.SpaceReference;
+import org.xwiki.model.reference.SpaceReferenceResolver;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryManager;
+import org.xwiki.rendering.block.MacroBlock;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link GlossaryReferencesIndex}.
+ *
+ * @version $Id$
+ */
+public class GlossaryReferencesIndexTest
+{
+    @Rule
+    public MockitoComponentMockingRule<GlossaryReferencesIndex> mocker =
+        new MockitoComponentMockingRule<>(GlossaryReferencesIndex.class);
+
+    @Rule
+    public TemporaryFolder permanentDirectory = new TemporaryFolder();
+
+    private final DocumentReference entry = new DocumentReference("wiki", "Glossary", "Entry");
+
+    private final DocumentReference page = new DocumentReference("wiki", "Space", "Page", Locale.FRENCH);
+
+    private File indexDirectory;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        Environment environment = mocker.getInstance(Environment.class);
+        when(environment.getPermanentDirectory()).thenReturn(permanentDirectory.getRoot());
+
+        EntityReferenceSerializer<String> localSerializer =
+            mocker.getInstance(EntityReferenceSerializer.TYPE_STRING, "local");
+        when(localSerializer.serialize(any())).thenAnswer(invocation -> {
+            EntityReference reference = invocation.getArgument(0);
+            return reference.getParent().getName() + '.' + reference.getName();
+        });
+        DocumentReferenceResolver<String> documentReferenceResolver =
+            mocker.getInstance(DocumentReferenceResolver.TYPE_STRING);
+        when(documentReferenceResolver.resolve(anyString(), any())).thenAnswer(invocation -> {
+            String[] parts = StringUtils.split(invocation.getArgument(0), '.');
+            return new DocumentReference(invocation.<WikiReference>getArgument(1).getName(), parts[0], parts[1]);
+        });
+        SpaceReferenceResolver<String> spaceReferenceResolver =
+            mocker.getInstance(SpaceReferenceResolver.TYPE_STRING);
+        when(spaceReferenceResolver.resolve(anyString(), any())).thenAnswer(
+            invocation -> new SpaceReference(invocation.getArgument(0), invocation.<WikiReference>getArgument(1)));
+
+        GlossaryConfiguration glossaryConfiguration = mocker.getInstance(GlossaryConfiguration.class);
+        when(glossaryConfiguration.defaultGlossaryId()).thenReturn("Glossary");
+
+        // Don't rebuild the index in the background
+        indexDirectory = new File(permanentDirectory.getRoot(), "glossary/references");
+        FileUtils.touch(new File(indexDirectory, "wiki.complete"));
+    }
+
+    private XDOM createContent()
+    {
+        Map<String, String> otherGlossaryParameters = new HashMap<>();
+        otherGlossaryParameters.put("entryId", "Entry");
+        otherGlossaryParameters.put("glossaryId", "Other");
+        return new XDOM(Arrays.asList(
+            new MacroBlock("glossaryReference", Collections.singletonMap("entryId", "Entry"), true),
+            new MacroBlock("glossaryReference", otherGlossaryParameters, true),
+            new MacroBlock("info", Collections.singletonMap("entryId", "Ignored"), false)));
+    }
+
+    @Test
+    public void setReferences() throws Exception
+    {
+        mocker.getComponentUnderTest().setReferences(page, Collections.singleton(entry));
+        assertEquals(Collections.singletonList(page), mocker.getComponentUnderTest().getReferencingDocuments(entry));
+
+        mocker.getComponentUnderTest().setReferences(page, Collections.emptySet());
+        assertTrue(mocker.getComponentUnderTest().getReferencingDocuments(entry).isEmpty());
+    }
+
+    @Test
+    public void journalIsLoadedAndCompacted() throws Exception
+    {
+        File journal = new File(indexDirectory, "wiki.index");
+        FileUtils.writeLines(journal, StandardCharsets.UTF_8.name(), Arrays.asList("+\tSpace.Page\tfr\tGlossary.Entry",
+            "+\tSpace.Other\t\tGlossary.Entry", "-\tSpace.Other\t"));
+
+        assertEquals(Collections.singletonList(page), mocker.getComponentUnderTest().getReferencingDocuments(entry));
+        assertEquals(Collections.singletonList("+\tSpace.Page\tfr\tGlossary.Entry"),
+            FileUtils.readLines(journal, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void malformedJournalLinesAreSkipped() throws Exception
+    {
+        File journal = new File(indexDirectory, "wiki.index");
+        FileUtils.writeLines(journal, StandardCharsets.UTF_8.name(), Arrays.asList("+\tSpace.Other\t\tGlossary.Entry",
+            "+\tSpace.Truncated", "+\tSpace.Page\tfr\tGlossary.Entry"));
+
+        List<DocumentReference> referencingDocuments = mocker.getComponentUnderTest().getReferencingDocuments(entry);
+        assertEquals(2, referencingDocuments.size());
+        assertTrue(referencingDocuments.contains(page));
+
+        // The journal is compacted and the index is marked as incomplete, so that it's rebuilt
+        assertEquals(2, FileUtils.readLines(journal, StandardCharsets.UTF_8).size());
+        assertFalse(new File(indexDirectory, "wiki.complete").exists());
+    }
+
+    @Test
+    public void indexGlossaryReferenceMacros() throws Exception
+    {
+        mocker.getComponentUnderTest().index(page, createContent());
+
+        assertEquals(Collections.singletonList(page), mocker.getComponentUnderTest().getReferencingDocuments(entry));
+        assertEquals(Collections.singletonList(page), mocker.getComponentUnderTest()
+            .getReferencingDocuments(new DocumentReference("wiki", "Other", "Entry")));
+        assertTrue(mocker.getComponentUnderTest()
+            .getReferencingDocuments(new DocumentReference("wiki", "Glossary", "Ignored")).isEmpty());
+    }
+
+    @Test
+    public void backfill() throws Exception
+    {
+        Query query = mock(Query.class);
+        QueryManager queryManager = mocker.getInstance(QueryManager.class);
+        when(queryManager.createQuery(anyString(), any())).thenReturn(query);
+        when(query.bindValue(anyString(), any())).thenReturn(query);
+        when(query.setWiki(anyString())).thenReturn(query);
+        when(query.setLimit(anyInt())).thenReturn(query);
+        when(query.setOffset(anyInt())).thenReturn(query);
+        when(query.execute()).thenReturn(Collections.singletonList(new Object[] { "Space.Page", "fr" }));
+
+        Provider<XWikiContext> xcontextProvider = mocker.registerMockComponent(XWikiContext.TYPE_PROVIDER);
+        XWikiContext xcontext = mock(XWikiContext.class);
+        when(xcontextProvider.get()).thenReturn(xcontext);
+        XWiki xwiki = mock(XWiki.class);
+        when(xcontext.getWiki()).thenReturn(xwiki);
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(xwiki.getDocument(page, xcontext)).thenReturn(document);
+        when(document.getContent()).thenReturn("{{glossaryReference entryId=\"Entry\"/}}");
+        when(document.getDocumentReferenceWithLocale()).thenReturn(page);
+        XDOM content = createContent();
+        when(document.getXDOM()).thenReturn(content);
+
+        mocker.getComponentUnderTest().backfill("wiki");
+
+        assertEquals(Collections.singletonList(page), mocker.getComponentUnderTest().getReferencingDocuments(entry));
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.internal;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.contrib.glossary.GlossaryConfiguration;
+import org.xwiki.contrib.glossary.GlossarySnapshot;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link GlossarySnapshotManager}.
+ *
+ * @version $Id$
+ */
+public class GlossarySnapshotManagerTest
+{
+    @Rule
+    public MockitoComponentMockingRule<GlossarySnapshotManager> mocker =
+        new MockitoComponentMockingRule<>(GlossarySnapshotManager.class);
+
+    private GlossaryConfiguration glossaryConfiguration;
+
+    private int loads;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        glossaryConfiguration = mocker.getInstance(GlossaryConfiguration.class);
+        when(glossaryConfiguration.getCacheMaxEntries()).thenReturn(1);
+        when(glossaryConfiguration.getCacheMaxBytes()).thenReturn(Long.MAX_VALUE);
+    }
+
+    private GlossarySnapshot load(String wikiId, long version)
+    {
+        this.loads++;
+        DocumentReference entry = new DocumentReference(wikiId, "Glossary", "world", Locale.ENGLISH);
+        Map<String, Map<Locale, Map<String, DocumentReference>>> glossaries = Collections.singletonMap("Glossary",
+            Collections.singletonMap(Locale.ENGLISH, Collections.singletonMap("World", entry)));
+        return new GlossarySnapshot(version, glossaries);
+    }
+
+    @Test
+    public void getSnapshotLoadsWikiOnce() throws Exception
+    {
+        GlossarySnapshot snapshot = mocker.getComponentUnderTest().getSnapshot("wikiA", v -> load("wikiA", v));
+
+        assertSame(snapshot, mocker.getComponentUnderTest().getSnapshot("wikiA", v -> load("wikiA", v)));
+        assertEquals(1, this.loads);
+    }
+
+    @Test
+    public void leastRecentlyUsedWikiIsEvicted() throws Exception
+    {
+        GlossarySnapshot wikiA = mocker.getComponentUnderTest().getSnapshot("wikiA", v -> load("wikiA", v));
+
+        // Loading a second wiki exceeds the limit of 1 entry, so the first wiki is evicted
+        mocker.getComponentUnderTest().getSnapshot("wikiB", v -> load("wikiB", v));
+        verify(mocker.getInstance(GlossaryMetrics.class)).recordCacheEviction("wikiA");
+
+        GlossarySnapshot reloadedWikiA = mocker.getComponentUnderTest().getSnapshot("wikiA", v -> load("wikiA", v));
+        assertNotSame(wikiA, reloadedWikiA);
+        assertTrue(reloadedWikiA.getVersion() > wikiA.getVersion());
+        assertEquals(3, this.loads);
+    }
+
+    @Test
+    public void addAndRemoveEntry() throws Exception
+    {
+        when(glossaryConfiguration.getCacheMaxEntries()).thenReturn(100);
+        GlossarySnapshot snapshot = mocker.getComponentUnderTest().getSnapshot("wikiA", v -> load("wikiA", v));
+        assertEquals(1, snapshot.size());
+
+        DocumentReference hello = new DocumentReference("wikiA", "Glossary", "hello", Locale.ENGLISH);
+        mocker.getComponentUnderTest().addEntry("Glossary", "Hello", hello);
+        snapshot = mocker.getComponentUnderTest().getSnapshot("wikiA", v -> load("wikiA", v));
+        assertEquals(hello, snapshot.getEntry("Hello", Locale.ENGLISH, "Glossary"));
+        assertEquals(2, snapshot.size());
+
+        // An entry is only removed by the document defining it
+        mocker.getComponentUnderTest().removeEntry("Glossary", "Hello",
+            new DocumentReference("wikiA", "Glossary", "other", Locale.ENGLISH));
+        snapshot = mocker.getComponentUnderTest().getSnapshot("wikiA", v -> load("wikiA", v));
+        assertEquals(hello, snapshot.getEntry("Hello", Locale.ENGLISH, "Glossary"));
+
+        mocker.getComponentUnderTest().removeEntry("Glossary", "Hello", hello);
+        snapshot = mocker.getComponentUnderTest().getSnapshot("wikiA", v -> load("wikiA", v));
+        assertNull(snapshot.getEntry("Hello", Locale.ENGLISH, "Glossary"));
+        assertEquals(1, snapshot.size());
+        assertEquals(1, this.loads);
+    }
+
+    @Test
+    public void snapshotChangedWhileLoadingIsNotKept() throws Exception
+    {
+        when(glossaryConfiguration.getCacheMaxEntries()).thenReturn(100);
+        DocumentReference hello = new DocumentReference("wikiA", "Glossary", "hello", Locale.ENGLISH);
+
+        // The entry is added while the snapshot is loaded, after the loader read the entries
+        GlossarySnapshot snapshot = mocker.getComponentUnderTest().getSnapshot("wikiA", v -> {
+            GlossarySnapshot loaded = load("wikiA", v);
+            mocker.getComponentUnderTest().addEntry("Glossary", "Hello", hello);
+            return loaded;
+        });
+        assertNull(snapshot.getEntry("Hello", Locale.ENGLISH, "Glossary"));
+
+        // The outdated snapshot was not kept
+        snapshot = mocker.getComponentUnderTest().getSnapshot("wikiA", v -> load("wikiA", v));
+        assertEquals(2, this.loads);
+
+        // Same for a reset, e.g. after an import
+        mocker.getComponentUnderTest().reset("wikiA");
+        mocker.getComponentUnderTest().getSnapshot("wikiA", v -> {
+            GlossarySnapshot loaded = load("wikiA", v);
+            mocker.getComponentUnderTest().reset("wikiA");
+            return loaded;
+        });
+        mocker.getComponentUnderTest().getSnapshot("wikiA", v -> load("wikiA", v));
+        assertEquals(4, this.loads);
+
+        // The snapshot is kept when nothing changed
+        mocker.getComponentUnderTest().getSnapshot("wikiA", v -> load("wikiA", v));
+        assertEquals(4, this.loads);
+    }
+
+    @Test
+    public void addingExistingEntryKeepsSnapshot() throws Exception
+    {
+        GlossarySnapshot snapshot = mocker.getComponentUnderTest().getSnapshot("wikiA", v -> load("wikiA", v));
+
+        mocker.getComponentUnderTest().addEntry("Glossary", "World",
+            new DocumentReference("wikiA", "Glossary", "world", Locale.ENGLISH));
+
+        assertSame(snapshot, mocker.getComponentUnderTest().getSnapshot("wikiA", v -> load("wikiA", v)));
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.internal;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link GlossaryTimer}.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+public class GlossaryTimerTest
+{
+    private final GlossaryTimer timer = new GlossaryTimer();
+
+    @Test
+    public void record()
+    {
+        for (int i = 0; i < 98; i++) {
+            this.timer.record(TimeUnit.MICROSECONDS.toNanos(500));
+        }
+        this.timer.record(TimeUnit.MILLISECONDS.toNanos(30));
+        this.timer.record(TimeUnit.MILLISECONDS.toNanos(40000));
+
+        assertEquals(100, this.timer.getCount());
+        assertEquals(40079, this.timer.getTotalTime(), 0.001);
+        assertEquals(400.79, this.timer.getMeanTime(), 0.001);
+        assertEquals(40000, this.timer.getMaxTime(), 0.001);
+        assertEquals(1, this.timer.getMedianTime(), 0.001);
+        assertEquals(1, this.timer.get95thPercentileTime(), 0.001);
+        assertEquals(50, this.timer.get99thPercentileTime(), 0.001);
+        assertArrayEquals(new long[] { 98, 0, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, 0, 1 },
+            this.timer.getHistogramCounts());
+    }
+
+    @Test
+    public void reset()
+    {
+        this.timer.record(TimeUnit.MILLISECONDS.toNanos(3));
+        this.timer.reset();
+
+        assertEquals(0, this.timer.getCount());
+        assertEquals(0, this.timer.getMeanTime(), 0);
+        assertEquals(0, this.timer.getMedianTime(), 0);
+        assertEquals(0, this.timer.getHistogramCounts()[2]);
+    }
+}
@@ -21,14 +21,17 @@ package org.xwiki.contrib.glossary.internal;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 
 import javax.inject.Provider;
 
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
-import org.xwiki.contrib.glossary.GlossaryCache;
+import org.xwiki.contrib.glossary.GlossaryConfiguration;
+import org.xwiki.contrib.glossary.GlossarySnapshot;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.EntityReferenceSerializer;
 import org.xwiki.rendering.block.LinkBlock;
@@ -80,10 +83,9 @@ public class GlossaryTransformationTest
     @Before
     public void setUp() throws Exception
     {
-        GlossaryCache glossaryCache = this.mocker.getInstance(GlossaryCache.class);
-
         DocumentReference reference1 = new DocumentReference("wiki", "space", "foo");
         DocumentReference reference2 = new DocumentReference("wiki", "space", "XWiki");
+        DocumentReference reference3 = new DocumentReference("wiki", "space", "WorkersCommittee");
 
         xWikiDocMock = mock(XWikiDocument.class);
         XWikiRequest xWikiRequest = mock(XWikiRequest.class);
@@ -93,12 +95,22 @@ public class GlossaryTransformationTest
         when(xWikiContext.getRequest()).thenReturn(xWikiRequest);
         when(xWikiContext.getDoc()).thenReturn(xWikiDocMock);
 
-        when(glossaryCache.get("foo", Locale.CANADA_FRENCH)).thenReturn(reference1);
-        when(glossaryCache.get("XWiki", Locale.CANADA_FRENCH)).thenReturn(reference2);
+        Map<String, DocumentReference> entries = new HashMap<>();
+        entries.put("foo", reference1);
+        entries.put("XWiki", reference2);
+        entries.put("Workers Committee", reference3);
+        GlossarySnapshot snapshot = new GlossarySnapshot(1,
+            Collections.singletonMap("space", Collections.singletonMap(Locale.CANADA_FRENCH, entries)));
+        GlossaryEntriesMatcherManager matcherManager = this.mocker.getInstance(GlossaryEntriesMatcherManager.class);
+        when(matcherManager.getMatcher(Locale.CANADA_FRENCH, "space"))
+            .thenReturn(snapshot.getMatcher(Locale.CANADA_FRENCH, "space"));
+        GlossaryConfiguration glossaryConfiguration = this.mocker.getInstance(GlossaryConfiguration.class);
+        when(glossaryConfiguration.defaultGlossaryId()).thenReturn("space");
 
         EntityReferenceSerializer<String> serializer = this.mocker.getInstance(EntityReferenceSerializer.TYPE_STRING);
         when(serializer.serialize(reference1)).thenReturn("wiki:space.foo");
         when(serializer.serialize(reference2)).thenReturn("wiki:space.XWiki");
+        when(serializer.serialize(reference3)).thenReturn("wiki:space.WorkersCommittee");
     }
 
     @Test
@@ -140,6 +152,34 @@ public class GlossaryTransformationTest
             + "endDocument", printer.toString());
     }
 
+    @Test
+    public void transformMultipleWords() throws Exception
+    {
+        // "Workers Committee" is linked as a whole while "Workers" alone isn't an entry
+        XDOM xdom = new XDOM(Arrays.asList(new ParagraphBlock(Arrays.asList(
+            new WordBlock("Workers"), new SpaceBlock(), new WordBlock("Committee"), new SpaceBlock(),
+            new WordBlock("Workers")))));
+
+        this.mocker.getComponentUnderTest().transform(xdom, new TransformationContext());
+
+        WikiPrinter printer = new DefaultWikiPrinter();
+        BlockRenderer xwikiBlockRenderer = this.mocker.getInstance(BlockRenderer.class, "event/1.0");
+        xwikiBlockRenderer.render(xdom, printer);
+        assertEquals("beginDocument\n"
+            + "beginParagraph\n"
+            + "beginLink [Typed = [true] Type = [doc] Reference = [wiki:space.WorkersCommittee]] [false] "
+            + "[[class]=[glossary-entry]]\n"
+            + "onWord [Workers]\n"
+            + "onSpace\n"
+            + "onWord [Committee]\n"
+            + "endLink [Typed = [true] Type = [doc] Reference = [wiki:space.WorkersCommittee]] [false] "
+            + "[[class]=[glossary-entry]]\n"
+            + "onSpace\n"
+            + "onWord [Workers]\n"
+            + "endParagraph\n"
+            + "endDocument", printer.toString());
+    }
+
     @Test
     public void doNotTransformHiddenDocuments() throws Exception
     {
@@ -0,0 +1,201 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.benchmarks;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import javax.inject.Provider;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.xwiki.component.annotation.ComponentAnnotationLoader;
+import org.xwiki.contrib.glossary.GlossaryConfiguration;
+import org.xwiki.contrib.glossary.GlossaryModel;
+import org.xwiki.contrib.glossary.GlossarySnapshot;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.ParagraphBlock;
+import org.xwiki.rendering.block.SpaceBlock;
+import org.xwiki.rendering.block.WordBlock;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.test.mockito.MockitoComponentManager;
+
+import com.xpn.xwiki.XWikiContext;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Set up the components of the glossary with a generated glossary, mocking the components that need a running wiki
+ * the same way as the unit tests of the API.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+@State(Scope.Benchmark)
+public abstract class AbstractGlossaryBenchmark
+{
+    protected static final String WIKI = "xwiki";
+
+    protected static final String GLOSSARY_ID = "Glossary";
+
+    private static final List<Locale> LOCALES = Arrays.asList(Locale.ENGLISH, Locale.FRENCH, Locale.GERMAN,
+        Locale.ITALIAN, new Locale("es"), new Locale("pt"), new Locale("nl"), new Locale("pl"));
+
+    /**
+     * Number of entries of the glossary, in each locale.
+     */
+    @Param({ "100", "1000", "10000", "50000" })
+    public int glossarySize;
+
+    /**
+     * Number of locales in which the glossary entries are translated.
+     */
+    @Param({ "1", "4" })
+    public int localeCount;
+
+    protected MockitoComponentManager componentManager;
+
+    protected XWikiContext xcontext;
+
+    protected GlossaryModel glossaryModel;
+
+    protected GlossaryConfiguration glossaryConfiguration;
+
+    protected Locale locale;
+
+    protected GlossarySnapshot snapshot;
+
+    protected void setUpComponents() throws Exception
+    {
+        this.componentManager = new MockitoComponentManager();
+        // Register all the components of the classpath, like @AllComponents does for the tests
+        new ComponentAnnotationLoader().initialize(this.componentManager, getClass().getClassLoader());
+
+        this.locale = LOCALES.get(0);
+        this.snapshot = createSnapshot();
+
+        // The mocks are called on each iteration, so they must not record their invocations
+        this.xcontext = registerStub(XWikiContext.class, null);
+        this.componentManager.registerComponent(XWikiContext.TYPE_PROVIDER,
+            (Provider<XWikiContext>) () -> this.xcontext);
+        when(this.xcontext.getWikiId()).thenReturn(WIKI);
+        when(this.xcontext.getLocale()).thenReturn(this.locale);
+
+        this.glossaryConfiguration = registerStub(GlossaryConfiguration.class, GlossaryConfiguration.class);
+        when(this.glossaryConfiguration.defaultGlossaryId()).thenReturn(GLOSSARY_ID);
+        when(this.glossaryConfiguration.getCacheMaxEntries()).thenReturn(Integer.MAX_VALUE);
+        when(this.glossaryConfiguration.getCacheMaxBytes()).thenReturn(Long.MAX_VALUE);
+
+        this.glossaryModel = registerStub(GlossaryModel.class, GlossaryModel.class);
+        when(this.glossaryModel.getGlossarySnapshot()).thenReturn(this.snapshot);
+        when(this.glossaryModel.getGlossaryId(any()))
+            .thenAnswer(invocation -> invocation.<DocumentReference>getArgument(0).getLastSpaceReference().getName());
+    }
+
+    /**
+     * Create a mock which doesn't record its invocations and optionally register it as a component.
+     *
+     * @param mockClass the class to mock
+     * @param role the role of the component to register, or {@code null} to not register it
+     * @return the mock
+     */
+    protected <T> T registerStub(Class<T> mockClass, Type role) throws Exception
+    {
+        T stub = mock(mockClass, withSettings().stubOnly());
+        if (role != null) {
+            this.componentManager.registerComponent(role, stub);
+        }
+        return stub;
+    }
+
+    /**
+     * @param index the index of the entry
+     * @param entryLocale the locale of the entry
+     * @return the title of the entry; one entry out of ten has a title made of two words
+     */
+    protected String getTitle(int index, Locale entryLocale)
+    {
+        String title = String.format("Term%d%s", index, entryLocale.getLanguage());
+        return (index % 10 == 0) ? title + " Committee" : title;
+    }
+
+    /**
+     * Generate a page of paragraphs of 100 words, one word out of 20 being a glossary entry of the current locale.
+     *
+     * @param wordCount the number of words of the page
+     * @return the generated page
+     */
+    protected XDOM createPage(int wordCount)
+    {
+        Random random = new Random(wordCount);
+        List<Block> paragraphs = new ArrayList<>();
+        List<Block> words = new ArrayList<>();
+        for (int i = 0; i < wordCount; i++) {
+            if (!words.isEmpty()) {
+                words.add(new SpaceBlock());
+            }
+            if (i % 20 == 0) {
+                String[] titleWords = getTitle(random.nextInt(this.glossarySize), this.locale).split(" ");
+                for (int j = 0; j < titleWords.length; j++) {
+                    if (j > 0) {
+                        words.add(new SpaceBlock());
+                    }
+                    words.add(new WordBlock(titleWords[j]));
+                }
+            } else {
+                words.add(new WordBlock("word" + random.nextInt(1000)));
+            }
+            if (words.size() >= 200) {
+                paragraphs.add(new ParagraphBlock(words));
+                words = new ArrayList<>();
+            }
+        }
+        if (!words.isEmpty()) {
+            paragraphs.add(new ParagraphBlock(words));
+        }
+        return new XDOM(paragraphs);
+    }
+
+    private GlossarySnapshot createSnapshot()
+    {
+        Map<Locale, Map<String, DocumentReference>> entries = new HashMap<>();
+        for (Locale entryLocale : LOCALES.subList(0, this.localeCount)) {
+            Map<String, DocumentReference> localeEntries = new HashMap<>();
+            for (int i = 0; i < this.glossarySize; i++) {
+                localeEntries.put(getTitle(i, entryLocale),
+                    new DocumentReference(new DocumentReference(WIKI, GLOSSARY_ID, "Entry" + i), entryLocale));
+            }
+            entries.put(entryLocale, localeEntries);
+        }
+        return new GlossarySnapshot(1, Collections.singletonMap(GLOSSARY_ID, entries));
+    }
+}
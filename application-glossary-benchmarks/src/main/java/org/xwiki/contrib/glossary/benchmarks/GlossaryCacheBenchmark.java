@@ -0,0 +1,81 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xwiki.contrib.glossary.GlossaryCache;
+
+/**
+ * Benchmark of the lookups in the glossary cache, half of them being for titles which are not glossary entries.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GlossaryCacheBenchmark extends AbstractGlossaryBenchmark
+{
+    private static final int LOOKUPS = 1024;
+
+    private GlossaryCache cache;
+
+    private String[] titles;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        setUpComponents();
+
+        this.cache = this.componentManager.getInstance(GlossaryCache.class);
+        Random random = new Random(LOOKUPS);
+        this.titles = new String[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            String title = getTitle(random.nextInt(this.glossarySize), this.locale);
+            this.titles[i] = (i % 2 == 0) ? title : title + "Missing";
+        }
+
+        // Load the entries of the wiki outside of the measurements
+        this.cache.get(this.titles[0], this.locale, GLOSSARY_ID);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void get(Blackhole blackhole)
+    {
+        for (String title : this.titles) {
+            blackhole.consume(this.cache.get(title, this.locale, GLOSSARY_ID));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.benchmarks;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.contrib.glossary.GlossaryEntriesMacroParameters;
+import org.xwiki.contrib.glossary.internal.GlossaryEntriesMacroCache;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.ParagraphBlock;
+import org.xwiki.rendering.block.SpaceBlock;
+import org.xwiki.rendering.block.WordBlock;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.macro.Macro;
+import org.xwiki.rendering.transformation.MacroTransformationContext;
+import org.xwiki.security.authorization.ContextualAuthorizationManager;
+import org.xwiki.security.authorization.Right;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.plugin.skinx.SkinExtensionPluginApi;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+/**
+ * Benchmark of the {@code glossaryEntries} macro, without the cache of the generated blocks so that every execution
+ * generates the displayed entries.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GlossaryEntriesMacroBenchmark extends AbstractGlossaryBenchmark
+{
+    /**
+     * Number of entries displayed by the macro, -1 to display them all.
+     */
+    @Param({ "-1", "50" })
+    public int pageSize;
+
+    /**
+     * Whether the definitions are loaded by the browser instead of being rendered with the entries.
+     */
+    @Param({ "false", "true" })
+    public boolean lazy;
+
+    private Macro<GlossaryEntriesMacroParameters> macro;
+
+    private GlossaryEntriesMacroParameters parameters;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        setUpComponents();
+
+        List<Block> definition = Arrays.asList(new ParagraphBlock(Arrays.asList(new WordBlock("The"),
+            new SpaceBlock(), new WordBlock("definition"))));
+        when(this.glossaryModel.getGlossaryContents(any(), any())).thenAnswer(invocation -> {
+            Map<DocumentReference, XDOM> contents = new HashMap<>();
+            for (DocumentReference reference : invocation.<Collection<DocumentReference>>getArgument(0)) {
+                contents.put(reference, new XDOM(definition).clone());
+            }
+            return contents;
+        });
+        when(this.xcontext.getOrDefault(any(), eq(false))).thenReturn(false);
+        XWiki xwiki = registerStub(XWiki.class, null);
+        when(this.xcontext.getWiki()).thenReturn(xwiki);
+        when(xwiki.getPluginApi("jsx", this.xcontext))
+            .thenReturn(registerStub(SkinExtensionPluginApi.class, null));
+
+        ContextualAuthorizationManager authorizationManager =
+            registerStub(ContextualAuthorizationManager.class, ContextualAuthorizationManager.class);
+        when(authorizationManager.hasAccess(eq(Right.VIEW), any())).thenReturn(true);
+        // Always generate the glossary entries, without caching them
+        registerStub(GlossaryEntriesMacroCache.class, GlossaryEntriesMacroCache.class);
+
+        this.macro = this.componentManager.getInstance(Macro.class, "glossaryEntries");
+        this.parameters = new GlossaryEntriesMacroParameters();
+        this.parameters.setLimit(this.pageSize);
+        this.parameters.setLazy(this.lazy);
+    }
+
+    @Benchmark
+    public List<Block> execute() throws Exception
+    {
+        return this.macro.execute(this.parameters, null, new MacroTransformationContext());
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.contrib.glossary.GlossaryEntriesTransformer;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.syntax.Syntax;
+
+/**
+ * Benchmark of the save-time transformation adding {@code glossaryReference} macros to the saved documents.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GlossaryEntriesTransformerBenchmark extends AbstractGlossaryBenchmark
+{
+    /**
+     * Number of words of the transformed page.
+     */
+    @Param({ "1000", "10000" })
+    public int pageSize;
+
+    private GlossaryEntriesTransformer transformer;
+
+    private XDOM page;
+
+    private XDOM transformedPage;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        setUpComponents();
+
+        this.transformer = this.componentManager.getInstance(GlossaryEntriesTransformer.class);
+        this.page = createPage(this.pageSize);
+        this.transformedPage = this.page.clone();
+        this.transformer.transformGlossaryEntries(this.transformedPage, Syntax.XWIKI_2_1, this.locale);
+    }
+
+    /**
+     * A page saved for the first time, in which all the glossary entries have to be found.
+     */
+    @Benchmark
+    public XDOM transformNewPage() throws Exception
+    {
+        XDOM xdom = this.page.clone();
+        this.transformer.transformGlossaryEntries(xdom, Syntax.XWIKI_2_1, this.locale);
+        return xdom;
+    }
+
+    /**
+     * A page saved again, which already references all its glossary entries.
+     */
+    @Benchmark
+    public XDOM transformTransformedPage() throws Exception
+    {
+        XDOM xdom = this.transformedPage.clone();
+        this.transformer.transformGlossaryEntries(xdom, Syntax.XWIKI_2_1, this.locale);
+        return xdom;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.transformation.Transformation;
+import org.xwiki.rendering.transformation.TransformationContext;
+import org.xwiki.rendering.transformation.TransformationException;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.web.XWikiRequest;
+
+import static org.mockito.Mockito.when;
+
+/**
+ * Benchmark of the render-time {@code glossary} transformation.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GlossaryTransformationBenchmark extends AbstractGlossaryBenchmark
+{
+    /**
+     * Number of words of the transformed page.
+     */
+    @Param({ "1000", "10000" })
+    public int pageSize;
+
+    private Transformation transformation;
+
+    private XDOM page;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        setUpComponents();
+        when(this.xcontext.getDoc()).thenReturn(registerStub(XWikiDocument.class, null));
+        when(this.xcontext.getRequest()).thenReturn(registerStub(XWikiRequest.class, null));
+
+        this.transformation = this.componentManager.getInstance(Transformation.class, "glossary");
+        this.page = createPage(this.pageSize);
+    }
+
+    @Benchmark
+    public XDOM transform() throws TransformationException
+    {
+        // The transformation modifies the page, so it has to be applied on a copy
+        XDOM xdom = this.page.clone();
+        this.transformation.transform(xdom, new TransformationContext());
+        return xdom;
+    }
+}
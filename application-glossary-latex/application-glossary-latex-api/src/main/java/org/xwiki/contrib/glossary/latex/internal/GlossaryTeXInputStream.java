@@ -0,0 +1,145 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.latex.internal;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Stream the content of the {@code glossary.tex} file, encoding the glossary entries one at a time as they are read
+ * instead of building the whole file in memory. The entries are written sorted by id so that the same glossary always
+ * produces the same file.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+public class GlossaryTeXInputStream extends InputStream
+{
+    private static final byte[] EMPTY = new byte[0];
+
+    private final Iterator<Map.Entry<String, Object>> entries;
+
+    private byte[] buffer = EMPTY;
+
+    private int position;
+
+    /**
+     * @param glossaryData the glossary data, indexed by entry id and with the descriptions as values
+     */
+    public GlossaryTeXInputStream(Map<String, Object> glossaryData)
+    {
+        this.entries = new TreeMap<>(glossaryData).entrySet().iterator();
+    }
+
+    @Override
+    public int read()
+    {
+        if (!fill()) {
+            return -1;
+        }
+        return this.buffer[this.position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length)
+    {
+        if (length == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int count = Math.min(length, this.buffer.length - this.position);
+        System.arraycopy(this.buffer, this.position, bytes, offset, count);
+        this.position += count;
+        return count;
+    }
+
+    private boolean fill()
+    {
+        while (this.position >= this.buffer.length) {
+            if (!this.entries.hasNext()) {
+                return false;
+            }
+            this.buffer = encode(this.entries.next());
+            this.position = 0;
+        }
+        return true;
+    }
+
+    private byte[] encode(Map.Entry<String, Object> entry)
+    {
+        StringBuilder builder = new StringBuilder();
+        // The entry id is the label used by the \gls commands so it's kept as is
+        builder.append("\\newglossaryentry{").append(entry.getKey()).append("}\n");
+        builder.append("{\n");
+        builder.append("    name=");
+        escape(entry.getKey(), builder);
+        builder.append(",\n");
+        builder.append("    description={");
+        escape(String.valueOf(entry.getValue()), builder);
+        builder.append("}\n");
+        builder.append("}\n");
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Escape the LaTeX special characters of the given text in a single pass.
+     *
+     * @param text the text to escape
+     * @param builder the builder to which the escaped text is appended
+     */
+    static void escape(String text, StringBuilder builder)
+    {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\':
+                    builder.append("\\textbackslash{}");
+                    break;
+                case '~':
+                    builder.append("\\textasciitilde{}");
+                    break;
+                case '^':
+                    builder.append("\\textasciicircum{}");
+                    break;
+                case '{':
+                case '}':
+                case '$':
+                case '&':
+                case '#':
+                case '%':
+                case '_':
+                    builder.append('\\').append(c);
+                    break;
+                case '\n':
+                case '\r':
+                    // Paragraph breaks are not allowed in glossary entry fields
+                    builder.append(' ');
+                    break;
+                default:
+                    builder.append(c);
+            }
+        }
+    }
+}
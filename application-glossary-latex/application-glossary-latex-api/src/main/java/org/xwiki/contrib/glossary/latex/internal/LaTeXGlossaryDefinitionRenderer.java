@@ -0,0 +1,199 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.latex.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.eviction.LRUEvictionConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.contrib.glossary.GlossaryException;
+import org.xwiki.contrib.glossary.GlossaryModel;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.renderer.BlockRenderer;
+import org.xwiki.rendering.renderer.printer.DefaultWikiPrinter;
+import org.xwiki.rendering.renderer.printer.WikiPrinter;
+
+/**
+ * Render the definitions of the glossary entries as plain text for the LaTeX export. The rendered definitions are
+ * cached per entry, locale and version of the entry documents, so that the entries referenced by several exports are
+ * only rendered once as long as they are not modified.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+@Component(roles = LaTeXGlossaryDefinitionRenderer.class)
+@Singleton
+public class LaTeXGlossaryDefinitionRenderer implements Initializable, Disposable
+{
+    /**
+     * Identifier for the cache of the rendered definitions.
+     */
+    private static final String NAME = "cache.glossaryLaTeXDefinitionCache";
+
+    private static final int BATCH_SIZE = 500;
+
+    @Inject
+    private CacheManager cacheManager;
+
+    @Inject
+    private QueryManager queryManager;
+
+    @Inject
+    private GlossaryModel glossaryModel;
+
+    @Inject
+    @Named("plain/1.0")
+    private BlockRenderer plainBlockRenderer;
+
+    @Inject
+    @Named("local")
+    private EntityReferenceSerializer<String> localSerializer;
+
+    private Cache<String> cache;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        try {
+            CacheConfiguration cacheConfiguration = new CacheConfiguration();
+            cacheConfiguration.setConfigurationId(NAME);
+            LRUEvictionConfiguration lru = new LRUEvictionConfiguration();
+            lru.setMaxEntries(5000);
+            cacheConfiguration.put(LRUEvictionConfiguration.CONFIGURATIONID, lru);
+            this.cache = this.cacheManager.createNewCache(cacheConfiguration);
+        } catch (CacheException e) {
+            throw new InitializationException("Failed to initialize the glossary LaTeX definition cache", e);
+        }
+    }
+
+    @Override
+    public void dispose()
+    {
+        if (this.cache != null) {
+            this.cache.dispose();
+        }
+    }
+
+    /**
+     * @param entryReferences the references of the glossary entries of the current wiki
+     * @param locale the locale to be used when loading the entries
+     * @return the definition of each entry rendered as plain text, indexed by entry reference; entries that don't
+     *     exist are omitted
+     * @throws GlossaryException in case of an error
+     */
+    public Map<DocumentReference, String> getPlainDefinitions(Collection<DocumentReference> entryReferences,
+        Locale locale) throws GlossaryException
+    {
+        List<DocumentReference> references = new ArrayList<>(new LinkedHashSet<>(entryReferences));
+        Map<DocumentReference, String> definitions = new HashMap<>();
+        for (int i = 0; i < references.size(); i += BATCH_SIZE) {
+            renderDefinitions(references.subList(i, Math.min(i + BATCH_SIZE, references.size())), locale,
+                definitions);
+        }
+        return definitions;
+    }
+
+    private void renderDefinitions(List<DocumentReference> references, Locale locale,
+        Map<DocumentReference, String> definitions) throws GlossaryException
+    {
+        Map<String, DocumentReference> referencesByName = new HashMap<>();
+        for (DocumentReference reference : references) {
+            referencesByName.put(this.localSerializer.serialize(reference), reference);
+        }
+
+        Map<String, String> versions = getVersions(referencesByName.keySet(), locale);
+        Map<DocumentReference, String> missingKeys = new HashMap<>();
+        for (Map.Entry<String, String> version : versions.entrySet()) {
+            DocumentReference reference = referencesByName.get(version.getKey());
+            String key = String.format("%s/%s/%s", reference, locale, version.getValue());
+            String definition = this.cache.get(key);
+            if (definition != null) {
+                definitions.put(reference, definition);
+            } else {
+                missingKeys.put(reference, key);
+            }
+        }
+
+        if (!missingKeys.isEmpty()) {
+            for (Map.Entry<DocumentReference, XDOM> content : this.glossaryModel
+                .getGlossaryContents(missingKeys.keySet(), locale).entrySet()) {
+                WikiPrinter printer = new DefaultWikiPrinter();
+                this.plainBlockRenderer.render(content.getValue(), printer);
+                String definition = printer.toString();
+                this.cache.set(missingKeys.get(content.getKey()), definition);
+                definitions.put(content.getKey(), definition);
+            }
+        }
+    }
+
+    /**
+     * @return the versions of the documents from which the definition of each entry can be taken, indexed by entry
+     *     document name; entries that don't exist are omitted
+     */
+    private Map<String, String> getVersions(Collection<String> names, Locale locale) throws GlossaryException
+    {
+        List<Object[]> results;
+        try {
+            results = this.queryManager.createQuery("select doc.fullName, doc.language, doc.version "
+                + "from XWikiDocument doc where doc.fullName in (:names) and doc.language in (:languages)", Query.HQL)
+                .bindValue("names", new ArrayList<>(names))
+                .bindValue("languages", Arrays.asList("", locale.getLanguage(), locale.toString())).execute();
+        } catch (QueryException e) {
+            throw new GlossaryException("Failed to retrieve the versions of the glossary entries", e);
+        }
+
+        // Both the original document and the translations that may be used for the locale are taken into account
+        Map<String, Map<String, String>> documentVersions = new HashMap<>();
+        for (Object[] result : results) {
+            documentVersions.computeIfAbsent((String) result[0], key -> new TreeMap<>()).put((String) result[1],
+                (String) result[2]);
+        }
+
+        Map<String, String> versions = new HashMap<>();
+        for (Map.Entry<String, Map<String, String>> documentVersion : documentVersions.entrySet()) {
+            versions.put(documentVersion.getKey(), documentVersion.getValue().toString());
+        }
+        return versions;
+    }
+}
@@ -21,6 +21,7 @@ package org.xwiki.contrib.glossary.latex.script;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
@@ -31,17 +32,16 @@ import javax.inject.Provider;
 import javax.inject.Singleton;
 import javax.script.ScriptContext;
 
-import org.apache.commons.io.IOUtils;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.contrib.glossary.GlossaryCache;
 import org.xwiki.contrib.glossary.GlossaryException;
-import org.xwiki.contrib.glossary.GlossaryModel;
+import org.xwiki.contrib.glossary.latex.internal.GlossaryTeXInputStream;
+import org.xwiki.contrib.glossary.latex.internal.LaTeXGlossaryDefinitionRenderer;
 import org.xwiki.contrib.latex.internal.LaTeXResourceConverter;
 import org.xwiki.model.reference.DocumentReference;
-import org.xwiki.rendering.block.XDOM;
-import org.xwiki.rendering.renderer.BlockRenderer;
-import org.xwiki.rendering.renderer.printer.DefaultWikiPrinter;
-import org.xwiki.rendering.renderer.printer.WikiPrinter;
+import org.xwiki.rendering.block.AbstractMacroBlock;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.match.ClassBlockMatcher;
 import org.xwiki.script.ScriptContextManager;
 import org.xwiki.script.service.ScriptService;
 
@@ -59,25 +59,25 @@ import com.xpn.xwiki.XWikiContext;
 @Singleton
 public class LaTeXGlossaryScriptService implements ScriptService
 {
-    private static final String NL = "\n";
-
     private static final String SC_LATEX = "latex";
 
     private static final String SC_LATEX_GLOSSARY = "glossaryData";
 
+    private static final String SC_LATEX_GLOSSARY_PREFETCHED = "glossaryPrefetchedData";
+
+    private static final String GLOSSARY_REFERENCE_MACRO = "glossaryReference";
+
     private static final String GLOSSARY_FILE = "glossary.tex";
 
+    private static final String BUILD_SCRIPT_FILE = "glossary-build.sh";
+
     private static final String LATEX_BINDING_RESOURCE_CONVERTER = "resourceConverter";
 
     @Inject
     private GlossaryCache glossaryCache;
 
     @Inject
-    private GlossaryModel glossaryModel;
-
-    @Inject
-    @Named("plain/1.0")
-    private BlockRenderer plainBlockRenderer;
+    private Provider<LaTeXGlossaryDefinitionRenderer> definitionRendererProvider;
 
     @Inject
     private Provider<XWikiContext> xwikiContextProvider;
@@ -98,32 +98,93 @@ public class LaTeXGlossaryScriptService implements ScriptService
         // - If found, get the description and save the id + the description in the Velocity Context inside the "latex"
         //   binding (which is a Map<String, Object>). For simplicity, save it as a Map with 2 keys: "id" and
         //   "description".
+        Map<String, Object> glossaryData = getGlossaryData();
+        if (glossaryData.containsKey(entryId)) {
+            // The entry is referenced several times in the exported content
+            return;
+        }
+
+        Map<String, Object> prefetchedData = getLaTeXBindingMap(SC_LATEX_GLOSSARY_PREFETCHED);
+        if (prefetchedData.containsKey(entryId)) {
+            glossaryData.put(entryId, prefetchedData.get(entryId));
+            return;
+        }
+
         DocumentReference reference = this.glossaryCache.get(entryId);
         if (reference != null) {
-            saveGlossaryData(entryId, getRenderedDocumentContent(reference));
+            String description = getRenderedDocumentContents(Collections.singletonMap(entryId, reference)).get(entryId);
+            if (description != null) {
+                glossaryData.put(entryId, description);
+            }
+        }
+    }
+
+    /**
+     * Save the glossary data in the script context, prefetching the data of all the glossary entries referenced in the
+     * exported content the first time this method is called during an export.
+     *
+     * @param entryId the glossary entry id to save
+     * @param block the block referencing the glossary entry, used to find the exported content
+     * @throws GlossaryException in case an error happens to retrieve the documents containing the glossary entries
+     * @since 1.5.3
+     */
+    public void saveGlossaryEntryInContext(String entryId, Block block) throws GlossaryException
+    {
+        ScriptContext currentScriptContext = this.scriptContextManager.getCurrentScriptContext();
+        Map<String, Object> latexBinding = (Map<String, Object>) currentScriptContext.getAttribute(SC_LATEX);
+        if (block != null && !latexBinding.containsKey(SC_LATEX_GLOSSARY_PREFETCHED)) {
+            prefetchGlossaryEntries(block.getRoot());
         }
+        saveGlossaryEntryInContext(entryId);
     }
 
     /**
-     * Save glossary entries to a file ({@code glossary.tex} that is LaTeX-included in the preamble.
+     * Render at once the definitions of all the glossary entries referenced in the given content, so that they don't
+     * need to be loaded one by one when the references are exported.
+     *
+     * @param block the exported content
+     * @throws GlossaryException in case an error happens to retrieve the documents containing the glossary entries
+     * @since 1.5.3
+     */
+    public void prefetchGlossaryEntries(Block block) throws GlossaryException
+    {
+        Map<String, Object> prefetchedData = getLaTeXBindingMap(SC_LATEX_GLOSSARY_PREFETCHED);
+        Map<String, DocumentReference> references = new HashMap<>();
+        for (Block macroBlock : block.getBlocks(new ClassBlockMatcher(AbstractMacroBlock.class),
+            Block.Axes.DESCENDANT_OR_SELF)) {
+            String entryId = ((AbstractMacroBlock) macroBlock).getContent();
+            if (GLOSSARY_REFERENCE_MACRO.equals(((AbstractMacroBlock) macroBlock).getId()) && entryId != null
+                && !prefetchedData.containsKey(entryId) && !references.containsKey(entryId)) {
+                DocumentReference reference = this.glossaryCache.get(entryId);
+                if (reference != null) {
+                    references.put(entryId, reference);
+                }
+            }
+        }
+
+        if (!references.isEmpty()) {
+            prefetchedData.putAll(getRenderedDocumentContents(references));
+        }
+    }
+
+    /**
+     * Save glossary entries to a file ({@code glossary.tex} that is LaTeX-included in the preamble. The
+     * {@code glossary-build.sh} script used to build the PDF incrementally is saved next to it.
      *
      * @throws GlossaryException in case of an error writing to file
      */
     public void saveGlossaryEntriesToFile() throws GlossaryException
     {
-        StringBuilder builder = new StringBuilder();
-        for (Map.Entry<String, Object> glossaryDatum : getGlossaryData().entrySet()) {
-            builder.append(String.format("\\newglossaryentry{%s}", glossaryDatum.getKey())).append(NL);
-            builder.append("{").append(NL);
-            builder.append(String.format("    name=%s,", glossaryDatum.getKey())).append(NL);
-            builder.append(String.format("    description={%s}", glossaryDatum.getValue())).append(NL);
-            builder.append("}").append(NL);
-        }
         LaTeXResourceConverter converter = getLaTeXResourceConverter();
         try {
-            try (InputStream inputStream = IOUtils.toInputStream(builder.toString(), "UTF-8")) {
+            // The entries are encoded while the converter reads the stream
+            try (InputStream inputStream = new GlossaryTeXInputStream(getGlossaryData())) {
                 converter.store(GLOSSARY_FILE, inputStream);
             }
+            try (InputStream inputStream = getClass().getResourceAsStream(
+                "/org/xwiki/contrib/glossary/latex/" + BUILD_SCRIPT_FILE)) {
+                converter.store(BUILD_SCRIPT_FILE, inputStream);
+            }
         } catch (IOException e) {
             throw new GlossaryException(String.format("Failed to write glossary entries to [%s]", GLOSSARY_FILE),
                 e);
@@ -134,22 +195,21 @@ public class LaTeXGlossaryScriptService implements ScriptService
      * @return the glossary data as a map: the map index is the entry id and the value is the description
      */
     public Map<String, Object> getGlossaryData()
+    {
+        return getLaTeXBindingMap(SC_LATEX_GLOSSARY);
+    }
+
+    private Map<String, Object> getLaTeXBindingMap(String key)
     {
         ScriptContext currentScriptContext = this.scriptContextManager.getCurrentScriptContext();
         Map<String, Object> latexBinding = (Map<String, Object>) currentScriptContext.getAttribute(SC_LATEX);
         // Note: The LaTeX binding should never be null since the export starts by creating it.
-        Map<String, Object> glossaryData = (Map<String, Object>) latexBinding.get(SC_LATEX_GLOSSARY);
-        if (glossaryData == null) {
-            glossaryData = new HashMap<>();
-            latexBinding.put(SC_LATEX_GLOSSARY, glossaryData);
+        Map<String, Object> map = (Map<String, Object>) latexBinding.get(key);
+        if (map == null) {
+            map = new HashMap<>();
+            latexBinding.put(key, map);
         }
-        return glossaryData;
-    }
-
-    private void saveGlossaryData(String entryId, String description)
-    {
-        Map<String, Object> glossaryData = getGlossaryData();
-        glossaryData.put(entryId, description);
+        return map;
     }
 
     private LaTeXResourceConverter getLaTeXResourceConverter()
@@ -159,14 +219,21 @@ public class LaTeXGlossaryScriptService implements ScriptService
         return (LaTeXResourceConverter) latexBinding.get(LATEX_BINDING_RESOURCE_CONVERTER);
     }
 
-    private String getRenderedDocumentContent(DocumentReference reference) throws GlossaryException
+    private Map<String, String> getRenderedDocumentContents(Map<String, DocumentReference> references)
+        throws GlossaryException
     {
         Locale locale = xwikiContextProvider.get().getLocale();
-        XDOM xdom = this.glossaryModel.getGlossaryContent(reference, locale);
         // TODO: Render it as latex/1.0 content. Note that for this to work we need to implement a new simplified
         // latex/1.0 renderer that doesn't render any preamble.
-        WikiPrinter printer = new DefaultWikiPrinter();
-        this.plainBlockRenderer.render(xdom, printer);
-        return printer.toString();
+        Map<DocumentReference, String> definitions =
+            this.definitionRendererProvider.get().getPlainDefinitions(references.values(), locale);
+        Map<String, String> contents = new HashMap<>();
+        for (Map.Entry<String, DocumentReference> reference : references.entrySet()) {
+            String definition = definitions.get(reference.getValue());
+            if (definition != null) {
+                contents.put(reference.getKey(), definition);
+            }
+        }
+        return contents;
     }
 }
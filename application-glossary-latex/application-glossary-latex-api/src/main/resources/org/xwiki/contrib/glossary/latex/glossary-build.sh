@@ -0,0 +1,82 @@
+#!/bin/sh
+# ---------------------------------------------------------------------------
+# See the NOTICE file distributed with this work for additional
+# information regarding copyright ownership.
+#
+# This is free software; you can redistribute it and/or modify it
+# under the terms of the GNU Lesser General Public License as
+# published by the Free Software Foundation; either version 2.1 of
+# the License, or (at your option) any later version.
+#
+# This software is distributed in the hope that it will be useful,
+# but WITHOUT ANY WARRANTY; without even the implied warranty of
+# MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+# Lesser General Public License for more details.
+#
+# You should have received a copy of the GNU Lesser General Public
+# License along with this software; if not, write to the Free
+# Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+# 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+# ---------------------------------------------------------------------------
+
+# Build index.pdf from the LaTeX export, generating the glossary with makeglossaries.
+#
+# The artefacts of the previous build having the same glossary.tex are reused when a cache directory is given, and the
+# second pdflatex pass is skipped when the first one didn't change the auxiliary, table of contents and glossary files.
+# Cache entries which were not used for CACHE_MAX_AGE days are removed, and the artefacts of a successful build are
+# moved into the cache one file at a time so that concurrent builds never read partially written files.
+#
+# Usage: sh glossary-build.sh [cache directory]
+
+LATEX="pdflatex -shell-escape index.tex"
+ARTEFACTS="index.aux index.toc index.glo index.gls index.glg index.ist"
+CACHE_MAX_AGE=30
+CACHE_ENTRY=""
+
+if [ -n "$1" ] && [ -f glossary.tex ] && command -v sha256sum > /dev/null; then
+  CACHE_ENTRY="$1/$(sha256sum < glossary.tex | cut -d ' ' -f 1)"
+  if [ -d "$CACHE_ENTRY" ]; then
+    cp "$CACHE_ENTRY"/* . 2> /dev/null
+    # Keep the entries in use from being pruned
+    touch "$CACHE_ENTRY"
+  fi
+  find "$1" -mindepth 1 -maxdepth 1 -mtime +$CACHE_MAX_AGE -exec rm -rf {} + 2> /dev/null
+fi
+
+mkdir -p .glossary-previous
+for artefact in $ARTEFACTS; do
+  [ -f "$artefact" ] && cp "$artefact" .glossary-previous/
+done
+
+$LATEX
+STATUS=$?
+makeglossaries index
+GLOSSARY_STATUS=$?
+
+CHANGED=0
+for artefact in index.aux index.toc index.gls; do
+  if [ -f "$artefact" ] || [ -f ".glossary-previous/$artefact" ]; then
+    cmp -s "$artefact" ".glossary-previous/$artefact" || CHANGED=1
+  fi
+done
+if [ "$CHANGED" = 1 ]; then
+  # The last pass decides whether the PDF was built
+  $LATEX
+  STATUS=$?
+fi
+if [ "$STATUS" = 0 ]; then
+  STATUS=$GLOSSARY_STATUS
+fi
+
+# Only cache the artefacts of successful builds
+if [ -n "$CACHE_ENTRY" ] && [ "$STATUS" = 0 ] && mkdir -p "$CACHE_ENTRY"; then
+  # Write the artefacts next to the cache entry and rename them, which doesn't expose partial files
+  CACHE_TMP=$(mktemp -d "$1/.tmp.XXXXXX") && {
+    for artefact in $ARTEFACTS; do
+      [ -f "$artefact" ] && cp "$artefact" "$CACHE_TMP/" && mv -f "$CACHE_TMP/$artefact" "$CACHE_ENTRY/$artefact"
+    done
+    rm -rf "$CACHE_TMP"
+  }
+fi
+
+exit $STATUS
@@ -0,0 +1,75 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.latex.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link GlossaryTeXInputStream}.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+public class GlossaryTeXInputStreamTest
+{
+    @Test
+    public void readSortedAndEscapedEntries() throws Exception
+    {
+        Map<String, Object> glossaryData = new HashMap<>();
+        glossaryData.put("world", "The planet\nwe live on");
+        glossaryData.put("cost", "100% of the $ & more_{1}");
+
+        assertEquals("\\newglossaryentry{cost}\n"
+            + "{\n"
+            + "    name=cost,\n"
+            + "    description={100\\% of the \\$ \\& more\\_\\{1\\}}\n"
+            + "}\n"
+            + "\\newglossaryentry{world}\n"
+            + "{\n"
+            + "    name=world,\n"
+            + "    description={The planet we live on}\n"
+            + "}\n", read(new GlossaryTeXInputStream(glossaryData)));
+    }
+
+    @Test
+    public void readEmptyGlossary() throws Exception
+    {
+        assertEquals("", read(new GlossaryTeXInputStream(new HashMap<>())));
+    }
+
+    private String read(InputStream inputStream) throws Exception
+    {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[7];
+        int count;
+        while ((count = inputStream.read(buffer, 0, buffer.length)) != -1) {
+            outputStream.write(buffer, 0, count);
+        }
+        return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
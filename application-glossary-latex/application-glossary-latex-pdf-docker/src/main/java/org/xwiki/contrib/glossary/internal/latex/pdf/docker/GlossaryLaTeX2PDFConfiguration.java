@@ -26,6 +26,7 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.StringUtils;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.configuration.ConfigurationSource;
 import org.xwiki.contrib.latex.pdf.docker.LaTeX2PDFConfiguration;
@@ -42,6 +43,8 @@ public class GlossaryLaTeX2PDFConfiguration implements LaTeX2PDFConfiguration
 {
     private static final String PREFIX = "latex.pdf.docker.";
 
+    private static final String BUILD_COMMAND = "sh glossary-build.sh";
+
     @Inject
     @Named("xwikiproperties")
     private ConfigurationSource configurationSource;
@@ -55,10 +58,14 @@ public class GlossaryLaTeX2PDFConfiguration implements LaTeX2PDFConfiguration
     @Override
     public List<String> getDockerCommands()
     {
-        // Note 1: we run the compilation twice so that the TOC is generated properly (it requires two passes from
-        // pdflatex).
-        // Note 2: we run makeglossaries to generate glossary gls file
-        return Arrays.asList("sh", "-c", this.configurationSource.getProperty(PREFIX + "commands",
-            "pdflatex -shell-escape index.tex; makeglossaries index; pdflatex -shell-escape index.tex"));
+        // Note 1: the glossary-build.sh script saved with the glossary runs pdflatex, makeglossaries to generate the
+        // glossary gls file and then pdflatex again only when needed, so that the TOC is generated properly.
+        // Note 2: the artefacts of the previous builds are only reused when a cache directory mounted in the container
+        // is configured.
+        String cacheDirectory = this.configurationSource.getProperty(PREFIX + "glossaryCacheDirectory", "");
+        // Quote the cache directory, which may contain spaces
+        String command = StringUtils.isEmpty(cacheDirectory) ? BUILD_COMMAND
+            : String.format("%s \"%s\"", BUILD_COMMAND, cacheDirectory);
+        return Arrays.asList("sh", "-c", this.configurationSource.getProperty(PREFIX + "commands", command));
     }
 }
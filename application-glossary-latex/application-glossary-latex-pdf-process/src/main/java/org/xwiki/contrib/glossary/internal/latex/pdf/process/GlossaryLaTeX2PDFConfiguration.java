@@ -19,6 +19,7 @@
  */
 package org.xwiki.contrib.glossary.internal.latex.pdf.process;
 
+import java.io.File;
 import java.util.Arrays;
 import java.util.List;
 
@@ -26,8 +27,10 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.StringUtils;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.environment.Environment;
 import org.xwiki.contrib.latex.pdf.process.LaTeX2PDFConfiguration;
 
 /**
@@ -42,18 +45,25 @@ public class GlossaryLaTeX2PDFConfiguration implements LaTeX2PDFConfiguration
 {
     private static final String PREFIX = "latex.pdf.process.";
 
-    private static final String DEFAULT_COMMAND = "pdflatex -shell-escape index.tex";
+    private static final String BUILD_COMMAND = "sh glossary-build.sh";
 
     @Inject
     @Named("xwikiproperties")
     private ConfigurationSource configurationSource;
 
+    @Inject
+    private Environment environment;
+
     @Override
     public List<String> getCommands()
     {
-        // Note: we run the compilation twice so that the TOC is generated properly (it requires two passes from
-        // pdflatex).
-        return this.configurationSource.getProperty(PREFIX + "commands",
-            Arrays.asList(DEFAULT_COMMAND, "makeglossaries index", DEFAULT_COMMAND));
+        // Note: the glossary-build.sh script saved with the glossary runs pdflatex, makeglossaries and then pdflatex
+        // again only when needed, reusing the artefacts of the previous builds having the same glossary.
+        String cacheDirectory = this.configurationSource.getProperty(PREFIX + "glossaryCacheDirectory",
+            new File(this.environment.getPermanentDirectory(), "cache/glossary/latex").getAbsolutePath());
+        // Quote the cache directory, which may contain spaces
+        String command = StringUtils.isEmpty(cacheDirectory) ? BUILD_COMMAND
+            : String.format("%s \"%s\"", BUILD_COMMAND, cacheDirectory);
+        return this.configurationSource.getProperty(PREFIX + "commands", Arrays.asList(command));
     }
 }
@@ -19,6 +19,9 @@
  */
 package org.xwiki.contrib.glossary.machinetranslation;
 
+import java.util.Collection;
+import java.util.Locale;
+
 import org.xwiki.component.annotation.Role;
 
 /**
@@ -32,4 +35,17 @@ public interface TranslationGlossaryManager
      * Run synchronisation of the glossaries with translation provider.
      */
     void synchronizeGlossaries();
+
+    /**
+     * Run synchronisation of the glossaries with translation provider, limited to the language pairs having the given
+     * locales as source or target.
+     *
+     * @param locales the locales of the glossary entries that changed, or {@code null} to synchronize all the
+     *     language pairs
+     * @since 1.5.3
+     */
+    default void synchronizeGlossaries(Collection<Locale> locales)
+    {
+        synchronizeGlossaries();
+    }
 }
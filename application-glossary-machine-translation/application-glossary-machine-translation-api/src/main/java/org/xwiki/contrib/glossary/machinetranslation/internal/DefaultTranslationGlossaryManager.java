@@ -19,26 +19,45 @@
  */
 package org.xwiki.contrib.glossary.machinetranslation.internal;
 
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.configuration.ConfigurationSource;
 import org.xwiki.contrib.glossary.GlossaryConstants;
+import org.xwiki.contrib.glossary.GlossaryModel;
+import org.xwiki.contrib.glossary.GlossaryOperationTimer;
 import org.xwiki.contrib.glossary.machinetranslation.TranslationGlossaryManager;
 import org.xwiki.contrib.machinetranslation.Translator;
 import org.xwiki.contrib.machinetranslation.TranslatorManager;
 import org.xwiki.contrib.machinetranslation.model.Glossary;
 import org.xwiki.contrib.machinetranslation.model.GlossaryInfo;
 import org.xwiki.contrib.machinetranslation.model.LocalePair;
+import org.xwiki.model.reference.DocumentReferenceResolver;
 import org.xwiki.model.reference.EntityReferenceSerializer;
 import org.xwiki.query.Query;
 import org.xwiki.query.QueryException;
@@ -47,12 +66,25 @@ import org.xwiki.query.QueryManager;
 import com.xpn.xwiki.XWikiContext;
 
 /**
+ * Synchronizes the glossary entries with the translator. All the entry titles of all the glossaries and all the locales
+ * are loaded with a single query and paired in memory, producing one translator glossary per glossary ID and locale
+ * pair. Only the glossaries whose entries changed since they were last pushed to the translator are uploaded again, a
+ * glossary which became empty being pushed once without entries so that the translator stops using its old entries.
+ * The fingerprints of the pushed glossaries are only kept in memory, so all the glossaries are pushed again after a
+ * restart.
+ *
  * @version $Id$
  */
 @Component
 @Singleton
 public class DefaultTranslationGlossaryManager implements TranslationGlossaryManager
 {
+    private static final String PAIR_SEPARATOR = "/";
+
+    private static final String SYNCHRONIZED_GLOSSARIES = "glossary.machineTranslation.glossaries";
+
+    private static final String SYNCHRONIZATION_OPERATION = "translationSynchronization";
+
     @Inject
     private Logger logger;
 
@@ -69,35 +101,144 @@ public class DefaultTranslationGlossaryManager implements TranslationGlossaryMan
     @Inject
     private QueryManager queryManager;
 
-    private Map<String, String> getLocalGlossaryEntries(Locale sourceLanguage, Locale targetLanguage)
-        throws QueryException
+    @Inject
+    private DocumentReferenceResolver<String> documentReferenceResolver;
+
+    @Inject
+    private GlossaryModel glossaryModel;
+
+    @Inject
+    private GlossaryOperationTimer operationTimer;
+
+    @Inject
+    private ConfigurationSource configurationSource;
+
+    /**
+     * The fingerprints of the glossaries last pushed to the translator, indexed by wiki and then by glossary ID and
+     * locale pair.
+     */
+    private final Map<String, Map<String, String>> pushedFingerprints = new ConcurrentHashMap<>();
+
+    /**
+     * @return the identifiers of the glossaries to synchronize, or an empty set to synchronize all the glossaries
+     */
+    private Set<String> getSynchronizedGlossaries()
     {
-        List<String[]> glossaryRawEntries = queryManager.createQuery("select sourceDoc.title, targetDoc.title "
-                    + "from XWikiDocument sourceDoc, XWikiDocument targetDoc, BaseObject glossaryObj "
-                    + "where glossaryObj.name = sourceDoc.fullName "
-                    + "and glossaryObj.name = targetDoc.fullName "
-                    + "and glossaryObj.className = :glossaryClassRef "
-                    + "and sourceDoc.space = 'Glossary' "
-                    + "and targetDoc.space = 'Glossary' "
-                    + "and ((sourceDoc.defaultLanguage = :sourceLanguage and sourceDoc.language = '') "
-                    + "     or sourceDoc.language = :sourceLanguage) "
-                    + "and ((targetDoc.defaultLanguage = :targetLanguage and targetDoc.language = '') "
-                    + "     or targetDoc.language = :targetLanguage)",
-                Query.HQL).bindValue("sourceLanguage", sourceLanguage.toString())
-            .bindValue("targetLanguage", targetLanguage.toString())
+        return Arrays.stream(this.configurationSource.getProperty(SYNCHRONIZED_GLOSSARIES, StringUtils.EMPTY)
+            .split(",")).map(String::trim).filter(StringUtils::isNotEmpty).collect(Collectors.toSet());
+    }
+
+    /**
+     * @return the titles of every glossary entry, indexed by glossary ID, then by entry document and then by locale
+     */
+    private Map<String, Map<String, Map<String, String>>> getLocalGlossaryTitles() throws QueryException
+    {
+        List<Object[]> results = queryManager.createQuery("select doc.fullName, doc.title, doc.language, "
+                + "doc.defaultLanguage "
+                + "from XWikiDocument doc, BaseObject glossaryObj "
+                + "where glossaryObj.name = doc.fullName "
+                + "and glossaryObj.className = :glossaryClassRef",
+            Query.HQL)
             .bindValue("glossaryClassRef", serializer.serialize(GlossaryConstants.GLOSSARY_XCLASS_REFERENCE)).execute();
 
+        Set<String> synchronizedGlossaries = getSynchronizedGlossaries();
+        Map<String, String> glossaryIds = new HashMap<>();
+        Map<String, Map<String, Map<String, String>>> titles = new HashMap<>();
+        for (Object[] result : results) {
+            String title = (String) result[1];
+            if (StringUtils.isBlank(title)) {
+                continue;
+            }
+            String fullName = (String) result[0];
+            // The translations of an entry all belong to the same glossary
+            String glossaryId = glossaryIds.computeIfAbsent(fullName,
+                key -> this.glossaryModel.getGlossaryId(this.documentReferenceResolver.resolve(key)));
+            if (!synchronizedGlossaries.isEmpty() && !synchronizedGlossaries.contains(glossaryId)) {
+                continue;
+            }
+            // The original document holds the title of its default language.
+            String language = StringUtils.isEmpty((String) result[2]) ? (String) result[3] : (String) result[2];
+            titles.computeIfAbsent(glossaryId, key -> new HashMap<>())
+                .computeIfAbsent(fullName, key -> new HashMap<>()).put(language, title.trim());
+        }
+        return titles;
+    }
+
+    private Map<String, String> getLocalGlossaryEntries(Map<String, Map<String, String>> titles,
+        Locale sourceLanguage, Locale targetLanguage)
+    {
+        String source = sourceLanguage.toString();
+        String target = targetLanguage.toString();
         Map<String, String> glossaryEntries = new HashMap<>();
-        for (Object[] entry : glossaryRawEntries) {
-            String trimmedKey = ((String) entry[0]).trim();
-            String trimmedValue = ((String) entry[1]).trim();
-            glossaryEntries.put(trimmedKey, trimmedValue);
+        for (Map<String, String> entryTitles : titles.values()) {
+            String sourceTitle = entryTitles.get(source);
+            String targetTitle = entryTitles.get(target);
+            if (sourceTitle != null && targetTitle != null) {
+                glossaryEntries.put(sourceTitle, targetTitle);
+            }
         }
         return glossaryEntries;
     }
 
+    private String getFingerprint(Map<String, String> glossaryEntries) throws NoSuchAlgorithmException
+    {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        for (Map.Entry<String, String> entry : new TreeMap<>(glossaryEntries).entrySet()) {
+            digest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(entry.getValue().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return new BigInteger(1, digest.digest()).toString(16);
+    }
+
+    /**
+     * @return the glossary to push to the translator for the given glossary ID and locale pair, or {@code null} if it
+     *     didn't change since it was last pushed or if it is empty and was never pushed
+     */
+    private Glossary getChangedGlossary(String glossaryId, Map<String, Map<String, String>> titles,
+        Locale sourceLanguage, Locale targetLanguage, Map<String, String> previousFingerprints,
+        Map<String, String> changedFingerprints) throws NoSuchAlgorithmException
+    {
+        Map<String, String> localGlossaryEntries = getLocalGlossaryEntries(titles, sourceLanguage, targetLanguage);
+        String glossaryKey = glossaryId + PAIR_SEPARATOR + sourceLanguage + PAIR_SEPARATOR + targetLanguage;
+        String fingerprint;
+        if (localGlossaryEntries.isEmpty()) {
+            if (!previousFingerprints.containsKey(glossaryKey)) {
+                return null;
+            }
+            // Push the glossary without entries so that the entries previously pushed are not used anymore
+            fingerprint = null;
+        } else {
+            fingerprint = getFingerprint(localGlossaryEntries);
+            if (fingerprint.equals(previousFingerprints.get(glossaryKey))) {
+                return null;
+            }
+        }
+
+        changedFingerprints.put(glossaryKey, fingerprint);
+        return new Glossary(localGlossaryEntries,
+            new GlossaryInfo("", glossaryId, true, sourceLanguage, targetLanguage, 0));
+    }
+
     @Override
     public void synchronizeGlossaries()
+    {
+        synchronizeGlossaries(null);
+    }
+
+    @Override
+    public void synchronizeGlossaries(Collection<Locale> locales)
+    {
+        long start = System.nanoTime();
+        try {
+            synchronizeLocaleGlossaries(locales);
+        } finally {
+            operationTimer.record(SYNCHRONIZATION_OPERATION, start);
+        }
+    }
+
+    private void synchronizeLocaleGlossaries(Collection<Locale> locales)
     {
         Translator translator = translatorManager.getTranslator();
         XWikiContext context = xwikiContextProvider.get();
@@ -107,38 +248,73 @@ public class DefaultTranslationGlossaryManager implements TranslationGlossaryMan
             logger.debug("Fetched the list of supported glossary language combinations : [{}]",
                 translatorSupportedLocalePairs);
 
-            List<Locale> xwikiLanguages = xwikiContextProvider.get().getWiki().getAvailableLocales(context);
-            List<Glossary> updateEntries = new ArrayList<>();
+            Set<String> supportedPairs = new HashSet<>();
+            for (LocalePair pair : translatorSupportedLocalePairs) {
+                supportedPairs.add(pair.getSourceLocale() + PAIR_SEPARATOR + pair.getTargetLocale());
+            }
+
+            List<Locale> xwikiLanguages = context.getWiki().getAvailableLocales(context);
+            Map<Locale, String> translatorSourceLanguages = new HashMap<>();
+            Map<Locale, String> translatorTargetLanguages = new HashMap<>();
+            for (Locale language : xwikiLanguages) {
+                translatorSourceLanguages.put(language,
+                    translator.normalizeLocale(language, Translator.NormalisationType.SOURCE_LANG_GLOSSARY));
+                translatorTargetLanguages.put(language,
+                    translator.normalizeLocale(language, Translator.NormalisationType.TARGET_LANG_GLOSSARY));
+            }
 
             logger.info("Generating glossary entries to register");
 
+            Map<String, Map<String, Map<String, String>>> titles = getLocalGlossaryTitles();
+            Map<String, String> previousFingerprints =
+                pushedFingerprints.computeIfAbsent(context.getWikiId(), key -> new ConcurrentHashMap<>());
+            Map<String, String> changedFingerprints = new LinkedHashMap<>();
+            List<Glossary> updateEntries = new ArrayList<>();
+
+            // Also go through the glossaries whose entries were all removed since they were pushed
+            Set<String> glossaryIds = new LinkedHashSet<>(titles.keySet());
+            for (String glossaryKey : previousFingerprints.keySet()) {
+                glossaryIds.add(StringUtils.substringBeforeLast(
+                    StringUtils.substringBeforeLast(glossaryKey, PAIR_SEPARATOR), PAIR_SEPARATOR));
+            }
+
             for (Locale sourceLanguage : xwikiLanguages) {
                 for (Locale targetLanguage : xwikiLanguages) {
-                    String translatorSrcLang =
-                        translator.normalizeLocale(sourceLanguage, Translator.NormalisationType.SOURCE_LANG_GLOSSARY);
-                    String translatorDstLang =
-                        translator.normalizeLocale(targetLanguage, Translator.NormalisationType.TARGET_LANG_GLOSSARY);
-
-                    boolean foundMatchingLocalePairs = translatorSupportedLocalePairs.stream()
-                        .anyMatch(entry ->
-                            entry.getSourceLocale().toString().equals(translatorSrcLang)
-                                && entry.getTargetLocale().toString().equals(translatorDstLang));
-
-                    if (foundMatchingLocalePairs) {
-                        Map<String, String> localGlossaryEntries = getLocalGlossaryEntries(sourceLanguage,
-                            targetLanguage
-                        );
-                        if (!localGlossaryEntries.isEmpty()) {
-                            updateEntries.add(
-                                new Glossary(localGlossaryEntries,
-                                    new GlossaryInfo("", "", true, sourceLanguage, targetLanguage, 0)));
+                    if (locales != null && !locales.contains(sourceLanguage) && !locales.contains(targetLanguage)) {
+                        continue;
+                    }
+                    if (!supportedPairs.contains(translatorSourceLanguages.get(sourceLanguage) + PAIR_SEPARATOR
+                        + translatorTargetLanguages.get(targetLanguage))) {
+                        continue;
+                    }
+
+                    for (String glossaryId : glossaryIds) {
+                        Glossary changedGlossary = getChangedGlossary(glossaryId,
+                            titles.getOrDefault(glossaryId, Collections.emptyMap()), sourceLanguage, targetLanguage,
+                            previousFingerprints, changedFingerprints);
+                        if (changedGlossary != null) {
+                            updateEntries.add(changedGlossary);
                         }
                     }
                 }
             }
 
-            logger.info("Updating glossary into the translator");
+            if (updateEntries.isEmpty()) {
+                logger.debug("The glossaries of the translator are already up to date");
+                return;
+            }
+
+            logger.info("Updating glossary into the translator for the glossaries and language pairs [{}]",
+                changedFingerprints.keySet());
             translator.updateGlossaries(updateEntries);
+            for (Map.Entry<String, String> changedFingerprint : changedFingerprints.entrySet()) {
+                if (changedFingerprint.getValue() == null) {
+                    // Empty glossaries are pushed only once
+                    previousFingerprints.remove(changedFingerprint.getKey());
+                } else {
+                    previousFingerprints.put(changedFingerprint.getKey(), changedFingerprint.getValue());
+                }
+            }
             logger.debug("Finished synchronizing glossaries");
         } catch (Exception e) {
             logger.error("Got unexpected error while synchronizing glossaries : [{}]", e.getMessage(), e);
@@ -0,0 +1,143 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.machinetranslation.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.xwiki.bridge.event.DocumentCreatedEvent;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.glossary.GlossaryConstants;
+import org.xwiki.contrib.glossary.GlossaryImportedEvent;
+import org.xwiki.contrib.glossary.GlossaryImportingEvent;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ObservationContext;
+import org.xwiki.observation.event.Event;
+import org.xwiki.observation.remote.RemoteObservationManagerContext;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiDocument;
+
+/**
+ * Schedule the synchronization of the translator glossaries when the title of a glossary entry is modified.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+@Component
+@Named(TranslationGlossaryEventListener.LISTENER_NAME)
+@Singleton
+public class TranslationGlossaryEventListener implements EventListener
+{
+    /**
+     * The name of the listener.
+     */
+    public static final String LISTENER_NAME = "translationGlossaryEventListener";
+
+    private static final List<Event> EVENTS = Arrays.asList(new DocumentCreatedEvent(),
+        new DocumentUpdatedEvent(), new DocumentDeletedEvent(), new GlossaryImportedEvent());
+
+    private static final GlossaryImportingEvent IMPORTING_EVENT = new GlossaryImportingEvent();
+
+    @Inject
+    private Provider<TranslationGlossarySynchronizer> synchronizerProvider;
+
+    @Inject
+    private Provider<ObservationContext> observationContextProvider;
+
+    @Inject
+    private Provider<RemoteObservationManagerContext> remoteObservationManagerContextProvider;
+
+    @Inject
+    private Provider<XWikiContext> xwikiContextProvider;
+
+    @Inject
+    private Logger logger;
+
+    @Override
+    public List<Event> getEvents()
+    {
+        return EVENTS;
+    }
+
+    @Override
+    public String getName()
+    {
+        return LISTENER_NAME;
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        if (this.remoteObservationManagerContextProvider.get().isRemoteState()) {
+            // The translator glossaries are shared by the cluster, so they are synchronized by the node which
+            // modified the entry
+            return;
+        } else if (event instanceof GlossaryImportedEvent) {
+            // The imported entries can be in any locale
+            this.synchronizerProvider.get().schedule(this.xwikiContextProvider.get().getWikiId(), null);
+            return;
+        } else if (this.observationContextProvider.get().isIn(IMPORTING_EVENT)) {
+            // All the language pairs are synchronized at the end of the import
+            return;
+        }
+
+        XWikiDocument document = (XWikiDocument) source;
+        XWikiDocument originalDocument = document.getOriginalDocument();
+        XWikiContext xcontext = (XWikiContext) data;
+
+        // Only the titles of the entries are pushed to the translator
+        if (event instanceof DocumentUpdatedEvent
+            && StringUtils.equals(document.getTitle(), originalDocument.getTitle())) {
+            return;
+        }
+
+        try {
+            // Translations don't hold the glossary object, so the original document has to be checked
+            XWikiDocument entryDocument = (event instanceof DocumentDeletedEvent) ? originalDocument : document;
+            boolean isEntry = xcontext.getWiki().getDocument(document.getDocumentReference(), xcontext)
+                .getXObject(GlossaryConstants.GLOSSARY_XCLASS_REFERENCE) != null
+                || originalDocument.getXObject(GlossaryConstants.GLOSSARY_XCLASS_REFERENCE) != null;
+
+            if (isEntry) {
+                Locale locale = entryDocument.getLocale();
+                if (Locale.ROOT.equals(locale)) {
+                    locale = entryDocument.getDefaultLocale();
+                }
+                this.synchronizerProvider.get().schedule(document.getDocumentReference().getWikiReference().getName(),
+                    Collections.singleton(locale));
+            }
+        } catch (XWikiException e) {
+            this.logger.error("Failed to schedule the synchronization of the translator glossaries.", e);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.machinetranslation.internal;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.context.concurrent.ExecutionContextRunnable;
+import org.xwiki.contrib.glossary.machinetranslation.TranslationGlossaryManager;
+
+import com.xpn.xwiki.XWikiContext;
+
+/**
+ * Coalesces the changes made to the glossary entries of each wiki and pushes them to the translator in the
+ * background, once no change has been scheduled for the configured delay. Changes which keep coming don't postpone the
+ * synchronization of the first pending change for more than the configured maximum delay.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+@Component(roles = TranslationGlossarySynchronizer.class)
+@Singleton
+public class TranslationGlossarySynchronizer implements Initializable, Disposable
+{
+    private static final String SYNCHRONIZATION_DELAY = "glossary.machineTranslation.synchronizationDelay";
+
+    private static final String SYNCHRONIZATION_MAX_DELAY = "glossary.machineTranslation.synchronizationMaxDelay";
+
+    @Inject
+    private TranslationGlossaryManager translationGlossaryManager;
+
+    @Inject
+    private ConfigurationSource configurationSource;
+
+    @Inject
+    private Provider<XWikiContext> xwikiContextProvider;
+
+    @Inject
+    private ComponentManager componentManager;
+
+    private ScheduledExecutorService executor;
+
+    /**
+     * The locales waiting to be synchronized, indexed by wiki. A {@code null} value means that all the language pairs
+     * of the wiki have to be synchronized.
+     */
+    private final Map<String, Set<Locale>> pendingLocales = new HashMap<>();
+
+    /**
+     * The version of the last change scheduled for each wiki, used to postpone the synchronization while changes keep
+     * coming.
+     */
+    private final Map<String, Long> pendingVersions = new HashMap<>();
+
+    /**
+     * The time (in nanoseconds) at which the oldest pending change of each wiki was scheduled.
+     */
+    private final Map<String, Long> pendingSince = new HashMap<>();
+
+    private long version;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.executor = Executors.newSingleThreadScheduledExecutor(new BasicThreadFactory.Builder()
+            .namingPattern("Glossary machine translation synchronizer").daemon(true).build());
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Schedule the synchronization of the language pairs involving the given locales. The synchronization happens
+     * once no other change has been scheduled for the same wiki during the configured delay, or at the latest once
+     * the configured maximum delay has elapsed since the oldest pending change of the wiki.
+     *
+     * @param wikiId the identifier of the wiki containing the modified glossary entries
+     * @param locales the locales of the modified glossary entries, or {@code null} when all the language pairs have to
+     *     be synchronized
+     */
+    public void schedule(String wikiId, Collection<Locale> locales)
+    {
+        long delay = this.configurationSource.getProperty(SYNCHRONIZATION_DELAY, 30L);
+        if (delay < 0) {
+            // The automatic synchronization is disabled
+            return;
+        }
+
+        long scheduledVersion;
+        synchronized (this) {
+            boolean allPending = this.pendingLocales.containsKey(wikiId) && this.pendingLocales.get(wikiId) == null;
+            if (locales == null || allPending) {
+                this.pendingLocales.put(wikiId, null);
+            } else {
+                this.pendingLocales.computeIfAbsent(wikiId, key -> new HashSet<>()).addAll(locales);
+            }
+            scheduledVersion = ++this.version;
+            this.pendingVersions.put(wikiId, scheduledVersion);
+            this.pendingSince.putIfAbsent(wikiId, System.nanoTime());
+        }
+
+        this.executor.schedule(new ExecutionContextRunnable(() -> synchronize(wikiId, scheduledVersion),
+            this.componentManager), delay, TimeUnit.SECONDS);
+    }
+
+    private void synchronize(String wikiId, long scheduledVersion)
+    {
+        Set<Locale> locales;
+        synchronized (this) {
+            Long pendingVersion = this.pendingVersions.get(wikiId);
+            if (pendingVersion == null) {
+                // The change was synchronized along with an older one
+                return;
+            }
+            if (pendingVersion != scheduledVersion && !isMaxDelayElapsed(wikiId)) {
+                // Another change has been scheduled in the meantime
+                return;
+            }
+            this.pendingVersions.remove(wikiId);
+            this.pendingSince.remove(wikiId);
+            locales = this.pendingLocales.remove(wikiId);
+        }
+
+        this.xwikiContextProvider.get().setWikiId(wikiId);
+        this.translationGlossaryManager.synchronizeGlossaries(locales);
+    }
+
+    private boolean isMaxDelayElapsed(String wikiId)
+    {
+        long maxDelay = this.configurationSource.getProperty(SYNCHRONIZATION_MAX_DELAY, 300L);
+        return System.nanoTime() - this.pendingSince.get(wikiId) >= TimeUnit.SECONDS.toNanos(maxDelay);
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.machinetranslation.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+
+import javax.inject.Provider;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.slf4j.Logger;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.contrib.glossary.GlossaryModel;
+import org.xwiki.contrib.machinetranslation.Translator;
+import org.xwiki.contrib.machinetranslation.TranslatorManager;
+import org.xwiki.contrib.machinetranslation.model.Glossary;
+import org.xwiki.contrib.machinetranslation.model.LocalePair;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryManager;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link DefaultTranslationGlossaryManager}. The translator supports the English to French and English
+ * to German glossaries.
+ *
+ * @version $Id$
+ */
+public class DefaultTranslationGlossaryManagerTest
+{
+    @Rule
+    public MockitoComponentMockingRule<DefaultTranslationGlossaryManager> mocker =
+        new MockitoComponentMockingRule<>(DefaultTranslationGlossaryManager.class);
+
+    private Translator translator;
+
+    private Logger logger;
+
+    /**
+     * The rows returned by the query of the glossary entry titles: full name, title, language and default language.
+     */
+    private final List<Object[]> titles = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception
+    {
+        this.translator = mock(Translator.class);
+        TranslatorManager translatorManager = this.mocker.getInstance(TranslatorManager.class);
+        when(translatorManager.getTranslator()).thenReturn(this.translator);
+        when(this.translator.getGlossaryLocalePairs())
+            .thenReturn(Arrays.asList(mockPair(Locale.ENGLISH, Locale.FRENCH), mockPair(Locale.ENGLISH, Locale.GERMAN)));
+        when(this.translator.normalizeLocale(any(), any()))
+            .thenAnswer(invocation -> invocation.getArgument(0).toString());
+
+        Provider<XWikiContext> xcontextProvider = this.mocker.getInstance(XWikiContext.TYPE_PROVIDER);
+        XWikiContext xcontext = mock(XWikiContext.class);
+        when(xcontextProvider.get()).thenReturn(xcontext);
+        when(xcontext.getWikiId()).thenReturn("wiki");
+        XWiki xwiki = mock(XWiki.class);
+        when(xcontext.getWiki()).thenReturn(xwiki);
+        when(xwiki.getAvailableLocales(xcontext))
+            .thenReturn(Arrays.asList(Locale.ENGLISH, Locale.FRENCH, Locale.GERMAN));
+
+        QueryManager queryManager = this.mocker.getInstance(QueryManager.class);
+        Query query = mock(Query.class);
+        when(queryManager.createQuery(anyString(), eq(Query.HQL))).thenReturn(query);
+        when(query.bindValue(anyString(), any())).thenReturn(query);
+        when(query.execute()).thenAnswer(invocation -> new ArrayList<>(this.titles));
+
+        // The glossary of an entry is the space of its document
+        DocumentReferenceResolver<String> documentReferenceResolver =
+            this.mocker.getInstance(DocumentReferenceResolver.TYPE_STRING);
+        when(documentReferenceResolver.resolve(anyString())).thenAnswer(invocation -> {
+            String[] fullName = invocation.<String>getArgument(0).split("\\.");
+            return new DocumentReference("wiki", fullName[0], fullName[1]);
+        });
+        GlossaryModel glossaryModel = this.mocker.getInstance(GlossaryModel.class);
+        when(glossaryModel.getGlossaryId(any()))
+            .thenAnswer(invocation -> invocation.<DocumentReference>getArgument(0).getLastSpaceReference().getName());
+
+        ConfigurationSource configurationSource = this.mocker.getInstance(ConfigurationSource.class);
+        when(configurationSource.getProperty(eq("glossary.machineTranslation.glossaries"), anyString()))
+            .thenReturn("");
+
+        this.logger = this.mocker.getMockedLogger();
+
+        addEntry("Glossary.Hello", "Hello", "Bonjour", "Hallo");
+    }
+
+    private LocalePair mockPair(Locale sourceLocale, Locale targetLocale)
+    {
+        LocalePair pair = mock(LocalePair.class);
+        when(pair.getSourceLocale()).thenReturn(sourceLocale);
+        when(pair.getTargetLocale()).thenReturn(targetLocale);
+        return pair;
+    }
+
+    private void addEntry(String fullName, String englishTitle, String frenchTitle, String germanTitle)
+    {
+        this.titles.add(new Object[] { fullName, englishTitle, "", "en" });
+        if (frenchTitle != null) {
+            this.titles.add(new Object[] { fullName, frenchTitle, "fr", "en" });
+        }
+        if (germanTitle != null) {
+            this.titles.add(new Object[] { fullName, germanTitle, "de", "en" });
+        }
+    }
+
+    /**
+     * Verify the glossaries uploaded by the last update of the translator glossaries.
+     *
+     * @param updates the number of times the translator glossaries were updated since the beginning of the test
+     * @param glossaryKeys the glossary IDs and locale pairs of the glossaries uploaded by the last update
+     */
+    @SuppressWarnings("unchecked")
+    private void verifyUpdate(int updates, String... glossaryKeys)
+    {
+        ArgumentCaptor<List<Glossary>> glossaries = ArgumentCaptor.forClass(List.class);
+        verify(this.translator, times(updates)).updateGlossaries(glossaries.capture());
+        assertEquals(glossaryKeys.length, glossaries.getValue().size());
+        verify(this.logger).info(anyString(), eq(new HashSet<>(Arrays.asList(glossaryKeys))));
+        verify(this.logger, never()).error(anyString(), any(), any());
+    }
+
+    @Test
+    public void onlyChangedPairsAreUploaded() throws Exception
+    {
+        this.mocker.getComponentUnderTest().synchronizeGlossaries();
+        verifyUpdate(1, "Glossary/en/fr", "Glossary/en/de");
+
+        // Nothing changed
+        this.mocker.getComponentUnderTest().synchronizeGlossaries();
+        verify(this.translator, times(1)).updateGlossaries(any());
+
+        // Only the German title changed
+        this.titles.clear();
+        addEntry("Glossary.Hello", "Hello", "Bonjour", "Guten Tag");
+        this.mocker.getComponentUnderTest().synchronizeGlossaries();
+        verifyUpdate(2, "Glossary/en/de");
+
+        // The German title changed again, but only the French glossaries are synchronized
+        this.titles.clear();
+        addEntry("Glossary.Hello", "Hello", "Bonjour", "Hallo");
+        this.mocker.getComponentUnderTest().synchronizeGlossaries(Collections.singleton(Locale.FRENCH));
+        verify(this.translator, times(2)).updateGlossaries(any());
+    }
+
+    @Test
+    public void emptiedGlossaryIsPushedOnce() throws Exception
+    {
+        this.mocker.getComponentUnderTest().synchronizeGlossaries();
+        verifyUpdate(1, "Glossary/en/fr", "Glossary/en/de");
+
+        // The German translation of the only entry was deleted
+        this.titles.clear();
+        addEntry("Glossary.Hello", "Hello", "Bonjour", null);
+        this.mocker.getComponentUnderTest().synchronizeGlossaries();
+        verifyUpdate(2, "Glossary/en/de");
+
+        this.mocker.getComponentUnderTest().synchronizeGlossaries();
+        verify(this.translator, times(2)).updateGlossaries(any());
+
+        // The whole glossary was deleted
+        this.titles.clear();
+        this.mocker.getComponentUnderTest().synchronizeGlossaries();
+        verifyUpdate(3, "Glossary/en/fr");
+
+        this.mocker.getComponentUnderTest().synchronizeGlossaries();
+        verify(this.translator, times(3)).updateGlossaries(any());
+    }
+
+    @Test
+    public void glossariesAreUploadedSeparately() throws Exception
+    {
+        addEntry("Other.World", "World", "Monde", null);
+
+        this.mocker.getComponentUnderTest().synchronizeGlossaries();
+        verifyUpdate(1, "Glossary/en/fr", "Glossary/en/de", "Other/en/fr");
+
+        // Only the entry of the other glossary changed
+        this.titles.clear();
+        addEntry("Glossary.Hello", "Hello", "Bonjour", "Hallo");
+        addEntry("Other.World", "World", "Le monde", null);
+        this.mocker.getComponentUnderTest().synchronizeGlossaries();
+        verifyUpdate(2, "Other/en/fr");
+    }
+}
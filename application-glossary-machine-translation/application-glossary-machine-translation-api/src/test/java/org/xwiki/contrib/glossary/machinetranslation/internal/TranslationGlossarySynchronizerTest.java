@@ -0,0 +1,135 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.glossary.machinetranslation.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+
+import javax.inject.Provider;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.contrib.glossary.machinetranslation.TranslationGlossaryManager;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import com.xpn.xwiki.XWikiContext;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link TranslationGlossarySynchronizer}.
+ *
+ * @version $Id$
+ * @since 1.5.3
+ */
+public class TranslationGlossarySynchronizerTest
+{
+    @Rule
+    public MockitoComponentMockingRule<TranslationGlossarySynchronizer> mocker =
+        new MockitoComponentMockingRule<>(TranslationGlossarySynchronizer.class);
+
+    private TranslationGlossaryManager translationGlossaryManager;
+
+    private ConfigurationSource configurationSource;
+
+    private XWikiContext xcontext;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        this.translationGlossaryManager = this.mocker.getInstance(TranslationGlossaryManager.class);
+        this.configurationSource = this.mocker.getInstance(ConfigurationSource.class);
+        when(this.configurationSource.getProperty(eq("glossary.machineTranslation.synchronizationDelay"), anyLong()))
+            .thenReturn(1L);
+        when(this.configurationSource.getProperty(eq("glossary.machineTranslation.synchronizationMaxDelay"),
+            anyLong())).thenReturn(300L);
+
+        Provider<XWikiContext> xcontextProvider = this.mocker.registerMockComponent(XWikiContext.TYPE_PROVIDER);
+        this.xcontext = mock(XWikiContext.class);
+        when(xcontextProvider.get()).thenReturn(this.xcontext);
+
+        this.mocker.registerMockComponent(ExecutionContextManager.class);
+        this.mocker.registerMockComponent(Execution.class);
+    }
+
+    @Test
+    public void scheduleCoalescesChanges() throws Exception
+    {
+        this.mocker.getComponentUnderTest().schedule("wiki", Collections.singleton(Locale.ENGLISH));
+        this.mocker.getComponentUnderTest().schedule("wiki", Collections.singleton(Locale.FRENCH));
+
+        verify(this.translationGlossaryManager, timeout(5000))
+            .synchronizeGlossaries(new HashSet<>(Arrays.asList(Locale.ENGLISH, Locale.FRENCH)));
+        verify(this.translationGlossaryManager, after(1500).times(1)).synchronizeGlossaries(any());
+        verify(this.xcontext).setWikiId("wiki");
+    }
+
+    @Test
+    public void scheduleAllLocales() throws Exception
+    {
+        this.mocker.getComponentUnderTest().schedule("wiki", Collections.singleton(Locale.ENGLISH));
+        this.mocker.getComponentUnderTest().schedule("wiki", null);
+        this.mocker.getComponentUnderTest().schedule("wiki", Collections.singleton(Locale.FRENCH));
+
+        verify(this.translationGlossaryManager, timeout(5000)).synchronizeGlossaries(null);
+        verify(this.translationGlossaryManager, after(1500).times(1)).synchronizeGlossaries(any());
+    }
+
+    @Test
+    public void scheduleDoesNotPostponeForever() throws Exception
+    {
+        when(this.configurationSource.getProperty(eq("glossary.machineTranslation.synchronizationMaxDelay"),
+            anyLong())).thenReturn(2L);
+
+        // Changes keep coming more often than the synchronization delay
+        for (int i = 0; i < 8; i++) {
+            this.mocker.getComponentUnderTest().schedule("wiki", Collections.singleton(Locale.ENGLISH));
+            Thread.sleep(500);
+        }
+
+        verify(this.translationGlossaryManager, atLeastOnce())
+            .synchronizeGlossaries(Collections.singleton(Locale.ENGLISH));
+    }
+
+    @Test
+    public void scheduleWhenDisabled() throws Exception
+    {
+        when(this.configurationSource.getProperty(eq("glossary.machineTranslation.synchronizationDelay"), anyLong()))
+            .thenReturn(-1L);
+
+        this.mocker.getComponentUnderTest().schedule("wiki", Collections.singleton(Locale.ENGLISH));
+
+        verify(this.translationGlossaryManager, after(1500).never()).synchronizeGlossaries(any());
+    }
+}